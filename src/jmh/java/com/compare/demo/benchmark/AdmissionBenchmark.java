@@ -0,0 +1,84 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.config.AdaptiveConcurrencyLimit;
+import com.compare.demo.config.TokenBucket;
+import com.compare.demo.config.UserRateLimitFilter;
+import com.compare.demo.config.UserRateLimitProperties;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of admission control on the request path: a {@link TokenBucket} and an
+ * {@link AdaptiveConcurrencyLimit} with 1 and 8 threads contending on them, and one request
+ * through {@link UserRateLimitFilter} next to calling the filter chain directly (both create
+ * the mock request and response). Limits are high enough that every request is admitted.
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Djmh.args="AdmissionBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdmissionBenchmark {
+
+    private static final FilterChain CHAIN = (request, response) -> { };
+
+    private final TokenBucket bucket = new TokenBucket(1e9, 1_000_000);
+    private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1000, 1000, 0.9);
+    private UserRateLimitFilter filter;
+
+    @Setup
+    public void setUp() {
+        UserRateLimitProperties properties = new UserRateLimitProperties();
+        properties.setClientRate(1e9);
+        properties.setClientBurst(1_000_000);
+        filter = new UserRateLimitFilter(properties, new AdaptiveConcurrencyLimit(1000, 1000, 0.9));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long tokenBucket() {
+        return bucket.tryAcquire(1, System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long tokenBucketContended() {
+        return bucket.tryAcquire(1, System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean concurrencyLimit() {
+        boolean admitted = limit.tryAcquire();
+        limit.release();
+        return admitted;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean concurrencyLimitContended() {
+        boolean admitted = limit.tryAcquire();
+        limit.release();
+        return admitted;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void withoutFilter() throws Exception {
+        CHAIN.doFilter(new MockHttpServletRequest("GET", "/api/users/1"), new MockHttpServletResponse());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void throughFilter() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/users/1"), new MockHttpServletResponse(), CHAIN);
+    }
+}
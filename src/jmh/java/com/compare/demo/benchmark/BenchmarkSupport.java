@@ -0,0 +1,93 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.entity.User;
+import com.compare.demo.mapper.UserMapper;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.flywaydb.core.Flyway;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared fixtures for the benchmarks: synthetic users and a MyBatis setup on an embedded
+ * H2 database, built without Spring so that only the code under test is measured.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 1; i <= count; i++) {
+            User user = new User(username(i), "user" + i + "@example.com");
+            user.setId((long) i);
+            user.setCreatedAt(now);
+            user.setUpdatedAt(now);
+            users.add(user);
+        }
+        return users;
+    }
+
+    static String username(int i) {
+        return "user" + i;
+    }
+
+    static String jdbcUrl(String databaseName) {
+        return "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1";
+    }
+
+    static SqlSessionFactory sqlSessionFactory(String databaseName) {
+        return sqlSessionFactory(new PooledDataSource("org.h2.Driver", jdbcUrl(databaseName), "sa", ""));
+    }
+
+    static SqlSessionFactory sqlSessionFactory(DataSource dataSource) {
+        migrate(dataSource);
+        Configuration configuration = new Configuration(
+                new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        // repeated identical lookups must reach the database, not the session cache
+        configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+        configuration.addMapper(UserMapper.class);
+        return new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    static DataSource migratedDataSource(String databaseName) {
+        DataSource dataSource = new PooledDataSource("org.h2.Driver", jdbcUrl(databaseName), "sa", "");
+        migrate(dataSource);
+        return dataSource;
+    }
+
+    private static void migrate(DataSource dataSource) {
+        // the same migrations the application runs, on a fresh schema
+        Flyway flyway = Flyway.configure().dataSource(dataSource).cleanDisabled(false).load();
+        flyway.clean();
+        flyway.migrate();
+    }
+
+    static void populate(SqlSessionFactory sqlSessionFactory, int count) {
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            UserMapper mapper = session.getMapper(UserMapper.class);
+            int pending = 0;
+            for (User user : users(count)) {
+                mapper.insertWithId(user);
+                if (++pending == 1000) {
+                    session.flushStatements();
+                    pending = 0;
+                }
+            }
+            session.commit();
+        }
+    }
+}
\ No newline at end of file
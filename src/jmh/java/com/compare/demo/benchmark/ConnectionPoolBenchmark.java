@@ -0,0 +1,69 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.entity.User;
+import com.compare.demo.mapper.UserMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test for the connection pool: {@code @Threads} concurrent callers each borrow a
+ * connection per lookup, as a request does, against Hikari pools of {@code poolSize}.
+ * Compare the ops/s with the target request rate; the pool is not the bottleneck when
+ * throughput stops growing with {@code poolSize} and the acquire wait printed at the end of
+ * each trial stays small next to the per-operation time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class ConnectionPoolBenchmark {
+
+    private static final int TABLE_SIZE = 10_000;
+
+    @Param({"3", "8", "16", "32"})
+    private int poolSize;
+
+    private SimpleMeterRegistry meterRegistry;
+    private HikariDataSource dataSource;
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Setup
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(BenchmarkSupport.jdbcUrl("pool" + poolSize) + ";QUERY_CACHE_SIZE=64");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setMinimumIdle(poolSize);
+        dataSource.setConnectionTimeout(2000);
+        dataSource.setMetricRegistry(meterRegistry);
+        sqlSessionFactory = BenchmarkSupport.sqlSessionFactory(dataSource);
+        BenchmarkSupport.populate(sqlSessionFactory, TABLE_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Timer acquire = meterRegistry.get("hikaricp.connections.acquire").timer();
+        System.out.printf("%npool=%d acquire: mean %.1f us, max %.1f us, timeouts %.0f%n", poolSize,
+                acquire.mean(TimeUnit.MICROSECONDS), acquire.max(TimeUnit.MICROSECONDS),
+                meterRegistry.get("hikaricp.connections.timeout").counter().count());
+        dataSource.close();
+    }
+
+    @Benchmark
+    public User findById() {
+        try (SqlSession session = sqlSessionFactory.openSession(true)) {
+            return session.getMapper(UserMapper.class).findById(ThreadLocalRandom.current().nextLong(1, TABLE_SIZE + 1));
+        }
+    }
+}
\ No newline at end of file
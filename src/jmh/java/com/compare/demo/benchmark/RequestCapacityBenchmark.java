@@ -0,0 +1,148 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.CompareApplication;
+import com.compare.demo.dto.UserDTO;
+import com.compare.demo.service.UserService;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent-request capacity over HTTP with a fixed number of Tomcat threads and a fixed
+ * heap. Every query takes an extra {@code latencyMillis} (a slow database), and the user
+ * cache is disabled so each lookup reaches it. {@code async=false} runs handlers inline on
+ * Tomcat's threads, {@code async=true} on the request executor. One extra client keeps
+ * polling /actuator/health to show whether it is still served while lookups are queued.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms256m", "-Xmx256m"})
+public class RequestCapacityBenchmark {
+
+    private static final int USERS = 1000;
+    private static final int TOMCAT_THREADS = 16;
+
+    @Param({"false", "true"})
+    private boolean async;
+
+    @Param({"20"})
+    private int latencyMillis;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() {
+        // command-line arguments, so they win over application.properties
+        context = new SpringApplicationBuilder(CompareApplication.class, SlowDatabase.class)
+                .run("--server.port=0",
+                        "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "--server.tomcat.accept-count=1000",
+                        "--server.tomcat.max-connections=1000",
+                        "--spring.datasource.hikari.maximum-pool-size=128",
+                        "--user.async.enabled=" + async,
+                        "--user.async.pool-size=128",
+                        "--user.cache.ttl=0s",
+                        "--benchmark.latency-millis=" + latencyMillis,
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.compare.demo=WARN");
+        List<UserDTO> users = new ArrayList<>(USERS);
+        for (int i = 1; i <= USERS; i++) {
+            users.add(new UserDTO(null, BenchmarkSupport.username(i), "user" + i + "@example.com"));
+        }
+        context.getBean(UserService.class).createUsers(users);
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port + "/api";
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Group("capacity")
+    @GroupThreads(128)
+    public int lookup() throws IOException {
+        return get("/api/users/" + ThreadLocalRandom.current().nextInt(1, USERS + 1));
+    }
+
+    @Benchmark
+    @Group("capacity")
+    @GroupThreads(1)
+    public int health() throws IOException {
+        return get("/actuator/health");
+    }
+
+    private int get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setConnectTimeout(30_000);
+        connection.setReadTimeout(30_000);
+        int status = connection.getResponseCode();
+        InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (body != null) {
+            // drain so the keep-alive connection can be reused
+            byte[] buffer = new byte[4096];
+            while (body.read(buffer) != -1) {
+            }
+            body.close();
+        }
+        return status;
+    }
+
+    @Configuration
+    static class SlowDatabase {
+
+        @Bean
+        public Interceptor slowQueries(Environment environment) {
+            return new SlowQueries(environment.getRequiredProperty("benchmark.latency-millis", Long.class));
+        }
+    }
+
+    @Intercepts({
+            @Signature(type = Executor.class, method = "query",
+                    args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+            @Signature(type = Executor.class, method = "query",
+                    args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+    })
+    static class SlowQueries implements Interceptor {
+
+        private final long latencyMillis;
+
+        SlowQueries(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            Thread.sleep(latencyMillis);
+            return invocation.proceed();
+        }
+    }
+}
\ No newline at end of file
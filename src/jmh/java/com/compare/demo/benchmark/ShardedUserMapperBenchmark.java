@@ -0,0 +1,91 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.dto.UserSearchCriteria;
+import com.compare.demo.entity.User;
+import com.compare.demo.mapper.ShardedUserMapper;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link ShardedUserMapper} on 1, 2 and 4 embedded H2 shards holding the same
+ * {@code tableSize} users, from 8 threads: routed lookups and updates, which only touch one
+ * shard, against a scatter-gather search over all of them.
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Djmh.args="ShardedUserMapperBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class ShardedUserMapperBenchmark {
+
+    private static final UserSearchCriteria ALL = new UserSearchCriteria();
+
+    @Param({"1", "2", "4"})
+    private int shards;
+
+    @Param({"100000"})
+    private int tableSize;
+
+    private ShardedUserMapper userMapper;
+    private long[] ids;
+
+    @Setup
+    public void setUp() {
+        List<DataSource> dataSources = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            dataSources.add(BenchmarkSupport.migratedDataSource("sharded" + shards + "-" + i));
+        }
+        userMapper = new ShardedUserMapper(dataSources, BenchmarkSupport.migratedDataSource("sharded" + shards + "-index"),
+                Collections.emptyList(), 16, 1000);
+        List<User> users = BenchmarkSupport.users(tableSize);
+        for (int start = 0; start < users.size(); start += 1000) {
+            userMapper.insertAll(users.subList(start, Math.min(start + 1000, users.size())));
+        }
+        ids = users.stream().mapToLong(User::getId).toArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        userMapper.close();
+    }
+
+    @Benchmark
+    public User findById() {
+        return userMapper.findById(ids[randomIndex()]);
+    }
+
+    @Benchmark
+    public User findByUsername() {
+        return userMapper.findByUsername(BenchmarkSupport.username(randomIndex() + 1));
+    }
+
+    @Benchmark
+    public int update() {
+        int index = randomIndex();
+        User user = new User(BenchmarkSupport.username(index + 1), "updated" + index + "@example.com");
+        user.setId(ids[index]);
+        user.setUpdatedAt(LocalDateTime.now());
+        return userMapper.update(user);
+    }
+
+    @Benchmark
+    public List<User> searchNewestPage() {
+        return userMapper.search(ALL, null, null, "created_at DESC, id DESC", 0, 20);
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(ids.length);
+    }
+}
@@ -0,0 +1,39 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.CompareApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of the whole application: every fork is a fresh JVM that boots the context
+ * once. The heap still in use after a GC is printed at the end of each fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    @Benchmark
+    public ConfigurableApplicationContext start() {
+        context = SpringApplication.run(CompareApplication.class,
+                "--server.port=0", "--logging.level.root=WARN", "--logging.level.com.compare.demo=WARN");
+        return context;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        System.gc();
+        long usedHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.printf("%nheap used after startup: %.1f MB%n", usedHeap / (1024.0 * 1024.0));
+        context.close();
+    }
+}
\ No newline at end of file
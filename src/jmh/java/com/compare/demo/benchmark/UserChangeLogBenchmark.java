@@ -0,0 +1,70 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.entity.User;
+import com.compare.demo.entity.UserChange;
+import com.compare.demo.mapper.UserChangeMapper;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write ceiling of the change feed: {@code @Threads} concurrent transactions each do
+ * {@code workMillis} of other work and record one change. {@code reserveFirst} takes the
+ * {@code user_change_sequence} row lock at the start of the transaction, as the log used to,
+ * so throughput cannot exceed {@code 1000 / workMillis} commits per second whatever the thread
+ * count; {@code reserveAtCommit} takes it just before committing, as {@code UserChangeLog} does
+ * now, and leaves only the commit itself serialized.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class UserChangeLogBenchmark {
+
+    @Param({"1", "5"})
+    private int workMillis;
+
+    private SqlSessionFactory sqlSessionFactory;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        sqlSessionFactory = BenchmarkSupport.sqlSessionFactory("changes" + workMillis);
+        sqlSessionFactory.getConfiguration().addMapper(UserChangeMapper.class);
+        user = BenchmarkSupport.users(1).get(0);
+    }
+
+    @Benchmark
+    public void reserveFirst() {
+        try (SqlSession session = sqlSessionFactory.openSession(false)) {
+            UserChangeMapper mapper = session.getMapper(UserChangeMapper.class);
+            UserChange change = new UserChange(UserChange.Type.UPDATED, user);
+            change.setSeq(mapper.reserveSequence(1));
+            work();
+            mapper.insert(change);
+            session.commit();
+        }
+    }
+
+    @Benchmark
+    public void reserveAtCommit() {
+        try (SqlSession session = sqlSessionFactory.openSession(false)) {
+            UserChangeMapper mapper = session.getMapper(UserChangeMapper.class);
+            UserChange change = new UserChange(UserChange.Type.UPDATED, user);
+            work();
+            change.setSeq(mapper.reserveSequence(1));
+            mapper.insert(change);
+            session.commit();
+        }
+    }
+
+    private void work() {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(workMillis));
+    }
+}
@@ -0,0 +1,86 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.mapper.UserMapper;
+import com.compare.demo.service.UserExporter;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-table export throughput in rows per second, unthrottled, into a channel that discards
+ * the gzipped bytes. Teardown prints the compressed size of one export.
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Djmh.args="UserExportBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserExportBenchmark {
+
+    private static final int TABLE_SIZE = 100_000;
+
+    @Param({"NDJSON", "CSV"})
+    private UserExporter.Format format;
+
+    private SqlSession session;
+    private UserExporter exporter;
+    private final CountingChannel channel = new CountingChannel();
+
+    @Setup
+    public void setUp() {
+        PooledDataSource dataSource = new PooledDataSource("org.h2.Driver", BenchmarkSupport.jdbcUrl("export"), "sa", "");
+        SqlSessionFactory sqlSessionFactory = BenchmarkSupport.sqlSessionFactory(dataSource);
+        BenchmarkSupport.populate(sqlSessionFactory, TABLE_SIZE);
+        session = sqlSessionFactory.openSession(true);
+        exporter = new UserExporter(session.getMapper(UserMapper.class),
+                new DataSourceTransactionManager(dataSource), 0, 1, "", "ndjson", false, "");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        channel.bytes = 0;
+        exporter.export(format, null, channel);
+        System.out.printf("%n%s, %d users: %,d bytes gzipped%n", format, TABLE_SIZE, channel.bytes);
+        exporter.destroy();
+        session.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TABLE_SIZE)
+    public long export() throws IOException {
+        return exporter.export(format, null, channel);
+    }
+
+    private static final class CountingChannel implements WritableByteChannel {
+
+        private long bytes;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int written = src.remaining();
+            src.position(src.limit());
+            bytes += written;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
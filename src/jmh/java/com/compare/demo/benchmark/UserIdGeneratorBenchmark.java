@@ -0,0 +1,52 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.service.SnowflakeUserIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ids per millisecond from {@link SnowflakeUserIdGenerator} with 1 and 8 threads contending on
+ * it, next to a bare {@link AtomicLong} counter as the lock-free ceiling. One node can issue at
+ * most 4096 ids per millisecond, so past that the generator waits for the clock.
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Djmh.args="UserIdGeneratorBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserIdGeneratorBenchmark {
+
+    private final SnowflakeUserIdGenerator generator = new SnowflakeUserIdGenerator(1, Duration.ofSeconds(5));
+    private final AtomicLong counter = new AtomicLong();
+
+    @Benchmark
+    @Threads(1)
+    public long snowflake() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long snowflakeContended() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long atomicCounter() {
+        return counter.incrementAndGet();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long atomicCounterContended() {
+        return counter.incrementAndGet();
+    }
+}
@@ -0,0 +1,86 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.entity.User;
+import com.compare.demo.mapper.UserMapper;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every UserMapper statement against an embedded H2 database of {@code tableSize} rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMapperBenchmark {
+
+    @Param({"1000", "100000"})
+    private int tableSize;
+
+    private SqlSession session;
+    private UserMapper userMapper;
+    private long nextUsername;
+
+    @Setup
+    public void setUp() {
+        SqlSessionFactory sqlSessionFactory = BenchmarkSupport.sqlSessionFactory("mapper" + tableSize);
+        BenchmarkSupport.populate(sqlSessionFactory, tableSize);
+        session = sqlSessionFactory.openSession(true);
+        userMapper = session.getMapper(UserMapper.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.close();
+    }
+
+    @Benchmark
+    public List<User> findAll() {
+        return userMapper.findAll();
+    }
+
+    @Benchmark
+    public User findById() {
+        return userMapper.findById(randomId());
+    }
+
+    @Benchmark
+    public User findByUsername() {
+        return userMapper.findByUsername(BenchmarkSupport.username((int) randomId()));
+    }
+
+    @Benchmark
+    public List<User> findPage() {
+        return userMapper.findPage(randomId(), 100);
+    }
+
+    @Benchmark
+    public int update() {
+        long id = randomId();
+        User user = new User(BenchmarkSupport.username((int) id), "updated" + id + "@example.com");
+        user.setId(id);
+        user.setUpdatedAt(LocalDateTime.now());
+        return userMapper.update(user);
+    }
+
+    @Benchmark
+    public int insertAndDelete() {
+        User user = new User("bench" + nextUsername, "bench@example.com");
+        // ids past the populated range, so the insert never collides with a table row
+        user.setId(tableSize + 1 + nextUsername++);
+        userMapper.insertWithId(user);
+        return userMapper.deleteById(user.getId());
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, tableSize + 1);
+    }
+}
\ No newline at end of file
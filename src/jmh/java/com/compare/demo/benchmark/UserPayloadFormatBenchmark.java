@@ -0,0 +1,78 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.dto.UserDTO;
+import com.compare.demo.dto.UserRows;
+import com.compare.demo.dto.UserRowsSerializer;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encode and decode cost of a page of users in each negotiable format, raw and gzipped as
+ * {@code server.compression} sends it. Setup prints the bytes on the wire per format.
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Djmh.args="UserPayloadFormatBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserPayloadFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"1000"})
+    private int listSize;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private UserRows users;
+    private byte[] encoded;
+    private byte[] gzipped;
+
+    @Setup
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = "cbor".equals(format) ? Jackson2ObjectMapperBuilder.cbor()
+                : "smile".equals(format) ? Jackson2ObjectMapperBuilder.smile() : Jackson2ObjectMapperBuilder.json();
+        ObjectMapper objectMapper = builder.modulesToInstall(UserRowsSerializer.module()).build();
+        JavaType listType = objectMapper.getTypeFactory().constructCollectionType(List.class, UserDTO.class);
+        writer = objectMapper.writerFor(listType);
+        reader = objectMapper.readerFor(listType);
+        users = new UserRows(BenchmarkSupport.users(listSize));
+        encoded = encode();
+        gzipped = encodeGzip();
+        System.out.printf("%n%s, %d users: %,d bytes, %,d bytes gzipped%n", format, listSize, encoded.length, gzipped.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] encodeGzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            writer.writeValue(gzip, users);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public List<UserDTO> decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+}
@@ -0,0 +1,75 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.dto.UserDTO;
+import com.compare.demo.dto.UserRows;
+import com.compare.demo.dto.UserRowsSerializer;
+import com.compare.demo.entity.User;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Jackson serialization of user lists, using an ObjectMapper configured the way Spring MVC
+ * configures the one behind the JSON message converter, which writes a {@code List<UserDTO>}
+ * body by its declared type. {@code convertAndSerialize} is the list endpoints' old path (one
+ * UserDTO per row, collected by a stream, written by the reflective bean serializer) and
+ * {@code serializeRows} the {@link UserRows} one. Compare allocation with {@code -prof gc}:
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Djmh.args="UserSerializationBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserSerializationBenchmark {
+
+    @Param({"100", "10000"})
+    private int listSize;
+
+    private ObjectWriter reflectiveWriter;
+    private ObjectWriter rowsWriter;
+    private List<User> rows;
+    private List<UserDTO> users;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        JavaType listType = objectMapper.getTypeFactory().constructCollectionType(List.class, UserDTO.class);
+        reflectiveWriter = objectMapper.writerFor(listType);
+        rowsWriter = Jackson2ObjectMapperBuilder.json().modulesToInstall(UserRowsSerializer.module()).build()
+                .writerFor(listType);
+        rows = BenchmarkSupport.users(listSize);
+        users = new ArrayList<>(listSize);
+        for (int i = 1; i <= listSize; i++) {
+            users.add(new UserDTO((long) i, BenchmarkSupport.username(i), "user" + i + "@example.com"));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws IOException {
+        return reflectiveWriter.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] convertAndSerialize() throws IOException {
+        return reflectiveWriter.writeValueAsBytes(rows.stream()
+                .map(UserRows::toDTO)
+                .collect(Collectors.toList()));
+    }
+
+    @Benchmark
+    public byte[] serializeRows() throws IOException {
+        return rowsWriter.writeValueAsBytes(new UserRows(rows));
+    }
+}
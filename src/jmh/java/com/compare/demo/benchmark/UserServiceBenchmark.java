@@ -0,0 +1,60 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.dto.UserDTO;
+import com.compare.demo.entity.User;
+import com.compare.demo.mapper.UserMapper;
+import com.compare.demo.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the service-side cost of handing mapper rows out as DTO lists (now a
+ * {@code UserRows} view, converted only on access) with the database taken out of the picture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    private int tableSize;
+
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        List<User> rows = BenchmarkSupport.users(tableSize);
+        UserMapper mapper = (UserMapper) Proxy.newProxyInstance(UserMapper.class.getClassLoader(),
+                new Class<?>[] {UserMapper.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findAll":
+                            return rows;
+                        case "findPage":
+                            return rows.subList(0, Math.min((Integer) args[1], rows.size()));
+                        case "toString":
+                            return "UserMapper(" + rows.size() + " rows)";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        userService = new UserService();
+        ReflectionTestUtils.setField(userService, "userMapper", mapper);
+    }
+
+    @Benchmark
+    public List<UserDTO> getAllUsers() {
+        return userService.getAllUsers();
+    }
+
+    @Benchmark
+    public List<UserDTO> getUsersPage() {
+        return userService.getUsersPage(null, UserService.MAX_PAGE_SIZE);
+    }
+}
\ No newline at end of file
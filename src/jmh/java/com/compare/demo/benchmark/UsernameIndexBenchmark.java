@@ -0,0 +1,142 @@
+package com.compare.demo.benchmark;
+
+import com.compare.demo.mapper.UserMapper;
+import com.compare.demo.service.UsernameIndex;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Autocomplete latency of {@link UsernameIndex} and its heap footprint, compared with a
+ * {@code TreeSet<String>} of the same usernames. The footprint is printed once per fork,
+ * before warmup:
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec -Djmh.args="UsernameIndexBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class UsernameIndexBenchmark {
+
+    private static final int SUGGESTIONS = 10;
+
+    @Param({"1000000"})
+    private int usernames;
+
+    private UsernameIndex index;
+    private TreeSet<String> treeSet;
+    private String[] prefixes;
+    private int nextPrefix;
+
+    @Setup
+    public void setUp() {
+        List<String> names = randomUsernames(usernames);
+
+        long before = usedHeap();
+        index = new UsernameIndex(scanning(names), true, 4096);
+        index.load();
+        long indexHeap = usedHeap() - before;
+
+        before = usedHeap();
+        treeSet = new TreeSet<>();
+        for (String name : names) {
+            // copy, otherwise the set would share the strings already counted for the list
+            treeSet.add(new String(name.toCharArray()));
+        }
+        long treeSetHeap = usedHeap() - before;
+
+        System.out.printf("%nusername index: %,d usernames, arrays %,d bytes (%.1f bytes/username), heap %,d bytes%n",
+                index.getEntries(), index.getMemoryBytes(), (double) index.getMemoryBytes() / index.getEntries(), indexHeap);
+        System.out.printf("TreeSet<String>: heap %,d bytes (%.1f bytes/username)%n",
+                treeSetHeap, (double) treeSetHeap / treeSet.size());
+
+        Random random = new Random(7);
+        prefixes = new String[1024];
+        for (int i = 0; i < prefixes.length; i++) {
+            String name = names.get(random.nextInt(names.size()));
+            prefixes[i] = name.substring(0, Math.min(name.length(), 1 + random.nextInt(4)));
+        }
+    }
+
+    @Benchmark
+    public List<String> suggest() {
+        return index.suggest(nextPrefix(), SUGGESTIONS);
+    }
+
+    @Benchmark
+    public List<String> treeSetSuggest() {
+        String prefix = nextPrefix();
+        List<String> suggestions = new ArrayList<>(SUGGESTIONS);
+        NavigableSet<String> tail = treeSet.tailSet(prefix, true);
+        for (String username : tail) {
+            if (!username.startsWith(prefix) || suggestions.size() == SUGGESTIONS) {
+                break;
+            }
+            suggestions.add(username);
+        }
+        return suggestions;
+    }
+
+    private String nextPrefix() {
+        return prefixes[nextPrefix++ & (prefixes.length - 1)];
+    }
+
+    private static List<String> randomUsernames(int count) {
+        // lowercase names of 5-14 letters, with digits appended on collision as sign-up forms suggest
+        Random random = new Random(42);
+        Set<String> seen = new HashSet<>(count * 2);
+        List<String> names = new ArrayList<>(count);
+        while (names.size() < count) {
+            StringBuilder name = new StringBuilder();
+            int length = 5 + random.nextInt(10);
+            for (int i = 0; i < length; i++) {
+                name.append((char) ('a' + random.nextInt(26)));
+            }
+            while (!seen.add(name.toString())) {
+                name.append(random.nextInt(10));
+            }
+            names.add(name.toString());
+        }
+        return names;
+    }
+
+    private static UserMapper scanning(List<String> names) {
+        // only scanUsernames is called while loading
+        return (UserMapper) Proxy.newProxyInstance(UserMapper.class.getClassLoader(), new Class<?>[] {UserMapper.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("scanUsernames")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    ResultHandler<String> handler = (ResultHandler<String>) args[0];
+                    DefaultResultContext<String> context = new DefaultResultContext<>();
+                    for (String name : names) {
+                        context.nextResultObject(name);
+                        handler.handleResult(context);
+                    }
+                    return null;
+                });
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
\ No newline at end of file
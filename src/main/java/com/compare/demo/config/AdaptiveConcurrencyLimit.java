@@ -0,0 +1,62 @@
+package com.compare.demo.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the user requests in flight at a limit that adapts to database load (AIMD): each
+ * {@link #update(boolean)} shrinks the limit by {@code backoffRatio} while the database is
+ * overloaded and otherwise grows it by one, within {@code [minLimit, maxLimit]}. Admission is
+ * one CAS on the in-flight count.
+ */
+public final class AdaptiveConcurrencyLimit {
+    
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // written only by update(), which runs on one thread
+    private volatile int limit;
+    
+    public AdaptiveConcurrencyLimit(int minLimit, int maxLimit, double backoffRatio) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("concurrency limits must satisfy 0 < min-limit <= max-limit");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoff ratio must be between 0 and 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.limit = maxLimit;
+    }
+    
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+    
+    public void update(boolean overloaded) {
+        limit = overloaded
+                ? Math.max(minLimit, (int) (limit * backoffRatio))
+                : Math.min(maxLimit, limit + 1);
+    }
+    
+    public int getLimit() {
+        return limit;
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,176 @@
+package com.compare.demo.config;
+
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Holds back the first {@code threshold} bytes of a response, so a body that ends within them
+ * is sent with a Content-Length. Spring MVC flushes after writing a body, which otherwise
+ * commits even a tiny response as chunked, and Tomcat compresses every response of unknown
+ * length regardless of {@code server.compression.min-response-size}. Larger bodies are passed
+ * through as soon as they outgrow the buffer.
+ *
+ * Responses that flush on purpose, such as streams the client reads as they are written, are
+ * left alone through {@code streamingPaths} (request paths below the context path).
+ */
+public class ContentLengthFilter extends OncePerRequestFilter {
+    
+    private final int threshold;
+    private final Set<String> streamingPaths;
+    
+    public ContentLengthFilter(DataSize threshold, String... streamingPaths) {
+        this.threshold = (int) threshold.toBytes();
+        this.streamingPaths = new HashSet<>(Arrays.asList(streamingPaths));
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return streamingPaths.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+    
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // the body of an async request is written during its async dispatch
+        return false;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        BufferedResponse buffered = WebUtils.getNativeResponse(response, BufferedResponse.class);
+        if (buffered == null) {
+            buffered = new BufferedResponse(response, threshold);
+        }
+        chain.doFilter(request, buffered);
+        if (!isAsyncStarted(request)) {
+            buffered.finish();
+        }
+    }
+    
+    private static final class BufferedResponse extends HttpServletResponseWrapper {
+        
+        private final byte[] buffer;
+        private int count;
+        private boolean passThrough;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+        
+        BufferedResponse(HttpServletResponse response, int threshold) {
+            super(response);
+            this.buffer = new byte[threshold];
+        }
+        
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (outputStream == null) {
+                outputStream = new BufferedOutputStream();
+            }
+            return outputStream;
+        }
+        
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+        
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (passThrough) {
+                super.flushBuffer();
+            }
+        }
+        
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            count = 0;
+        }
+        
+        @Override
+        public void reset() {
+            super.reset();
+            count = 0;
+        }
+        
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (!passThrough && count > 0 && !isCommitted()) {
+                setContentLength(count);
+                passThrough();
+            }
+        }
+        
+        private void passThrough() throws IOException {
+            passThrough = true;
+            if (count > 0) {
+                super.getOutputStream().write(buffer, 0, count);
+                count = 0;
+            }
+        }
+        
+        private final class BufferedOutputStream extends ServletOutputStream {
+            
+            @Override
+            public void write(int b) throws IOException {
+                if (!passThrough && count < buffer.length) {
+                    buffer[count++] = (byte) b;
+                    return;
+                }
+                passThrough();
+                BufferedResponse.super.getOutputStream().write(b);
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (!passThrough && count + len <= buffer.length) {
+                    System.arraycopy(b, off, buffer, count, len);
+                    count += len;
+                    return;
+                }
+                passThrough();
+                BufferedResponse.super.getOutputStream().write(b, off, len);
+            }
+            
+            @Override
+            public void flush() throws IOException {
+                // only a body that already outgrew the buffer is flushed
+                if (passThrough) {
+                    BufferedResponse.super.getOutputStream().flush();
+                }
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException("non-blocking writes are not buffered");
+            }
+        }
+    }
+}
\ No newline at end of file
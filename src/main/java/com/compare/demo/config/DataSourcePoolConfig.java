@@ -0,0 +1,62 @@
+package com.compare.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Sizes the Hikari pool from the CPU count and the expected number of concurrent requests
+ * when {@code user.datasource.expected-concurrency} is set. An explicit
+ * {@code maximum-pool-size} or {@code minimum-idle} under the pool's own prefix
+ * ({@code spring.datasource.hikari} or {@code user.datasource.replica.hikari}) always wins.
+ */
+@Configuration
+@ConditionalOnClass(HikariDataSource.class)
+@ConditionalOnProperty("user.datasource.expected-concurrency")
+public class DataSourcePoolConfig {
+    
+    static final String PRIMARY_PREFIX = "spring.datasource.hikari.";
+    static final String REPLICA_PREFIX = "user.datasource.replica.hikari.";
+    
+    @Bean
+    public static BeanPostProcessor hikariPoolSizer(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource) {
+                    size((HikariDataSource) bean, beanName, environment, Runtime.getRuntime().availableProcessors());
+                }
+                return bean;
+            }
+        };
+    }
+    
+    // runs after the pool was bound from its properties, so explicit values are kept as bound
+    static void size(HikariDataSource dataSource, String beanName, Environment environment, int availableProcessors) {
+        String prefix = "replicaDataSource".equals(beanName) ? REPLICA_PREFIX : PRIMARY_PREFIX;
+        if (environment.containsProperty(prefix + "maximum-pool-size")) {
+            return;
+        }
+        int expectedConcurrency = environment.getRequiredProperty("user.datasource.expected-concurrency", Integer.class);
+        int poolSize = poolSize(availableProcessors, expectedConcurrency);
+        dataSource.setMaximumPoolSize(poolSize);
+        if (!environment.containsProperty(prefix + "minimum-idle")) {
+            dataSource.setMinimumIdle(poolSize);
+        }
+    }
+    
+    /**
+     * (cores * 2) + 1 from the HikariCP sizing guidance, capped by the expected concurrency:
+     * connections beyond the number of requests that can be in flight only sit idle.
+     */
+    static int poolSize(int availableProcessors, int expectedConcurrency) {
+        if (expectedConcurrency <= 0) {
+            throw new IllegalArgumentException("user.datasource.expected-concurrency must be positive");
+        }
+        return Math.max(2, Math.min(availableProcessors * 2 + 1, expectedConcurrency));
+    }
+}
\ No newline at end of file
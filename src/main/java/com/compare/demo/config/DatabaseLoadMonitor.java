@@ -0,0 +1,140 @@
+package com.compare.demo.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts an {@link AdaptiveConcurrencyLimit} to database load every {@code interval}, from
+ * metrics the application records anyway: the mean mapper statement time ({@code user.mapper})
+ * and the mean wait for a pooled connection ({@code hikaricp.connections.acquire}) over the
+ * interval. Either above its threshold counts as overloaded.
+ */
+public class DatabaseLoadMonitor implements MeterBinder, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseLoadMonitor.class);
+
+    private final AdaptiveConcurrencyLimit limit;
+    private final Duration interval;
+    private final long maxDbLatencyNanos;
+    private final long maxPoolWaitNanos;
+    private final ScheduledExecutorService scheduler;
+    // the registry the metrics are read from is the one this binder is bound to
+    private volatile MeterRegistry registry;
+    // only touched on the scheduler thread
+    private Totals lastStatements = Totals.NONE;
+    private Totals lastAcquires = Totals.NONE;
+    private volatile double dbLatencySeconds;
+    private volatile double poolWaitSeconds;
+
+    public DatabaseLoadMonitor(AdaptiveConcurrencyLimit limit, Duration interval, Duration maxDbLatency, Duration maxPoolWait) {
+        if (interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("user.load-shedding.interval must be positive");
+        }
+        this.limit = limit;
+        this.interval = interval;
+        this.maxDbLatencyNanos = maxDbLatency.toNanos();
+        this.maxPoolWaitNanos = maxPoolWait.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("user-load-shedding-"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                update();
+            } catch (RuntimeException e) {
+                log.warn("Updating the user concurrency limit failed", e);
+            }
+        }, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public double getDbLatencySeconds() {
+        return dbLatencySeconds;
+    }
+
+    public double getPoolWaitSeconds() {
+        return poolWaitSeconds;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("user.admission.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Concurrent user requests currently allowed to reach the database")
+                .register(registry);
+        Gauge.builder("user.admission.concurrency.in.flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("User requests holding a concurrency slot")
+                .register(registry);
+        Gauge.builder("user.admission.db.latency", this, DatabaseLoadMonitor::getDbLatencySeconds)
+                .description("Mean mapper statement time over the last interval")
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("user.admission.pool.wait", this, DatabaseLoadMonitor::getPoolWaitSeconds)
+                .description("Mean connection pool wait over the last interval")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    void update() {
+        MeterRegistry registry = this.registry;
+        if (registry == null) {
+            return;
+        }
+        Totals statements = Totals.of(registry.find("user.mapper").timers());
+        Totals acquires = Totals.of(registry.find("hikaricp.connections.acquire").timers());
+        double dbLatency = statements.meanNanosSince(lastStatements);
+        double poolWait = acquires.meanNanosSince(lastAcquires);
+        lastStatements = statements;
+        lastAcquires = acquires;
+        dbLatencySeconds = dbLatency / TimeUnit.SECONDS.toNanos(1);
+        poolWaitSeconds = poolWait / TimeUnit.SECONDS.toNanos(1);
+        limit.update(dbLatency > maxDbLatencyNanos || poolWait > maxPoolWaitNanos);
+    }
+
+    private static final class Totals {
+
+        static final Totals NONE = new Totals(0, 0);
+
+        private final long count;
+        private final double totalNanos;
+
+        private Totals(long count, double totalNanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+        }
+
+        static Totals of(Collection<Timer> timers) {
+            long count = 0;
+            double totalNanos = 0;
+            for (Timer timer : timers) {
+                count += timer.count();
+                totalNanos += timer.totalTime(TimeUnit.NANOSECONDS);
+            }
+            return new Totals(count, totalNanos);
+        }
+
+        double meanNanosSince(Totals previous) {
+            long count = this.count - previous.count;
+            return count > 0 ? Math.max(0, totalNanos - previous.totalNanos) / count : 0;
+        }
+    }
+}
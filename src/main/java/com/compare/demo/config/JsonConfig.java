@@ -0,0 +1,81 @@
+package com.compare.demo.config;
+
+import com.compare.demo.dto.UserRowsSerializer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.unit.DataSize;
+
+import javax.servlet.Filter;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Encodings of user payloads on the wire. JSON stays the default; clients can ask for CBOR
+ * ({@code application/cbor}) or Smile ({@code application/x-jackson-smile}) through
+ * {@code Accept} and send either as {@code Content-Type}. Responses are gzipped per
+ * {@code server.compression.*}, and each encoding gets its own entity tag.
+ */
+@Configuration
+public class JsonConfig {
+    
+    // Spring Boot registers Module beans with the ObjectMapper behind the JSON message converter
+    @Bean
+    public Module userRowsModule() {
+        return UserRowsSerializer.module();
+    }
+    
+    // these replace Spring MVC's default binary converters, which use a plain ObjectMapper
+    // without the Boot Jackson settings and modules
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+    
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+    
+    // Tomcat only gzips responses without a strong ETag; the filter tags each encoding on its own
+    @Bean
+    public FilterRegistrationBean<RepresentationETagFilter> representationETagFilter(ServerProperties serverProperties) {
+        Compression compression = serverProperties.getCompression();
+        FilterRegistrationBean<RepresentationETagFilter> registration = new FilterRegistrationBean<>(
+                new RepresentationETagFilter(compression.getEnabled(), compression.getMimeTypes()));
+        registration.addUrlPatterns("/api/users", "/api/users/*");
+        return registration;
+    }
+    
+    @Bean
+    public FilterRegistrationBean<ContentLengthFilter> contentLengthFilter(
+            @Value("${server.compression.min-response-size:2KB}") DataSize minResponseSize) {
+        // streams, imports and exports flush as they go, their clients must not wait for the buffer
+        FilterRegistrationBean<ContentLengthFilter> registration = new FilterRegistrationBean<>(new ContentLengthFilter(
+                minResponseSize, "/api/users/stream", "/api/users/import", "/api/users/export"));
+        registration.addUrlPatterns("/api/users", "/api/users/*");
+        return registration;
+    }
+    
+    // one URL now has several representations, and their entity tags depend on both headers,
+    // so shared caches must key them by Accept and Accept-Encoding too
+    @Bean
+    public FilterRegistrationBean<Filter> varyByAcceptFilter() {
+        FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+            ((HttpServletResponse) response).addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            ((HttpServletResponse) response).addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            chain.doFilter(request, response);
+        });
+        registration.addUrlPatterns("/api/users", "/api/users/*");
+        return registration;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.compare.demo.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/**
+ * Rate limiting ({@code user.rate-limit.*}) and load shedding ({@code user.load-shedding.*}) of
+ * the user API, both applied by {@link UserRateLimitFilter}. The concurrency limit starts at
+ * {@code max-limit}; while the database is overloaded it shrinks by {@code backoff-ratio} every
+ * {@code interval}, down to {@code min-limit}, and otherwise grows back by one.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    @ConfigurationProperties("user.rate-limit")
+    public UserRateLimitProperties userRateLimitProperties() {
+        return new UserRateLimitProperties();
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "user.load-shedding.enabled", matchIfMissing = true)
+    public AdaptiveConcurrencyLimit userConcurrencyLimit(@Value("${user.load-shedding.min-limit:8}") int minLimit,
+                                                         @Value("${user.load-shedding.max-limit:256}") int maxLimit,
+                                                         @Value("${user.load-shedding.backoff-ratio:0.9}") double backoffRatio) {
+        return new AdaptiveConcurrencyLimit(minLimit, maxLimit, backoffRatio);
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "user.load-shedding.enabled", matchIfMissing = true)
+    public DatabaseLoadMonitor databaseLoadMonitor(AdaptiveConcurrencyLimit userConcurrencyLimit,
+                                                   @Value("${user.load-shedding.interval:250ms}") Duration interval,
+                                                   @Value("${user.load-shedding.max-db-latency:100ms}") Duration maxDbLatency,
+                                                   @Value("${user.load-shedding.max-pool-wait:50ms}") Duration maxPoolWait) {
+        return new DatabaseLoadMonitor(userConcurrencyLimit, interval, maxDbLatency, maxPoolWait);
+    }
+
+    @Bean
+    public UserRateLimitFilter userRateLimitFilter(UserRateLimitProperties userRateLimitProperties,
+                                                   ObjectProvider<AdaptiveConcurrencyLimit> userConcurrencyLimit) {
+        return new UserRateLimitFilter(userRateLimitProperties, userConcurrencyLimit.getIfAvailable());
+    }
+
+    // right behind the http.server.requests metrics filter, so turned away requests are still
+    // timed but nothing else runs for them
+    @Bean
+    public FilterRegistrationBean<UserRateLimitFilter> userRateLimitFilterRegistration(UserRateLimitFilter userRateLimitFilter) {
+        FilterRegistrationBean<UserRateLimitFilter> registration = new FilterRegistrationBean<>(userRateLimitFilter);
+        registration.addUrlPatterns("/api/users", "/api/users/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+}
@@ -0,0 +1,41 @@
+package com.compare.demo.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Whether the current thread serves a client that wrote within
+ * {@code user.datasource.replica.read-your-writes-window}. Such reads go to the primary, which
+ * already has the client's writes, instead of a replica that may not have caught up yet.
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static boolean isPrimaryRequired() {
+        return Boolean.TRUE.equals(PRIMARY_REQUIRED.get());
+    }
+
+    public static void setPrimaryRequired(boolean primaryRequired) {
+        if (primaryRequired) {
+            PRIMARY_REQUIRED.set(Boolean.TRUE);
+        } else {
+            PRIMARY_REQUIRED.remove();
+        }
+    }
+
+    /**
+     * Runs {@code work} with the given flag, for handing a request's flag to another thread.
+     */
+    public static <T> T call(boolean primaryRequired, Supplier<T> work) {
+        boolean previous = isPrimaryRequired();
+        setPrimaryRequired(primaryRequired);
+        try {
+            return work.get();
+        } finally {
+            setPrimaryRequired(previous);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,223 @@
+package com.compare.demo.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Gives every encoding of a user resource its own entity tag. The controller tags a resource
+ * with its row version ({@code "3"}); this filter sends {@code "3-json"}, {@code "3-cbor"} or
+ * {@code "3-smile"} after the {@code Accept} of the request, and {@code W/"3-cbor-gzip"} when
+ * the response may be gzipped. Tomcat only compresses responses without a strong tag, so the
+ * gzip variants are weak: they stand for the same content in another coding.
+ *
+ * {@code If-None-Match} tags of the request's own variant are turned back into the bare tags
+ * the controller compares with. {@code If-Match} keeps the bare version tag and also accepts a
+ * strong tag of any encoding, all of which stand for the same version.
+ */
+public class RepresentationETagFilter extends OncePerRequestFilter {
+    
+    private static final String GZIP = "gzip";
+    // in the order Spring MVC prefers the converters when the client accepts several
+    private static final Map<String, MediaType> FORMATS = new LinkedHashMap<>();
+    
+    static {
+        FORMATS.put("json", MediaType.APPLICATION_JSON);
+        FORMATS.put("cbor", MediaType.APPLICATION_CBOR);
+        FORMATS.put("smile", new MediaType("application", "x-jackson-smile"));
+    }
+    
+    private final boolean compression;
+    private final List<MediaType> compressedTypes;
+    
+    /**
+     * @param compression     whether {@code server.compression.enabled} is set
+     * @param compressedTypes {@code server.compression.mime-types}
+     */
+    public RepresentationETagFilter(boolean compression, String... compressedTypes) {
+        this.compression = compression;
+        this.compressedTypes = new ArrayList<>();
+        for (String type : compressedTypes) {
+            this.compressedTypes.add(MediaType.parseMediaType(type.trim()));
+        }
+    }
+    
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // the tags of an async request are set during its async dispatch
+        return false;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (WebUtils.getNativeResponse(response, TaggedResponse.class) != null) {
+            // already wrapped by the request's first dispatch
+            chain.doFilter(request, response);
+            return;
+        }
+        String format = formatOf(request);
+        String suffix = "-" + format;
+        boolean gzip = compression && acceptsGzip(request)
+                && compressedTypes.stream().anyMatch(type -> type.includes(FORMATS.get(format)));
+        if (gzip) {
+            suffix += "-" + GZIP;
+        }
+        chain.doFilter(new TaggedRequest(request, suffix), new TaggedResponse(response, suffix, gzip));
+    }
+    
+    static String formatOf(HttpServletRequest request) {
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(Collections.list(request.getHeaders(HttpHeaders.ACCEPT)));
+        } catch (InvalidMediaTypeException e) {
+            // Spring MVC rejects the request anyway
+            return "json";
+        }
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType type : accepted) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            for (Map.Entry<String, MediaType> format : FORMATS.entrySet()) {
+                if (type.isCompatibleWith(format.getValue())) {
+                    return format.getKey();
+                }
+            }
+        }
+        return "json";
+    }
+    
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        for (String header : Collections.list(request.getHeaders(HttpHeaders.ACCEPT_ENCODING))) {
+            for (String coding : header.split(",")) {
+                String[] parts = coding.split(";");
+                if (parts[0].trim().equalsIgnoreCase(GZIP)
+                        && !(parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static String unquote(String tag) {
+        tag = tag.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        return tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"") ? tag.substring(1, tag.length() - 1) : null;
+    }
+    
+    private static final class TaggedRequest extends HttpServletRequestWrapper {
+        
+        private final String suffix;
+        
+        TaggedRequest(HttpServletRequest request, String suffix) {
+            super(request);
+            this.suffix = suffix;
+        }
+        
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            return value != null ? untag(name, value) : null;
+        }
+        
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            List<String> values = Collections.list(super.getHeaders(name));
+            return Collections.enumeration(values.stream().map(value -> untag(name, value)).collect(Collectors.toList()));
+        }
+        
+        private String untag(String name, String value) {
+            boolean ifNoneMatch = HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name);
+            if (!ifNoneMatch && !HttpHeaders.IF_MATCH.equalsIgnoreCase(name)) {
+                return value;
+            }
+            List<String> tags = new ArrayList<>();
+            for (String candidate : value.split(",")) {
+                String tag = ifNoneMatch ? untagIfNoneMatch(candidate) : untagIfMatch(candidate);
+                if (tag != null) {
+                    tags.add(tag);
+                }
+            }
+            return String.join(", ", tags);
+        }
+        
+        // weak comparison: only the tags of this request's variant can match, others are dropped
+        private String untagIfNoneMatch(String candidate) {
+            if (candidate.trim().equals("*")) {
+                return "*";
+            }
+            String tag = unquote(candidate);
+            if (tag != null && tag.endsWith(suffix)) {
+                return "\"" + tag.substring(0, tag.length() - suffix.length()) + "\"";
+            }
+            return null;
+        }
+        
+        // strong comparison: a weak tag never matches, a strong one of any encoding names the version
+        private String untagIfMatch(String candidate) {
+            String tag = unquote(candidate);
+            if (tag != null && !candidate.trim().startsWith("W/")) {
+                for (String format : FORMATS.keySet()) {
+                    if (tag.endsWith("-" + format)) {
+                        return "\"" + tag.substring(0, tag.length() - format.length() - 1) + "\"";
+                    }
+                }
+            }
+            return candidate.trim();
+        }
+    }
+    
+    private static final class TaggedResponse extends HttpServletResponseWrapper {
+        
+        private final String suffix;
+        private final boolean weak;
+        
+        TaggedResponse(HttpServletResponse response, String suffix, boolean weak) {
+            super(response);
+            this.suffix = suffix;
+            this.weak = weak;
+        }
+        
+        @Override
+        public void setHeader(String name, String value) {
+            super.setHeader(name, tag(name, value));
+        }
+        
+        @Override
+        public void addHeader(String name, String value) {
+            super.addHeader(name, tag(name, value));
+        }
+        
+        private String tag(String name, String value) {
+            if (value == null || !HttpHeaders.ETAG.equalsIgnoreCase(name)) {
+                return value;
+            }
+            String tag = unquote(value);
+            if (tag == null) {
+                return value;
+            }
+            return (weak || value.trim().startsWith("W/") ? "W/" : "") + "\"" + tag + suffix + "\"";
+        }
+    }
+}
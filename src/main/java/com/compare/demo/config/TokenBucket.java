@@ -0,0 +1,57 @@
+package com.compare.demo.config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its GCRA form: the only state is the time at which the bucket is
+ * full again, and taking tokens pushes that time forward with a single CAS. A bucket holds at
+ * most {@code capacity} tokens and refills at {@code tokensPerSecond}.
+ */
+public final class TokenBucket {
+    
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    // System.nanoTime() at which the bucket is full; only compared by difference
+    private final AtomicLong fullAt;
+    
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        if (tokensPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("token bucket rate and capacity must be positive");
+        }
+        this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        this.capacityNanos = nanosPerToken * capacity;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+    
+    /**
+     * Takes {@code cost} tokens and returns 0, or takes nothing and returns how many
+     * nanoseconds it will take until they are available.
+     */
+    public long tryAcquire(int cost, long now) {
+        long needed = cost * nanosPerToken;
+        while (true) {
+            long full = fullAt.get();
+            long next = (full - now > 0 ? full : now) + needed;
+            long wait = next - now - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(full, next)) {
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * Gives back tokens taken for a request that was turned away later.
+     */
+    public void refund(int cost, long now) {
+        long refunded = cost * nanosPerToken;
+        fullAt.getAndUpdate(full -> full - refunded - now > 0 ? full - refunded : now);
+    }
+    
+    public boolean isFull(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
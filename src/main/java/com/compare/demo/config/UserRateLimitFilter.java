@@ -0,0 +1,377 @@
+package com.compare.demo.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control in front of the user API. A request first takes its endpoint's cost from
+ * the client's {@link TokenBucket} and, for endpoints with an {@code endpoint-rates} entry, one
+ * token from that endpoint's shared bucket; running short answers 429 with {@code Retry-After}.
+ * Requests that reach the database then need a slot of the {@link AdaptiveConcurrencyLimit},
+ * or are shed with 503. The slot is held until the response completes, async ones included.
+ *
+ * Client buckets are created on first use. Once {@code max-clients} are tracked, the least
+ * recently used tenth is evicted, so clients rotating their keys only push out buckets that
+ * have been idle longer than their own and never lock new clients out. An evicted client
+ * starts over with a full bucket.
+ */
+public class UserRateLimitFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private static final String BASE_PATH = "/api/users";
+    private static final String PERMIT_ATTRIBUTE = UserRateLimitFilter.class.getName() + ".permit";
+
+    /**
+     * User endpoints as far as admission is concerned, with their default cost in tokens.
+     */
+    public enum Endpoint {
+        LIST_ALL("list-all", 50, true),
+        PAGE("page", 2, true),
+        SEARCH("search", 5, true),
+        // served from the in-memory index and a long poll without a connection
+        SUGGEST("suggest", 1, false),
+        CHANGES("changes", 1, false),
+        STREAM("stream", 50, true),
+        EXPORT("export", 100, true),
+        IMPORT("import", 100, true),
+        LOOKUP("lookup", 5, true),
+        BATCH("batch", 10, true),
+        GET("get", 1, true),
+        WRITE("write", 1, true);
+
+        private final String key;
+        private final int defaultCost;
+        private final boolean databaseBound;
+
+        Endpoint(String key, int defaultCost, boolean databaseBound) {
+            this.key = key;
+            this.defaultCost = defaultCost;
+            this.databaseBound = databaseBound;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        static Endpoint forKey(String key) {
+            for (Endpoint endpoint : values()) {
+                if (endpoint.key.equals(key)) {
+                    return endpoint;
+                }
+            }
+            throw new IllegalArgumentException("Unknown user endpoint: " + key);
+        }
+
+        static Endpoint of(HttpServletRequest request) {
+            String path = request.getRequestURI().substring(request.getContextPath().length());
+            String rest = path.startsWith(BASE_PATH) ? path.substring(BASE_PATH.length()) : path;
+            boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+            switch (rest) {
+                case "":
+                case "/":
+                    if (!read) {
+                        return WRITE;
+                    }
+                    return request.getParameter("afterId") == null && request.getParameter("limit") == null
+                            ? LIST_ALL : PAGE;
+                case "/search":
+                    return SEARCH;
+                case "/suggest":
+                    return SUGGEST;
+                case "/changes":
+                    return CHANGES;
+                case "/stream":
+                    return STREAM;
+                case "/export":
+                    return EXPORT;
+                case "/import":
+                    return IMPORT;
+                case "/lookup":
+                    return LOOKUP;
+                case "/batch":
+                    return BATCH;
+                default:
+                    return read ? GET : WRITE;
+            }
+        }
+    }
+
+    private enum Outcome {
+        ADMITTED("admitted", "none"),
+        CLIENT_RATE("rejected", "client_rate"),
+        ENDPOINT_RATE("rejected", "endpoint_rate"),
+        CONCURRENCY("rejected", "concurrency");
+
+        private final String outcome;
+        private final String reason;
+
+        Outcome(String outcome, String reason) {
+            this.outcome = outcome;
+            this.reason = reason;
+        }
+    }
+
+    private final boolean rateLimited;
+    private final String clientHeader;
+    private final double clientRate;
+    private final int clientBurst;
+    private final int maxClients;
+    private final int[] costs;
+    private final TokenBucket[] endpointBuckets;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final ConcurrentHashMap<String, Client> clients = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder[][] counts = new LongAdder[Endpoint.values().length][Outcome.values().length];
+
+    /**
+     * @param concurrencyLimit null to admit any number of concurrent requests
+     */
+    public UserRateLimitFilter(UserRateLimitProperties properties, AdaptiveConcurrencyLimit concurrencyLimit) {
+        if (properties.getClientRate() <= 0 || properties.getClientBurst() <= 0 || properties.getMaxClients() <= 0) {
+            throw new IllegalArgumentException("user.rate-limit client-rate, client-burst and max-clients must be positive");
+        }
+        this.rateLimited = properties.isEnabled();
+        this.clientHeader = properties.getClientHeader();
+        this.clientRate = properties.getClientRate();
+        this.clientBurst = properties.getClientBurst();
+        this.maxClients = properties.getMaxClients();
+        this.concurrencyLimit = concurrencyLimit;
+
+        this.costs = new int[Endpoint.values().length];
+        for (Endpoint endpoint : Endpoint.values()) {
+            costs[endpoint.ordinal()] = endpoint.defaultCost;
+        }
+        for (Map.Entry<String, Integer> cost : properties.getCosts().entrySet()) {
+            if (cost.getValue() <= 0 || cost.getValue() > clientBurst) {
+                throw new IllegalArgumentException("user.rate-limit.costs." + cost.getKey()
+                        + " must be between 1 and user.rate-limit.client-burst");
+            }
+            costs[Endpoint.forKey(cost.getKey()).ordinal()] = cost.getValue();
+        }
+        for (Endpoint endpoint : Endpoint.values()) {
+            if (costs[endpoint.ordinal()] > clientBurst) {
+                throw new IllegalArgumentException("Cost of " + endpoint.key + " exceeds user.rate-limit.client-burst");
+            }
+        }
+
+        this.endpointBuckets = new TokenBucket[Endpoint.values().length];
+        for (Map.Entry<String, Double> rate : properties.getEndpointRates().entrySet()) {
+            endpointBuckets[Endpoint.forKey(rate.getKey()).ordinal()] =
+                    new TokenBucket(rate.getValue(), (int) Math.max(1, Math.ceil(rate.getValue())));
+        }
+
+        for (LongAdder[] endpointCounts : counts) {
+            for (int i = 0; i < endpointCounts.length; i++) {
+                endpointCounts[i] = new LongAdder();
+            }
+        }
+    }
+
+    public long getCount(Endpoint endpoint, boolean admitted) {
+        long count = 0;
+        for (Outcome outcome : Outcome.values()) {
+            if ((outcome == Outcome.ADMITTED) == admitted) {
+                count += counts[endpoint.ordinal()][outcome.ordinal()].sum();
+            }
+        }
+        return count;
+    }
+
+    public int getClients() {
+        return clients.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Endpoint endpoint : Endpoint.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                FunctionCounter.builder("user.admission.requests", counts[endpoint.ordinal()][outcome.ordinal()], LongAdder::sum)
+                        .description("User requests admitted or turned away by rate limiting and load shedding")
+                        .tags("endpoint", endpoint.key, "outcome", outcome.outcome, "reason", outcome.reason)
+                        .register(registry);
+            }
+        }
+        Gauge.builder("user.admission.clients", this, UserRateLimitFilter::getClients)
+                .description("Clients with a token bucket")
+                .register(registry);
+    }
+
+    // the slot taken on the initial dispatch is released once the async dispatch is done
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Permit permit = (Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit == null) {
+            permit = admit(request, response);
+            if (permit == null) {
+                return;
+            }
+            request.setAttribute(PERMIT_ATTRIBUTE, permit);
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!request.isAsyncStarted()) {
+                permit.release();
+            } else if (!isAsyncDispatch(request)) {
+                // also covers responses that end without an async dispatch, e.g. a dropped connection
+                request.getAsyncContext().addListener(permit);
+            }
+        }
+    }
+
+    private Permit admit(HttpServletRequest request, HttpServletResponse response) {
+        Endpoint endpoint = Endpoint.of(request);
+        LongAdder[] endpointCounts = counts[endpoint.ordinal()];
+        if (rateLimited) {
+            long now = System.nanoTime();
+            int cost = costs[endpoint.ordinal()];
+            TokenBucket client = clientBucket(clientOf(request), now);
+            long wait = client.tryAcquire(cost, now);
+            if (wait > 0) {
+                endpointCounts[Outcome.CLIENT_RATE.ordinal()].increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, wait);
+                return null;
+            }
+            TokenBucket shared = endpointBuckets[endpoint.ordinal()];
+            if (shared != null && (wait = shared.tryAcquire(1, now)) > 0) {
+                client.refund(cost, now);
+                endpointCounts[Outcome.ENDPOINT_RATE.ordinal()].increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, wait);
+                return null;
+            }
+        }
+        if (concurrencyLimit == null || !endpoint.databaseBound) {
+            endpointCounts[Outcome.ADMITTED.ordinal()].increment();
+            return Permit.NONE;
+        }
+        // the tokens stay spent: clients retrying at once would only add to the overload
+        if (!concurrencyLimit.tryAcquire()) {
+            endpointCounts[Outcome.CONCURRENCY.ordinal()].increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+            return null;
+        }
+        endpointCounts[Outcome.ADMITTED.ordinal()].increment();
+        return new Permit(concurrencyLimit);
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        if (!clientHeader.isEmpty()) {
+            String client = request.getHeader(clientHeader);
+            if (client != null && !client.isEmpty()) {
+                return client;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private TokenBucket clientBucket(String client, long now) {
+        Client entry = clients.get(client);
+        if (entry == null) {
+            // a request arriving during an eviction adds its bucket anyway, briefly over the limit
+            if (clients.size() >= maxClients && evicting.compareAndSet(false, true)) {
+                try {
+                    evictIdle();
+                } finally {
+                    evicting.set(false);
+                }
+            }
+            entry = clients.computeIfAbsent(client, key -> new Client(new TokenBucket(clientRate, clientBurst)));
+        }
+        entry.lastUsed = now;
+        return entry.bucket;
+    }
+
+    // keeps the most recently used nine tenths, so the next eviction is max-clients / 10 new clients away
+    private void evictIdle() {
+        int keep = maxClients - Math.max(1, maxClients / 10);
+        long[] lastUsed = clients.values().stream().mapToLong(client -> client.lastUsed).toArray();
+        if (lastUsed.length <= keep) {
+            return;
+        }
+        Arrays.sort(lastUsed);
+        long cutoff = lastUsed[lastUsed.length - keep - 1];
+        clients.values().removeIf(client -> client.lastUsed - cutoff <= 0);
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long waitNanos) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                String.valueOf(Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1))));
+    }
+
+    private static final class Client {
+
+        final TokenBucket bucket;
+        // System.nanoTime() of the client's latest request
+        volatile long lastUsed;
+
+        Client(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * A concurrency slot, released once however the response ends.
+     */
+    private static final class Permit implements AsyncListener {
+
+        static final Permit NONE = new Permit(null);
+
+        private final AdaptiveConcurrencyLimit limit;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(AdaptiveConcurrencyLimit limit) {
+            this.limit = limit;
+        }
+
+        void release() {
+            if (limit != null && released.compareAndSet(false, true)) {
+                limit.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        // the work may still be running; its async dispatch or completion releases the slot
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.compare.demo.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Token bucket limits of the user API ({@code user.rate-limit.*}). Every client has a bucket of
+ * {@code client-burst} tokens refilled at {@code client-rate} per second, and a request takes
+ * the cost of its endpoint ({@code costs}, keyed as in {@link UserRateLimitFilter.Endpoint}).
+ * Endpoints listed in {@code endpoint-rates} are also capped in requests per second over all
+ * clients together.
+ *
+ * Disabled by default. Behind a load balancer or gateway, set {@code client-header} to a header
+ * it sets, or {@code server.forward-headers-strategy} so the remote address is the client's,
+ * before enabling it; otherwise all traffic shares one client bucket.
+ */
+public class UserRateLimitProperties {
+
+    // off until clients can be told apart: behind a load balancer every request has its address
+    private boolean enabled = false;
+    // empty: clients are told apart by remote address, see server.forward-headers-strategy
+    private String clientHeader = "";
+    private double clientRate = 200;
+    private int clientBurst = 400;
+    private int maxClients = 100_000;
+    private Map<String, Integer> costs = new HashMap<>();
+    private Map<String, Double> endpointRates = new HashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    public void setClientHeader(String clientHeader) {
+        this.clientHeader = clientHeader;
+    }
+
+    public double getClientRate() {
+        return clientRate;
+    }
+
+    public void setClientRate(double clientRate) {
+        this.clientRate = clientRate;
+    }
+
+    public int getClientBurst() {
+        return clientBurst;
+    }
+
+    public void setClientBurst(int clientBurst) {
+        this.clientBurst = clientBurst;
+    }
+
+    public int getMaxClients() {
+        return maxClients;
+    }
+
+    public void setMaxClients(int maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    public Map<String, Integer> getCosts() {
+        return costs;
+    }
+
+    public void setCosts(Map<String, Integer> costs) {
+        this.costs = costs;
+    }
+
+    public Map<String, Double> getEndpointRates() {
+        return endpointRates;
+    }
+
+    public void setEndpointRates(Map<String, Double> endpointRates) {
+        this.endpointRates = endpointRates;
+    }
+}
@@ -0,0 +1,80 @@
+package com.compare.demo.config;
+
+import com.compare.demo.mapper.ShardedUserMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.ibatis.plugin.Interceptor;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Stores users across the databases listed in {@code user.sharding.urls} when it is set: a
+ * {@link ShardedUserMapper} replaces the plain mapper everywhere {@code UserMapper} is
+ * injected. Each shard gets its own Hikari pool and the application's migrations; the
+ * username index, change feed and outbox stay in {@code spring.datasource}.
+ *
+ * The shard pools are not DataSource beans, so Boot still configures the main one.
+ */
+@Configuration
+@ConditionalOnProperty("user.sharding.urls")
+public class UserShardingConfig {
+    
+    @Bean
+    @Primary
+    public ShardedUserMapper shardedUserMapper(@Value("${user.sharding.urls}") List<String> urls,
+                                               @Value("${user.sharding.username:}") String username,
+                                               @Value("${user.sharding.password:}") String password,
+                                               @Value("${user.sharding.pool-size:10}") int poolSize,
+                                               @Value("${user.sharding.query-threads:16}") int queryThreads,
+                                               @Value("${user.batch.chunk-size:500}") int chunkSize,
+                                               @Value("${spring.flyway.locations:classpath:db/migration}") String[] locations,
+                                               DataSource dataSource,
+                                               ObjectProvider<Interceptor> interceptors) {
+        List<DataSource> shards = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            shard.setPoolName("shard-" + shards.size());
+            shard.setMaximumPoolSize(poolSize);
+            Flyway.configure().dataSource(shard).locations(locations).load().migrate();
+            shards.add(shard);
+        }
+        return new ShardedUserMapper(shards, dataSource, interceptors.orderedStream().collect(Collectors.toList()),
+                queryThreads, chunkSize);
+    }
+    
+    // runs once every singleton exists, so Flyway has migrated the main database by then
+    @Bean
+    public SmartInitializingSingleton shardLayoutCheck(ShardedUserMapper shardedUserMapper) {
+        return shardedUserMapper::checkShardCount;
+    }
+    
+    // Hikari takes the registry after the pool started; the mapper itself may be created while
+    // MeterBinders are bound, before the registry can be injected
+    @Bean
+    public MeterBinder shardPoolMetrics(ShardedUserMapper shardedUserMapper) {
+        return registry -> {
+            for (DataSource shard : shardedUserMapper.getShardDataSources()) {
+                if (shard instanceof HikariDataSource) {
+                    ((HikariDataSource) shard).setMetricRegistry(registry);
+                }
+            }
+        };
+    }
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.compare.demo.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Runs Tomcat's request processing on virtual threads (Java 21+), so requests blocked on
+ * JDBC no longer pin one of the container's platform worker threads.
+ */
+@Configuration
+@ConditionalOnClass(ProtocolHandler.class)
+@ConditionalOnProperty(name = "user.async.virtual-threads", havingValue = "true")
+public class VirtualThreadConfig {
+    
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor());
+    }
+}
\ No newline at end of file
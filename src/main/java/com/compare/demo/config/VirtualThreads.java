@@ -0,0 +1,47 @@
+package com.compare.demo.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * JDK 21 virtual threads, looked up reflectively because the project still compiles for
+ * Java 8. Both methods fail with IllegalStateException on older runtimes.
+ */
+public final class VirtualThreads {
+    
+    private VirtualThreads() {
+    }
+    
+    public static boolean isAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+    
+    public static ThreadFactory threadFactory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw unavailable(e);
+        }
+    }
+    
+    public static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw unavailable(e);
+        }
+    }
+    
+    private static IllegalStateException unavailable(ReflectiveOperationException e) {
+        return new IllegalStateException("virtual threads require Java 21, running on " + System.getProperty("java.version"), e);
+    }
+}
\ No newline at end of file
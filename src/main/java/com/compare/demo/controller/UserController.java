@@ -1,69 +1,353 @@
 package com.compare.demo.controller;
 
+import com.compare.demo.dto.UserBatchItemResult;
 import com.compare.demo.dto.UserDTO;
+import com.compare.demo.dto.UserImportEvent;
+import com.compare.demo.dto.UserLookupRequest;
+import com.compare.demo.dto.UserLookupResult;
+import com.compare.demo.dto.UserSearchCriteria;
+import com.compare.demo.entity.UserChange;
+import com.compare.demo.entity.UserTableStats;
+import com.compare.demo.service.UserChangesExpiredException;
+import com.compare.demo.service.UserExporter;
+import com.compare.demo.service.UserImportReader;
+import com.compare.demo.service.UserImporter;
 import com.compare.demo.service.UserService;
+import com.compare.demo.service.UserVersionConflictException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
     
+    public static final String NEXT_AFTER_ID_HEADER = "X-Next-After-Id";
+    public static final String EXPORT_WATERMARK_HEADER = "X-Export-Watermark";
+    
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private UserRequestExecutor requestExecutor;
+    
+    @Autowired
+    private UserImporter userImporter;
+    
+    @Autowired
+    private UserExporter userExporter;
+    
     @GetMapping
-    public ResponseEntity<List<UserDTO>> getAllUsers() {
-        List<UserDTO> users = userService.getAllUsers();
-        return ResponseEntity.ok(users);
+    public CompletableFuture<ResponseEntity<List<UserDTO>>> getAllUsers(@RequestParam(required = false) Long afterId,
+                                                                        @RequestParam(required = false) Integer limit,
+                                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return requestExecutor.submit(() -> {
+            if (afterId == null && limit == null) {
+                // no Last-Modified here: a delete does not move max(updated_at), only the count in the ETag
+                UserTableStats stats = userService.getUserTableStats();
+                String eTag = stats != null ? UserETags.of(stats) : null;
+                if (eTag != null && UserETags.matches(ifNoneMatch, eTag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).<List<UserDTO>>build();
+                }
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (eTag != null) {
+                    response.eTag(eTag);
+                }
+                return response.body(userService.getAllUsers());
+            }
+            
+            // a keyset page is tagged by its own rows rather than a whole-table aggregate
+            List<UserDTO> users = userService.getUsersPage(afterId, limit);
+            String eTag = UserETags.ofPage(users);
+            if (UserETags.matches(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).<List<UserDTO>>build();
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag);
+            if (!users.isEmpty()) {
+                response.header(NEXT_AFTER_ID_HEADER, String.valueOf(users.get(users.size() - 1).getId()));
+            }
+            return response.body(users);
+        });
     }
     
-    @GetMapping("/{id}")
-    public ResponseEntity<UserDTO> getUserById(@PathVariable Long id) {
-        UserDTO user = userService.getUserById(id);
-        if (user != null) {
-            return ResponseEntity.ok(user);
-        } else {
-            return ResponseEntity.notFound().build();
+    @GetMapping("/search")
+    public CompletableFuture<ResponseEntity<List<UserDTO>>> searchUsers(UserSearchCriteria criteria) {
+        return requestExecutor.submit(() -> ResponseEntity.ok(userService.searchUsers(criteria)));
+    }
+    
+    @GetMapping("/suggest")
+    public CompletableFuture<ResponseEntity<List<String>>> suggestUsernames(@RequestParam String prefix,
+                                                                           @RequestParam(required = false) Integer limit) {
+        return requestExecutor.submit(() -> ResponseEntity.ok(userService.suggestUsernames(prefix, limit)));
+    }
+    
+    /**
+     * Changes with a sequence number above {@code since}, oldest first. With {@code waitSeconds}
+     * an empty answer is held until the next change commits or the wait runs out, without
+     * occupying a request thread meanwhile.
+     */
+    @GetMapping("/changes")
+    public CompletableFuture<ResponseEntity<List<UserChange>>> getUserChanges(@RequestParam(required = false) Long since,
+                                                                             @RequestParam(required = false) Integer limit,
+                                                                             @RequestParam(defaultValue = "0") int waitSeconds) {
+        if (waitSeconds <= 0) {
+            return requestExecutor.submit(() -> ResponseEntity.ok(userService.getUserChanges(since, limit)));
+        }
+        // subscribe before reading, so a change committed right after the read still wakes us
+        CompletableFuture<Void> nextChange = userService.nextUserChange(Duration.ofSeconds(waitSeconds));
+        CompletableFuture<List<UserChange>> firstRead;
+        try {
+            firstRead = requestExecutor.submit(() -> userService.getUserChanges(since, limit));
+        } catch (RejectedExecutionException e) {
+            // answered with 503 right away, so nothing would ever cancel the wait
+            nextChange.cancel(false);
+            throw e;
         }
+        return firstRead
+                .thenCompose(changes -> changes.isEmpty()
+                        ? nextChange.thenCompose(ignored -> requestExecutor.submit(() -> userService.getUserChanges(since, limit)))
+                        : CompletableFuture.completedFuture(changes))
+                .thenApply(changes -> ResponseEntity.ok(changes))
+                .whenComplete((response, e) -> nextChange.cancel(false));
+    }
+    
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers(@RequestParam(required = false) Long afterId) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                userService.streamUsers(afterId, user -> writeLine(generator, user));
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
+    /**
+     * Streams every user, or those updated at or after {@code updatedSince}, in id order as a
+     * gzip-compressed NDJSON or CSV file. {@value #EXPORT_WATERMARK_HEADER} is the
+     * {@code updatedSince} of the next incremental export.
+     */
+    @GetMapping("/export")
+    public void exportUsers(@RequestParam(defaultValue = "ndjson") String format,
+                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime updatedSince,
+                            HttpServletResponse response) throws IOException {
+        // on the Tomcat thread for the same reason as importUsers
+        UserExporter.Format exportFormat = UserExporter.Format.of(format);
+        LocalDateTime watermark = LocalDateTime.now();
+        response.setContentType("application/gzip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("users." + exportFormat.getExtension() + ".gz").build().toString());
+        response.setHeader(EXPORT_WATERMARK_HEADER, watermark.toString());
+        userExporter.export(exportFormat, updatedSince, Channels.newChannel(response.getOutputStream()));
+    }
+    
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<UserDTO>> getUserById(@PathVariable Long id) {
+        return requestExecutor.submit(() -> {
+            UserDTO user = userService.getUserById(id);
+            if (user != null) {
+                return withValidators(user);
+            } else {
+                return ResponseEntity.notFound().<UserDTO>build();
+            }
+        });
     }
     
     @GetMapping("/username/{username}")
-    public ResponseEntity<UserDTO> getUserByUsername(@PathVariable String username) {
-        UserDTO user = userService.getUserByUsername(username);
-        if (user != null) {
-            return ResponseEntity.ok(user);
-        } else {
-            return ResponseEntity.notFound().build();
-        }
+    public CompletableFuture<ResponseEntity<UserDTO>> getUserByUsername(@PathVariable String username) {
+        return requestExecutor.submit(() -> {
+            UserDTO user = userService.getUserByUsername(username);
+            if (user != null) {
+                return withValidators(user);
+            } else {
+                return ResponseEntity.notFound().<UserDTO>build();
+            }
+        });
+    }
+    
+    @PostMapping("/lookup")
+    public CompletableFuture<ResponseEntity<UserLookupResult>> lookupUsers(@RequestBody UserLookupRequest request) {
+        return requestExecutor.submit(() -> ResponseEntity.ok(userService.lookupUsers(request.getIds(), request.getUsernames())));
     }
     
     @PostMapping
-    public ResponseEntity<UserDTO> createUser(@RequestBody UserDTO userDTO) {
-        UserDTO createdUser = userService.createUser(userDTO);
-        return ResponseEntity.ok(createdUser);
+    public CompletableFuture<ResponseEntity<UserDTO>> createUser(@RequestBody UserDTO userDTO) {
+        return requestExecutor.submit(() -> ResponseEntity.ok(userService.createUser(userDTO)));
+    }
+    
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<UserBatchItemResult>>> createUsers(@RequestBody List<UserDTO> userDTOs) {
+        return requestExecutor.submit(() -> ResponseEntity.ok(userService.createUsers(userDTOs)));
+    }
+    
+    /**
+     * Imports users from a CSV body (with a username,email header) or an NDJSON body, and
+     * answers with NDJSON {@link UserImportEvent}s: each rejected row, progress after each
+     * committed batch, then COMPLETED or FAILED. Posting again with the same {@code importId}
+     * resumes after the last committed row.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importUsers(@RequestParam(required = false) String importId,
+                            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // runs on the Tomcat thread, not the request executor: an import outlives the async
+        // request timeout, and user.import.max-concurrent bounds how many threads it holds
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        Reader body = new InputStreamReader(request.getInputStream(), charset);
+        try (UserImportReader reader = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? UserImportReader.ndjson(body, objectMapper)
+                : UserImportReader.csv(body)) {
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+            generator.setRootValueSeparator(null);
+            // not closed on failure: closing would commit the response before an error status is set
+            userImporter.importUsers(importId, reader, event -> writeEvent(generator, event));
+            generator.close();
+        }
+    }
+    
+    @PutMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<UserBatchItemResult>>> updateUsers(@RequestBody List<UserDTO> userDTOs) {
+        return requestExecutor.submit(() -> ResponseEntity.ok(userService.updateUsers(userDTOs)));
+    }
+    
+    @DeleteMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<UserBatchItemResult>>> deleteUsers(@RequestBody List<Long> ids) {
+        return requestExecutor.submit(() -> ResponseEntity.ok(userService.deleteUsers(ids)));
     }
     
     @PutMapping("/{id}")
-    public ResponseEntity<UserDTO> updateUser(@PathVariable Long id, @RequestBody UserDTO userDTO) {
-        UserDTO updatedUser = userService.updateUser(id, userDTO);
+    public CompletableFuture<ResponseEntity<UserDTO>> updateUser(@PathVariable Long id, @RequestBody UserDTO userDTO,
+                                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return requestExecutor.submit(() -> applyUpdate(id, userDTO, ifMatch));
+    }
+    
+    @DeleteMapping("/{id}")
+    public CompletableFuture<ResponseEntity<Void>> deleteUser(@PathVariable Long id) {
+        return requestExecutor.submit(() -> {
+            boolean deleted = userService.deleteUser(id);
+            if (deleted) {
+                return ResponseEntity.noContent().<Void>build();
+            } else {
+                return ResponseEntity.notFound().<Void>build();
+            }
+        });
+    }
+    
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Void> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().build();
+    }
+    
+    @ExceptionHandler(UserVersionConflictException.class)
+    public ResponseEntity<Void> handleVersionConflict(UserVersionConflictException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+    }
+    
+    @ExceptionHandler(UserChangesExpiredException.class)
+    public ResponseEntity<Void> handleChangesExpired(UserChangesExpiredException e) {
+        // the client missed purged changes and has to resync from a full read
+        return ResponseEntity.status(HttpStatus.GONE).build();
+    }
+    
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<Void> handleDataIntegrityViolation(DataIntegrityViolationException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+    
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Void> handleRejectedExecution(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+    
+    private ResponseEntity<UserDTO> applyUpdate(Long id, UserDTO userDTO, String ifMatch) {
+        if (ifMatch == null || UserETags.ANY.equals(ifMatch.trim())) {
+            UserDTO updatedUser = userService.updateUser(id, userDTO);
+            if (updatedUser != null) {
+                return withValidators(updatedUser);
+            } else if (ifMatch != null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        }
+        
+        Long expectedVersion = UserETags.parseVersion(ifMatch);
+        if (expectedVersion == null) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        UserDTO updatedUser = userService.updateUser(id, userDTO, expectedVersion);
         if (updatedUser != null) {
-            return ResponseEntity.ok(updatedUser);
+            return withValidators(updatedUser);
         } else {
             return ResponseEntity.notFound().build();
         }
     }
     
-    @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
-        boolean deleted = userService.deleteUser(id);
-        if (deleted) {
-            return ResponseEntity.noContent().build();
-        } else {
-            return ResponseEntity.notFound().build();
+    private static ResponseEntity<UserDTO> withValidators(UserDTO user) {
+        // conditional GETs are answered with 304 by Spring once these headers are present
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        String eTag = UserETags.of(user);
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+        if (user.getUpdatedAt() != null) {
+            response.lastModified(UserETags.lastModified(user));
+        }
+        return response.body(user);
+    }
+    
+    private static void writeEvent(JsonGenerator generator, UserImportEvent event) {
+        try {
+            generator.writeObject(event);
+            generator.writeRaw('\n');
+            if (event.getType() != UserImportEvent.Type.REJECTED) {
+                // lets the client follow progress without flushing once per rejected row
+                generator.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static void writeLine(JsonGenerator generator, UserDTO user) {
+        try {
+            generator.writeObject(user);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.compare.demo.controller;
+
+import com.compare.demo.dto.UserDTO;
+import com.compare.demo.dto.UserRows;
+import com.compare.demo.entity.User;
+import com.compare.demo.entity.UserTableStats;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Strong entity tags for user resources. A single user is tagged with its row version; the
+ * collection with the row count and the latest updated_at, which changes on every insert,
+ * update and delete without reading the rows themselves. A keyset page is tagged with a hash
+ * of the ids and versions of its own rows.
+ */
+final class UserETags {
+    
+    static final String ANY = "*";
+    
+    private UserETags() {
+    }
+    
+    static String of(UserDTO user) {
+        return user.getVersion() != null ? "\"" + user.getVersion() + "\"" : null;
+    }
+    
+    static String of(UserTableStats stats) {
+        long lastUpdated = 0;
+        if (stats.getLastUpdatedAt() != null) {
+            Instant instant = stats.getLastUpdatedAt().atZone(ZoneId.systemDefault()).toInstant();
+            lastUpdated = instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+        }
+        return "\"" + stats.getUserCount() + "-" + lastUpdated + "\"";
+    }
+    
+    static String ofPage(List<UserDTO> users) {
+        long hash = users.size();
+        if (users instanceof UserRows) {
+            for (User user : ((UserRows) users).rows()) {
+                hash = mix(hash, user.getId(), user.getVersion());
+            }
+        } else {
+            for (UserDTO user : users) {
+                hash = mix(hash, user.getId(), user.getVersion());
+            }
+        }
+        return "\"page-" + users.size() + "-" + Long.toHexString(hash) + "\"";
+    }
+    
+    static ZonedDateTime lastModified(UserDTO user) {
+        return user.getUpdatedAt() != null ? user.getUpdatedAt().atZone(ZoneId.systemDefault()) : null;
+    }
+    
+    /**
+     * Weak comparison as required for If-None-Match.
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(ANY) || candidate.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static long mix(long hash, Long id, Long version) {
+        long row = (id != null ? id : 0) * 0x9E3779B97F4A7C15L + (version != null ? version : 0);
+        // MurmurHash3 finalizer, so neighbouring ids and versions spread over all bits
+        row ^= row >>> 33;
+        row *= 0xFF51AFD7ED558CCDL;
+        row ^= row >>> 33;
+        row *= 0xC4CEB93FE53C5C1BL;
+        row ^= row >>> 33;
+        return hash * 31 + row;
+    }
+    
+    static Long parseVersion(String entityTag) {
+        String tag = entityTag.trim();
+        // If-Match uses the strong comparison, so a weak tag can never match
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return null;
+        }
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
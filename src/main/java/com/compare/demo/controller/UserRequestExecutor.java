@@ -0,0 +1,143 @@
+package com.compare.demo.controller;
+
+import com.compare.demo.config.ReadYourWrites;
+import com.compare.demo.config.VirtualThreads;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool that runs {@link UserController} work off the servlet container threads, so
+ * a slow database ties up these workers rather than Tomcat's and health checks keep being
+ * served. A full queue rejects the request immediately instead of letting it wait.
+ *
+ * With {@code user.async.virtual-threads} every request gets its own virtual thread instead,
+ * and at most {@code user.async.queue-capacity} of them run at once; beyond that requests are
+ * rejected the same way.
+ */
+@Component
+public class UserRequestExecutor implements MeterBinder, DisposableBean {
+    
+    private final Executor executor;
+    private final ExecutorService executorService;
+    private final ThreadPoolExecutor threadPool;
+    private final Semaphore permits;
+    private final int maxInFlight;
+    
+    @Autowired
+    public UserRequestExecutor(@Value("${user.async.enabled:true}") boolean enabled,
+                               @Value("${user.async.pool-size:32}") int poolSize,
+                               @Value("${user.async.queue-capacity:1000}") int queueCapacity,
+                               @Value("${user.async.virtual-threads:false}") boolean virtualThreads) {
+        if (!enabled) {
+            this.executorService = null;
+            this.threadPool = null;
+            this.permits = null;
+            this.maxInFlight = 0;
+            this.executor = new SyncTaskExecutor();
+            return;
+        }
+        if (poolSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("user.async.pool-size and user.async.queue-capacity must be positive");
+        }
+        if (virtualThreads) {
+            // pooling virtual threads buys nothing; the permits bound them instead of a queue
+            this.executorService = VirtualThreads.newThreadPerTaskExecutor();
+            this.threadPool = null;
+            this.permits = new Semaphore(queueCapacity);
+            this.maxInFlight = queueCapacity;
+            this.executor = this::executeWithPermit;
+            return;
+        }
+        this.threadPool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("user-request-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executorService = threadPool;
+        this.permits = null;
+        this.maxInFlight = 0;
+        this.executor = threadPool;
+    }
+    
+    UserRequestExecutor(Executor executor) {
+        this.executorService = null;
+        this.threadPool = null;
+        this.permits = null;
+        this.maxInFlight = 0;
+        this.executor = executor;
+    }
+    
+    UserRequestExecutor(ExecutorService threadPerTask, int maxInFlight) {
+        this.executorService = threadPerTask;
+        this.threadPool = null;
+        this.permits = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.executor = this::executeWithPermit;
+    }
+    
+    /**
+     * @throws RejectedExecutionException if the queue is full, or too many requests are in flight
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        boolean primaryRequired = ReadYourWrites.isPrimaryRequired();
+        return CompletableFuture.supplyAsync(() -> ReadYourWrites.call(primaryRequired, work), executor);
+    }
+    
+    public int getInFlight() {
+        return permits != null ? maxInFlight - permits.availablePermits() : 0;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (threadPool != null) {
+            new ExecutorServiceMetrics(threadPool, "user.requests", Tags.empty()).bindTo(registry);
+        }
+        if (permits != null) {
+            Gauge.builder("user.requests.in.flight", this, UserRequestExecutor::getInFlight)
+                    .description("User requests running on virtual threads")
+                    .register(registry);
+        }
+    }
+    
+    @Override
+    public void destroy() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+    
+    private void executeWithPermit(Runnable task) {
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException(maxInFlight + " user requests already in flight");
+        }
+        try {
+            executorService.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.compare.demo.entity;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the user change feed. Created and updated entries carry the new state of the
+ * user; deleted entries carry the state it had when it was deleted.
+ */
+public class UserChange {
+    
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+    
+    private Long seq;
+    private Long userId;
+    private Type type;
+    private String username;
+    private String email;
+    private Long version;
+    private LocalDateTime changedAt;
+    
+    // Constructors
+    public UserChange() {}
+    
+    public UserChange(Type type, User user) {
+        this.type = type;
+        this.userId = user.getId();
+        this.username = user.getUsername();
+        this.email = user.getEmail();
+        this.version = user.getVersion();
+        this.changedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public void setType(Type type) {
+        this.type = type;
+    }
+    
+    public String getUsername() {
+        return username;
+    }
+    
+    public void setUsername(String username) {
+        this.username = username;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public void setEmail(String email) {
+        this.email = email;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+    
+    public void setChangedAt(LocalDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+}
\ No newline at end of file
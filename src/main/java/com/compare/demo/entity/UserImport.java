@@ -0,0 +1,72 @@
+package com.compare.demo.entity;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a bulk import. Rows are numbered from 1 in input order; every row up to
+ * {@code committedRows} has been either imported or rejected.
+ */
+public class UserImport {
+    private String importId;
+    private long committedRows;
+    private long importedRows;
+    private long rejectedRows;
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public UserImport() {}
+    
+    public UserImport(String importId) {
+        this.importId = importId;
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    public UserImport(UserImport other) {
+        this.importId = other.importId;
+        this.committedRows = other.committedRows;
+        this.importedRows = other.importedRows;
+        this.rejectedRows = other.rejectedRows;
+        this.updatedAt = other.updatedAt;
+    }
+    
+    // Getters and Setters
+    public String getImportId() {
+        return importId;
+    }
+    
+    public void setImportId(String importId) {
+        this.importId = importId;
+    }
+    
+    public long getCommittedRows() {
+        return committedRows;
+    }
+    
+    public void setCommittedRows(long committedRows) {
+        this.committedRows = committedRows;
+    }
+    
+    public long getImportedRows() {
+        return importedRows;
+    }
+    
+    public void setImportedRows(long importedRows) {
+        this.importedRows = importedRows;
+    }
+    
+    public long getRejectedRows() {
+        return rejectedRows;
+    }
+    
+    public void setRejectedRows(long rejectedRows) {
+        this.rejectedRows = rejectedRows;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,33 @@
+package com.compare.demo.entity;
+
+import java.time.LocalDateTime;
+
+public class UserTableStats {
+    private long userCount;
+    private LocalDateTime lastUpdatedAt;
+    
+    // Constructors
+    public UserTableStats() {}
+    
+    public UserTableStats(long userCount, LocalDateTime lastUpdatedAt) {
+        this.userCount = userCount;
+        this.lastUpdatedAt = lastUpdatedAt;
+    }
+    
+    // Getters and Setters
+    public long getUserCount() {
+        return userCount;
+    }
+    
+    public void setUserCount(long userCount) {
+        this.userCount = userCount;
+    }
+    
+    public LocalDateTime getLastUpdatedAt() {
+        return lastUpdatedAt;
+    }
+    
+    public void setLastUpdatedAt(LocalDateTime lastUpdatedAt) {
+        this.lastUpdatedAt = lastUpdatedAt;
+    }
+}
\ No newline at end of file
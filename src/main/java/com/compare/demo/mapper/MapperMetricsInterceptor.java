@@ -0,0 +1,121 @@
+package com.compare.demo.mapper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times every mapper statement ({@code user.mapper}, tagged by mapper and statement) and
+ * records the rows it returned or affected ({@code user.mapper.rows}). For cursor queries
+ * only opening the cursor is timed, since the rows are fetched later by the caller.
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class})
+})
+public class MapperMetricsInterceptor implements Interceptor {
+    
+    // resolved when a statement first runs: mappers, and so this interceptor, can be created
+    // while MeterBinders are bound to the registry
+    private final Supplier<MeterRegistry> meterRegistry;
+    private final ConcurrentHashMap<String, StatementMeters> meters = new ConcurrentHashMap<>();
+    
+    @Autowired
+    public MapperMetricsInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry::getObject;
+    }
+    
+    public MapperMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = () -> meterRegistry;
+    }
+    
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        StatementMeters statementMeters = meters.computeIfAbsent(statement.getId(), this::register);
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            // Invocation.proceed() reflects into the executor, so the real failure is the cause
+            Throwable cause = e instanceof InvocationTargetException && e.getCause() != null ? e.getCause() : e;
+            statementMeters.timer("error", cause.getClass().getSimpleName())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        statementMeters.success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (result instanceof List) {
+            statementMeters.rows.record(((List<?>) result).size());
+        } else if (result instanceof Integer && (Integer) result >= 0) {
+            // the BATCH executor returns a negative placeholder until the batch is flushed
+            statementMeters.rows.record((Integer) result);
+        }
+        return result;
+    }
+    
+    private StatementMeters register(String statementId) {
+        MeterRegistry meterRegistry = this.meterRegistry.get();
+        int dot = statementId.lastIndexOf('.');
+        String namespace = statementId.substring(0, Math.max(dot, 0));
+        String mapper = namespace.substring(namespace.lastIndexOf('.') + 1);
+        String statement = statementId.substring(dot + 1);
+        DistributionSummary rows = DistributionSummary.builder("user.mapper.rows")
+                .description("Rows returned or affected by a mapper statement")
+                .baseUnit("rows")
+                .tags("mapper", mapper, "statement", statement)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        return new StatementMeters(meterRegistry, mapper, statement, rows);
+    }
+    
+    private static final class StatementMeters {
+        private final MeterRegistry registry;
+        private final String mapper;
+        private final String statement;
+        private final Timer success;
+        private final DistributionSummary rows;
+        
+        private StatementMeters(MeterRegistry registry, String mapper, String statement, DistributionSummary rows) {
+            this.registry = registry;
+            this.mapper = mapper;
+            this.statement = statement;
+            this.success = timer("success", "none");
+            this.rows = rows;
+        }
+        
+        private Timer timer(String outcome, String exception) {
+            return Timer.builder("user.mapper")
+                    .description("Mapper statement execution time")
+                    .tags("mapper", mapper, "statement", statement, "outcome", outcome, "exception", exception)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+}
\ No newline at end of file
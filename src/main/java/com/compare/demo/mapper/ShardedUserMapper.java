@@ -0,0 +1,860 @@
+package com.compare.demo.mapper;
+
+import com.compare.demo.dto.UserSearchCriteria;
+import com.compare.demo.entity.User;
+import com.compare.demo.entity.UserTableStats;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.mybatis.spring.MyBatisExceptionTranslator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * {@link UserMapper} over N shard databases. A user's shard is a hash of its id, so lookups by
+ * id go straight to one shard; ids are assigned by the caller ({@link #insertWithId}), which
+ * spreads consecutive time-ordered ids evenly. Lookups by username go through the global
+ * {@code username_shards} index in the main database, which also keeps usernames unique
+ * across shards. Queries over all users run on every shard in parallel and are merged here.
+ * The index database also records the shard count, and {@link #checkShardCount} refuses a
+ * mapper over a different number of shards.
+ *
+ * Every statement commits on its own, outside the caller's transaction, so a rollback of the
+ * caller's transaction is compensated: the users it inserted are deleted, the rows it updated
+ * are put back unless they changed again since, and the rows it deleted are inserted again,
+ * with the usernames moved back in the index. Other readers can see those writes until then.
+ * Rows cannot be locked across shards either, so batch updates and deletes only apply to rows
+ * still at the version the caller read ({@link #updateAll}, {@link #deleteAll}).
+ */
+public class ShardedUserMapper implements UserMapper, Closeable {
+    
+    private static final Logger log = LoggerFactory.getLogger(ShardedUserMapper.class);
+    private static final int FAILED = -1;
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+    // columns UserService may sort searches by
+    private static final Map<String, Function<User, Comparable<?>>> SORT_KEYS = new HashMap<>();
+    
+    static {
+        SORT_KEYS.put("id", User::getId);
+        SORT_KEYS.put("username", User::getUsername);
+        SORT_KEYS.put("email", User::getEmail);
+        SORT_KEYS.put("created_at", User::getCreatedAt);
+        SORT_KEYS.put("updated_at", User::getUpdatedAt);
+    }
+    
+    private final List<DataSource> shardDataSources;
+    private final List<SqlSessionFactory> shards;
+    private final SqlSessionFactory index;
+    private final List<Integer> allShards;
+    private final MyBatisExceptionTranslator exceptionTranslator;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    
+    /**
+     * @param shardDataSources one per shard, already migrated, and closed with this mapper; their
+     *                         order must never change, and their number must match the shard count
+     *                         recorded in the index database ({@link #checkShardCount})
+     * @param indexDataSource  the main database holding {@code username_shards}
+     */
+    public ShardedUserMapper(List<DataSource> shardDataSources, DataSource indexDataSource,
+                             List<Interceptor> interceptors, int queryThreads, int chunkSize) {
+        if (shardDataSources.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        if (queryThreads <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("query threads and chunk size must be positive");
+        }
+        List<SqlSessionFactory> factories = new ArrayList<>(shardDataSources.size());
+        List<Integer> numbers = new ArrayList<>(shardDataSources.size());
+        for (DataSource dataSource : shardDataSources) {
+            numbers.add(factories.size());
+            factories.add(sqlSessionFactory("shard-" + factories.size(), dataSource, UserMapper.class, interceptors));
+        }
+        this.shardDataSources = new ArrayList<>(shardDataSources);
+        this.shards = Collections.unmodifiableList(factories);
+        this.allShards = Collections.unmodifiableList(numbers);
+        this.index = sqlSessionFactory("username-index", indexDataSource, UsernameShardMapper.class, interceptors);
+        // every shard runs the same database product as the index
+        this.exceptionTranslator = new MyBatisExceptionTranslator(indexDataSource, true);
+        this.executor = Executors.newFixedThreadPool(queryThreads, new CustomizableThreadFactory("user-shard-"));
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Records the shard count in the index database on the first start, and afterwards fails
+     * with an {@link IllegalStateException} when it differs: ids carry no shard, so hashing them
+     * over another number of shards would silently misroute rows. Needs the index database
+     * migrated, so it is not run by the constructor.
+     */
+    public void checkShardCount() {
+        Integer recorded = onIndex(UsernameShardMapper::findShardCount);
+        if (recorded == null) {
+            try {
+                onIndex(mapper -> mapper.recordShardCount(shards.size()));
+                return;
+            } catch (DuplicateKeyException e) {
+                // another instance recorded the layout first
+                recorded = onIndex(UsernameShardMapper::findShardCount);
+            }
+        }
+        if (recorded != shards.size()) {
+            throw new IllegalStateException("user.sharding.urls lists " + shards.size()
+                    + " shards but the users are stored on " + recorded
+                    + "; changing the shard count needs the users moved to their new shards");
+        }
+    }
+    
+    public int getShardCount() {
+        return shards.size();
+    }
+    
+    public List<DataSource> getShardDataSources() {
+        return Collections.unmodifiableList(shardDataSources);
+    }
+    
+    /**
+     * The shard of an id. Time-ordered ids differ mostly in their high bits, so they are mixed
+     * before the modulo, otherwise one shard would take all users created in the same period.
+     */
+    public static int shardOf(long id, int shardCount) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) shardCount);
+    }
+    
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (DataSource dataSource : shardDataSources) {
+            if (dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) dataSource).close();
+                } catch (IOException e) {
+                    log.warn("Could not close shard data source", e);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public List<User> findAll() {
+        return concat(onAllShards(UserMapper::findAll));
+    }
+    
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        List<User> users = concat(onAllShards(mapper -> mapper.findPage(afterId, limit)));
+        users.sort(BY_ID);
+        return slice(users, 0, limit);
+    }
+    
+    @Override
+    public Cursor<User> streamAfter(Long afterId) {
+        return streamAllShards(mapper -> mapper.streamAfter(afterId));
+    }
+    
+    @Override
+    public Cursor<User> streamUpdatedSince(LocalDateTime updatedSince) {
+        return streamAllShards(mapper -> mapper.streamUpdatedSince(updatedSince));
+    }
+    
+    @Override
+    public void scanUsernames(ResultHandler<String> handler) {
+        for (int shard : allShards) {
+            onShard(shard, mapper -> {
+                mapper.scanUsernames(handler);
+                return null;
+            });
+        }
+    }
+    
+    @Override
+    public User findById(Long id) {
+        int shard = shardIndex(id);
+        return shard < 0 ? null : onShard(shard, mapper -> mapper.findById(id));
+    }
+    
+    @Override
+    public User findByUsername(String username) {
+        Long id = onIndex(mapper -> mapper.findUserId(username));
+        int shard = shardIndex(id);
+        return shard < 0 ? null : onShard(shard, mapper -> mapper.findByUsername(username));
+    }
+    
+    @Override
+    public List<User> findByIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = new TreeMap<>();
+        for (Long id : ids) {
+            int shard = shardIndex(id);
+            if (shard >= 0) {
+                idsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(id);
+            }
+        }
+        return concat(scatter(idsByShard.keySet(),
+                shard -> onShard(shard, mapper -> mapper.findByIds(idsByShard.get(shard)))));
+    }
+    
+    /**
+     * Same as {@link #findByIds}: each statement commits on its own, so a lock would be
+     * released before the caller could rely on it. Pass the versions read here to
+     * {@link #updateAll} and {@link #deleteAll} instead.
+     */
+    @Override
+    public List<User> findByIdsForUpdate(Collection<Long> ids) {
+        return findByIds(ids);
+    }
+    
+    @Override
+    public List<User> findByUsernames(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = onIndex(mapper -> mapper.findUserIds(usernames));
+        Set<String> wanted = new HashSet<>(usernames);
+        // a rename may land between the two reads
+        return findByIds(ids).stream()
+                .filter(user -> wanted.contains(user.getUsername()))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Every shard returns its first {@code offset + limit} matches, so deep pages cost
+     * {@code shards * (offset + limit)} rows; keyset paging through {@link #findPage} does not.
+     */
+    @Override
+    public List<User> search(UserSearchCriteria criteria, String usernamePattern, String emailDomain,
+                             String orderBy, int offset, int limit) {
+        Comparator<User> order = comparator(orderBy);
+        int window = offset + limit;
+        List<User> users = concat(onAllShards(
+                mapper -> mapper.search(criteria, usernamePattern, emailDomain, orderBy, 0, window)));
+        users.sort(order);
+        return slice(users, offset, limit);
+    }
+    
+    @Override
+    public UserTableStats findTableStats() {
+        long userCount = 0;
+        LocalDateTime lastUpdatedAt = null;
+        for (UserTableStats stats : onAllShards(UserMapper::findTableStats)) {
+            userCount += stats.getUserCount();
+            LocalDateTime shardUpdatedAt = stats.getLastUpdatedAt();
+            if (shardUpdatedAt != null && (lastUpdatedAt == null || shardUpdatedAt.isAfter(lastUpdatedAt))) {
+                lastUpdatedAt = shardUpdatedAt;
+            }
+        }
+        return new UserTableStats(userCount, lastUpdatedAt);
+    }
+    
+    @Override
+    public Long findVersionById(Long id) {
+        int shard = shardIndex(id);
+        return shard < 0 ? null : onShard(shard, mapper -> mapper.findVersionById(id));
+    }
+    
+    @Override
+    public int insertWithId(User user) {
+        int shard = requireShard(user.getId());
+        long id = user.getId();
+        // the claim fails with a DuplicateKeyException when another shard has the username
+        onIndex(mapper -> mapper.claim(user.getUsername(), id));
+        int count;
+        try {
+            count = onShard(shard, mapper -> mapper.insertWithId(user));
+        } catch (RuntimeException e) {
+            release(user.getUsername(), id);
+            throw e;
+        }
+        afterRollback(() -> {
+            onShard(shard, mapper -> mapper.deleteById(id));
+            release(user.getUsername(), id);
+        });
+        return count;
+    }
+    
+    @Override
+    public int update(User user) {
+        return updateRouted(user, (mapper, current) -> mapper.update(user) > 0 ? current : null) != null ? 1 : 0;
+    }
+    
+    @Override
+    public int deleteById(Long id) {
+        return deleteReturningOld(id) != null ? 1 : 0;
+    }
+    
+    @Override
+    public User updateReturningOld(User user) {
+        return updateRouted(user, (mapper, current) -> mapper.updateReturningOld(user));
+    }
+    
+    @Override
+    public int updateIfVersion(User user) {
+        return updateRouted(user, (mapper, current) -> mapper.updateIfVersion(user) > 0 ? current : null) != null ? 1 : 0;
+    }
+    
+    @Override
+    public int deleteIfVersion(User user) {
+        int shard = shardIndex(user.getId());
+        if (shard < 0 || onShard(shard, mapper -> mapper.deleteIfVersion(user)) == 0) {
+            return 0;
+        }
+        release(user.getUsername(), user.getId());
+        afterRollback(() -> undoDelete(shard, user));
+        return 1;
+    }
+    
+    @Override
+    public int restore(User previous, long version) {
+        int shard = shardIndex(previous.getId());
+        return shard < 0 ? 0 : onShard(shard, mapper -> mapper.restore(previous, version));
+    }
+    
+    @Override
+    public User deleteReturningOld(Long id) {
+        int shard = shardIndex(id);
+        if (shard < 0) {
+            return null;
+        }
+        User previous = onShard(shard, mapper -> mapper.deleteReturningOld(id));
+        if (previous != null) {
+            release(previous.getUsername(), id);
+            afterRollback(() -> undoDelete(shard, previous));
+        }
+        return previous;
+    }
+    
+    /**
+     * Batch insert of users with assigned ids: claims all usernames in one index transaction,
+     * then inserts each shard's users as one JDBC batch per chunk. Returns the counts in input
+     * order.
+     */
+    public int[] insertAll(List<User> users) {
+        if (users.isEmpty()) {
+            return new int[0];
+        }
+        List<Long> ids = new ArrayList<>(users.size());
+        for (User user : users) {
+            requireShard(user.getId());
+            ids.add(user.getId());
+        }
+        onIndexBatch(mapper -> users.forEach(user -> mapper.claim(user.getUsername(), user.getId())));
+        Runnable undo = () -> {
+            batch(ids, id -> id, UserMapper::deleteById, new ArrayList<>());
+            onIndexBatch(mapper -> users.forEach(user -> mapper.release(user.getUsername(), user.getId())));
+        };
+        List<RuntimeException> failures = new CopyOnWriteArrayList<>();
+        int[] counts = batch(users, User::getId, UserMapper::insertWithId, failures);
+        if (!failures.isEmpty()) {
+            // the shards that did commit must not keep users the caller never saw created
+            runQuietly(undo);
+            throw failures.get(0);
+        }
+        afterRollback(undo);
+        return counts;
+    }
+    
+    /**
+     * Batch update of users carrying the version the caller read: a row that changed since is
+     * left alone and counted 0. Usernames being renamed to are claimed up front, and the old
+     * names are released once the shard holding the row has committed.
+     */
+    public int[] updateAll(List<User> users) {
+        Map<Long, User> current = currentRows(users.stream().map(User::getId).collect(Collectors.toList()));
+        Map<Long, String> names = new HashMap<>();
+        current.forEach((id, user) -> names.put(id, user.getUsername()));
+        List<Map.Entry<String, Long>> renamedFrom = new ArrayList<>(users.size());
+        for (User user : users) {
+            String previous = names.get(user.getId());
+            boolean renamed = previous != null && !previous.equals(user.getUsername());
+            renamedFrom.add(renamed ? new AbstractMap.SimpleImmutableEntry<>(previous, user.getId()) : null);
+            if (renamed) {
+                names.put(user.getId(), user.getUsername());
+            }
+        }
+        onIndexBatch(mapper -> {
+            for (int i = 0; i < users.size(); i++) {
+                if (renamedFrom.get(i) != null) {
+                    mapper.claim(users.get(i).getUsername(), users.get(i).getId());
+                }
+            }
+        });
+        List<RuntimeException> failures = new CopyOnWriteArrayList<>();
+        int[] counts = batch(users, User::getId, UserMapper::updateIfVersion, failures);
+        onIndexBatch(mapper -> {
+            for (int i = 0; i < users.size(); i++) {
+                Map.Entry<String, Long> from = renamedFrom.get(i);
+                if (from != null) {
+                    // keep whichever name the row ended up with
+                    String unused = counts[i] > 0 ? from.getKey() : users.get(i).getUsername();
+                    mapper.release(unused, from.getValue());
+                }
+            }
+        });
+        // each row goes back to how it was read, from the version and name its last update left
+        Map<Long, Integer> applied = new HashMap<>();
+        Map<Long, String> lastNames = new HashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            if (counts[i] > 0) {
+                applied.merge(users.get(i).getId(), 1, Integer::sum);
+                lastNames.put(users.get(i).getId(), users.get(i).getUsername());
+            }
+        }
+        if (!applied.isEmpty()) {
+            afterRollback(() -> applied.forEach((id, updates) -> {
+                User previous = current.get(id);
+                if (previous != null) {
+                    runQuietly(() -> undoUpdate(shardIndex(id), previous, previous.getVersion() + updates, lastNames.get(id)));
+                }
+            }));
+        }
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+        return counts;
+    }
+    
+    /**
+     * Batch delete of rows as the caller read them: a row that changed since is left alone and
+     * counted 0.
+     */
+    public int[] deleteAll(List<User> rows) {
+        List<RuntimeException> failures = new CopyOnWriteArrayList<>();
+        int[] counts = batch(rows, User::getId, UserMapper::deleteIfVersion, failures);
+        List<User> deleted = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (counts[i] > 0) {
+                deleted.add(rows.get(i));
+            }
+        }
+        onIndexBatch(mapper -> deleted.forEach(user -> mapper.release(user.getUsername(), user.getId())));
+        if (!deleted.isEmpty()) {
+            afterRollback(() -> deleted.forEach(user -> runQuietly(() -> undoDelete(shardIndex(user.getId()), user))));
+        }
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+        return counts;
+    }
+    
+    /**
+     * Runs an update of one row; the statement returns the row as it was before it applied, or
+     * null when it did not apply.
+     */
+    private User updateRouted(User user, BiFunction<UserMapper, User, User> statement) {
+        int shard = shardIndex(user.getId());
+        if (shard < 0) {
+            return null;
+        }
+        User current = onShard(shard, mapper -> mapper.findById(user.getId()));
+        if (current == null) {
+            return null;
+        }
+        boolean renamed = !current.getUsername().equals(user.getUsername());
+        if (renamed) {
+            onIndex(mapper -> mapper.claim(user.getUsername(), user.getId()));
+        }
+        User previous;
+        try {
+            previous = onShard(shard, mapper -> statement.apply(mapper, current));
+        } catch (RuntimeException e) {
+            if (renamed) {
+                release(user.getUsername(), user.getId());
+            }
+            throw e;
+        }
+        if (renamed) {
+            release(previous != null ? current.getUsername() : user.getUsername(), user.getId());
+        }
+        if (previous != null) {
+            afterRollback(() -> undoUpdate(shard, previous, previous.getVersion() + 1, user.getUsername()));
+        }
+        return previous;
+    }
+    
+    /**
+     * Puts back a row that an update moved from {@code previous} to {@code version} under
+     * {@code username}, and its name in the index; a row updated again since is kept.
+     */
+    private void undoUpdate(int shard, User previous, long version, String username) {
+        boolean renamed = !previous.getUsername().equals(username);
+        if (renamed) {
+            onIndex(mapper -> mapper.claim(previous.getUsername(), previous.getId()));
+        }
+        boolean restored = onShard(shard, mapper -> mapper.restore(previous, version)) > 0;
+        if (renamed) {
+            release(restored ? username : previous.getUsername(), previous.getId());
+        }
+        if (!restored) {
+            log.warn("User {} was updated again before its rolled back update could be undone", previous.getId());
+        }
+    }
+    
+    private void undoDelete(int shard, User previous) {
+        onIndex(mapper -> mapper.claim(previous.getUsername(), previous.getId()));
+        try {
+            onShard(shard, mapper -> mapper.insertWithId(previous));
+        } catch (RuntimeException e) {
+            release(previous.getUsername(), previous.getId());
+            throw e;
+        }
+    }
+    
+    private Map<Long, User> currentRows(List<Long> ids) {
+        Map<Long, User> rows = new HashMap<>();
+        for (User user : findByIds(new LinkedHashSet<>(ids))) {
+            rows.put(user.getId(), user);
+        }
+        return rows;
+    }
+    
+    /**
+     * Runs one JDBC batch per shard, each committed on its own. Counts come back in input order;
+     * items of a shard that failed get {@link #FAILED} and its exception is added to failures.
+     */
+    private <T> int[] batch(List<T> items, Function<T, Long> idOf, BiConsumer<UserMapper, T> statement,
+                            List<RuntimeException> failures) {
+        int[] counts = new int[items.size()];
+        Map<Integer, List<Integer>> positionsByShard = new TreeMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            int shard = shardIndex(idOf.apply(items.get(i)));
+            if (shard >= 0) {
+                positionsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(i);
+            }
+        }
+        scatter(positionsByShard.keySet(), shard -> {
+            List<Integer> positions = positionsByShard.get(shard);
+            try {
+                int[] shardCounts = executeBatch(shard, items, positions, statement);
+                for (int i = 0; i < positions.size(); i++) {
+                    counts[positions.get(i)] = shardCounts[i];
+                }
+            } catch (RuntimeException e) {
+                positions.forEach(position -> counts[position] = FAILED);
+                failures.add(e);
+            }
+            return null;
+        });
+        return counts;
+    }
+    
+    private <T> int[] executeBatch(int shard, List<T> items, List<Integer> positions, BiConsumer<UserMapper, T> statement) {
+        int[] counts = new int[positions.size()];
+        int position = 0;
+        try (SqlSession session = shards.get(shard).openSession(ExecutorType.BATCH, false)) {
+            UserMapper mapper = session.getMapper(UserMapper.class);
+            for (int start = 0; start < positions.size(); start += chunkSize) {
+                int end = Math.min(start + chunkSize, positions.size());
+                for (int i = start; i < end; i++) {
+                    statement.accept(mapper, items.get(positions.get(i)));
+                }
+                for (BatchResult result : session.flushStatements()) {
+                    for (int count : result.getUpdateCounts()) {
+                        counts[position++] = count == Statement.SUCCESS_NO_INFO ? 1 : count;
+                    }
+                }
+            }
+            session.commit();
+        } catch (RuntimeException e) {
+            throw translate(e);
+        }
+        return counts;
+    }
+    
+    private <T> List<T> onAllShards(Function<UserMapper, T> statement) {
+        return scatter(allShards, shard -> onShard(shard, statement));
+    }
+    
+    /**
+     * Runs the call for every given shard on the query pool and waits for all of them, so no
+     * shard is still working when a failure is rethrown.
+     */
+    private <T> List<T> scatter(Collection<Integer> shardNumbers, IntFunction<T> call) {
+        if (shardNumbers.size() == 1) {
+            return Collections.singletonList(call.apply(shardNumbers.iterator().next()));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardNumbers.size());
+        for (int shard : shardNumbers) {
+            futures.add(CompletableFuture.supplyAsync(() -> call.apply(shard), executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        futures.forEach(future -> results.add(future.join()));
+        return results;
+    }
+    
+    private <T> T onShard(int shard, Function<UserMapper, T> statement) {
+        try (SqlSession session = shards.get(shard).openSession(true)) {
+            return statement.apply(session.getMapper(UserMapper.class));
+        } catch (RuntimeException e) {
+            throw translate(e);
+        }
+    }
+    
+    private <T> T onIndex(Function<UsernameShardMapper, T> statement) {
+        try (SqlSession session = index.openSession(true)) {
+            return statement.apply(session.getMapper(UsernameShardMapper.class));
+        } catch (RuntimeException e) {
+            throw translate(e);
+        }
+    }
+    
+    // all or nothing: a taken username fails the whole batch
+    private void onIndexBatch(Consumer<UsernameShardMapper> statements) {
+        try (SqlSession session = index.openSession(ExecutorType.BATCH, false)) {
+            statements.accept(session.getMapper(UsernameShardMapper.class));
+            session.flushStatements();
+            session.commit();
+        } catch (RuntimeException e) {
+            throw translate(e);
+        }
+    }
+    
+    private void release(String username, long id) {
+        onIndex(mapper -> mapper.release(username, id));
+    }
+    
+    private int shardIndex(Long id) {
+        if (id == null || id <= 0) {
+            return -1;
+        }
+        return shardOf(id, shards.size());
+    }
+    
+    private int requireShard(Long id) {
+        int shard = shardIndex(id);
+        if (shard < 0) {
+            throw new IllegalArgumentException("sharded users need a positive id, got " + id);
+        }
+        return shard;
+    }
+    
+    private RuntimeException translate(RuntimeException e) {
+        if (e instanceof DataAccessException) {
+            return e;
+        }
+        DataAccessException translated = exceptionTranslator.translateExceptionIfPossible(e);
+        return translated != null ? translated : e;
+    }
+    
+    private static void afterRollback(Runnable undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    runQuietly(undo);
+                }
+            }
+        });
+    }
+    
+    private static void runQuietly(Runnable undo) {
+        try {
+            undo.run();
+        } catch (RuntimeException e) {
+            log.warn("Could not undo sharded user writes", e);
+        }
+    }
+    
+    private static <T> List<T> concat(List<List<T>> lists) {
+        List<T> all = new ArrayList<>(lists.stream().mapToInt(List::size).sum());
+        lists.forEach(all::addAll);
+        return all;
+    }
+    
+    private static List<User> slice(List<User> users, int offset, int limit) {
+        if (offset >= users.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(users.subList(offset, Math.min(users.size(), offset + limit)));
+    }
+    
+    /**
+     * The ORDER BY clause as a comparator, with NULLs first when ascending like H2 sorts them.
+     */
+    static Comparator<User> comparator(String orderBy) {
+        Comparator<User> comparator = null;
+        for (String term : orderBy.split(",")) {
+            String[] parts = term.trim().split("\\s+");
+            Function<User, Comparable<?>> key = SORT_KEYS.get(parts[0].toLowerCase());
+            if (key == null) {
+                throw new IllegalArgumentException("cannot merge results sorted by " + parts[0]);
+            }
+            Comparator<User> next = ascending(key);
+            if (parts.length > 1 && "DESC".equalsIgnoreCase(parts[1])) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<User> ascending(Function<User, Comparable<?>> key) {
+        Comparator<Comparable> natural = Comparator.nullsFirst(Comparator.<Comparable>naturalOrder());
+        return (a, b) -> natural.compare(key.apply(a), key.apply(b));
+    }
+    
+    private static SqlSessionFactory sqlSessionFactory(String id, DataSource dataSource, Class<?> mapper,
+                                                       List<Interceptor> interceptors) {
+        Configuration configuration = new Configuration(new Environment(id, new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        interceptors.forEach(configuration::addInterceptor);
+        configuration.addMapper(mapper);
+        return new SqlSessionFactoryBuilder().build(configuration);
+    }
+    
+    // every shard streams in id order; the merged cursor keeps that order across shards
+    private Cursor<User> streamAllShards(Function<UserMapper, Cursor<User>> query) {
+        List<SqlSession> sessions = new ArrayList<>(shards.size());
+        try {
+            List<Cursor<User>> cursors = new ArrayList<>(shards.size());
+            for (SqlSessionFactory shard : shards) {
+                SqlSession session = shard.openSession();
+                sessions.add(session);
+                cursors.add(query.apply(session.getMapper(UserMapper.class)));
+            }
+            return new MergedCursor(sessions, cursors);
+        } catch (RuntimeException e) {
+            sessions.forEach(SqlSession::close);
+            throw translate(e);
+        }
+    }
+    
+    /**
+     * Merges the id-ordered cursors of all shards into one id-ordered cursor, and closes
+     * their sessions with it.
+     */
+    private static final class MergedCursor implements Cursor<User> {
+        
+        private final List<SqlSession> sessions;
+        private final List<Cursor<User>> cursors;
+        private boolean open = true;
+        private boolean iterated;
+        private int currentIndex = -1;
+        private PriorityQueue<Head> heads;
+        
+        MergedCursor(List<SqlSession> sessions, List<Cursor<User>> cursors) {
+            this.sessions = sessions;
+            this.cursors = cursors;
+        }
+        
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+        
+        @Override
+        public boolean isConsumed() {
+            return heads != null && heads.isEmpty();
+        }
+        
+        @Override
+        public int getCurrentIndex() {
+            return currentIndex;
+        }
+        
+        @Override
+        public Iterator<User> iterator() {
+            if (iterated) {
+                throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+            }
+            iterated = true;
+            heads = new PriorityQueue<>(Math.max(1, cursors.size()), Comparator.comparing((Head head) -> head.user.getId()));
+            for (Cursor<User> cursor : cursors) {
+                advance(cursor.iterator());
+            }
+            return new Iterator<User>() {
+                @Override
+                public boolean hasNext() {
+                    return !heads.isEmpty();
+                }
+                
+                @Override
+                public User next() {
+                    Head head = heads.poll();
+                    if (head == null) {
+                        throw new NoSuchElementException();
+                    }
+                    currentIndex++;
+                    advance(head.rest);
+                    return head.user;
+                }
+            };
+        }
+        
+        @Override
+        public void close() throws IOException {
+            open = false;
+            for (SqlSession session : sessions) {
+                session.close();
+            }
+        }
+        
+        private void advance(Iterator<User> rest) {
+            if (rest.hasNext()) {
+                heads.add(new Head(rest.next(), rest));
+            }
+        }
+        
+        private static final class Head {
+            final User user;
+            final Iterator<User> rest;
+            
+            Head(User user, Iterator<User> rest) {
+                this.user = user;
+                this.rest = rest;
+            }
+        }
+    }
+}
\ No newline at end of file
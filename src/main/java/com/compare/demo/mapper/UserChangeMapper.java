@@ -0,0 +1,59 @@
+package com.compare.demo.mapper;
+
+import com.compare.demo.entity.UserChange;
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface UserChangeMapper {
+    
+    // returns the new last_seq; the row stays locked until the calling transaction ends, which is
+    // why UserChangeLog only calls it just before committing
+    @Select("SELECT last_seq FROM FINAL TABLE (UPDATE user_change_sequence SET last_seq = last_seq + #{count} WHERE id = 1)")
+    @Options(flushCache = Options.FlushCachePolicy.TRUE, useCache = false)
+    long reserveSequence(@Param("count") int count);
+    
+    @Insert("INSERT INTO user_changes(seq, user_id, change_type, username, email, version, changed_at) VALUES(#{seq}, #{userId}, #{type}, #{username}, #{email}, #{version}, #{changedAt})")
+    int insert(UserChange change);
+    
+    @Select("SELECT * FROM user_changes WHERE seq > #{since} ORDER BY seq LIMIT #{limit}")
+    @Results(id = "userChangeResultMap", value = {
+        @Result(property = "seq", column = "seq"),
+        @Result(property = "userId", column = "user_id"),
+        @Result(property = "type", column = "change_type"),
+        @Result(property = "username", column = "username"),
+        @Result(property = "email", column = "email"),
+        @Result(property = "version", column = "version"),
+        @Result(property = "changedAt", column = "changed_at")
+    })
+    List<UserChange> findSince(@Param("since") long since, @Param("limit") int limit);
+    
+    @Select("SELECT pruned_through FROM user_change_sequence WHERE id = 1")
+    long findPrunedThrough();
+    
+    // never past the outbox dispatcher, so undelivered changes outlive the retention period
+    @Update({"UPDATE user_change_sequence SET pruned_through = GREATEST(pruned_through, LEAST(",
+        "COALESCE((SELECT MAX(seq) FROM user_changes WHERE changed_at < #{before}), 0),",
+        "COALESCE((SELECT dispatched_through FROM user_change_dispatch WHERE id = 1), last_seq))) WHERE id = 1"})
+    int advancePrunedThrough(@Param("before") LocalDateTime before);
+    
+    @Delete("DELETE FROM user_changes WHERE seq <= (SELECT pruned_through FROM user_change_sequence WHERE id = 1)")
+    int deletePruned();
+    
+    @Select("SELECT last_seq FROM user_change_sequence WHERE id = 1")
+    long findLastSeq();
+    
+    // held until the calling transaction ends, so one dispatcher at a time owns the position
+    @Select("SELECT dispatched_through FROM user_change_dispatch WHERE id = 1 FOR UPDATE")
+    @Options(flushCache = Options.FlushCachePolicy.TRUE, useCache = false)
+    Long lockDispatchedThrough();
+    
+    // a sink configured for the first time starts with the changes committed from now on
+    @Update("UPDATE user_change_dispatch SET dispatched_through = (SELECT last_seq FROM user_change_sequence WHERE id = 1) WHERE id = 1 AND dispatched_through IS NULL")
+    int startDispatch();
+    
+    @Update("UPDATE user_change_dispatch SET dispatched_through = #{seq} WHERE id = 1")
+    int advanceDispatchedThrough(@Param("seq") long seq);
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.compare.demo.mapper;
+
+import com.compare.demo.entity.UserImport;
+import org.apache.ibatis.annotations.*;
+
+@Mapper
+public interface UserImportMapper {
+    
+    @Select("SELECT * FROM user_imports WHERE import_id = #{importId}")
+    @Results(id = "userImportResultMap", value = {
+        @Result(property = "importId", column = "import_id"),
+        @Result(property = "committedRows", column = "committed_rows"),
+        @Result(property = "importedRows", column = "imported_rows"),
+        @Result(property = "rejectedRows", column = "rejected_rows"),
+        @Result(property = "updatedAt", column = "updated_at")
+    })
+    UserImport findById(String importId);
+    
+    @Insert("INSERT INTO user_imports(import_id, committed_rows, imported_rows, rejected_rows, updated_at) VALUES(#{importId}, #{committedRows}, #{importedRows}, #{rejectedRows}, #{updatedAt})")
+    int insert(UserImport userImport);
+    
+    // only moves forward: a second run of the same import that fell behind updates nothing
+    @Update("UPDATE user_imports SET committed_rows = #{committedRows}, imported_rows = #{importedRows}, rejected_rows = #{rejectedRows}, updated_at = #{updatedAt} WHERE import_id = #{importId} AND committed_rows < #{committedRows}")
+    int advance(UserImport userImport);
+}
@@ -1,29 +1,70 @@
 package com.compare.demo.mapper;
 
+import com.compare.demo.dto.UserSearchCriteria;
 import com.compare.demo.entity.User;
+import com.compare.demo.entity.UserTableStats;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
 public interface UserMapper {
     
     @Select("SELECT * FROM users")
-    @Results({
+    @Results(id = "userResultMap", value = {
         @Result(property = "id", column = "id"),
         @Result(property = "username", column = "username"),
         @Result(property = "email", column = "email"),
         @Result(property = "createdAt", column = "created_at"),
-        @Result(property = "updatedAt", column = "updated_at")
+        @Result(property = "updatedAt", column = "updated_at"),
+        @Result(property = "version", column = "version")
     })
     List<User> findAll();
     
+    @Select({"<script>",
+        "SELECT * FROM users",
+        "<where><if test='afterId != null'>id &gt; #{afterId}</if></where>",
+        "ORDER BY id LIMIT #{limit}",
+        "</script>"})
+    @ResultMap("userResultMap")
+    List<User> findPage(@Param("afterId") Long afterId, @Param("limit") int limit);
+    
+    @Select({"<script>",
+        "SELECT * FROM users",
+        "<where><if test='afterId != null'>id &gt; #{afterId}</if></where>",
+        "ORDER BY id",
+        "</script>"})
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @ResultMap("userResultMap")
+    Cursor<User> streamAfter(@Param("afterId") Long afterId);
+    
+    @Select({"<script>",
+        "SELECT * FROM users",
+        "<where><if test='updatedSince != null'>updated_at &gt;= #{updatedSince}</if></where>",
+        "ORDER BY id",
+        "</script>"})
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @ResultMap("userResultMap")
+    Cursor<User> streamUpdatedSince(@Param("updatedSince") LocalDateTime updatedSince);
+    
+    @Select("SELECT username FROM users")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @ResultType(String.class)
+    void scanUsernames(ResultHandler<String> handler);
+    
     @Select("SELECT * FROM users WHERE id = #{id}")
     @Results({
         @Result(property = "id", column = "id"),
         @Result(property = "username", column = "username"),
         @Result(property = "email", column = "email"),
         @Result(property = "createdAt", column = "created_at"),
-        @Result(property = "updatedAt", column = "updated_at")
+        @Result(property = "updatedAt", column = "updated_at"),
+        @Result(property = "version", column = "version")
     })
     User findById(Long id);
     
@@ -33,17 +74,92 @@ public interface UserMapper {
         @Result(property = "username", column = "username"),
         @Result(property = "email", column = "email"),
         @Result(property = "createdAt", column = "created_at"),
-        @Result(property = "updatedAt", column = "updated_at")
+        @Result(property = "updatedAt", column = "updated_at"),
+        @Result(property = "version", column = "version")
     })
     User findByUsername(String username);
     
-    @Insert("INSERT INTO users(username, email, created_at, updated_at) VALUES(#{username}, #{email}, #{createdAt}, #{updatedAt})")
-    @Options(useGeneratedKeys = true, keyProperty = "id")
-    int insert(User user);
+    @Select({"<script>",
+        "SELECT * FROM users WHERE id IN",
+        "<foreach item='id' collection='ids' open='(' separator=',' close=')'>#{id}</foreach>",
+        "</script>"})
+    @ResultMap("userResultMap")
+    List<User> findByIds(@Param("ids") Collection<Long> ids);
+    
+    @Select({"<script>",
+        "SELECT * FROM users WHERE id IN",
+        "<foreach item='id' collection='ids' open='(' separator=',' close=')'>#{id}</foreach>",
+        "FOR UPDATE",
+        "</script>"})
+    @Options(flushCache = Options.FlushCachePolicy.TRUE, useCache = false)
+    @ResultMap("userResultMap")
+    List<User> findByIdsForUpdate(@Param("ids") Collection<Long> ids);
+    
+    @Select({"<script>",
+        "SELECT * FROM users WHERE username IN",
+        "<foreach item='username' collection='usernames' open='(' separator=',' close=')'>#{username}</foreach>",
+        "</script>"})
+    @ResultMap("userResultMap")
+    List<User> findByUsernames(@Param("usernames") Collection<String> usernames);
+    
+    // orderBy is spliced in verbatim and must come from UserService's whitelist, never from the request
+    @Select({"<script>",
+        "SELECT * FROM users",
+        "<where>",
+        "<if test='usernamePattern != null'>AND username LIKE #{usernamePattern} ESCAPE '\\'</if>",
+        "<if test='emailDomain != null'>AND email_domain = #{emailDomain}</if>",
+        "<if test='criteria.createdFrom != null'>AND created_at &gt;= #{criteria.createdFrom}</if>",
+        "<if test='criteria.createdTo != null'>AND created_at &lt; #{criteria.createdTo}</if>",
+        "<if test='criteria.updatedFrom != null'>AND updated_at &gt;= #{criteria.updatedFrom}</if>",
+        "<if test='criteria.updatedTo != null'>AND updated_at &lt; #{criteria.updatedTo}</if>",
+        "</where>",
+        "ORDER BY ${orderBy} LIMIT #{limit} OFFSET #{offset}",
+        "</script>"})
+    @ResultMap("userResultMap")
+    List<User> search(@Param("criteria") UserSearchCriteria criteria,
+                      @Param("usernamePattern") String usernamePattern,
+                      @Param("emailDomain") String emailDomain,
+                      @Param("orderBy") String orderBy,
+                      @Param("offset") int offset,
+                      @Param("limit") int limit);
     
-    @Update("UPDATE users SET username = #{username}, email = #{email}, updated_at = #{updatedAt} WHERE id = #{id}")
+    @Select("SELECT COUNT(*) AS user_count, MAX(updated_at) AS last_updated_at FROM users")
+    UserTableStats findTableStats();
+    
+    @Select("SELECT version FROM users WHERE id = #{id}")
+    Long findVersionById(Long id);
+    
+    @Insert("INSERT INTO users(id, username, email, created_at, updated_at, version) VALUES(#{id}, #{username}, #{email}, #{createdAt}, #{updatedAt}, #{version})")
+    int insertWithId(User user);
+    
+    @Update("UPDATE users SET username = #{username}, email = #{email}, updated_at = #{updatedAt}, version = version + 1 WHERE id = #{id}")
     int update(User user);
     
     @Delete("DELETE FROM users WHERE id = #{id}")
     int deleteById(Long id);
+    
+    // for writes that cannot lock the row first: they only apply while it has the version read
+    @Update("UPDATE users SET username = #{username}, email = #{email}, updated_at = #{updatedAt}, version = version + 1 WHERE id = #{id} AND version = #{version}")
+    int updateIfVersion(User user);
+    
+    @Delete("DELETE FROM users WHERE id = #{id} AND version = #{version}")
+    int deleteIfVersion(User user);
+    
+    // puts a row back as it was, unless it moved past the given version in the meantime
+    @Update("UPDATE users SET username = #{previous.username}, email = #{previous.email}, updated_at = #{previous.updatedAt}, version = #{previous.version} WHERE id = #{previous.id} AND version = #{version}")
+    int restore(@Param("previous") User previous, @Param("version") long version);
+    
+    @Select({"<script>",
+        "SELECT * FROM OLD TABLE (UPDATE users",
+        "SET username = #{username}, email = #{email}, updated_at = #{updatedAt}, version = version + 1",
+        "WHERE id = #{id}<if test='version != null'> AND version = #{version}</if>)",
+        "</script>"})
+    @Options(flushCache = Options.FlushCachePolicy.TRUE, useCache = false)
+    @ResultMap("userResultMap")
+    User updateReturningOld(User user);
+    
+    @Select("SELECT * FROM OLD TABLE (DELETE FROM users WHERE id = #{id})")
+    @Options(flushCache = Options.FlushCachePolicy.TRUE, useCache = false)
+    @ResultMap("userResultMap")
+    User deleteReturningOld(Long id);
 }
\ No newline at end of file
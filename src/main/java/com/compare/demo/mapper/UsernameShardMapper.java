@@ -0,0 +1,36 @@
+package com.compare.demo.mapper;
+
+import org.apache.ibatis.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The global {@code username -> user id} index of {@link ShardedUserMapper}, and the shard count
+ * it was laid out with.
+ * Not a Spring mapper: it runs on its own auto-commit sessions against the main database.
+ */
+public interface UsernameShardMapper {
+    
+    @Insert("INSERT INTO username_shards(username, user_id) VALUES(#{username}, #{userId})")
+    int claim(@Param("username") String username, @Param("userId") long userId);
+    
+    // only releases the name while it still points at this user
+    @Delete("DELETE FROM username_shards WHERE username = #{username} AND user_id = #{userId}")
+    int release(@Param("username") String username, @Param("userId") long userId);
+    
+    @Select("SELECT user_id FROM username_shards WHERE username = #{username}")
+    Long findUserId(String username);
+    
+    @Select({"<script>",
+        "SELECT user_id FROM username_shards WHERE username IN",
+        "<foreach item='username' collection='usernames' open='(' separator=',' close=')'>#{username}</foreach>",
+        "</script>"})
+    List<Long> findUserIds(@Param("usernames") Collection<String> usernames);
+    
+    @Select("SELECT shard_count FROM user_shard_layout WHERE id = 1")
+    Integer findShardCount();
+    
+    @Insert("INSERT INTO user_shard_layout(id, shard_count) VALUES(1, #{shardCount})")
+    int recordShardCount(int shardCount);
+}
\ No newline at end of file
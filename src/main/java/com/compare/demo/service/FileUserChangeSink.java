@@ -0,0 +1,51 @@
+package com.compare.demo.service;
+
+import com.compare.demo.entity.UserChange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends dispatched changes to an NDJSON file ({@code user.outbox.sink=file}), one change per
+ * line. Each batch is forced to disk before it counts as delivered.
+ */
+@Component
+@ConditionalOnProperty(name = "user.outbox.sink", havingValue = "file")
+public class FileUserChangeSink implements UserChangeSink {
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+
+    @Autowired
+    public FileUserChangeSink(ObjectMapper objectMapper,
+                              @Value("${user.outbox.file:user-changes.ndjson}") Path file) {
+        this.objectMapper = objectMapper;
+        this.file = file;
+    }
+
+    @Override
+    public void send(List<UserChange> changes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            // flushed rather than closed: closing would close the channel before force()
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            for (UserChange change : changes) {
+                out.write(objectMapper.writeValueAsBytes(change));
+                out.write('\n');
+            }
+            out.flush();
+            channel.force(false);
+        }
+    }
+}
\ No newline at end of file
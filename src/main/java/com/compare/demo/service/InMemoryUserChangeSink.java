@@ -0,0 +1,28 @@
+package com.compare.demo.service;
+
+import com.compare.demo.entity.UserChange;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps dispatched changes in memory, for tests and local runs ({@code user.outbox.sink=memory}).
+ * Nothing is ever evicted.
+ */
+@Component
+@ConditionalOnProperty(name = "user.outbox.sink", havingValue = "memory")
+public class InMemoryUserChangeSink implements UserChangeSink {
+
+    private final List<UserChange> changes = new ArrayList<>();
+
+    @Override
+    public synchronized void send(List<UserChange> batch) {
+        changes.addAll(batch);
+    }
+
+    public synchronized List<UserChange> getChanges() {
+        return new ArrayList<>(changes);
+    }
+}
\ No newline at end of file
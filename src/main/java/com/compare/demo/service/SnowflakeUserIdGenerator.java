@@ -0,0 +1,117 @@
+package com.compare.demo.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style ids: 40 bits of milliseconds since {@link #EPOCH} (until 2058), the 6-bit
+ * {@code user.id.node-id} and a 7-bit sequence within the millisecond, so ids from one node
+ * strictly increase and ids from different nodes never collide. Lock-free: the last
+ * millisecond and sequence are packed into one {@link AtomicLong} advanced by CAS.
+ *
+ * Ids stay within {@link #ID_BITS} bits, so they remain exact as JSON numbers read by
+ * JavaScript clients, whose numbers are doubles.
+ *
+ * When the wall clock steps back by up to {@code user.id.max-clock-rollback}, ids keep being
+ * issued from the last millisecond (waiting only once its 128 sequence numbers are used up);
+ * a larger step fails id generation instead of risking duplicates. The last millisecond is not
+ * persisted, so a node must not restart onto a clock that is behind its previous run.
+ */
+@Component
+public class SnowflakeUserIdGenerator implements UserIdGenerator, MeterBinder {
+    
+    public static final Instant EPOCH = Instant.parse("2024-01-01T00:00:00Z");
+    public static final int ID_BITS = 53;
+    public static final int NODE_BITS = 6;
+    public static final int SEQUENCE_BITS = 7;
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    static final long MAX_MILLIS = (1L << (ID_BITS - NODE_BITS - SEQUENCE_BITS)) - 1;
+    private static final long WAIT_NANOS = 100_000;
+    
+    private final long nodeBits;
+    private final long maxRollbackMillis;
+    private final LongSupplier clock;
+    // last issued millisecond << SEQUENCE_BITS | sequence
+    private final AtomicLong state = new AtomicLong();
+    private final LongAdder aheadOfClock = new LongAdder();
+    
+    @Autowired
+    public SnowflakeUserIdGenerator(@Value("${user.id.node-id:0}") long nodeId,
+                                    @Value("${user.id.max-clock-rollback:5s}") Duration maxClockRollback) {
+        this(nodeId, maxClockRollback, System::currentTimeMillis);
+    }
+    
+    SnowflakeUserIdGenerator(long nodeId, Duration maxClockRollback, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("user.id.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        this.maxRollbackMillis = maxClockRollback.toMillis();
+        this.clock = clock;
+    }
+    
+    public static Instant timeOf(long id) {
+        return EPOCH.plusMillis(id >>> (NODE_BITS + SEQUENCE_BITS));
+    }
+    
+    public static long nodeOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+    
+    @Override
+    public long nextId() {
+        while (true) {
+            long last = state.get();
+            long lastMillis = last >>> SEQUENCE_BITS;
+            long now = clock.getAsLong() - EPOCH.toEpochMilli();
+            if (now > MAX_MILLIS) {
+                throw new IllegalStateException("user ids ran out of timestamp bits");
+            }
+            long next;
+            if (now > lastMillis) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                if (lastMillis - now > maxRollbackMillis) {
+                    throw new IllegalStateException("clock is " + (lastMillis - now)
+                            + " ms behind the last user id, more than user.id.max-clock-rollback allows");
+                }
+                if ((last & SEQUENCE_MASK) == SEQUENCE_MASK) {
+                    // this millisecond is used up, wait for the clock to pass it
+                    LockSupport.parkNanos(WAIT_NANOS);
+                    continue;
+                }
+                next = last + 1;
+            }
+            if (state.compareAndSet(last, next)) {
+                if (now < lastMillis) {
+                    aheadOfClock.increment();
+                }
+                return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+    
+    public long getIssuedAheadOfClock() {
+        return aheadOfClock.sum();
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.id.ahead-of-clock", this, SnowflakeUserIdGenerator::getIssuedAheadOfClock)
+                .description("User ids issued while the wall clock was behind the last issued millisecond")
+                .register(registry);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,159 @@
+package com.compare.demo.service;
+
+import com.compare.demo.entity.User;
+import com.compare.demo.entity.UserChange;
+import com.compare.demo.entity.UserImport;
+import com.compare.demo.mapper.ShardedUserMapper;
+import com.compare.demo.mapper.UserChangeMapper;
+import com.compare.demo.mapper.UserImportMapper;
+import com.compare.demo.mapper.UserMapper;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Runs {@link UserMapper} writes through a MyBatis BATCH executor, flushing every
+ * {@code user.batch.chunk-size} statements. Must be called inside a transaction that has
+ * not used the default (SIMPLE) executor yet, otherwise mybatis-spring refuses to switch.
+ * With sharded storage the user writes go to {@link ShardedUserMapper}'s own per-shard
+ * batches instead; the change log stays in this session.
+ */
+@Component
+public class UserBatchWriter {
+    
+    private final SqlSessionTemplate batchSession;
+    private final ObjectProvider<ShardedUserMapper> shardedUserMapper;
+    private final int chunkSize;
+    private final int maxItems;
+    
+    @Autowired
+    public UserBatchWriter(SqlSessionFactory sqlSessionFactory,
+                           ObjectProvider<ShardedUserMapper> shardedUserMapper,
+                           @Value("${user.batch.chunk-size:500}") int chunkSize,
+                           @Value("${user.batch.max-items:10000}") int maxItems) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("user.batch.chunk-size must be positive");
+        }
+        this.batchSession = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+        this.shardedUserMapper = shardedUserMapper;
+        this.chunkSize = chunkSize;
+        this.maxItems = maxItems;
+    }
+    
+    public int getMaxItems() {
+        return maxItems;
+    }
+    
+    /**
+     * Reads and locks rows through the batch session, for batch operations that need the
+     * current rows before writing them (a transaction cannot mix executors).
+     */
+    public List<User> findByIdsForUpdate(List<Long> ids) {
+        ShardedUserMapper sharded = shardedUserMapper.getIfAvailable();
+        return sharded != null ? sharded.findByIdsForUpdate(ids) : batchMapper().findByIdsForUpdate(ids);
+    }
+    
+    public List<User> findByUsernames(List<String> usernames) {
+        ShardedUserMapper sharded = shardedUserMapper.getIfAvailable();
+        return sharded != null ? sharded.findByUsernames(usernames) : batchMapper().findByUsernames(usernames);
+    }
+    
+    /**
+     * Saves an import checkpoint and returns whether it moved forward.
+     */
+    public boolean advanceImport(UserImport userImport) {
+        UserImportMapper importMapper = batchSession.getMapper(UserImportMapper.class);
+        return execute(Collections.singletonList(userImport), importMapper::advance)[0] > 0;
+    }
+    
+    public int[] appendChanges(List<UserChange> changes) {
+        if (changes.isEmpty()) {
+            // reserving would lock the sequence row for nothing
+            return new int[0];
+        }
+        UserChangeMapper changeMapper = batchSession.getMapper(UserChangeMapper.class);
+        long seq = changeMapper.reserveSequence(changes.size()) - changes.size();
+        for (UserChange change : changes) {
+            change.setSeq(++seq);
+        }
+        return execute(changes, changeMapper::insert);
+    }
+    
+    /**
+     * Inserts users whose ids are already assigned, so the batch needs no generated-key reads.
+     */
+    public int[] insertAll(List<User> users) {
+        ShardedUserMapper sharded = shardedUserMapper.getIfAvailable();
+        return sharded != null ? sharded.insertAll(users) : execute(users, batchMapper()::insertWithId);
+    }
+    
+    /**
+     * Updates users that carry the version read by {@link #findByIdsForUpdate}. With sharded
+     * storage those rows were not locked, so a row that changed since is counted 0.
+     */
+    public int[] updateAll(List<User> users) {
+        ShardedUserMapper sharded = shardedUserMapper.getIfAvailable();
+        return sharded != null ? sharded.updateAll(users) : execute(users, batchMapper()::update);
+    }
+    
+    /**
+     * Deletes by id; {@code current} holds the rows read by {@link #findByIdsForUpdate}. With
+     * sharded storage those rows were not locked, so only ids read at their current version are
+     * deleted and the others are counted 0.
+     */
+    public int[] deleteAll(List<Long> ids, Map<Long, User> current) {
+        ShardedUserMapper sharded = shardedUserMapper.getIfAvailable();
+        if (sharded == null) {
+            return execute(ids, batchMapper()::deleteById);
+        }
+        List<User> rows = new ArrayList<>(ids.size());
+        List<Integer> positions = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            User row = current.get(ids.get(i));
+            if (row != null) {
+                rows.add(row);
+                positions.add(i);
+            }
+        }
+        int[] rowCounts = sharded.deleteAll(rows);
+        int[] counts = new int[ids.size()];
+        for (int i = 0; i < positions.size(); i++) {
+            counts[positions.get(i)] = rowCounts[i];
+        }
+        return counts;
+    }
+    
+    private UserMapper batchMapper() {
+        return batchSession.getMapper(UserMapper.class);
+    }
+    
+    private <T> int[] execute(List<T> items, Consumer<T> statement) {
+        int[] counts = new int[items.size()];
+        int position = 0;
+        for (int start = 0; start < items.size(); start += chunkSize) {
+            int end = Math.min(start + chunkSize, items.size());
+            for (int i = start; i < end; i++) {
+                statement.accept(items.get(i));
+            }
+            for (BatchResult result : batchSession.flushStatements()) {
+                for (int count : result.getUpdateCounts()) {
+                    // some drivers only report that the statement ran, not how many rows it touched
+                    counts[position++] = count == Statement.SUCCESS_NO_INFO ? 1 : count;
+                }
+            }
+        }
+        return counts;
+    }
+}
\ No newline at end of file
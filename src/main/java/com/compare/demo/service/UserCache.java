@@ -0,0 +1,304 @@
+package com.compare.demo.service;
+
+import com.compare.demo.dto.UserDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-process cache of users keyed by id and by username.
+ *
+ * Loads are guarded by an invalidation stamp: callers take {@link #stamp()} before reading
+ * the database and {@link #put(long, UserDTO)} drops the value if any invalidation happened
+ * in between, so a slow reader can never resurrect a row that was updated or deleted.
+ *
+ * With a read replica ({@code user.datasource.replica.url}) a read that starts after a write
+ * committed can still return the old row from the replica, so keys written within the last
+ * {@code user.datasource.replica.read-your-writes-window} are not cached at all.
+ */
+@Component
+public class UserCache implements MeterBinder {
+    
+    private final ConcurrentHashMap<Long, Entry> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Entry> byUsername = new ConcurrentHashMap<>();
+    // id -> username it is cached under, so invalidating an id finds the key after a rename
+    private final ConcurrentHashMap<Long, String> usernameById = new ConcurrentHashMap<>();
+    // entries by id in the order they were cached, which with one ttl is also the order they
+    // expire in, so the eldest is the one to evict; guarded by itself
+    private final LinkedHashMap<Long, Entry> order = new LinkedHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // ids and usernames -> System.nanoTime() until which they must not be cached
+    private final ConcurrentHashMap<Object, Long> recentWrites = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long replicaLagNanos;
+    
+    public UserCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, Duration.ZERO);
+    }
+    
+    public UserCache(int maxSize, Duration ttl, Duration replicaLag) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("user.cache.max-size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.replicaLagNanos = replicaLag.toNanos();
+    }
+    
+    @Autowired
+    public UserCache(@Value("${user.cache.max-size:10000}") int maxSize,
+                     @Value("${user.cache.ttl:5m}") Duration ttl,
+                     @Value("${user.datasource.replica.url:}") String replicaUrl,
+                     @Value("${user.datasource.replica.read-your-writes-window:2s}") Duration replicaLag) {
+        this(maxSize, ttl, replicaUrl.isEmpty() ? Duration.ZERO : replicaLag);
+    }
+    
+    public UserDTO getById(Long id) {
+        return id != null ? lookup(byId, id) : null;
+    }
+    
+    public UserDTO getByUsername(String username) {
+        return username != null ? lookup(byUsername, username) : null;
+    }
+    
+    public long stamp() {
+        return invalidations.get();
+    }
+    
+    public void put(long stamp, UserDTO user) {
+        if (user == null || user.getId() == null || invalidations.get() != stamp) {
+            return;
+        }
+        if (replicaLagNanos > 0 && (writtenRecently(user.getId()) || writtenRecently(user.getUsername()))) {
+            return;
+        }
+        Entry entry = new Entry(copy(user), System.nanoTime() + ttlNanos);
+        byId.put(user.getId(), entry);
+        if (user.getUsername() != null) {
+            byUsername.put(user.getUsername(), entry);
+            String previous = usernameById.put(user.getId(), user.getUsername());
+            if (previous != null && !previous.equals(user.getUsername())) {
+                byUsername.remove(previous);
+            }
+        }
+        if (invalidations.get() != stamp) {
+            // an invalidation raced with this put; undo it rather than keep a possibly stale row
+            byId.remove(user.getId(), entry);
+            if (user.getUsername() != null) {
+                byUsername.remove(user.getUsername(), entry);
+                unlinkUsername(entry);
+            }
+            return;
+        }
+        evictIfNecessary(user.getId(), entry);
+    }
+    
+    public void invalidate(Long id, String username) {
+        invalidateAll(id != null ? Collections.singleton(id) : Collections.<Long>emptySet(),
+                username != null ? Collections.singleton(username) : Collections.<String>emptySet());
+    }
+    
+    public void invalidateAll(Collection<Long> ids, Collection<String> usernames) {
+        Set<Long> idSet = ids instanceof Set ? (Set<Long>) ids : new HashSet<>(ids);
+        evict(idSet, usernames);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // readers outside the writing transaction can still load the old row until it commits
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(idSet, usernames);
+                }
+            });
+        }
+    }
+    
+    public void clear() {
+        invalidations.incrementAndGet();
+        byId.clear();
+        byUsername.clear();
+        usernameById.clear();
+        synchronized (order) {
+            order.clear();
+        }
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    public long getEvictions() {
+        return evictions.sum();
+    }
+    
+    public int size() {
+        return byId.size();
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cache.size", this, UserCache::size)
+                .tag("cache", "users")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this, UserCache::getHits)
+                .tags("cache", "users", "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this, UserCache::getMisses)
+                .tags("cache", "users", "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", this, UserCache::getEvictions)
+                .tag("cache", "users")
+                .register(registry);
+        FunctionCounter.builder("cache.invalidations", invalidations, AtomicLong::get)
+                .tag("cache", "users")
+                .register(registry);
+    }
+    
+    private <K> UserDTO lookup(ConcurrentHashMap<K, Entry> map, K key) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            if (map.remove(key, entry)) {
+                unlinkUsername(entry);
+                if (map == byId) {
+                    forget(entry);
+                }
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(entry.user);
+    }
+    
+    private void evict(Set<Long> ids, Collection<String> usernames) {
+        invalidations.incrementAndGet();
+        if (replicaLagNanos > 0) {
+            rememberWrites(ids, usernames);
+        }
+        for (Long id : ids) {
+            Entry removed = byId.remove(id);
+            if (removed != null) {
+                forget(removed);
+            }
+            // catches the old username key after a rename the caller did not know about
+            String cachedUsername = usernameById.remove(id);
+            if (cachedUsername != null) {
+                byUsername.remove(cachedUsername);
+            }
+        }
+        for (String username : usernames) {
+            if (username != null) {
+                Entry removed = byUsername.remove(username);
+                if (removed != null) {
+                    unlinkUsername(removed);
+                }
+            }
+        }
+    }
+    
+    private void rememberWrites(Set<Long> ids, Collection<String> usernames) {
+        long now = System.nanoTime();
+        Long until = now + replicaLagNanos;
+        for (Long id : ids) {
+            recentWrites.put(id, until);
+        }
+        for (String username : usernames) {
+            if (username != null) {
+                recentWrites.put(username, until);
+            }
+        }
+        if (recentWrites.size() > maxSize) {
+            recentWrites.values().removeIf(expiry -> now - expiry >= 0);
+        }
+    }
+    
+    private boolean writtenRecently(Object key) {
+        Long until = key != null ? recentWrites.get(key) : null;
+        return until != null && System.nanoTime() - until < 0;
+    }
+    
+    // evicts the eldest entries while more than max-size are cached, at O(1) per put
+    private void evictIfNecessary(Long id, Entry entry) {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (order) {
+            order.remove(id);
+            order.put(id, entry);
+            for (Iterator<Entry> it = order.values().iterator(); order.size() > maxSize; ) {
+                evicted.add(it.next());
+                it.remove();
+            }
+        }
+        for (Entry eldest : evicted) {
+            boolean removed = byId.remove(eldest.user.getId(), eldest);
+            String username = eldest.user.getUsername();
+            removed |= username != null && byUsername.remove(username, eldest);
+            if (removed) {
+                unlinkUsername(eldest);
+                evictions.increment();
+            }
+        }
+    }
+    
+    private void forget(Entry entry) {
+        synchronized (order) {
+            order.remove(entry.user.getId(), entry);
+        }
+    }
+    
+    // keeps usernameById to the usernames still cached; a no-op for entries removed from byId only
+    private void unlinkUsername(Entry entry) {
+        String username = entry.user.getUsername();
+        if (username != null && byUsername.get(username) != entry) {
+            usernameById.remove(entry.user.getId(), username);
+        }
+    }
+    
+    private static UserDTO copy(UserDTO user) {
+        return new UserDTO(user.getId(), user.getUsername(), user.getEmail(), user.getVersion(), user.getUpdatedAt());
+    }
+    
+    private static final class Entry {
+        private final UserDTO user;
+        private final long expiresAt;
+        
+        private Entry(UserDTO user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+        
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,217 @@
+package com.compare.demo.service;
+
+import com.compare.demo.entity.UserChange;
+import com.compare.demo.mapper.UserChangeMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transactional outbox dispatcher: delivers {@code user_changes} to the configured
+ * {@link UserChangeSink} in sequence order, in batches of {@code user.outbox.batch-size}, off
+ * the request path. Its position is saved in {@code user_change_dispatch} after each delivered
+ * batch; a failed batch is retried with exponential backoff up to {@code user.outbox.max-backoff}.
+ *
+ * The dispatcher wakes up when a change commits on this instance and otherwise polls every
+ * {@code user.outbox.poll-interval}. Each batch is read, delivered and saved in one transaction
+ * holding the lock on the {@code user_change_dispatch} row, so with several instances only one
+ * delivers at a time and the others pick up from the position it saved.
+ *
+ * Instances without a sink leave the position alone, so in a mixed deployment they do not
+ * release changes the others still have to deliver. Once the sink is removed everywhere, clear
+ * {@code dispatched_through} by hand to let retention purge them again; a position found
+ * cleared while dispatching restarts from the oldest change still kept.
+ */
+@Component
+public class UserChangeDispatcher implements MeterBinder, DisposableBean {
+    
+    private static final Logger log = LoggerFactory.getLogger(UserChangeDispatcher.class);
+    
+    private final UserChangeMapper userChangeMapper;
+    private final UserChangeLog userChangeLog;
+    private final PlatformTransactionManager transactionManager;
+    private final UserChangeSink sink;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration maxBackoff;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    // only touched on the scheduler thread
+    private int consecutiveFailures;
+    private volatile long backlog;
+    private volatile LocalDateTime oldestPendingAt;
+    
+    @Autowired
+    public UserChangeDispatcher(UserChangeMapper userChangeMapper,
+                                UserChangeLog userChangeLog,
+                                PlatformTransactionManager transactionManager,
+                                ObjectProvider<UserChangeSink> sink,
+                                @Value("${user.outbox.batch-size:500}") int batchSize,
+                                @Value("${user.outbox.poll-interval:1s}") Duration pollInterval,
+                                @Value("${user.outbox.max-backoff:1m}") Duration maxBackoff) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("user.outbox.batch-size must be positive");
+        }
+        this.userChangeMapper = userChangeMapper;
+        this.userChangeLog = userChangeLog;
+        this.transactionManager = transactionManager;
+        this.sink = sink.getIfAvailable();
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.maxBackoff = maxBackoff;
+        this.scheduler = this.sink != null
+                ? Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("user-outbox-"))
+                : null;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (sink == null) {
+            return;
+        }
+        userChangeMapper.startDispatch();
+        scheduler.execute(this::cycle);
+    }
+    
+    public long getDispatched() {
+        return dispatched.sum();
+    }
+    
+    public long getFailures() {
+        return failures.sum();
+    }
+    
+    public long getBacklog() {
+        return backlog;
+    }
+    
+    public double getLagSeconds() {
+        LocalDateTime oldest = oldestPendingAt;
+        return oldest != null ? Math.max(0, Duration.between(oldest, LocalDateTime.now()).toMillis() / 1000.0) : 0;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.outbox.dispatched", this, UserChangeDispatcher::getDispatched)
+                .description("User changes delivered to the outbox sink")
+                .register(registry);
+        FunctionCounter.builder("user.outbox.failures", this, UserChangeDispatcher::getFailures)
+                .description("Outbox batches the sink failed to accept")
+                .register(registry);
+        Gauge.builder("user.outbox.backlog", this, UserChangeDispatcher::getBacklog)
+                .description("Committed user changes not yet delivered")
+                .register(registry);
+        Gauge.builder("user.outbox.lag", this, UserChangeDispatcher::getLagSeconds)
+                .description("Age of the oldest undelivered user change")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+    
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+    
+    /**
+     * Delivers the next batch and returns its size; a sink failure is rethrown and leaves the
+     * saved position where it was.
+     */
+    int dispatchBatch() throws Exception {
+        TransactionStatus transaction = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+        int sent;
+        try {
+            sent = dispatchLockedBatch();
+        } catch (Exception | Error e) {
+            transactionManager.rollback(transaction);
+            throw e;
+        }
+        transactionManager.commit(transaction);
+        return sent;
+    }
+    
+    private int dispatchLockedBatch() throws Exception {
+        Long saved = userChangeMapper.lockDispatchedThrough();
+        long through = saved != null ? saved : userChangeMapper.findPrunedThrough();
+        List<UserChange> changes = userChangeMapper.findSince(through, batchSize);
+        if (!changes.isEmpty()) {
+            oldestPendingAt = changes.get(0).getChangedAt();
+            sink.send(changes);
+            through = changes.get(changes.size() - 1).getSeq();
+            dispatched.add(changes.size());
+        }
+        if (saved == null || !changes.isEmpty()) {
+            userChangeMapper.advanceDispatchedThrough(through);
+        }
+        backlog = userChangeMapper.findLastSeq() - through;
+        if (backlog == 0) {
+            oldestPendingAt = null;
+        } else if (changes.size() < batchSize) {
+            List<UserChange> next = userChangeMapper.findSince(through, 1);
+            // a reserved seq may not have committed yet
+            oldestPendingAt = next.isEmpty() ? null : next.get(0).getChangedAt();
+        }
+        return changes.size();
+    }
+    
+    long nextBackoffMillis() {
+        int doublings = Math.min(consecutiveFailures - 1, 30);
+        return Math.min(maxBackoff.toMillis(), pollInterval.toMillis() << doublings);
+    }
+    
+    private void cycle() {
+        // subscribe before reading, so a change committed during the batch still wakes us
+        CompletableFuture<Void> nextChange = userChangeLog.nextChange(pollInterval);
+        int sent;
+        try {
+            sent = dispatchBatch();
+            consecutiveFailures = 0;
+        } catch (PessimisticLockingFailureException e) {
+            // another instance is delivering; it saves the position before releasing the row
+            nextChange.cancel(false);
+            log.debug("User change dispatch is locked by another instance, retrying in {}", pollInterval);
+            scheduler.schedule(this::cycle, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+            return;
+        } catch (Exception e) {
+            nextChange.cancel(false);
+            failures.increment();
+            consecutiveFailures++;
+            long backoff = nextBackoffMillis();
+            log.warn("Dispatching user changes failed {} time(s) in a row, retrying in {} ms", consecutiveFailures, backoff, e);
+            scheduler.schedule(this::cycle, backoff, TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (sent == batchSize) {
+            nextChange.cancel(false);
+            scheduler.execute(this::cycle);
+        } else {
+            nextChange.thenRunAsync(this::cycle, scheduler);
+        }
+    }
+}
\ No newline at end of file
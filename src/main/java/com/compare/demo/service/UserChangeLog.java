@@ -0,0 +1,209 @@
+package com.compare.demo.service;
+
+import com.compare.demo.entity.UserChange;
+import com.compare.demo.mapper.UserChangeMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends user mutations to the {@code user_changes} feed inside the writing transaction and
+ * wakes long-polling readers once that transaction commits. Changes older than
+ * {@code user.changes.retention} are purged every {@code user.changes.purge-interval}.
+ *
+ * Feed order comes from the single {@code user_change_sequence} row, whose lock is held until
+ * commit so that sequence numbers become visible in order. The changes of a transaction are
+ * therefore only buffered while it runs and get their numbers and rows just before it commits:
+ * concurrent writers queue on that lock for the length of a commit, not of their whole
+ * transaction. That still caps the writes of all instances together at one commit at a time.
+ *
+ * Wake-ups are in-process: a reader waiting on this instance only hears about writes made
+ * through it, and otherwise sees them when its wait times out.
+ */
+@Component
+public class UserChangeLog implements DisposableBean {
+    
+    private static final Logger log = LoggerFactory.getLogger(UserChangeLog.class);
+    
+    private final UserChangeMapper userChangeMapper;
+    private final UserBatchWriter userBatchWriter;
+    private final Duration retention;
+    private final Duration maxWait;
+    private final ScheduledExecutorService scheduler;
+    private final Set<CompletableFuture<Void>> waiters = ConcurrentHashMap.newKeySet();
+    
+    @Autowired
+    public UserChangeLog(UserChangeMapper userChangeMapper,
+                         UserBatchWriter userBatchWriter,
+                         @Value("${user.changes.retention:7d}") Duration retention,
+                         @Value("${user.changes.purge-interval:1h}") Duration purgeInterval,
+                         @Value("${user.changes.max-wait:8s}") Duration maxWait) {
+        this.userChangeMapper = userChangeMapper;
+        this.userBatchWriter = userBatchWriter;
+        this.retention = retention;
+        this.maxWait = maxWait;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("user-changes-"));
+        long purgeMillis = purgeInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, purgeMillis, purgeMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    public void record(UserChange change) {
+        PendingChanges pending = pendingChanges();
+        if (pending != null) {
+            pending.changes.add(change);
+            return;
+        }
+        change.setSeq(userChangeMapper.reserveSequence(1));
+        userChangeMapper.insert(change);
+        wakeWaiters();
+    }
+    
+    /**
+     * Appends the changes of a batch operation; must run in the transaction that made them,
+     * which writes them through {@link UserBatchWriter}.
+     */
+    public void recordAll(List<UserChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        PendingChanges pending = pendingChanges();
+        if (pending != null) {
+            pending.changes.addAll(changes);
+            pending.batch = true;
+            return;
+        }
+        userBatchWriter.appendChanges(changes);
+        wakeWaiters();
+    }
+    
+    public List<UserChange> changesSince(long since, int limit) {
+        List<UserChange> changes = userChangeMapper.findSince(since, limit);
+        // checked after the read: a purge in between may have deleted rows the page skipped over
+        long prunedThrough = userChangeMapper.findPrunedThrough();
+        if (since < prunedThrough) {
+            throw new UserChangesExpiredException(since, prunedThrough);
+        }
+        return changes;
+    }
+    
+    /**
+     * Returns a future completed when the next change commits or after {@code timeout} (capped
+     * at {@code user.changes.max-wait}), whichever comes first. Take it before reading the feed
+     * so that a commit between the read and the wait is not missed; cancel it if unused.
+     */
+    public CompletableFuture<Void> nextChange(Duration timeout) {
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        long waitMillis = Math.min(timeout.toMillis(), maxWait.toMillis());
+        ScheduledFuture<?> timer = scheduler.schedule(() -> waiter.complete(null), waitMillis, TimeUnit.MILLISECONDS);
+        waiters.add(waiter);
+        waiter.whenComplete((ignored, e) -> {
+            waiters.remove(waiter);
+            timer.cancel(false);
+        });
+        return waiter;
+    }
+    
+    public int getWaiters() {
+        return waiters.size();
+    }
+    
+    public int purge() {
+        userChangeMapper.advancePrunedThrough(LocalDateTime.now().minus(retention));
+        return userChangeMapper.deletePruned();
+    }
+    
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+    
+    private void purgeQuietly() {
+        try {
+            purge();
+        } catch (RuntimeException e) {
+            // retried on the next run; a failure must not cancel the schedule
+            log.warn("Purging user changes older than the retention failed", e);
+        }
+    }
+    
+    // the changes recorded so far by the current transaction, or null outside of one
+    private PendingChanges pendingChanges() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        // looked up among the synchronizations, which a REQUIRES_NEW transaction suspends
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges && ((PendingChanges) synchronization).owner() == this) {
+                return (PendingChanges) synchronization;
+            }
+        }
+        PendingChanges pending = new PendingChanges();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+    
+    private void append(List<UserChange> changes, boolean batch) {
+        if (batch) {
+            // the transaction already runs on the batch executor and cannot switch back
+            userBatchWriter.appendChanges(changes);
+            return;
+        }
+        long seq = userChangeMapper.reserveSequence(changes.size()) - changes.size();
+        for (UserChange change : changes) {
+            change.setSeq(++seq);
+            userChangeMapper.insert(change);
+        }
+    }
+    
+    private void wakeWaiters() {
+        for (CompletableFuture<Void> waiter : Collections.unmodifiableSet(waiters)) {
+            waiter.complete(null);
+        }
+    }
+    
+    private final class PendingChanges implements TransactionSynchronization {
+        
+        private final List<UserChange> changes = new ArrayList<>();
+        private boolean batch;
+        
+        @Override
+        public int getOrder() {
+            // before MyBatis flushes and closes the transaction's session
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+        
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            append(changes, batch);
+        }
+        
+        @Override
+        public void afterCommit() {
+            wakeWaiters();
+        }
+        
+        private UserChangeLog owner() {
+            return UserChangeLog.this;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.compare.demo.service;
+
+import com.compare.demo.entity.UserChange;
+
+import java.util.List;
+
+/**
+ * Destination of the user change outbox, fed by {@link UserChangeDispatcher}.
+ *
+ * Batches arrive in sequence order, so changes to one user are never reordered. Delivery is
+ * at least once: a batch that throws is sent again, and so is a batch whose position was not
+ * saved before a restart, so implementations should tolerate (or deduplicate by seq) repeats.
+ */
+public interface UserChangeSink {
+
+    void send(List<UserChange> changes) throws Exception;
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.compare.demo.service;
+
+public class UserChangesExpiredException extends RuntimeException {
+    
+    private final long since;
+    private final long prunedThrough;
+    
+    public UserChangesExpiredException(long since, long prunedThrough) {
+        super("Changes after " + since + " are no longer retained, oldest available follows " + prunedThrough);
+        this.since = since;
+        this.prunedThrough = prunedThrough;
+    }
+    
+    public long getSince() {
+        return since;
+    }
+    
+    public long getPrunedThrough() {
+        return prunedThrough;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,377 @@
+package com.compare.demo.service;
+
+import com.compare.demo.entity.User;
+import com.compare.demo.mapper.UserMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk export of the users table as gzip-compressed NDJSON or CSV, streamed from a
+ * {@link UserMapper} cursor in id order to any NIO channel, so memory does not grow with the
+ * table. Exports read in a read-only transaction, which goes to the read replica when one is
+ * configured, and are paced to {@code user.export.max-rows-per-second}.
+ *
+ * With {@code user.export.directory} set, a file export also runs on {@code user.export.cron}.
+ * Incremental file exports only contain users updated since the previous file's watermark,
+ * kept in {@value #WATERMARK_FILE} in that directory. Deletes are not exported; the change
+ * feed has them.
+ */
+@Component
+public class UserExporter implements MeterBinder, DisposableBean {
+    
+    public enum Format {
+        NDJSON,
+        CSV;
+        
+        public String getExtension() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+        
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("export format must be ndjson or csv");
+        }
+    }
+    
+    public static final String WATERMARK_FILE = "users.watermark";
+    
+    private static final Logger log = LoggerFactory.getLogger(UserExporter.class);
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    // rows between checks of the throttle
+    private static final int THROTTLE_STEP = 256;
+    
+    private final UserMapper userMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final int maxRowsPerSecond;
+    private final int maxConcurrent;
+    private final Semaphore slots;
+    private final Path directory;
+    private final Format fileFormat;
+    private final boolean incremental;
+    private final CronExpression cron;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder exported = new LongAdder();
+    
+    @Autowired
+    public UserExporter(UserMapper userMapper,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${user.export.max-rows-per-second:0}") int maxRowsPerSecond,
+                        @Value("${user.export.max-concurrent:1}") int maxConcurrent,
+                        @Value("${user.export.directory:}") String directory,
+                        @Value("${user.export.format:ndjson}") String fileFormat,
+                        @Value("${user.export.incremental:true}") boolean incremental,
+                        @Value("${user.export.cron:0 0 2 * * *}") String cron) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("user.export.max-concurrent must be positive");
+        }
+        this.userMapper = userMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.maxConcurrent = maxConcurrent;
+        this.slots = new Semaphore(maxConcurrent);
+        this.directory = directory.isEmpty() ? null : Paths.get(directory);
+        this.fileFormat = Format.of(fileFormat);
+        this.incremental = incremental;
+        this.cron = this.directory != null && !cron.isEmpty() ? CronExpression.parse(cron) : null;
+        this.scheduler = this.cron != null
+                ? Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("user-export-"))
+                : null;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (cron != null) {
+            scheduleNext();
+        }
+    }
+    
+    /**
+     * Writes the users updated at or after {@code updatedSince} (every user if it is null) in id
+     * order to {@code channel}, gzip-compressed, and closes it. Returns the number of rows.
+     *
+     * {@code updated_at} is stamped before a write commits, so a write in flight when the export
+     * starts may land just behind it; incremental consumers should overlap their watermarks and
+     * keep the highest version of each id.
+     *
+     * @throws RejectedExecutionException if {@code user.export.max-concurrent} exports are running
+     */
+    public long export(Format format, LocalDateTime updatedSince, WritableByteChannel channel) throws IOException {
+        if (!slots.tryAcquire()) {
+            throw new RejectedExecutionException("at most " + maxConcurrent + " exports may run at once");
+        }
+        try (RowWriter writer = rowWriter(format, new GZIPOutputStream(Channels.newOutputStream(channel), GZIP_BUFFER_SIZE))) {
+            writer.writeHeader();
+            Long rows = readOnlyTransaction.execute(status -> {
+                try (Cursor<User> cursor = userMapper.streamUpdatedSince(updatedSince)) {
+                    return writeRows(cursor, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return rows != null ? rows : 0;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            slots.release();
+        }
+    }
+    
+    /**
+     * Writes an export file into {@code user.export.directory}; incremental exports only contain
+     * users updated since the watermark of the previous one. The file appears under its final
+     * name only once complete. Returns its path.
+     */
+    public Path exportToDirectory() throws IOException {
+        if (directory == null) {
+            throw new IllegalStateException("user.export.directory is not set");
+        }
+        Files.createDirectories(directory);
+        Path watermarkFile = directory.resolve(WATERMARK_FILE);
+        LocalDateTime since = incremental && Files.exists(watermarkFile)
+                ? LocalDateTime.parse(new String(Files.readAllBytes(watermarkFile), StandardCharsets.UTF_8).trim())
+                : null;
+        LocalDateTime watermark = LocalDateTime.now();
+        String name = "users-" + FILE_TIMESTAMP.format(watermark) + (since != null ? "-incremental" : "")
+                + "." + fileFormat.getExtension() + ".gz";
+        Path target = directory.resolve(name);
+        Path partial = directory.resolve(name + ".part");
+        long rows;
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            rows = export(fileFormat, since, channel);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        Path watermarkPartial = directory.resolve(WATERMARK_FILE + ".part");
+        Files.write(watermarkPartial, watermark.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(watermarkPartial, watermarkFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.info("Exported {} users to {}", rows, target);
+        return target;
+    }
+    
+    public long getExported() {
+        return exported.sum();
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.export.rows", this, UserExporter::getExported)
+                .description("Rows written by bulk exports")
+                .register(registry);
+    }
+    
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+    
+    private long writeRows(Cursor<User> cursor, RowWriter writer) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        for (User user : cursor) {
+            writer.write(user);
+            if (++rows % THROTTLE_STEP == 0) {
+                exported.add(THROTTLE_STEP);
+                throttle(rows, start);
+            }
+        }
+        exported.add(rows % THROTTLE_STEP);
+        return rows;
+    }
+    
+    private void throttle(long rows, long start) throws InterruptedIOException {
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+        long ahead = rows * TimeUnit.SECONDS.toNanos(1) / maxRowsPerSecond - (System.nanoTime() - start);
+        if (ahead > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(ahead);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("export interrupted after " + rows + " rows");
+            }
+        }
+    }
+    
+    private void scheduleNext() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = cron.next(now);
+        if (next == null) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            try {
+                exportToDirectory();
+            } catch (Exception e) {
+                log.warn("Scheduled user export to {} failed", directory, e);
+            } finally {
+                scheduleNext();
+            }
+        }, Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    private RowWriter rowWriter(Format format, OutputStream out) throws IOException {
+        return format == Format.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(jsonFactory.createGenerator(out));
+    }
+    
+    /**
+     * Writes rows with their timestamps, which UserDTO leaves out, and closes the stream when closed.
+     */
+    private interface RowWriter extends Closeable {
+        
+        void writeHeader() throws IOException;
+        
+        void write(User user) throws IOException;
+    }
+    
+    private static final class NdjsonRowWriter implements RowWriter {
+        
+        private final JsonGenerator generator;
+        
+        NdjsonRowWriter(JsonGenerator generator) {
+            this.generator = generator;
+            generator.setRootValueSeparator(null);
+        }
+        
+        @Override
+        public void writeHeader() {
+        }
+        
+        @Override
+        public void write(User user) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", user.getId());
+            generator.writeStringField("username", user.getUsername());
+            generator.writeStringField("email", user.getEmail());
+            generator.writeStringField("createdAt", timestamp(user.getCreatedAt()));
+            generator.writeStringField("updatedAt", timestamp(user.getUpdatedAt()));
+            if (user.getVersion() != null) {
+                generator.writeNumberField("version", user.getVersion());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+    
+    private static final class CsvRowWriter implements RowWriter {
+        
+        private final Writer writer;
+        
+        CsvRowWriter(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+        
+        @Override
+        public void writeHeader() throws IOException {
+            writer.write("id,username,email,created_at,updated_at,version\n");
+        }
+        
+        @Override
+        public void write(User user) throws IOException {
+            writer.write(String.valueOf(user.getId()));
+            writer.write(',');
+            writeField(user.getUsername());
+            writer.write(',');
+            writeField(user.getEmail());
+            writer.write(',');
+            writeField(timestamp(user.getCreatedAt()));
+            writer.write(',');
+            writeField(timestamp(user.getUpdatedAt()));
+            writer.write(',');
+            if (user.getVersion() != null) {
+                writer.write(String.valueOf(user.getVersion()));
+            }
+            writer.write('\n');
+        }
+        
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+        
+        // quoted as RFC 4180 only when needed, which is the rare case for these columns
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+    
+    private static String timestamp(LocalDateTime time) {
+        return time != null ? time.toString() : null;
+    }
+}
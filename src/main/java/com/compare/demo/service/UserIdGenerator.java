@@ -0,0 +1,12 @@
+package com.compare.demo.service;
+
+/**
+ * Source of ids for new users, assigned before the insert so that no statement has to read a
+ * generated key back. Ids must be unique across every instance writing to the same users and
+ * should grow with time, so inserts append to the primary key index. Declare another bean of
+ * this type as {@code @Primary} to replace {@link SnowflakeUserIdGenerator}.
+ */
+public interface UserIdGenerator {
+    
+    long nextId();
+}
\ No newline at end of file
@@ -0,0 +1,195 @@
+package com.compare.demo.service;
+
+import com.compare.demo.dto.UserDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads bulk import rows one line at a time, so memory does not grow with the input. CSV
+ * input starts with a header naming the {@code username} and {@code email} columns; NDJSON
+ * has one user object per line. Rows are numbered by line from 1, not counting the CSV header;
+ * blank lines are skipped but keep their numbers, so a checkpoint always means the same rows.
+ */
+public abstract class UserImportReader implements Closeable {
+    
+    private final BufferedReader reader;
+    private long lineNumber;
+    
+    UserImportReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+    
+    public static UserImportReader csv(Reader reader) throws IOException {
+        return new Csv(reader);
+    }
+    
+    public static UserImportReader ndjson(Reader reader, ObjectMapper objectMapper) {
+        return new Ndjson(reader, objectMapper.readerFor(UserDTO.class));
+    }
+    
+    /**
+     * Returns the next non-blank row, or null at the end of the input. A row that cannot be
+     * parsed is returned with an error instead of a user.
+     */
+    public Row next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!line.trim().isEmpty()) {
+                return parse(lineNumber, line);
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    abstract Row parse(long number, String line);
+    
+    BufferedReader reader() {
+        return reader;
+    }
+    
+    public static final class Row {
+        
+        private final long number;
+        private final UserDTO user;
+        private final String error;
+        
+        private Row(long number, UserDTO user, String error) {
+            this.number = number;
+            this.user = user;
+            this.error = error;
+        }
+        
+        public static Row of(long number, UserDTO user) {
+            return new Row(number, user, null);
+        }
+        
+        public static Row invalid(long number, String error) {
+            return new Row(number, null, error);
+        }
+        
+        public long getNumber() {
+            return number;
+        }
+        
+        public UserDTO getUser() {
+            return user;
+        }
+        
+        public String getError() {
+            return error;
+        }
+    }
+    
+    private static final class Csv extends UserImportReader {
+        
+        private final int usernameColumn;
+        private final int emailColumn;
+        private final int columns;
+        
+        Csv(Reader reader) throws IOException {
+            super(reader);
+            String header = reader().readLine();
+            List<String> names = header != null ? fields(header.replace("\uFEFF", "")) : null;
+            int username = -1;
+            int email = -1;
+            for (int i = 0; names != null && i < names.size(); i++) {
+                String name = names.get(i).toLowerCase(Locale.ROOT);
+                if (name.equals("username")) {
+                    username = i;
+                } else if (name.equals("email")) {
+                    email = i;
+                }
+            }
+            if (username < 0 || email < 0) {
+                throw new IllegalArgumentException("CSV input must start with a header naming the username and email columns");
+            }
+            this.usernameColumn = username;
+            this.emailColumn = email;
+            this.columns = names.size();
+        }
+        
+        @Override
+        Row parse(long number, String line) {
+            List<String> fields = fields(line);
+            if (fields == null) {
+                // a quoted field spanning lines would make row numbers depend on the content
+                return Row.invalid(number, "unterminated quoted field");
+            }
+            if (fields.size() != columns) {
+                return Row.invalid(number, "expected " + columns + " columns but found " + fields.size());
+            }
+            return Row.of(number, new UserDTO(null, fields.get(usernameColumn), fields.get(emailColumn)));
+        }
+        
+        /**
+         * Splits an RFC 4180 line, trimming unquoted fields; returns null if a quote is left open.
+         */
+        static List<String> fields(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean wasQuoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                    wasQuoted = true;
+                } else if (c == ',') {
+                    fields.add(wasQuoted ? field.toString() : field.toString().trim());
+                    field.setLength(0);
+                    wasQuoted = false;
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                return null;
+            }
+            fields.add(wasQuoted ? field.toString() : field.toString().trim());
+            return fields;
+        }
+    }
+    
+    private static final class Ndjson extends UserImportReader {
+        
+        private final ObjectReader userReader;
+        
+        Ndjson(Reader reader, ObjectReader userReader) {
+            super(reader);
+            this.userReader = userReader;
+        }
+        
+        @Override
+        Row parse(long number, String line) {
+            try {
+                return Row.of(number, userReader.readValue(line));
+            } catch (JsonProcessingException e) {
+                return Row.invalid(number, "malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+}
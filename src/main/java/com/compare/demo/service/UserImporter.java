@@ -0,0 +1,279 @@
+package com.compare.demo.service;
+
+import com.compare.demo.dto.UserBatchItemResult;
+import com.compare.demo.dto.UserDTO;
+import com.compare.demo.dto.UserImportEvent;
+import com.compare.demo.entity.UserImport;
+import com.compare.demo.mapper.UserImportMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk import pipeline. The calling thread parses rows into batches of
+ * {@code user.import.batch-size}, batches are validated in parallel on
+ * {@code user.import.validation-threads}, and the calling thread writes them in input order,
+ * one transaction per batch. Parsing stops while {@code user.import.max-pending-batches} are
+ * in flight, so memory is bounded by the batch settings rather than by the input.
+ *
+ * Format checks run in parallel; whether a username is taken is checked when its batch is
+ * written, after every earlier batch has committed. A named import saves its checkpoint with
+ * each batch and a rerun resumes after the last committed row.
+ */
+@Component
+public class UserImporter implements MeterBinder, DisposableBean {
+    
+    private static final Logger log = LoggerFactory.getLogger(UserImporter.class);
+    // deliberately loose: catches garbage, not every address RFC 5322 would reject
+    private static final Pattern EMAIL = Pattern.compile("[^@\\s]+@[^@\\s]+\\.[^@\\s]+");
+    private static final int MAX_LENGTH = 255;
+    
+    private final UserService userService;
+    private final UserImportMapper userImportMapper;
+    private final int batchSize;
+    private final int maxPendingBatches;
+    private final int maxConcurrent;
+    private final Semaphore slots;
+    private final ExecutorService validationPool;
+    private final LongAdder imported = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    
+    @Autowired
+    public UserImporter(UserService userService,
+                        UserImportMapper userImportMapper,
+                        @Value("${user.import.batch-size:1000}") int batchSize,
+                        @Value("${user.import.max-pending-batches:4}") int maxPendingBatches,
+                        @Value("${user.import.validation-threads:0}") int validationThreads,
+                        @Value("${user.import.max-concurrent:2}") int maxConcurrent) {
+        if (batchSize <= 0 || maxPendingBatches <= 0 || maxConcurrent <= 0) {
+            throw new IllegalArgumentException("user.import.batch-size, max-pending-batches and max-concurrent must be positive");
+        }
+        this.userService = userService;
+        this.userImportMapper = userImportMapper;
+        this.batchSize = batchSize;
+        this.maxPendingBatches = maxPendingBatches;
+        this.maxConcurrent = maxConcurrent;
+        this.slots = new Semaphore(maxConcurrent);
+        int threads = validationThreads > 0 ? validationThreads : Runtime.getRuntime().availableProcessors();
+        this.validationPool = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("user-import-"));
+    }
+    
+    /**
+     * Imports every row of {@code reader} after the checkpoint of {@code importId} (all rows if
+     * it is null). Rejected rows, progress after each batch and the final COMPLETED or FAILED
+     * event are passed to {@code events}; the final event is also returned.
+     *
+     * @throws RejectedExecutionException if {@code user.import.max-concurrent} imports are running
+     */
+    public UserImportEvent importUsers(String importId, UserImportReader reader, Consumer<UserImportEvent> events) {
+        if (!slots.tryAcquire()) {
+            throw new RejectedExecutionException("at most " + maxConcurrent + " imports may run at once");
+        }
+        try {
+            UserImport progress = start(importId);
+            Deque<Future<Batch>> pending = new ArrayDeque<>(maxPendingBatches);
+            UserImportEvent outcome;
+            try {
+                List<UserImportReader.Row> rows = new ArrayList<>(batchSize);
+                UserImportReader.Row row;
+                while ((row = reader.next()) != null) {
+                    if (row.getNumber() <= progress.getCommittedRows()) {
+                        // written by an earlier run of this import
+                        continue;
+                    }
+                    rows.add(row);
+                    if (rows.size() == batchSize) {
+                        if (pending.size() == maxPendingBatches) {
+                            progress = write(pending.poll(), progress, events);
+                        }
+                        pending.add(validate(rows));
+                        rows = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    pending.add(validate(rows));
+                }
+                while (!pending.isEmpty()) {
+                    progress = write(pending.poll(), progress, events);
+                }
+                outcome = UserImportEvent.completed(progress);
+            } catch (Exception e) {
+                for (Future<Batch> batch : pending) {
+                    batch.cancel(true);
+                }
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                log.warn("Import {} failed after row {}", importId, progress.getCommittedRows(), cause);
+                outcome = UserImportEvent.failed(progress, String.valueOf(cause.getMessage()));
+            }
+            events.accept(outcome);
+            return outcome;
+        } finally {
+            slots.release();
+        }
+    }
+    
+    public long getImported() {
+        return imported.sum();
+    }
+    
+    public long getRejected() {
+        return rejected.sum();
+    }
+    
+    public int getActive() {
+        return maxConcurrent - slots.availablePermits();
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.import.rows", this, UserImporter::getImported)
+                .description("Rows written by bulk imports")
+                .tag("outcome", "imported")
+                .register(registry);
+        FunctionCounter.builder("user.import.rows", this, UserImporter::getRejected)
+                .description("Rows written by bulk imports")
+                .tag("outcome", "rejected")
+                .register(registry);
+        Gauge.builder("user.import.active", this, UserImporter::getActive)
+                .description("Bulk imports running")
+                .register(registry);
+    }
+    
+    @Override
+    public void destroy() {
+        validationPool.shutdownNow();
+    }
+    
+    private UserImport start(String importId) {
+        if (importId == null) {
+            return new UserImport((String) null);
+        }
+        if (importId.isEmpty() || importId.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("importId must have 1 to " + MAX_LENGTH + " characters");
+        }
+        UserImport saved = userImportMapper.findById(importId);
+        if (saved != null) {
+            return saved;
+        }
+        UserImport created = new UserImport(importId);
+        userImportMapper.insert(created);
+        return created;
+    }
+    
+    private Future<Batch> validate(List<UserImportReader.Row> rows) {
+        return validationPool.submit(() -> check(rows));
+    }
+    
+    private UserImport write(Future<Batch> pending, UserImport progress, Consumer<UserImportEvent> events)
+            throws InterruptedException, ExecutionException {
+        Batch batch = pending.get();
+        UserImport checkpoint = new UserImport(progress);
+        checkpoint.setCommittedRows(batch.lastRow);
+        checkpoint.setRejectedRows(checkpoint.getRejectedRows() + batch.rejected.size());
+        List<UserBatchItemResult> results = userService.importUsers(batch.users, checkpoint);
+        
+        // report rows rejected by validation and by the write in input order
+        int next = 0;
+        for (UserBatchItemResult result : results) {
+            if (result.getStatus() == UserBatchItemResult.Status.CREATED) {
+                continue;
+            }
+            long row = batch.userRows[result.getIndex()];
+            while (next < batch.rejected.size() && batch.rejected.get(next).getRow() < row) {
+                events.accept(batch.rejected.get(next++));
+            }
+            events.accept(UserImportEvent.rejected(row, result.getMessage()));
+        }
+        while (next < batch.rejected.size()) {
+            events.accept(batch.rejected.get(next++));
+        }
+        imported.add(checkpoint.getImportedRows() - progress.getImportedRows());
+        rejected.add(checkpoint.getRejectedRows() - progress.getRejectedRows());
+        events.accept(UserImportEvent.progress(checkpoint));
+        return checkpoint;
+    }
+    
+    static Batch check(List<UserImportReader.Row> rows) {
+        Batch batch = new Batch(rows.size(), rows.get(rows.size() - 1).getNumber());
+        Set<String> usernames = new HashSet<>();
+        for (UserImportReader.Row row : rows) {
+            String problem = row.getError() != null ? row.getError() : problem(row.getUser());
+            if (problem == null && !usernames.add(row.getUser().getUsername())) {
+                problem = "duplicate username in input";
+            }
+            if (problem != null) {
+                batch.rejected.add(UserImportEvent.rejected(row.getNumber(), problem));
+            } else {
+                batch.userRows[batch.users.size()] = row.getNumber();
+                batch.users.add(row.getUser());
+            }
+        }
+        return batch;
+    }
+    
+    static String problem(UserDTO user) {
+        if (user == null) {
+            return "user is required";
+        }
+        String username = user.getUsername();
+        if (username == null || username.trim().isEmpty()) {
+            return "username is required";
+        }
+        if (username.length() > MAX_LENGTH) {
+            return "username is longer than " + MAX_LENGTH + " characters";
+        }
+        String email = user.getEmail();
+        if (email == null || email.trim().isEmpty()) {
+            return "email is required";
+        }
+        if (email.length() > MAX_LENGTH) {
+            return "email is longer than " + MAX_LENGTH + " characters";
+        }
+        if (!EMAIL.matcher(email).matches()) {
+            return "email is not a valid address";
+        }
+        return null;
+    }
+    
+    static final class Batch {
+        
+        final long lastRow;
+        final List<UserDTO> users;
+        // input row of each entry in users
+        final long[] userRows;
+        final List<UserImportEvent> rejected = new ArrayList<>();
+        
+        Batch(int size, long lastRow) {
+            this.lastRow = lastRow;
+            this.users = new ArrayList<>(size);
+            this.userRows = new long[size];
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.compare.demo.service;
+
+import com.compare.demo.config.ReadYourWrites;
+import com.compare.demo.entity.User;
+import com.compare.demo.mapper.UserMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical lookups into one database call (single-flight) and, when
+ * {@code user.coalescing.batch-window} is positive, merges the distinct ids requested within
+ * that window into one {@code findByIds} query.
+ *
+ * Callers pass the {@link UserCache#stamp()} they took before loading. Only callers with the
+ * same stamp share a flight, so a lookup that starts after a write never gets a row that was
+ * read before it.
+ *
+ * Batches run on their own thread in a read-only transaction, so they read from the replica
+ * when one is configured; callers that must read their own writes are batched separately and
+ * read from the primary.
+ */
+@Component
+public class UserLoadCoalescer implements MeterBinder, DisposableBean {
+    
+    private final UserMapper userMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final long batchWindowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService batchScheduler;
+    private final ConcurrentHashMap<FlightKey, CompletableFuture<User>> flights = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder batchedIds = new LongAdder();
+    private Batch pendingBatch;
+    private Batch pendingPrimaryBatch;
+    
+    @Autowired
+    public UserLoadCoalescer(UserMapper userMapper,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${user.coalescing.enabled:true}") boolean enabled,
+                             @Value("${user.coalescing.batch-window:0ms}") Duration batchWindow,
+                             @Value("${user.coalescing.max-batch-size:500}") int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("user.coalescing.max-batch-size must be positive");
+        }
+        this.userMapper = userMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.batchWindowNanos = batchWindow.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.batchScheduler = enabled && batchWindowNanos > 0
+                ? Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("user-batch-"))
+                : null;
+    }
+    
+    public User findById(Long id, long stamp) {
+        if (!enabled) {
+            return query(() -> userMapper.findById(id));
+        }
+        return share(new FlightKey("id", id, stamp),
+                () -> batchScheduler != null ? awaitBatched(id) : query(() -> userMapper.findById(id)));
+    }
+    
+    public User findByUsername(String username, long stamp) {
+        if (!enabled) {
+            return query(() -> userMapper.findByUsername(username));
+        }
+        return share(new FlightKey("username", username, stamp), () -> query(() -> userMapper.findByUsername(username)));
+    }
+    
+    public long getLeaders() {
+        return leaders.sum();
+    }
+    
+    public long getFollowers() {
+        return followers.sum();
+    }
+    
+    public long getQueries() {
+        return queries.sum();
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // coalescing ratio = sum(user.coalescing.requests) / user.coalescing.queries
+        FunctionCounter.builder("user.coalescing.requests", this, UserLoadCoalescer::getLeaders)
+                .description("Lookups that reached the coalescer")
+                .tag("role", "leader")
+                .register(registry);
+        FunctionCounter.builder("user.coalescing.requests", this, UserLoadCoalescer::getFollowers)
+                .description("Lookups that reached the coalescer")
+                .tag("role", "follower")
+                .register(registry);
+        FunctionCounter.builder("user.coalescing.queries", this, UserLoadCoalescer::getQueries)
+                .description("Database queries issued for those lookups")
+                .register(registry);
+        FunctionCounter.builder("user.coalescing.batched.ids", batchedIds, LongAdder::sum)
+                .description("Ids loaded through micro-batched queries")
+                .register(registry);
+    }
+    
+    @Override
+    public void destroy() {
+        if (batchScheduler != null) {
+            batchScheduler.shutdownNow();
+        }
+    }
+    
+    private User share(FlightKey key, Supplier<User> loader) {
+        CompletableFuture<User> flight = new CompletableFuture<>();
+        CompletableFuture<User> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            followers.increment();
+            return join(existing);
+        }
+        leaders.increment();
+        try {
+            User user = loader.get();
+            flight.complete(user);
+            return user;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+    
+    private User awaitBatched(Long id) {
+        boolean primary = ReadYourWrites.isPrimaryRequired();
+        Batch batch;
+        CompletableFuture<User> result;
+        boolean full;
+        synchronized (this) {
+            batch = primary ? pendingPrimaryBatch : pendingBatch;
+            if (batch == null) {
+                Batch created = new Batch(primary);
+                if (primary) {
+                    pendingPrimaryBatch = created;
+                } else {
+                    pendingBatch = created;
+                }
+                batchScheduler.schedule(() -> flushBatch(created), batchWindowNanos, TimeUnit.NANOSECONDS);
+                batch = created;
+            }
+            result = batch.results.computeIfAbsent(id, key -> new CompletableFuture<>());
+            full = batch.results.size() >= maxBatchSize;
+        }
+        if (full) {
+            flushBatch(batch);
+        }
+        return join(result);
+    }
+    
+    private void flushBatch(Batch batch) {
+        synchronized (this) {
+            if (batch.primary ? pendingPrimaryBatch != batch : pendingBatch != batch) {
+                // already flushed because it filled up before the window closed
+                return;
+            }
+            if (batch.primary) {
+                pendingPrimaryBatch = null;
+            } else {
+                pendingBatch = null;
+            }
+        }
+        Map<Long, CompletableFuture<User>> results = batch.results;
+        try {
+            Map<Long, User> found = new HashMap<>();
+            List<User> users = query(() -> ReadYourWrites.call(batch.primary, () -> readOnlyTransaction.execute(
+                    status -> userMapper.findByIds(new ArrayList<>(results.keySet())))));
+            for (User user : users) {
+                found.put(user.getId(), user);
+            }
+            batchedIds.add(results.size());
+            results.forEach((id, result) -> result.complete(found.get(id)));
+        } catch (RuntimeException | Error e) {
+            results.values().forEach(result -> result.completeExceptionally(e));
+        }
+    }
+    
+    private <T> T query(Supplier<T> statement) {
+        queries.increment();
+        return statement.get();
+    }
+    
+    private static User join(CompletableFuture<User> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    private static final class Batch {
+        private final boolean primary;
+        private final Map<Long, CompletableFuture<User>> results = new LinkedHashMap<>();
+        
+        private Batch(boolean primary) {
+            this.primary = primary;
+        }
+    }
+    
+    private static final class FlightKey {
+        private final String type;
+        private final Object key;
+        private final long stamp;
+        // a client inside its read-your-writes window reads the primary and must not be handed
+        // a row another caller read from a lagging replica
+        private final boolean primary;
+        
+        private FlightKey(String type, Object key, long stamp) {
+            this.type = type;
+            this.key = key;
+            this.stamp = stamp;
+            this.primary = ReadYourWrites.isPrimaryRequired();
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FlightKey)) {
+                return false;
+            }
+            FlightKey other = (FlightKey) o;
+            return stamp == other.stamp && primary == other.primary && type.equals(other.type)
+                    && Objects.equals(key, other.key);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, key, stamp, primary);
+        }
+    }
+}
\ No newline at end of file
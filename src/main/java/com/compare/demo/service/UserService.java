@@ -1,71 +1,588 @@
 package com.compare.demo.service;
 
+import com.compare.demo.dto.UserBatchItemResult;
 import com.compare.demo.dto.UserDTO;
+import com.compare.demo.dto.UserLookupResult;
+import com.compare.demo.dto.UserRows;
+import com.compare.demo.dto.UserSearchCriteria;
 import com.compare.demo.entity.User;
+import com.compare.demo.entity.UserChange;
+import com.compare.demo.entity.UserImport;
+import com.compare.demo.entity.UserTableStats;
 import com.compare.demo.mapper.UserMapper;
+import io.micrometer.core.annotation.Timed;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
+@Timed(value = "user.service", histogram = true)
 public class UserService {
     
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    // keeps IN lists well below the bind parameter limits of common databases
+    public static final int LOOKUP_CHUNK_SIZE = 500;
+    public static final int DEFAULT_SUGGEST_LIMIT = 10;
+    public static final int MAX_SUGGEST_LIMIT = 100;
+    // sort parameter -> column; non-unique columns get id appended so pages are stable
+    private static final Map<String, String> SEARCH_SORT_COLUMNS = new HashMap<>();
+    
+    static {
+        SEARCH_SORT_COLUMNS.put("id", "id");
+        SEARCH_SORT_COLUMNS.put("username", "username");
+        SEARCH_SORT_COLUMNS.put("email", "email");
+        SEARCH_SORT_COLUMNS.put("createdAt", "created_at");
+        SEARCH_SORT_COLUMNS.put("updatedAt", "updated_at");
+    }
+    
     @Autowired
     private UserMapper userMapper;
     
+    @Autowired
+    private UserCache userCache;
+    
+    @Autowired
+    private UserBatchWriter userBatchWriter;
+    
+    @Autowired
+    private UserIdGenerator userIdGenerator;
+    
+    @Autowired
+    private UserLoadCoalescer userLoadCoalescer;
+    
+    @Autowired
+    private UsernameIndex usernameIndex;
+    
+    @Autowired
+    private UserChangeLog userChangeLog;
+    
+    @Transactional(readOnly = true)
     public List<UserDTO> getAllUsers() {
-        List<User> users = userMapper.findAll();
-        return users.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return new UserRows(userMapper.findAll());
     }
     
+    @Transactional(readOnly = true)
+    public UserTableStats getUserTableStats() {
+        return userMapper.findTableStats();
+    }
+    
+    @Transactional(readOnly = true)
+    public List<UserDTO> getUsersPage(Long afterId, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return new UserRows(userMapper.findPage(afterId, pageSize));
+    }
+    
+    @Transactional(readOnly = true)
+    public void streamUsers(Long afterId, Consumer<UserDTO> consumer) {
+        try (Cursor<User> cursor = userMapper.streamAfter(afterId)) {
+            for (User user : cursor) {
+                consumer.accept(convertToDTO(user));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Transactional(readOnly = true)
     public UserDTO getUserById(Long id) {
-        User user = userMapper.findById(id);
-        return user != null ? convertToDTO(user) : null;
+        UserDTO cached = userCache.getById(id);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = userCache.stamp();
+        User user = userLoadCoalescer.findById(id, stamp);
+        return user != null ? cache(stamp, convertToDTO(user)) : null;
     }
     
+    @Transactional(readOnly = true)
     public UserDTO getUserByUsername(String username) {
-        User user = userMapper.findByUsername(username);
-        return user != null ? convertToDTO(user) : null;
+        UserDTO cached = userCache.getByUsername(username);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = userCache.stamp();
+        User user = userLoadCoalescer.findByUsername(username, stamp);
+        return user != null ? cache(stamp, convertToDTO(user)) : null;
+    }
+    
+    @Transactional(readOnly = true)
+    public List<UserDTO> searchUsers(UserSearchCriteria criteria) {
+        checkRange(criteria.getCreatedFrom(), criteria.getCreatedTo(), "created");
+        checkRange(criteria.getUpdatedFrom(), criteria.getUpdatedTo(), "updated");
+        int offset = criteria.getOffset() == null ? 0 : criteria.getOffset();
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative");
+        }
+        int pageSize = criteria.getLimit() == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(criteria.getLimit(), MAX_PAGE_SIZE));
+        
+        return new UserRows(userMapper.search(criteria, usernamePattern(criteria.getUsernamePrefix()),
+                emailDomain(criteria.getEmailDomain()), orderBy(criteria.getSort(), criteria.getDirection()), offset, pageSize));
+    }
+    
+    @Transactional(readOnly = true)
+    public List<String> suggestUsernames(String prefix, Integer limit) {
+        int size = limit == null ? DEFAULT_SUGGEST_LIMIT : Math.max(1, Math.min(limit, MAX_SUGGEST_LIMIT));
+        if (prefix == null || prefix.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (usernameIndex.isReady()) {
+            return usernameIndex.suggest(prefix, size);
+        }
+        // the index is still loading (or failed to): answer from the username index in the database
+        List<User> users = userMapper.search(new UserSearchCriteria(), usernamePattern(prefix), null, "username ASC", 0, size);
+        List<String> usernames = new ArrayList<>(users.size());
+        for (User user : users) {
+            usernames.add(user.getUsername());
+        }
+        return usernames;
+    }
+    
+    @Transactional(readOnly = true)
+    public List<UserChange> getUserChanges(Long since, Integer limit) {
+        long after = since == null ? 0 : since;
+        if (after < 0) {
+            throw new IllegalArgumentException("since must not be negative");
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return userChangeLog.changesSince(after, pageSize);
+    }
+    
+    public CompletableFuture<Void> nextUserChange(Duration timeout) {
+        return userChangeLog.nextChange(timeout);
+    }
+    
+    @Transactional(readOnly = true)
+    public UserLookupResult lookupUsers(List<Long> ids, List<String> usernames) {
+        Set<Long> idKeys = distinct(ids);
+        Set<String> usernameKeys = distinct(usernames);
+        if (idKeys.size() + usernameKeys.size() > userBatchWriter.getMaxItems()) {
+            throw new IllegalArgumentException("lookup must contain at most " + userBatchWriter.getMaxItems() + " keys");
+        }
+        
+        Map<Long, UserDTO> foundById = new HashMap<>(capacity(idKeys.size()));
+        List<Long> uncachedIds = new ArrayList<>(idKeys.size());
+        for (Long id : idKeys) {
+            UserDTO cached = userCache.getById(id);
+            if (cached != null) {
+                foundById.put(id, cached);
+            } else {
+                uncachedIds.add(id);
+            }
+        }
+        Map<String, UserDTO> foundByUsername = new HashMap<>(capacity(usernameKeys.size()));
+        List<String> uncachedUsernames = new ArrayList<>(usernameKeys.size());
+        for (String username : usernameKeys) {
+            UserDTO cached = userCache.getByUsername(username);
+            if (cached != null) {
+                foundByUsername.put(username, cached);
+            } else {
+                uncachedUsernames.add(username);
+            }
+        }
+        
+        long stamp = userCache.stamp();
+        for (List<Long> chunk : chunks(uncachedIds)) {
+            for (User user : userMapper.findByIds(chunk)) {
+                UserDTO userDTO = convertToDTO(user);
+                foundById.put(userDTO.getId(), userDTO);
+                userCache.put(stamp, userDTO);
+            }
+        }
+        for (List<String> chunk : chunks(uncachedUsernames)) {
+            for (User user : userMapper.findByUsernames(chunk)) {
+                UserDTO userDTO = convertToDTO(user);
+                foundByUsername.put(userDTO.getUsername(), userDTO);
+                userCache.put(stamp, userDTO);
+            }
+        }
+        
+        UserLookupResult result = new UserLookupResult();
+        for (Long id : idKeys) {
+            UserDTO userDTO = foundById.get(id);
+            if (userDTO != null) {
+                result.getById().add(userDTO);
+            } else {
+                result.getMissingIds().add(id);
+            }
+        }
+        for (String username : usernameKeys) {
+            UserDTO userDTO = foundByUsername.get(username);
+            if (userDTO != null) {
+                result.getByUsername().add(userDTO);
+            } else {
+                result.getMissingUsernames().add(username);
+            }
+        }
+        return result;
     }
     
     public UserDTO createUser(UserDTO userDTO) {
         User user = convertToEntity(userDTO);
-        userMapper.insert(user);
+        user.setId(userIdGenerator.nextId());
+        userMapper.insertWithId(user);
+        userChangeLog.record(new UserChange(UserChange.Type.CREATED, user));
+        userCache.invalidate(user.getId(), user.getUsername());
+        usernameIndex.changed(Collections.<String>emptyList(), Collections.singletonList(user.getUsername()));
         return convertToDTO(user);
     }
     
     public UserDTO updateUser(Long id, UserDTO userDTO) {
-        User existingUser = userMapper.findById(id);
-        if (existingUser == null) {
+        return updateUser(id, userDTO, null);
+    }
+    
+    public UserDTO updateUser(Long id, UserDTO userDTO, Long expectedVersion) {
+        User user = convertToEntity(userDTO);
+        user.setId(id);
+        user.setUpdatedAt(LocalDateTime.now());
+        user.setVersion(expectedVersion);
+        
+        User previous = userMapper.updateReturningOld(user);
+        if (previous == null) {
+            if (expectedVersion != null && userMapper.findVersionById(id) != null) {
+                throw new UserVersionConflictException(id, expectedVersion);
+            }
             return null;
         }
-        
-        existingUser.setUsername(userDTO.getUsername());
-        existingUser.setEmail(userDTO.getEmail());
-        existingUser.setUpdatedAt(LocalDateTime.now());
-        
-        userMapper.update(existingUser);
-        return convertToDTO(existingUser);
+        user.setCreatedAt(previous.getCreatedAt());
+        user.setVersion(previous.getVersion() + 1);
+        userChangeLog.record(new UserChange(UserChange.Type.UPDATED, user));
+        userCache.invalidate(id, previous.getUsername());
+        if (!previous.getUsername().equals(user.getUsername())) {
+            usernameIndex.changed(Collections.singletonList(previous.getUsername()), Collections.singletonList(user.getUsername()));
+        }
+        return convertToDTO(user);
     }
     
     public boolean deleteUser(Long id) {
-        User user = userMapper.findById(id);
-        if (user == null) {
+        User previous = userMapper.deleteReturningOld(id);
+        if (previous == null) {
             return false;
         }
-        userMapper.deleteById(id);
+        userChangeLog.record(new UserChange(UserChange.Type.DELETED, previous));
+        userCache.invalidate(id, previous.getUsername());
+        usernameIndex.changed(Collections.singletonList(previous.getUsername()), Collections.<String>emptyList());
         return true;
     }
     
+    public List<UserBatchItemResult> createUsers(List<UserDTO> userDTOs) {
+        checkBatchSize(userDTOs);
+        List<UserBatchItemResult> results = new ArrayList<>(userDTOs.size());
+        List<User> users = new ArrayList<>(userDTOs.size());
+        Set<String> usernames = new HashSet<>();
+        for (int i = 0; i < userDTOs.size(); i++) {
+            UserDTO userDTO = userDTOs.get(i);
+            String problem = validate(userDTO);
+            if (problem == null && !usernames.add(userDTO.getUsername())) {
+                problem = "duplicate username in batch";
+            }
+            if (problem != null) {
+                results.add(new UserBatchItemResult(i, null, UserBatchItemResult.Status.INVALID, problem));
+                continue;
+            }
+            User user = convertToEntity(userDTO);
+            user.setId(userIdGenerator.nextId());
+            users.add(user);
+            results.add(new UserBatchItemResult(i, user.getId(), UserBatchItemResult.Status.CREATED, null));
+        }
+        
+        userBatchWriter.insertAll(users);
+        List<Long> ids = new ArrayList<>(users.size());
+        List<UserChange> changes = new ArrayList<>(users.size());
+        for (User user : users) {
+            ids.add(user.getId());
+            changes.add(new UserChange(UserChange.Type.CREATED, user));
+        }
+        userChangeLog.recordAll(changes);
+        userCache.invalidateAll(ids, usernames);
+        usernameIndex.changed(Collections.<String>emptyList(), usernames);
+        return results;
+    }
+    
+    public List<UserBatchItemResult> updateUsers(List<UserDTO> userDTOs) {
+        checkBatchSize(userDTOs);
+        List<UserBatchItemResult> results = new ArrayList<>(userDTOs.size());
+        List<User> users = new ArrayList<>(userDTOs.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < userDTOs.size(); i++) {
+            UserDTO userDTO = userDTOs.get(i);
+            String problem = userDTO == null || userDTO.getId() == null ? "id is required" : validate(userDTO);
+            if (problem != null) {
+                results.add(new UserBatchItemResult(i, userDTO != null ? userDTO.getId() : null,
+                        UserBatchItemResult.Status.INVALID, problem));
+                continue;
+            }
+            User user = convertToEntity(userDTO);
+            user.setId(userDTO.getId());
+            user.setUpdatedAt(now);
+            users.add(user);
+            results.add(new UserBatchItemResult(i, user.getId(), UserBatchItemResult.Status.UPDATED, null));
+        }
+        
+        Map<Long, User> current = lockCurrentRows(users.stream().map(User::getId).collect(Collectors.toList()));
+        Map<Long, Long> versions = new HashMap<>();
+        for (User user : users) {
+            User previous = current.get(user.getId());
+            // the version each update expects; a repeated id expects the one its last update left
+            Long version = previous != null ? versions.getOrDefault(user.getId(), previous.getVersion()) : null;
+            user.setVersion(version);
+            if (version != null) {
+                versions.put(user.getId(), version + 1);
+            }
+        }
+        int[] counts = userBatchWriter.updateAll(users);
+        applyCounts(results, UserBatchItemResult.Status.UPDATED, counts);
+        List<Long> ids = new ArrayList<>(users.size());
+        List<String> usernames = new ArrayList<>(users.size());
+        List<String> renamedFrom = new ArrayList<>();
+        List<String> renamedTo = new ArrayList<>();
+        List<UserChange> changes = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            ids.add(user.getId());
+            usernames.add(user.getUsername());
+            User previous = current.get(user.getId());
+            if (previous == null || counts[i] == 0) {
+                continue;
+            }
+            if (!previous.getUsername().equals(user.getUsername())) {
+                usernames.add(previous.getUsername());
+                renamedFrom.add(previous.getUsername());
+                renamedTo.add(user.getUsername());
+            }
+            user.setCreatedAt(previous.getCreatedAt());
+            user.setVersion(user.getVersion() + 1);
+            current.put(user.getId(), user);
+            changes.add(new UserChange(UserChange.Type.UPDATED, user));
+        }
+        userChangeLog.recordAll(changes);
+        userCache.invalidateAll(ids, usernames);
+        usernameIndex.changed(renamedFrom, renamedTo);
+        return results;
+    }
+    
+    public List<UserBatchItemResult> deleteUsers(List<Long> ids) {
+        checkBatchSize(ids);
+        List<UserBatchItemResult> results = new ArrayList<>(ids.size());
+        List<Long> toDelete = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            if (id == null) {
+                results.add(new UserBatchItemResult(i, null, UserBatchItemResult.Status.INVALID, "id is required"));
+                continue;
+            }
+            toDelete.add(id);
+            results.add(new UserBatchItemResult(i, id, UserBatchItemResult.Status.DELETED, null));
+        }
+        
+        Map<Long, User> current = lockCurrentRows(toDelete);
+        int[] counts = userBatchWriter.deleteAll(toDelete, current);
+        applyCounts(results, UserBatchItemResult.Status.DELETED, counts);
+        List<String> deletedUsernames = new ArrayList<>();
+        List<UserChange> changes = new ArrayList<>();
+        for (UserBatchItemResult result : results) {
+            User previous = current.get(result.getId());
+            if (result.getStatus() == UserBatchItemResult.Status.DELETED && previous != null) {
+                deletedUsernames.add(previous.getUsername());
+                changes.add(new UserChange(UserChange.Type.DELETED, previous));
+            }
+        }
+        userChangeLog.recordAll(changes);
+        userCache.invalidateAll(toDelete, deletedUsernames);
+        usernameIndex.changed(deletedUsernames, Collections.<String>emptyList());
+        return results;
+    }
+    
+    /**
+     * Writes one batch of a bulk import in one transaction. Rows whose username is taken are
+     * rejected and the rest are inserted. {@code checkpoint} arrives advanced past the batch and
+     * counting its invalid rows; this batch's outcome is added to it and, for a named import,
+     * it is saved with the rows.
+     */
+    public List<UserBatchItemResult> importUsers(List<UserDTO> userDTOs, UserImport checkpoint) {
+        checkBatchSize(userDTOs);
+        List<String> usernames = new ArrayList<>(userDTOs.size());
+        for (UserDTO userDTO : userDTOs) {
+            usernames.add(userDTO.getUsername());
+        }
+        Set<String> taken = new HashSet<>(capacity(userDTOs.size()));
+        for (List<String> chunk : chunks(usernames)) {
+            for (User user : userBatchWriter.findByUsernames(chunk)) {
+                taken.add(user.getUsername());
+            }
+        }
+        
+        List<UserBatchItemResult> results = new ArrayList<>(userDTOs.size());
+        List<User> users = new ArrayList<>(userDTOs.size());
+        List<Long> ids = new ArrayList<>(userDTOs.size());
+        List<String> created = new ArrayList<>(userDTOs.size());
+        for (int i = 0; i < userDTOs.size(); i++) {
+            UserDTO userDTO = userDTOs.get(i);
+            if (!taken.add(userDTO.getUsername())) {
+                results.add(new UserBatchItemResult(i, null, UserBatchItemResult.Status.INVALID, "username already exists"));
+                continue;
+            }
+            User user = convertToEntity(userDTO);
+            user.setId(userIdGenerator.nextId());
+            users.add(user);
+            ids.add(user.getId());
+            created.add(user.getUsername());
+            results.add(new UserBatchItemResult(i, user.getId(), UserBatchItemResult.Status.CREATED, null));
+        }
+        
+        checkpoint.setImportedRows(checkpoint.getImportedRows() + users.size());
+        checkpoint.setRejectedRows(checkpoint.getRejectedRows() + userDTOs.size() - users.size());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        // first, so a second run of the same import waits on the checkpoint row and then fails
+        if (checkpoint.getImportId() != null && !userBatchWriter.advanceImport(checkpoint)) {
+            throw new IllegalStateException("import " + checkpoint.getImportId() + " already committed row " + checkpoint.getCommittedRows());
+        }
+        if (!users.isEmpty()) {
+            userBatchWriter.insertAll(users);
+        }
+        List<UserChange> changes = new ArrayList<>(users.size());
+        for (User user : users) {
+            changes.add(new UserChange(UserChange.Type.CREATED, user));
+        }
+        userChangeLog.recordAll(changes);
+        userCache.invalidateAll(ids, created);
+        usernameIndex.changed(Collections.<String>emptyList(), created);
+        return results;
+    }
+    
+    private Map<Long, User> lockCurrentRows(List<Long> ids) {
+        // batch statements only report row counts, so read the rows they are about to change;
+        // the lock keeps them from changing again before the batch runs; sharded storage cannot
+        // lock them, so its batch writes only apply to rows still at the version read here
+        Map<Long, User> rows = new HashMap<>();
+        for (List<Long> chunk : chunks(ids)) {
+            for (User user : userBatchWriter.findByIdsForUpdate(chunk)) {
+                rows.put(user.getId(), user);
+            }
+        }
+        return rows;
+    }
+    
+    private void checkBatchSize(List<?> items) {
+        if (items == null || items.size() > userBatchWriter.getMaxItems()) {
+            throw new IllegalArgumentException("batch must contain at most " + userBatchWriter.getMaxItems() + " items");
+        }
+    }
+    
+    private static void checkRange(LocalDateTime from, LocalDateTime to, String field) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException(field + "From must be before " + field + "To");
+        }
+    }
+    
+    private static String usernamePattern(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        // a leading-constant LIKE is planned as a range scan on the username index
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+    
+    private static String emailDomain(String domain) {
+        if (domain == null || domain.trim().isEmpty()) {
+            return null;
+        }
+        String normalized = domain.trim().toLowerCase(Locale.ROOT);
+        return normalized.startsWith("@") ? normalized.substring(1) : normalized;
+    }
+    
+    private static String orderBy(String sort, String direction) {
+        String column = SEARCH_SORT_COLUMNS.get(sort == null ? "id" : sort);
+        if (column == null) {
+            throw new IllegalArgumentException("cannot sort by " + sort);
+        }
+        String order;
+        if (direction == null || "asc".equalsIgnoreCase(direction)) {
+            order = " ASC";
+        } else if ("desc".equalsIgnoreCase(direction)) {
+            order = " DESC";
+        } else {
+            throw new IllegalArgumentException("direction must be asc or desc");
+        }
+        if (column.equals("id") || column.equals("username")) {
+            return column + order;
+        }
+        return column + order + ", id" + order;
+    }
+    
+    private static <T> Set<T> distinct(List<T> keys) {
+        Set<T> distinct = new LinkedHashSet<>(capacity(keys == null ? 0 : keys.size()));
+        if (keys != null) {
+            for (T key : keys) {
+                if (key != null) {
+                    distinct.add(key);
+                }
+            }
+        }
+        return distinct;
+    }
+    
+    // hash map capacity that holds this many entries without rehashing
+    private static int capacity(int entries) {
+        return (int) (entries / 0.75f) + 1;
+    }
+    
+    private static <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>((items.size() + LOOKUP_CHUNK_SIZE - 1) / LOOKUP_CHUNK_SIZE);
+        for (int from = 0; from < items.size(); from += LOOKUP_CHUNK_SIZE) {
+            chunks.add(items.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, items.size())));
+        }
+        return chunks;
+    }
+    
+    private static String validate(UserDTO userDTO) {
+        if (userDTO == null) {
+            return "user is required";
+        }
+        if (userDTO.getUsername() == null || userDTO.getUsername().trim().isEmpty()) {
+            return "username is required";
+        }
+        if (userDTO.getEmail() == null || userDTO.getEmail().trim().isEmpty()) {
+            return "email is required";
+        }
+        return null;
+    }
+    
+    private static void applyCounts(List<UserBatchItemResult> results, UserBatchItemResult.Status executed, int[] counts) {
+        int next = 0;
+        for (UserBatchItemResult result : results) {
+            if (result.getStatus() == executed && counts[next++] == 0) {
+                result.setStatus(UserBatchItemResult.Status.NOT_FOUND);
+            }
+        }
+    }
+    
+    private UserDTO cache(long stamp, UserDTO userDTO) {
+        userCache.put(stamp, userDTO);
+        return userDTO;
+    }
+    
     private UserDTO convertToDTO(User user) {
-        return new UserDTO(user.getId(), user.getUsername(), user.getEmail());
+        return UserRows.toDTO(user);
     }
     
     private User convertToEntity(UserDTO userDTO) {
@@ -0,0 +1,21 @@
+package com.compare.demo.service;
+
+public class UserVersionConflictException extends RuntimeException {
+    
+    private final Long id;
+    private final Long expectedVersion;
+    
+    public UserVersionConflictException(Long id, Long expectedVersion) {
+        super("User " + id + " is no longer at version " + expectedVersion);
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public Long getExpectedVersion() {
+        return expectedVersion;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,356 @@
+package com.compare.demo.service;
+
+import com.compare.demo.mapper.UserMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process sorted index of every username, used for autocomplete.
+ *
+ * Usernames are kept as one UTF-8 byte array plus an offset per entry, sorted by unsigned
+ * byte order (which is code point order), so a million names cost a few bytes of overhead
+ * each instead of a String object per name. Committed writes land in a small sorted map of
+ * pending changes that overrides the base arrays on read and is merged into a new base once
+ * it reaches {@code user.suggest.compact-threshold} entries.
+ */
+@Component
+public class UsernameIndex implements MeterBinder {
+    
+    private static final Logger log = LoggerFactory.getLogger(UsernameIndex.class);
+    private static final Comparator<byte[]> UNSIGNED_ORDER = (a, b) -> compare(a, 0, a.length, b);
+    
+    private final UserMapper userMapper;
+    private final boolean enabled;
+    private final int compactThreshold;
+    private final LongAdder compactions = new LongAdder();
+    // base and pending are swapped together so a reader never pairs a new base with stale changes
+    private volatile State state = new State(Snapshot.EMPTY, new ConcurrentSkipListMap<>(UNSIGNED_ORDER));
+    private volatile boolean ready;
+    
+    @Autowired
+    public UsernameIndex(UserMapper userMapper,
+                         @Value("${user.suggest.enabled:true}") boolean enabled,
+                         @Value("${user.suggest.compact-threshold:4096}") int compactThreshold) {
+        if (compactThreshold <= 0) {
+            throw new IllegalArgumentException("user.suggest.compact-threshold must be positive");
+        }
+        this.userMapper = userMapper;
+        this.enabled = enabled;
+        this.compactThreshold = compactThreshold;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<String> usernames = new ArrayList<>();
+            userMapper.scanUsernames(context -> usernames.add(context.getResultObject()));
+            Snapshot loaded = Snapshot.of(usernames);
+            synchronized (this) {
+                // changes committed while loading are still pending and win over the loaded rows
+                state = new State(loaded, state.pending);
+                ready = true;
+                compactIfNecessary();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not load username index, suggestions will query the database", e);
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Records usernames that stopped or started to exist. Inside a transaction the change is
+     * applied after commit, so a rolled back write never shows up in suggestions.
+     */
+    public void changed(Collection<String> removed, Collection<String> added) {
+        if (!enabled || (removed.isEmpty() && added.isEmpty())) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(removed, added);
+                }
+            });
+        } else {
+            apply(removed, added);
+        }
+    }
+    
+    public List<String> suggest(String prefix, int limit) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        State current = state;
+        Snapshot base = current.base;
+        List<String> suggestions = new ArrayList<>(Math.min(limit, 16));
+        int next = base.lowerBound(key);
+        Iterator<Map.Entry<byte[], Boolean>> changes = current.pending.tailMap(key).entrySet().iterator();
+        Map.Entry<byte[], Boolean> change = nextMatch(changes, key);
+        while (suggestions.size() < limit) {
+            boolean inBase = next < base.size() && base.startsWith(next, key);
+            if (!inBase && change == null) {
+                break;
+            }
+            int order = !inBase ? 1 : change == null ? -1 : base.compareTo(next, change.getKey());
+            if (order < 0) {
+                suggestions.add(base.get(next++));
+                continue;
+            }
+            if (change.getValue()) {
+                suggestions.add(new String(change.getKey(), StandardCharsets.UTF_8));
+            }
+            if (order == 0) {
+                next++;
+            }
+            change = nextMatch(changes, key);
+        }
+        return suggestions;
+    }
+    
+    public int getEntries() {
+        return state.base.size();
+    }
+    
+    public int getPending() {
+        return state.pending.size();
+    }
+    
+    public long getMemoryBytes() {
+        return state.base.memoryBytes();
+    }
+    
+    public long getCompactions() {
+        return compactions.sum();
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.suggest.index.entries", this, UsernameIndex::getEntries)
+                .description("Usernames in the compacted index")
+                .register(registry);
+        Gauge.builder("user.suggest.index.pending", this, UsernameIndex::getPending)
+                .description("Committed username changes not yet merged into the index")
+                .register(registry);
+        Gauge.builder("user.suggest.index.memory", this, UsernameIndex::getMemoryBytes)
+                .description("Size of the compacted index arrays")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("user.suggest.index.compactions", this, UsernameIndex::getCompactions)
+                .register(registry);
+    }
+    
+    private synchronized void apply(Collection<String> removed, Collection<String> added) {
+        // removals first so renaming a user to a name another user just gave up keeps both changes
+        for (String username : removed) {
+            state.pending.put(username.getBytes(StandardCharsets.UTF_8), Boolean.FALSE);
+        }
+        for (String username : added) {
+            state.pending.put(username.getBytes(StandardCharsets.UTF_8), Boolean.TRUE);
+        }
+        compactIfNecessary();
+    }
+    
+    private void compactIfNecessary() {
+        // before load() the base is empty, and merging into it would lose the pending changes
+        if (!ready || state.pending.size() < compactThreshold) {
+            return;
+        }
+        State current = state;
+        state = new State(current.base.merge(current.pending), new ConcurrentSkipListMap<>(UNSIGNED_ORDER));
+        compactions.increment();
+    }
+    
+    private static Map.Entry<byte[], Boolean> nextMatch(Iterator<Map.Entry<byte[], Boolean>> changes, byte[] prefix) {
+        if (!changes.hasNext()) {
+            return null;
+        }
+        Map.Entry<byte[], Boolean> change = changes.next();
+        return startsWith(change.getKey(), 0, change.getKey().length, prefix) ? change : null;
+    }
+    
+    private static int compare(byte[] data, int from, int to, byte[] key) {
+        int length = Math.min(to - from, key.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (data[from + i] & 0xff) - (key[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (to - from) - key.length;
+    }
+    
+    private static boolean startsWith(byte[] data, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static final class State {
+        private final Snapshot base;
+        private final ConcurrentSkipListMap<byte[], Boolean> pending;
+        
+        private State(Snapshot base, ConcurrentSkipListMap<byte[], Boolean> pending) {
+            this.base = base;
+            this.pending = pending;
+        }
+    }
+    
+    /**
+     * Immutable sorted usernames: entry i is {@code data[offsets[i] .. offsets[i + 1])}.
+     */
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(new byte[0], new int[1]);
+        
+        private final byte[] data;
+        private final int[] offsets;
+        
+        private Snapshot(byte[] data, int[] offsets) {
+            this.data = data;
+            this.offsets = offsets;
+        }
+        
+        private static Snapshot of(Collection<String> usernames) {
+            byte[][] keys = new byte[usernames.size()][];
+            int count = 0;
+            int bytes = 0;
+            for (String username : usernames) {
+                keys[count] = username.getBytes(StandardCharsets.UTF_8);
+                bytes += keys[count++].length;
+            }
+            Arrays.sort(keys, UNSIGNED_ORDER);
+            Builder builder = new Builder(keys.length, bytes);
+            for (int i = 0; i < keys.length; i++) {
+                if (i == 0 || !Arrays.equals(keys[i - 1], keys[i])) {
+                    builder.add(keys[i], 0, keys[i].length);
+                }
+            }
+            return builder.build();
+        }
+        
+        private int size() {
+            return offsets.length - 1;
+        }
+        
+        private String get(int i) {
+            return new String(data, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+        
+        private int compareTo(int i, byte[] key) {
+            return compare(data, offsets[i], offsets[i + 1], key);
+        }
+        
+        private boolean startsWith(int i, byte[] prefix) {
+            return UsernameIndex.startsWith(data, offsets[i], offsets[i + 1], prefix);
+        }
+        
+        private int lowerBound(byte[] key) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareTo(mid, key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        private long memoryBytes() {
+            return data.length + 4L * offsets.length;
+        }
+        
+        private Snapshot merge(Map<byte[], Boolean> changes) {
+            int added = 0;
+            for (Map.Entry<byte[], Boolean> change : changes.entrySet()) {
+                added += change.getValue() ? change.getKey().length : 0;
+            }
+            Builder builder = new Builder(size() + changes.size(), data.length + added);
+            int next = 0;
+            for (Map.Entry<byte[], Boolean> change : changes.entrySet()) {
+                byte[] key = change.getKey();
+                while (next < size() && compareTo(next, key) < 0) {
+                    builder.add(data, offsets[next], offsets[next + 1]);
+                    next++;
+                }
+                if (next < size() && compareTo(next, key) == 0) {
+                    next++;
+                }
+                if (change.getValue()) {
+                    builder.add(key, 0, key.length);
+                }
+            }
+            while (next < size()) {
+                builder.add(data, offsets[next], offsets[next + 1]);
+                next++;
+            }
+            return builder.build();
+        }
+    }
+    
+    private static final class Builder {
+        private byte[] data;
+        private int[] offsets;
+        private int size;
+        
+        private Builder(int expectedEntries, int expectedBytes) {
+            this.data = new byte[Math.max(expectedBytes, 16)];
+            this.offsets = new int[expectedEntries + 1];
+        }
+        
+        private void add(byte[] source, int from, int to) {
+            int length = to - from;
+            int end = offsets[size];
+            if (end + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, end + length));
+            }
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, size + 2));
+            }
+            System.arraycopy(source, from, data, end, length);
+            offsets[++size] = end + length;
+        }
+        
+        private Snapshot build() {
+            return new Snapshot(Arrays.copyOf(data, offsets[size]), Arrays.copyOf(offsets, size + 1));
+        }
+    }
+}
\ No newline at end of file
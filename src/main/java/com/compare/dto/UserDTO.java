@@ -1,9 +1,18 @@
 package com.compare.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
 public class UserDTO {
     private Long id;
     private String username;
     private String email;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
+    @JsonIgnore
+    private LocalDateTime updatedAt;
     
     // Constructors
     public UserDTO() {}
@@ -14,6 +23,16 @@ public class UserDTO {
         this.email = email;
     }
     
+    public UserDTO(Long id, String username, String email, Long version) {
+        this(id, username, email);
+        this.version = version;
+    }
+    
+    public UserDTO(Long id, String username, String email, Long version, LocalDateTime updatedAt) {
+        this(id, username, email, version);
+        this.updatedAt = updatedAt;
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -38,4 +57,20 @@ public class UserDTO {
     public void setEmail(String email) {
         this.email = email;
     }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.compare.demo.dto;
+
+import com.compare.demo.entity.UserImport;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of an import's NDJSON report: a rejected row, the progress after a committed batch,
+ * or the final outcome.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserImportEvent {
+    
+    public enum Type {
+        REJECTED,
+        PROGRESS,
+        COMPLETED,
+        FAILED
+    }
+    
+    private Type type;
+    private String importId;
+    private Long row;
+    private String message;
+    private Long committedRows;
+    private Long importedRows;
+    private Long rejectedRows;
+    
+    // Constructors
+    public UserImportEvent() {}
+    
+    public static UserImportEvent rejected(long row, String message) {
+        UserImportEvent event = new UserImportEvent();
+        event.type = Type.REJECTED;
+        event.row = row;
+        event.message = message;
+        return event;
+    }
+    
+    public static UserImportEvent progress(UserImport userImport) {
+        return of(Type.PROGRESS, userImport, null);
+    }
+    
+    public static UserImportEvent completed(UserImport userImport) {
+        return of(Type.COMPLETED, userImport, null);
+    }
+    
+    public static UserImportEvent failed(UserImport userImport, String message) {
+        return of(Type.FAILED, userImport, message);
+    }
+    
+    private static UserImportEvent of(Type type, UserImport userImport, String message) {
+        UserImportEvent event = new UserImportEvent();
+        event.type = type;
+        event.importId = userImport.getImportId();
+        event.message = message;
+        event.committedRows = userImport.getCommittedRows();
+        event.importedRows = userImport.getImportedRows();
+        event.rejectedRows = userImport.getRejectedRows();
+        return event;
+    }
+    
+    // Getters and Setters
+    public Type getType() {
+        return type;
+    }
+    
+    public void setType(Type type) {
+        this.type = type;
+    }
+    
+    public String getImportId() {
+        return importId;
+    }
+    
+    public void setImportId(String importId) {
+        this.importId = importId;
+    }
+    
+    public Long getRow() {
+        return row;
+    }
+    
+    public void setRow(Long row) {
+        this.row = row;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+    
+    public Long getCommittedRows() {
+        return committedRows;
+    }
+    
+    public void setCommittedRows(Long committedRows) {
+        this.committedRows = committedRows;
+    }
+    
+    public Long getImportedRows() {
+        return importedRows;
+    }
+    
+    public void setImportedRows(Long importedRows) {
+        this.importedRows = importedRows;
+    }
+    
+    public Long getRejectedRows() {
+        return rejectedRows;
+    }
+    
+    public void setRejectedRows(Long rejectedRows) {
+        this.rejectedRows = rejectedRows;
+    }
+}
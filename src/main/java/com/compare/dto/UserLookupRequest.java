@@ -0,0 +1,33 @@
+package com.compare.demo.dto;
+
+import java.util.List;
+
+public class UserLookupRequest {
+    private List<Long> ids;
+    private List<String> usernames;
+    
+    // Constructors
+    public UserLookupRequest() {}
+    
+    public UserLookupRequest(List<Long> ids, List<String> usernames) {
+        this.ids = ids;
+        this.usernames = usernames;
+    }
+    
+    // Getters and Setters
+    public List<Long> getIds() {
+        return ids;
+    }
+    
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+    
+    public List<String> getUsernames() {
+        return usernames;
+    }
+    
+    public void setUsernames(List<String> usernames) {
+        this.usernames = usernames;
+    }
+}
\ No newline at end of file
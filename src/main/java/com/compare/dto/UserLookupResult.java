@@ -0,0 +1,48 @@
+package com.compare.demo.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Users found by a lookup, in the order they were requested (duplicates once), plus the
+ * keys that matched nothing.
+ */
+public class UserLookupResult {
+    private List<UserDTO> byId = new ArrayList<>();
+    private List<UserDTO> byUsername = new ArrayList<>();
+    private List<Long> missingIds = new ArrayList<>();
+    private List<String> missingUsernames = new ArrayList<>();
+    
+    // Getters and Setters
+    public List<UserDTO> getById() {
+        return byId;
+    }
+    
+    public void setById(List<UserDTO> byId) {
+        this.byId = byId;
+    }
+    
+    public List<UserDTO> getByUsername() {
+        return byUsername;
+    }
+    
+    public void setByUsername(List<UserDTO> byUsername) {
+        this.byUsername = byUsername;
+    }
+    
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+    
+    public void setMissingIds(List<Long> missingIds) {
+        this.missingIds = missingIds;
+    }
+    
+    public List<String> getMissingUsernames() {
+        return missingUsernames;
+    }
+    
+    public void setMissingUsernames(List<String> missingUsernames) {
+        this.missingUsernames = missingUsernames;
+    }
+}
\ No newline at end of file
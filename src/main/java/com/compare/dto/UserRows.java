@@ -0,0 +1,39 @@
+package com.compare.demo.dto;
+
+import com.compare.demo.entity.User;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Mapper rows seen as a {@code List<UserDTO>} without copying them: elements are converted
+ * on access, and {@link UserRowsSerializer} writes the rows to JSON without converting
+ * them at all.
+ */
+public final class UserRows extends AbstractList<UserDTO> implements RandomAccess {
+    
+    private final List<User> rows;
+    
+    public UserRows(List<User> rows) {
+        this.rows = rows;
+    }
+    
+    public static UserDTO toDTO(User user) {
+        return new UserDTO(user.getId(), user.getUsername(), user.getEmail(), user.getVersion(), user.getUpdatedAt());
+    }
+    
+    public List<User> rows() {
+        return rows;
+    }
+    
+    @Override
+    public UserDTO get(int index) {
+        return toDTO(rows.get(index));
+    }
+    
+    @Override
+    public int size() {
+        return rows.size();
+    }
+}
\ No newline at end of file
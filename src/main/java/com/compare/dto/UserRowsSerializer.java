@@ -0,0 +1,114 @@
+package com.compare.demo.dto;
+
+import com.compare.demo.entity.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.type.CollectionType;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes {@link UserRows} straight from the {@link User} rows, in the JSON shape of
+ * {@link UserDTO}: no DTO per row and no reflective property access. It wraps the collection
+ * serializer Jackson picks for {@code UserDTO} collections (Spring MVC serializes a
+ * {@code List<UserDTO>} body by its declared type), so any other list still goes through it.
+ */
+public class UserRowsSerializer extends JsonSerializer<Object> implements ContextualSerializer {
+    
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString USERNAME = new SerializedString("username");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString VERSION = new SerializedString("version");
+    
+    private final JsonSerializer<Object> delegate;
+    
+    UserRowsSerializer(JsonSerializer<Object> delegate) {
+        this.delegate = delegate;
+    }
+    
+    public static Module module() {
+        SimpleModule module = new SimpleModule("UserRows");
+        module.setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public JsonSerializer<?> modifyCollectionSerializer(SerializationConfig config, CollectionType valueType,
+                                                                BeanDescription beanDesc, JsonSerializer<?> serializer) {
+                if (!valueType.getContentType().hasRawClass(UserDTO.class)) {
+                    return serializer;
+                }
+                return new UserRowsSerializer((JsonSerializer<Object>) serializer);
+            }
+        });
+        return module;
+    }
+    
+    public static void writeRows(List<User> rows, JsonGenerator generator) throws IOException {
+        generator.writeStartArray(rows, rows.size());
+        for (int i = 0, n = rows.size(); i < n; i++) {
+            writeUser(rows.get(i), generator);
+        }
+        generator.writeEndArray();
+    }
+    
+    public static void writeUser(User user, JsonGenerator generator) throws IOException {
+        generator.writeStartObject(user);
+        generator.writeFieldName(ID);
+        if (user.getId() != null) {
+            generator.writeNumber(user.getId());
+        } else {
+            generator.writeNull();
+        }
+        generator.writeFieldName(USERNAME);
+        generator.writeString(user.getUsername());
+        generator.writeFieldName(EMAIL);
+        generator.writeString(user.getEmail());
+        // UserDTO only includes the version when it is set
+        if (user.getVersion() != null) {
+            generator.writeFieldName(VERSION);
+            generator.writeNumber(user.getVersion());
+        }
+        generator.writeEndObject();
+    }
+    
+    @Override
+    public void serialize(Object value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        if (value instanceof UserRows) {
+            writeRows(((UserRows) value).rows(), generator);
+        } else {
+            delegate.serialize(value, generator, provider);
+        }
+    }
+    
+    @Override
+    public void serializeWithType(Object value, JsonGenerator generator, SerializerProvider provider,
+                                  TypeSerializer typeSerializer) throws IOException {
+        delegate.serializeWithType(value, generator, provider, typeSerializer);
+    }
+    
+    @Override
+    public boolean isEmpty(SerializerProvider provider, Object value) {
+        return delegate.isEmpty(provider, value);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property) throws JsonMappingException {
+        if (!(delegate instanceof ContextualSerializer)) {
+            return this;
+        }
+        JsonSerializer<?> contextual = ((ContextualSerializer) delegate).createContextual(provider, property);
+        return contextual == delegate ? this : new UserRowsSerializer((JsonSerializer<Object>) contextual);
+    }
+}
\ No newline at end of file
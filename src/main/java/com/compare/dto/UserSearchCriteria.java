@@ -0,0 +1,107 @@
+package com.compare.demo.dto;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Query parameters of {@code GET /api/users/search}. Time ranges include {@code from} and
+ * exclude {@code to}.
+ */
+public class UserSearchCriteria {
+    private String usernamePrefix;
+    private String emailDomain;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdTo;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime updatedFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime updatedTo;
+    private String sort;
+    private String direction;
+    private Integer offset;
+    private Integer limit;
+    
+    // Getters and Setters
+    public String getUsernamePrefix() {
+        return usernamePrefix;
+    }
+    
+    public void setUsernamePrefix(String usernamePrefix) {
+        this.usernamePrefix = usernamePrefix;
+    }
+    
+    public String getEmailDomain() {
+        return emailDomain;
+    }
+    
+    public void setEmailDomain(String emailDomain) {
+        this.emailDomain = emailDomain;
+    }
+    
+    public LocalDateTime getCreatedFrom() {
+        return createdFrom;
+    }
+    
+    public void setCreatedFrom(LocalDateTime createdFrom) {
+        this.createdFrom = createdFrom;
+    }
+    
+    public LocalDateTime getCreatedTo() {
+        return createdTo;
+    }
+    
+    public void setCreatedTo(LocalDateTime createdTo) {
+        this.createdTo = createdTo;
+    }
+    
+    public LocalDateTime getUpdatedFrom() {
+        return updatedFrom;
+    }
+    
+    public void setUpdatedFrom(LocalDateTime updatedFrom) {
+        this.updatedFrom = updatedFrom;
+    }
+    
+    public LocalDateTime getUpdatedTo() {
+        return updatedTo;
+    }
+    
+    public void setUpdatedTo(LocalDateTime updatedTo) {
+        this.updatedTo = updatedTo;
+    }
+    
+    public String getSort() {
+        return sort;
+    }
+    
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+    
+    public String getDirection() {
+        return direction;
+    }
+    
+    public void setDirection(String direction) {
+        this.direction = direction;
+    }
+    
+    public Integer getOffset() {
+        return offset;
+    }
+    
+    public void setOffset(Integer offset) {
+        this.offset = offset;
+    }
+    
+    public Integer getLimit() {
+        return limit;
+    }
+    
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+-- email_domain lets "ends with @domain" searches use an index instead of LIKE '%@domain'
+ALTER TABLE users ADD COLUMN email_domain VARCHAR(255)
+    GENERATED ALWAYS AS (LOWER(SUBSTRING(email FROM POSITION('@' IN email) + 1)));
+
+CREATE INDEX idx_users_email ON users (email);
+CREATE INDEX idx_users_email_domain ON users (email_domain);
+
+-- descending so "newest first" pages are read straight from the index; id keeps the order stable
+CREATE INDEX idx_users_created_at ON users (created_at DESC, id DESC);
+CREATE INDEX idx_users_updated_at ON users (updated_at DESC, id DESC);
@@ -0,0 +1,23 @@
+-- ordered log of user mutations, written in the same transaction as the mutation itself
+CREATE TABLE user_changes (
+    seq BIGINT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    change_type VARCHAR(16) NOT NULL,
+    username VARCHAR(255) NOT NULL,
+    email VARCHAR(255),
+    version BIGINT,
+    changed_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_user_changes_changed_at ON user_changes (changed_at);
+
+-- single row. Writers bump last_seq and hold its row lock until they commit, so sequence
+-- numbers become visible in order and a reader of "seq > since" never skips a late commit.
+-- Changes up to pruned_through have been deleted by the retention job.
+CREATE TABLE user_change_sequence (
+    id INT PRIMARY KEY,
+    last_seq BIGINT NOT NULL,
+    pruned_through BIGINT NOT NULL
+);
+
+INSERT INTO user_change_sequence (id, last_seq, pruned_through) VALUES (1, 0, 0);
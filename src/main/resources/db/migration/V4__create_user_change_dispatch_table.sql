@@ -0,0 +1,9 @@
+-- single row: position of the outbox dispatcher in user_changes. NULL while no sink is
+-- configured; otherwise retention never purges changes after dispatched_through.
+-- Kept apart from user_change_sequence so the dispatcher never waits on writers' row lock.
+CREATE TABLE user_change_dispatch (
+    id INT PRIMARY KEY,
+    dispatched_through BIGINT
+);
+
+INSERT INTO user_change_dispatch (id, dispatched_through) VALUES (1, NULL);
@@ -0,0 +1,13 @@
+-- global username -> user id index for hash-sharded storage (user.sharding.urls); the shard a
+-- user lives on is a hash of its id. Unused while users stay in this database.
+CREATE TABLE username_shards (
+    username VARCHAR(255) PRIMARY KEY,
+    user_id BIGINT NOT NULL
+);
+
+-- single row: the number of shards the users were hashed over, recorded by the first start with
+-- user.sharding.urls. A different shard count would route existing ids to the wrong shard.
+CREATE TABLE user_shard_layout (
+    id INT PRIMARY KEY,
+    shard_count INT NOT NULL
+);
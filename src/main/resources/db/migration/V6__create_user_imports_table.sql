@@ -0,0 +1,9 @@
+-- checkpoint of each named bulk import, advanced in the same transaction as every batch it
+-- writes: a rerun of the import skips the rows up to committed_rows.
+CREATE TABLE user_imports (
+    import_id VARCHAR(255) PRIMARY KEY,
+    committed_rows BIGINT NOT NULL,
+    imported_rows BIGINT NOT NULL,
+    rejected_rows BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
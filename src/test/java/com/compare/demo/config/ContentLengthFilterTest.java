@@ -0,0 +1,76 @@
+package com.compare.demo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentLengthFilterTest {
+
+    private final ContentLengthFilter filter = new ContentLengthFilter(DataSize.ofBytes(16), "/api/users/stream");
+
+    @Test
+    void doFilter_ShouldSetContentLengthOfSmallFlushedBody() throws Exception {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> {
+            ServletOutputStream out = res.getOutputStream();
+            out.write("small".getBytes());
+            out.flush();
+            assertFalse(res.isCommitted());
+        };
+
+        // Act
+        filter.doFilter(new MockHttpServletRequest(), response, chain);
+
+        // Assert
+        assertEquals(5, response.getContentLength());
+        assertEquals("small", response.getContentAsString());
+    }
+
+    @Test
+    void doFilter_ShouldPassLargeBodyThroughWithoutLength() throws Exception {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> {
+            ServletOutputStream out = res.getOutputStream();
+            out.write("0123456789".getBytes());
+            out.write("0123456789".getBytes());
+            out.flush();
+            assertTrue(res.isCommitted());
+            out.write('!');
+        };
+
+        // Act
+        filter.doFilter(new MockHttpServletRequest(), response, chain);
+
+        // Assert
+        assertEquals(0, response.getContentLength());
+        assertEquals("01234567890123456789!", response.getContentAsString());
+    }
+
+    @Test
+    void doFilter_ShouldLeaveStreamingPathsUnbuffered() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/stream");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> {
+            ServletOutputStream out = res.getOutputStream();
+            out.write("{}\n".getBytes());
+            out.flush();
+            assertTrue(res.isCommitted());
+        };
+
+        // Act
+        filter.doFilter(request, response, chain);
+
+        // Assert
+        assertEquals(0, response.getContentLength());
+        assertEquals("{}\n", response.getContentAsString());
+    }
+}
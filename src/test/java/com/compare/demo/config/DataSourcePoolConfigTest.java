@@ -0,0 +1,75 @@
+package com.compare.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataSourcePoolConfigTest {
+
+    @Test
+    void poolSize_ShouldFollowCpuCountWhenConcurrencyIsHigher() {
+        // Act & Assert
+        assertEquals(9, DataSourcePoolConfig.poolSize(4, 32));
+    }
+
+    @Test
+    void poolSize_ShouldBeCappedByExpectedConcurrency() {
+        // Act & Assert
+        assertEquals(8, DataSourcePoolConfig.poolSize(16, 8));
+    }
+
+    @Test
+    void poolSize_ShouldKeepAtLeastTwoConnections() {
+        // Act & Assert
+        assertEquals(2, DataSourcePoolConfig.poolSize(1, 1));
+    }
+
+    @Test
+    void poolSize_ShouldRejectNonPositiveConcurrency() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> DataSourcePoolConfig.poolSize(4, 0));
+    }
+
+    @Test
+    void size_ShouldKeepExplicitSizeUnderEachPoolsOwnPrefix() {
+        // Arrange
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("user.datasource.expected-concurrency", "32")
+                .withProperty("spring.datasource.hikari.maximum-pool-size", "20")
+                .withProperty("user.datasource.replica.hikari.maximum-pool-size", "5");
+        HikariDataSource primary = new HikariDataSource();
+        primary.setMaximumPoolSize(20);
+        HikariDataSource replica = new HikariDataSource();
+        replica.setMaximumPoolSize(5);
+        replica.setMinimumIdle(1);
+
+        // Act
+        DataSourcePoolConfig.size(primary, "primaryDataSource", environment, 4);
+        DataSourcePoolConfig.size(replica, "replicaDataSource", environment, 4);
+
+        // Assert
+        assertEquals(20, primary.getMaximumPoolSize());
+        assertEquals(5, replica.getMaximumPoolSize());
+        assertEquals(1, replica.getMinimumIdle());
+    }
+
+    @Test
+    void size_ShouldSizeReplicaWithoutItsOwnSize() {
+        // Arrange
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("user.datasource.expected-concurrency", "32")
+                .withProperty("spring.datasource.hikari.maximum-pool-size", "20")
+                .withProperty("user.datasource.replica.hikari.minimum-idle", "2");
+        HikariDataSource replica = new HikariDataSource();
+        replica.setMinimumIdle(2);
+
+        // Act
+        DataSourcePoolConfig.size(replica, "replicaDataSource", environment, 4);
+
+        // Assert
+        assertEquals(9, replica.getMaximumPoolSize());
+        assertEquals(2, replica.getMinimumIdle());
+    }
+}
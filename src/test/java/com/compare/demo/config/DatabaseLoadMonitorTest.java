@@ -0,0 +1,85 @@
+package com.compare.demo.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseLoadMonitorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 100, 0.5);
+    private final DatabaseLoadMonitor monitor = new DatabaseLoadMonitor(limit, Duration.ofMillis(250),
+            Duration.ofMillis(100), Duration.ofMillis(50));
+
+    @AfterEach
+    void tearDown() {
+        monitor.destroy();
+    }
+
+    @Test
+    void update_ShouldShrinkLimitWhileStatementsAreSlowAndGrowItBackAfterwards() {
+        // Arrange
+        monitor.bindTo(registry);
+        registry.timer("user.mapper", "statement", "findAll").record(Duration.ofMillis(300));
+        registry.timer("user.mapper", "statement", "findById").record(Duration.ofMillis(100));
+
+        // Act
+        monitor.update();
+        int overloaded = limit.getLimit();
+        monitor.update();
+
+        // Assert
+        assertEquals(50, overloaded);
+        assertEquals(51, limit.getLimit());
+        assertEquals(0, monitor.getDbLatencySeconds());
+        assertEquals(51, registry.get("user.admission.concurrency.limit").gauge().value());
+    }
+
+    @Test
+    void update_ShouldShrinkLimitWhenConnectionsAreWaitedFor() {
+        // Arrange
+        monitor.bindTo(registry);
+        registry.timer("user.mapper", "statement", "findById").record(Duration.ofMillis(5));
+        registry.timer("hikaricp.connections.acquire", "pool", "primary").record(Duration.ofMillis(80));
+
+        // Act
+        monitor.update();
+
+        // Assert
+        assertEquals(50, limit.getLimit());
+        assertEquals(0.08, monitor.getPoolWaitSeconds(), 1e-9);
+    }
+
+    @Test
+    void update_ShouldNotShrinkLimitBelowMinimum() {
+        // Arrange
+        monitor.bindTo(registry);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            registry.timer("user.mapper", "statement", "findAll").record(Duration.ofSeconds(1));
+            monitor.update();
+        }
+
+        // Assert
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    void tryAcquire_ShouldAdmitUpToLimit() {
+        // Arrange
+        AdaptiveConcurrencyLimit small = new AdaptiveConcurrencyLimit(1, 2, 0.5);
+
+        // Act & Assert
+        assertTrue(small.tryAcquire());
+        assertTrue(small.tryAcquire());
+        assertFalse(small.tryAcquire());
+        small.release();
+        assertTrue(small.tryAcquire());
+        assertEquals(2, small.getInFlight());
+    }
+}
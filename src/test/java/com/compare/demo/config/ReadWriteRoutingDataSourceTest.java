@@ -0,0 +1,77 @@
+package com.compare.demo.config;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routes between two H2 databases that each know their own name.
+ */
+class ReadWriteRoutingDataSourceTest {
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate readWrite;
+    private static TransactionTemplate readOnly;
+
+    @BeforeAll
+    static void setUp() {
+        DataSource primary = database("routing-primary");
+        DataSource replica = database("routing-replica");
+        DataSource dataSource = new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica));
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldUseReplica() {
+        // Act & Assert
+        assertEquals("routing-replica", readOnly.execute(status -> databaseName()));
+    }
+
+    @Test
+    void readWriteTransaction_ShouldUsePrimary() {
+        // Act & Assert
+        assertEquals("routing-primary", readWrite.execute(status -> databaseName()));
+    }
+
+    @Test
+    void statementOutsideTransaction_ShouldUsePrimary() {
+        // Act & Assert
+        assertEquals("routing-primary", databaseName());
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldUsePrimaryInsideReadYourWritesWindow() {
+        // Act
+        String database = ReadYourWrites.call(true, () -> readOnly.execute(status -> databaseName()));
+
+        // Assert
+        assertEquals("routing-primary", database);
+        assertFalse(ReadYourWrites.isPrimaryRequired());
+    }
+
+    private static String databaseName() {
+        return jdbcTemplate.queryForObject("SELECT name FROM whoami", String.class);
+    }
+
+    private static DataSource database(String name) {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate setup = new JdbcTemplate(dataSource);
+        setup.execute("CREATE TABLE IF NOT EXISTS whoami (name VARCHAR(64))");
+        setup.update("DELETE FROM whoami");
+        setup.update("INSERT INTO whoami (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,97 @@
+package com.compare.demo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepresentationETagFilterTest {
+
+    private final RepresentationETagFilter filter = new RepresentationETagFilter(true, "application/json", "application/cbor");
+
+    @Test
+    void doFilter_ShouldTagEachEncodingOnItsOwn() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1");
+        request.addHeader(HttpHeaders.ACCEPT, "application/cbor");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> ((HttpServletResponse) res).setHeader(HttpHeaders.ETAG, "\"3\"");
+
+        // Act
+        filter.doFilter(request, response, chain);
+
+        // Assert
+        assertEquals("\"3-cbor\"", response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void doFilter_ShouldTagGzippedVariantWeakSoTomcatStillCompresses() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1");
+        request.addHeader(HttpHeaders.ACCEPT, "application/json");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> ((HttpServletResponse) res).setHeader(HttpHeaders.ETAG, "\"3\"");
+
+        // Act
+        filter.doFilter(request, response, chain);
+
+        // Assert
+        assertEquals("W/\"3-json-gzip\"", response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void doFilter_ShouldOnlyMatchIfNoneMatchOfTheSameVariant() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/1");
+        request.addHeader(HttpHeaders.ACCEPT, "application/cbor");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"3-json\", W/\"4-cbor\", \"5-cbor-gzip\"");
+        AtomicReference<String> seen = new AtomicReference<>();
+        FilterChain chain = (req, res) -> seen.set(((HttpServletRequest) req).getHeader(HttpHeaders.IF_NONE_MATCH));
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertEquals("\"4\"", seen.get());
+    }
+
+    @Test
+    void doFilter_ShouldAcceptBareAndEncodingTagsForIfMatch() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/users/1");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        request.addHeader(HttpHeaders.IF_MATCH, "\"3\", \"4-smile\", W/\"5-json-gzip\"");
+        AtomicReference<String> seen = new AtomicReference<>();
+        FilterChain chain = (req, res) -> seen.set(((HttpServletRequest) req).getHeader(HttpHeaders.IF_MATCH));
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertEquals("\"3\", \"4\", W/\"5-json-gzip\"", seen.get());
+    }
+
+    @Test
+    void doFilter_ShouldKeepTagStrongWhenCompressionIsOff() throws Exception {
+        // Arrange
+        RepresentationETagFilter uncompressed = new RepresentationETagFilter(false, "application/json");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> ((HttpServletResponse) res).setHeader(HttpHeaders.ETAG, "\"12-1700000000\"");
+
+        // Act
+        uncompressed.doFilter(request, response, chain);
+
+        // Assert
+        assertEquals("\"12-1700000000-json\"", response.getHeader(HttpHeaders.ETAG));
+    }
+}
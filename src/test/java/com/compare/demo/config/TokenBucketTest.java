@@ -0,0 +1,105 @@
+package com.compare.demo.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void tryAcquire_ShouldAdmitBurstThenReportWaitForNextToken() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = System.nanoTime();
+
+        // Act
+        List<Long> waits = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            waits.add(bucket.tryAcquire(1, now));
+        }
+
+        // Assert
+        assertEquals(0L, (long) waits.get(4));
+        assertEquals(100 * MILLIS, (long) waits.get(5));
+        assertEquals(0, bucket.tryAcquire(1, now + 100 * MILLIS));
+    }
+
+    @Test
+    void tryAcquire_ShouldTakeNothingWhenCostIsNotAvailable() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = System.nanoTime();
+        bucket.tryAcquire(3, now);
+
+        // Act
+        long wait = bucket.tryAcquire(3, now);
+
+        // Assert
+        assertEquals(100 * MILLIS, wait);
+        assertEquals(0, bucket.tryAcquire(2, now));
+        assertTrue(bucket.tryAcquire(1, now) > 0);
+    }
+
+    @Test
+    void refund_ShouldGiveTokensBackUpToCapacity() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = System.nanoTime();
+        bucket.tryAcquire(5, now);
+
+        // Act
+        bucket.refund(2, now);
+
+        // Assert
+        assertEquals(0, bucket.tryAcquire(2, now));
+        assertTrue(bucket.tryAcquire(1, now) > 0);
+        bucket.refund(100, now);
+        assertTrue(bucket.isFull(now));
+        assertEquals(0, bucket.tryAcquire(5, now));
+    }
+
+    @Test
+    void tryAcquire_ShouldAdmitExactlyCapacityUnderContention() throws Exception {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(0.001, 1000);
+        long now = System.nanoTime();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+
+        // Act
+        List<Future<Integer>> admitted = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            admitted.add(threads.submit(() -> {
+                int count = 0;
+                for (int i = 0; i < 1000; i++) {
+                    if (bucket.tryAcquire(1, now) == 0) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> count : admitted) {
+            total += count.get();
+        }
+        threads.shutdown();
+
+        // Assert
+        assertEquals(1000, total);
+    }
+
+    @Test
+    void constructor_ShouldRejectNonPositiveRate() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 5));
+    }
+}
@@ -0,0 +1,192 @@
+package com.compare.demo.config;
+
+import com.compare.demo.config.UserRateLimitFilter.Endpoint;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserRateLimitFilterTest {
+
+    private static final FilterChain OK = (req, res) -> { };
+
+    @Test
+    void doFilter_ShouldAnswer429OnceClientRunsOutOfTokens() throws Exception {
+        // Arrange
+        UserRateLimitFilter filter = new UserRateLimitFilter(properties(1, 100), null);
+        filter.doFilter(request("GET", "/api/users"), new MockHttpServletResponse(), OK);
+        filter.doFilter(request("GET", "/api/users"), new MockHttpServletResponse(), OK);
+
+        // Act
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(request("GET", "/api/users"), rejected, OK);
+
+        // Assert
+        assertEquals(429, rejected.getStatus());
+        assertEquals("50", rejected.getHeader("Retry-After"));
+        assertEquals(2, filter.getCount(Endpoint.LIST_ALL, true));
+        assertEquals(1, filter.getCount(Endpoint.LIST_ALL, false));
+    }
+
+    @Test
+    void doFilter_ShouldKeepClientsApartByHeader() throws Exception {
+        // Arrange
+        UserRateLimitProperties properties = properties(1, 100);
+        properties.setClientHeader("X-Client-Id");
+        UserRateLimitFilter filter = new UserRateLimitFilter(properties, null);
+        filter.doFilter(client(request("GET", "/api/users"), "a"), new MockHttpServletResponse(), OK);
+        filter.doFilter(client(request("GET", "/api/users"), "a"), new MockHttpServletResponse(), OK);
+
+        // Act
+        MockHttpServletResponse sameClient = new MockHttpServletResponse();
+        filter.doFilter(client(request("GET", "/api/users"), "a"), sameClient, OK);
+        MockHttpServletResponse otherClient = new MockHttpServletResponse();
+        filter.doFilter(client(request("GET", "/api/users"), "b"), otherClient, OK);
+
+        // Assert
+        assertEquals(429, sameClient.getStatus());
+        assertEquals(200, otherClient.getStatus());
+        assertEquals(2, filter.getClients());
+    }
+
+    @Test
+    void doFilter_ShouldCapEndpointOverAllClientsAndRefundClientTokens() throws Exception {
+        // Arrange
+        UserRateLimitProperties properties = properties(1, 100);
+        properties.setClientHeader("X-Client-Id");
+        properties.setCosts(Collections.singletonMap("search", 100));
+        properties.setEndpointRates(Collections.singletonMap("search", 1.0));
+        UserRateLimitFilter filter = new UserRateLimitFilter(properties, null);
+        filter.doFilter(client(request("GET", "/api/users/search"), "a"), new MockHttpServletResponse(), OK);
+
+        // Act
+        MockHttpServletResponse search = new MockHttpServletResponse();
+        filter.doFilter(client(request("GET", "/api/users/search"), "b"), search, OK);
+        MockHttpServletResponse get = new MockHttpServletResponse();
+        filter.doFilter(client(request("GET", "/api/users/1"), "b"), get, OK);
+
+        // Assert
+        assertEquals(429, search.getStatus());
+        assertEquals("1", search.getHeader("Retry-After"));
+        assertEquals(200, get.getStatus());
+    }
+
+    @Test
+    void doFilter_ShouldEvictIdlestClientsSoRotatingKeysCannotStarveNewOnes() throws Exception {
+        // Arrange
+        UserRateLimitProperties properties = properties(1, 100);
+        properties.setClientHeader("X-Client-Id");
+        properties.setMaxClients(10);
+        UserRateLimitFilter filter = new UserRateLimitFilter(properties, null);
+        filter.doFilter(client(request("GET", "/api/users"), "steady"), new MockHttpServletResponse(), OK);
+        filter.doFilter(client(request("GET", "/api/users"), "steady"), new MockHttpServletResponse(), OK);
+        MockHttpServletResponse steady = new MockHttpServletResponse();
+        for (int i = 0; i < 30; i++) {
+            filter.doFilter(client(request("GET", "/api/users"), "rotating" + i), new MockHttpServletResponse(), OK);
+            filter.doFilter(client(request("GET", "/api/users"), "rotating" + i), new MockHttpServletResponse(), OK);
+            steady = new MockHttpServletResponse();
+            filter.doFilter(client(request("GET", "/api/users"), "steady"), steady, OK);
+        }
+
+        // Act
+        MockHttpServletResponse newcomer = new MockHttpServletResponse();
+        filter.doFilter(client(request("GET", "/api/users"), "newcomer"), newcomer, OK);
+
+        // Assert
+        assertEquals(200, newcomer.getStatus());
+        // the busy client kept its spent bucket instead of being evicted for a fresh one
+        assertEquals(429, steady.getStatus());
+        assertTrue(filter.getClients() <= 10);
+    }
+
+    @Test
+    void doFilter_ShouldShedDatabaseRequestsOverConcurrencyLimit() throws Exception {
+        // Arrange
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 0.5);
+        UserRateLimitFilter filter = new UserRateLimitFilter(properties(1000, 1000), limit);
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        MockHttpServletResponse suggest = new MockHttpServletResponse();
+        FilterChain holdingSlot = (req, res) -> {
+            filter.doFilter(request("GET", "/api/users/2"), shed, OK);
+            filter.doFilter(request("GET", "/api/users/suggest"), suggest, OK);
+        };
+
+        // Act
+        filter.doFilter(request("GET", "/api/users/1"), new MockHttpServletResponse(), holdingSlot);
+        MockHttpServletResponse after = new MockHttpServletResponse();
+        filter.doFilter(request("GET", "/api/users/3"), after, OK);
+
+        // Assert
+        assertEquals(503, shed.getStatus());
+        assertEquals("1", shed.getHeader("Retry-After"));
+        assertEquals(200, suggest.getStatus());
+        assertEquals(200, after.getStatus());
+        assertEquals(0, limit.getInFlight());
+        assertEquals(1, filter.getCount(Endpoint.GET, false));
+    }
+
+    @Test
+    void doFilter_ShouldHoldSlotUntilAsyncResponseCompletes() throws Exception {
+        // Arrange
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 0.5);
+        UserRateLimitFilter filter = new UserRateLimitFilter(properties(1000, 1000), limit);
+        MockHttpServletRequest request = request("GET", "/api/users/1");
+        request.setAsyncSupported(true);
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+        int inFlight = limit.getInFlight();
+        request.getAsyncContext().complete();
+
+        // Assert
+        assertEquals(1, inFlight);
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void endpointOf_ShouldClassifyUserRequests() {
+        // Arrange
+        MockHttpServletRequest page = request("GET", "/api/users");
+        page.setParameter("limit", "10");
+
+        // Act & Assert
+        assertEquals(Endpoint.LIST_ALL, Endpoint.of(request("GET", "/api/users")));
+        assertEquals(Endpoint.PAGE, Endpoint.of(page));
+        assertEquals(Endpoint.WRITE, Endpoint.of(request("POST", "/api/users")));
+        assertEquals(Endpoint.EXPORT, Endpoint.of(request("GET", "/api/users/export")));
+        assertEquals(Endpoint.BATCH, Endpoint.of(request("DELETE", "/api/users/batch")));
+        assertEquals(Endpoint.GET, Endpoint.of(request("GET", "/api/users/username/alice")));
+        assertEquals(Endpoint.WRITE, Endpoint.of(request("PUT", "/api/users/7")));
+    }
+
+    @Test
+    void constructor_ShouldRejectCostAboveBurst() {
+        // Arrange
+        UserRateLimitProperties properties = properties(1, 100);
+        properties.setCosts(Collections.singletonMap("search", 101));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new UserRateLimitFilter(properties, null));
+    }
+
+    private static UserRateLimitProperties properties(double clientRate, int clientBurst) {
+        UserRateLimitProperties properties = new UserRateLimitProperties();
+        properties.setEnabled(true);
+        properties.setClientRate(clientRate);
+        properties.setClientBurst(clientBurst);
+        return properties;
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+
+    private static MockHttpServletRequest client(MockHttpServletRequest request, String client) {
+        request.addHeader("X-Client-Id", client);
+        return request;
+    }
+}
@@ -1,24 +1,51 @@
 package com.compare.demo.controller;
 
+import com.compare.demo.dto.UserBatchItemResult;
 import com.compare.demo.dto.UserDTO;
+import com.compare.demo.dto.UserLookupRequest;
+import com.compare.demo.dto.UserLookupResult;
+import com.compare.demo.dto.UserSearchCriteria;
+import com.compare.demo.entity.User;
+import com.compare.demo.entity.UserChange;
+import com.compare.demo.entity.UserTableStats;
+import com.compare.demo.service.UserChangesExpiredException;
 import com.compare.demo.service.UserService;
+import com.compare.demo.service.UserVersionConflictException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -29,17 +56,21 @@ class UserControllerMockTest {
     @Mock
     private UserService userService;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private UserRequestExecutor requestExecutor = new UserRequestExecutor(new SyncTaskExecutor());
+
     @InjectMocks
     private UserController userController;
 
     private MockMvc mockMvc;
-    private ObjectMapper objectMapper;
     private UserDTO testUserDTO;
 
     @BeforeEach
     void setUp() {
         mockMvc = MockMvcBuilders.standaloneSetup(userController).build();
-        objectMapper = new ObjectMapper();
         testUserDTO = new UserDTO(1L, "testuser", "test@example.com");
     }
 
@@ -50,7 +81,7 @@ class UserControllerMockTest {
         when(userService.getAllUsers()).thenReturn(users);
 
         // Act & Assert
-        mockMvc.perform(get("/api/users"))
+        performAsync(get("/api/users"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("$[0].id", is(1)))
@@ -60,13 +91,89 @@ class UserControllerMockTest {
         verify(userService, times(1)).getAllUsers();
     }
 
+    @Test
+    void getAllUsers_ShouldReturnPageWhenCursorGiven() throws Exception {
+        // Arrange
+        UserDTO second = new UserDTO(2L, "second", "second@example.com");
+        when(userService.getUsersPage(1L, 2)).thenReturn(Arrays.asList(second));
+
+        // Act & Assert
+        performAsync(get("/api/users").param("afterId", "1").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(UserController.NEXT_AFTER_ID_HEADER, "2"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(2)));
+
+        verify(userService, times(1)).getUsersPage(1L, 2);
+        verify(userService, never()).getAllUsers();
+        verify(userService, never()).getUserTableStats();
+    }
+
+    @Test
+    void getAllUsers_ShouldTagPageByItsRows() throws Exception {
+        // Arrange
+        when(userService.getUsersPage(1L, 2))
+                .thenReturn(Arrays.asList(new UserDTO(2L, "second", "second@example.com", 1L, null)))
+                .thenReturn(Arrays.asList(new UserDTO(2L, "second", "second@example.com", 1L, null)))
+                .thenReturn(Arrays.asList(new UserDTO(2L, "renamed", "second@example.com", 2L, null)));
+        String eTag = performAsync(get("/api/users").param("afterId", "1").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Act & Assert
+        performAsync(get("/api/users").param("afterId", "1").param("limit", "2").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+        performAsync(get("/api/users").param("afterId", "1").param("limit", "2").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(eTag)));
+        verify(userService, never()).getUserTableStats();
+    }
+
+    @Test
+    void getAllUsers_ShouldOmitCursorHeaderOnLastPage() throws Exception {
+        // Arrange
+        when(userService.getUsersPage(5L, null)).thenReturn(Arrays.<UserDTO>asList());
+
+        // Act & Assert
+        performAsync(get("/api/users").param("afterId", "5"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(UserController.NEXT_AFTER_ID_HEADER))
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamUsers_ShouldWriteNdjson() throws Exception {
+        // Arrange
+        UserDTO second = new UserDTO(2L, "second", "second@example.com");
+        doAnswer(invocation -> {
+            Consumer<UserDTO> consumer = invocation.getArgument(1);
+            consumer.accept(testUserDTO);
+            consumer.accept(second);
+            return null;
+        }).when(userService).streamUsers(isNull(), any(Consumer.class));
+
+        // Act
+        MvcResult result = mockMvc.perform(get("/api/users/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"username\":\"testuser\",\"email\":\"test@example.com\"}\n"
+                        + "{\"id\":2,\"username\":\"second\",\"email\":\"second@example.com\"}\n"));
+    }
+
     @Test
     void getUserById_ShouldReturnUserWhenExists() throws Exception {
         // Arrange
         when(userService.getUserById(1L)).thenReturn(testUserDTO);
 
         // Act & Assert
-        mockMvc.perform(get("/api/users/1"))
+        performAsync(get("/api/users/1"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id", is(1)))
                 .andExpect(jsonPath("$.username", is("testuser")))
@@ -75,13 +182,70 @@ class UserControllerMockTest {
         verify(userService, times(1)).getUserById(1L);
     }
 
+    @Test
+    void getAllUsers_ShouldReturnNotModifiedWithoutLoadingRowsWhenETagMatches() throws Exception {
+        // Arrange
+        UserTableStats stats = new UserTableStats(3L, LocalDateTime.of(2024, 1, 1, 12, 0));
+        when(userService.getUserTableStats()).thenReturn(stats);
+        String eTag = performAsync(get("/api/users"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Act & Assert
+        performAsync(get("/api/users").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().string(""));
+
+        verify(userService, times(1)).getAllUsers();
+    }
+
+    @Test
+    void getAllUsers_ShouldReturnRowsWhenCollectionChanged() throws Exception {
+        // Arrange
+        when(userService.getUserTableStats())
+                .thenReturn(new UserTableStats(3L, LocalDateTime.of(2024, 1, 1, 12, 0)))
+                .thenReturn(new UserTableStats(2L, LocalDateTime.of(2024, 1, 1, 12, 0)));
+        when(userService.getAllUsers()).thenReturn(Arrays.asList(testUserDTO));
+        String eTag = performAsync(get("/api/users"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Act & Assert
+        performAsync(get("/api/users").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(eTag)))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void getUserById_ShouldReturnValidatorsAndNotModified() throws Exception {
+        // Arrange
+        UserDTO user = new UserDTO(1L, "testuser", "test@example.com", 4L, LocalDateTime.of(2024, 1, 1, 12, 0));
+        when(userService.getUserById(1L)).thenReturn(user);
+
+        // Act & Assert
+        performAsync(get("/api/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(jsonPath("$.updatedAt").doesNotExist());
+
+        performAsync(get("/api/users/1").header("If-None-Match", "\"4\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        performAsync(get("/api/users/1").header("If-None-Match", "\"3\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version", is(4)));
+    }
+
     @Test
     void getUserById_ShouldReturnNotFoundWhenNotExists() throws Exception {
         // Arrange
         when(userService.getUserById(999L)).thenReturn(null);
 
         // Act & Assert
-        mockMvc.perform(get("/api/users/999"))
+        performAsync(get("/api/users/999"))
                 .andExpect(status().isNotFound());
 
         verify(userService, times(1)).getUserById(999L);
@@ -93,7 +257,7 @@ class UserControllerMockTest {
         when(userService.getUserByUsername("testuser")).thenReturn(testUserDTO);
 
         // Act & Assert
-        mockMvc.perform(get("/api/users/username/testuser"))
+        performAsync(get("/api/users/username/testuser"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id", is(1)))
                 .andExpect(jsonPath("$.username", is("testuser")))
@@ -108,22 +272,157 @@ class UserControllerMockTest {
         when(userService.getUserByUsername("nonexistent")).thenReturn(null);
 
         // Act & Assert
-        mockMvc.perform(get("/api/users/username/nonexistent"))
+        performAsync(get("/api/users/username/nonexistent"))
                 .andExpect(status().isNotFound());
 
         verify(userService, times(1)).getUserByUsername("nonexistent");
     }
 
+    @Test
+    void lookupUsers_ShouldReturnFoundUsersAndMisses() throws Exception {
+        // Arrange
+        UserLookupResult lookupResult = new UserLookupResult();
+        lookupResult.getById().add(testUserDTO);
+        lookupResult.getMissingIds().add(99L);
+        lookupResult.getMissingUsernames().add("nobody");
+        when(userService.lookupUsers(Arrays.asList(1L, 99L), Arrays.asList("nobody"))).thenReturn(lookupResult);
+
+        // Act & Assert
+        performAsync(post("/api/users/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(
+                        new UserLookupRequest(Arrays.asList(1L, 99L), Arrays.asList("nobody")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.byId[0].username", is("testuser")))
+                .andExpect(jsonPath("$.byUsername", hasSize(0)))
+                .andExpect(jsonPath("$.missingIds[0]", is(99)))
+                .andExpect(jsonPath("$.missingUsernames[0]", is("nobody")));
+    }
+
+    @Test
+    void searchUsers_ShouldBindQueryParameters() throws Exception {
+        // Arrange
+        when(userService.searchUsers(any(UserSearchCriteria.class))).thenReturn(Arrays.asList(testUserDTO));
+
+        // Act & Assert
+        performAsync(get("/api/users/search")
+                .param("usernamePrefix", "test")
+                .param("emailDomain", "example.com")
+                .param("createdFrom", "2024-01-01T00:00:00")
+                .param("updatedTo", "2024-02-01T12:30:00")
+                .param("sort", "updatedAt")
+                .param("direction", "desc")
+                .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].username", is("testuser")));
+
+        verify(userService).searchUsers(argThat(criteria -> "test".equals(criteria.getUsernamePrefix())
+                && "example.com".equals(criteria.getEmailDomain())
+                && LocalDateTime.of(2024, 1, 1, 0, 0).equals(criteria.getCreatedFrom())
+                && LocalDateTime.of(2024, 2, 1, 12, 30).equals(criteria.getUpdatedTo())
+                && "updatedAt".equals(criteria.getSort())
+                && "desc".equals(criteria.getDirection())
+                && Integer.valueOf(10).equals(criteria.getLimit())));
+    }
+
+    @Test
+    void searchUsers_ShouldReturnBadRequestForInvalidCriteria() throws Exception {
+        // Arrange
+        when(userService.searchUsers(any(UserSearchCriteria.class)))
+                .thenThrow(new IllegalArgumentException("cannot sort by version"));
+
+        // Act & Assert
+        performAsync(get("/api/users/search").param("sort", "version"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void suggestUsernames_ShouldReturnMatchingUsernames() throws Exception {
+        // Arrange
+        when(userService.suggestUsernames("te", 5)).thenReturn(Arrays.asList("tester", "testuser"));
+
+        // Act & Assert
+        performAsync(get("/api/users/suggest").param("prefix", "te").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0]", is("tester")));
+    }
+
+    @Test
+    void getUserChanges_ShouldReturnChangesWithoutWaiting() throws Exception {
+        // Arrange
+        UserChange change = new UserChange(UserChange.Type.CREATED, new User("testuser", "test@example.com"));
+        change.setSeq(8L);
+        when(userService.getUserChanges(7L, 50)).thenReturn(Arrays.asList(change));
+
+        // Act & Assert
+        performAsync(get("/api/users/changes").param("since", "7").param("limit", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].seq", is(8)))
+                .andExpect(jsonPath("$[0].type", is("CREATED")));
+
+        verify(userService, never()).nextUserChange(any());
+    }
+
+    @Test
+    void getUserChanges_ShouldReadAgainAfterNextChangeWhenNothingNew() throws Exception {
+        // Arrange
+        UserChange change = new UserChange(UserChange.Type.DELETED, new User("testuser", "test@example.com"));
+        change.setSeq(8L);
+        when(userService.nextUserChange(Duration.ofSeconds(5))).thenReturn(CompletableFuture.completedFuture(null));
+        when(userService.getUserChanges(7L, null))
+                .thenReturn(Collections.<UserChange>emptyList())
+                .thenReturn(Arrays.asList(change));
+
+        // Act & Assert
+        performAsync(get("/api/users/changes").param("since", "7").param("waitSeconds", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].type", is("DELETED")));
+
+        verify(userService, times(2)).getUserChanges(7L, null);
+    }
+
+    @Test
+    void getUserChanges_ShouldCancelWaitWhenExecutorSaturated() throws Exception {
+        // Arrange
+        CompletableFuture<Void> nextChange = new CompletableFuture<>();
+        when(userService.nextUserChange(Duration.ofSeconds(5))).thenReturn(nextChange);
+        Executor saturated = command -> {
+            throw new RejectedExecutionException("queue full");
+        };
+        ReflectionTestUtils.setField(userController, "requestExecutor",
+                new UserRequestExecutor(saturated));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/users/changes").param("since", "7").param("waitSeconds", "5"))
+                .andExpect(status().isServiceUnavailable());
+
+        assertTrue(nextChange.isCancelled());
+    }
+
+    @Test
+    void getUserChanges_ShouldReturnGoneWhenChangesWerePurged() throws Exception {
+        // Arrange
+        when(userService.getUserChanges(3L, null)).thenThrow(new UserChangesExpiredException(3L, 10L));
+
+        // Act & Assert
+        performAsync(get("/api/users/changes").param("since", "3"))
+                .andExpect(status().isGone());
+    }
+
     @Test
     void createUser_ShouldReturnCreatedUser() throws Exception {
         // Arrange
         UserDTO newUserDTO = new UserDTO(null, "newuser", "newuser@example.com");
         UserDTO createdUserDTO = new UserDTO(1L, "newuser", "newuser@example.com");
-        
+
         when(userService.createUser(any(UserDTO.class))).thenReturn(createdUserDTO);
 
         // Act & Assert
-        mockMvc.perform(post("/api/users")
+        performAsync(post("/api/users")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(newUserDTO)))
                 .andExpect(status().isOk())
@@ -148,6 +447,87 @@ class UserControllerMockTest {
         verify(userService, never()).createUser(any(UserDTO.class));
     }
 
+    @Test
+    void createUsers_ShouldReturnPerItemResults() throws Exception {
+        // Arrange
+        List<UserDTO> request = Arrays.asList(
+                new UserDTO(null, "first", "first@example.com"),
+                new UserDTO(null, "", ""));
+        when(userService.createUsers(anyList())).thenReturn(Arrays.asList(
+                new UserBatchItemResult(0, 1L, UserBatchItemResult.Status.CREATED, null),
+                new UserBatchItemResult(1, null, UserBatchItemResult.Status.INVALID, "username is required")));
+
+        // Act & Assert
+        performAsync(post("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].status", is("CREATED")))
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[1].status", is("INVALID")));
+
+        verify(userService, never()).createUser(any(UserDTO.class));
+    }
+
+    @Test
+    void createUsers_ShouldReturnBadRequestWhenBatchTooLarge() throws Exception {
+        // Arrange
+        when(userService.createUsers(anyList())).thenThrow(new IllegalArgumentException("too many"));
+
+        // Act & Assert
+        performAsync(post("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(testUserDTO))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void createUsers_ShouldReturnConflictWhenUsernameTaken() throws Exception {
+        // Arrange
+        when(userService.createUsers(anyList())).thenThrow(new DuplicateKeyException("duplicate"));
+
+        // Act & Assert
+        performAsync(post("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(testUserDTO))))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void updateUsers_ShouldReturnPerItemResults() throws Exception {
+        // Arrange
+        when(userService.updateUsers(anyList())).thenReturn(Arrays.asList(
+                new UserBatchItemResult(0, 999L, UserBatchItemResult.Status.NOT_FOUND, null)));
+
+        // Act & Assert
+        performAsync(put("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(new UserDTO(999L, "ghost", "ghost@example.com")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is("NOT_FOUND")));
+
+        verify(userService, never()).updateUser(anyLong(), any(UserDTO.class));
+    }
+
+    @Test
+    void deleteUsers_ShouldReturnPerItemResults() throws Exception {
+        // Arrange
+        when(userService.deleteUsers(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(
+                new UserBatchItemResult(0, 1L, UserBatchItemResult.Status.DELETED, null),
+                new UserBatchItemResult(1, 2L, UserBatchItemResult.Status.NOT_FOUND, null)));
+
+        // Act & Assert
+        performAsync(delete("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1,2]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is("DELETED")))
+                .andExpect(jsonPath("$[1].status", is("NOT_FOUND")));
+
+        verify(userService, never()).deleteUser(anyLong());
+    }
+
     @Test
     void updateUser_ShouldReturnUpdatedUserWhenExists() throws Exception {
         // Arrange
@@ -155,7 +535,7 @@ class UserControllerMockTest {
         when(userService.updateUser(anyLong(), any(UserDTO.class))).thenReturn(updateDTO);
 
         // Act & Assert
-        mockMvc.perform(put("/api/users/1")
+        performAsync(put("/api/users/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(updateDTO)))
                 .andExpect(status().isOk())
@@ -173,7 +553,7 @@ class UserControllerMockTest {
         when(userService.updateUser(anyLong(), any(UserDTO.class))).thenReturn(null);
 
         // Act & Assert
-        mockMvc.perform(put("/api/users/999")
+        performAsync(put("/api/users/999")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(updateDTO)))
                 .andExpect(status().isNotFound());
@@ -181,13 +561,76 @@ class UserControllerMockTest {
         verify(userService, times(1)).updateUser(eq(999L), any(UserDTO.class));
     }
 
+    @Test
+    void updateUser_ShouldApplyIfMatchVersionAndReturnNewETag() throws Exception {
+        // Arrange
+        UserDTO updateDTO = new UserDTO(1L, "updateduser", "updated@example.com");
+        when(userService.updateUser(eq(1L), any(UserDTO.class), eq(3L)))
+                .thenReturn(new UserDTO(1L, "updateduser", "updated@example.com", 4L));
+
+        // Act & Assert
+        performAsync(put("/api/users/1")
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updateDTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.version", is(4)));
+
+        verify(userService, never()).updateUser(anyLong(), any(UserDTO.class));
+    }
+
+    @Test
+    void updateUser_ShouldReturnPreconditionFailedOnVersionConflict() throws Exception {
+        // Arrange
+        UserDTO updateDTO = new UserDTO(1L, "updateduser", "updated@example.com");
+        when(userService.updateUser(eq(1L), any(UserDTO.class), eq(3L)))
+                .thenThrow(new UserVersionConflictException(1L, 3L));
+
+        // Act & Assert
+        performAsync(put("/api/users/1")
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updateDTO)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void updateUser_ShouldRejectWeakIfMatch() throws Exception {
+        // Arrange
+        UserDTO updateDTO = new UserDTO(1L, "updateduser", "updated@example.com");
+
+        // Act & Assert
+        performAsync(put("/api/users/1")
+                .header("If-Match", "W/\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updateDTO)))
+                .andExpect(status().isPreconditionFailed());
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void updateUser_ShouldReturnPreconditionFailedForWildcardWhenMissing() throws Exception {
+        // Arrange
+        UserDTO updateDTO = new UserDTO(999L, "updateduser", "updated@example.com");
+        when(userService.updateUser(eq(999L), any(UserDTO.class))).thenReturn(null);
+
+        // Act & Assert
+        performAsync(put("/api/users/999")
+                .header("If-Match", "*")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updateDTO)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     void deleteUser_ShouldReturnNoContentWhenExists() throws Exception {
         // Arrange
         when(userService.deleteUser(1L)).thenReturn(true);
 
         // Act & Assert
-        mockMvc.perform(delete("/api/users/1"))
+        performAsync(delete("/api/users/1"))
                 .andExpect(status().isNoContent());
 
         verify(userService, times(1)).deleteUser(1L);
@@ -199,7 +642,7 @@ class UserControllerMockTest {
         when(userService.deleteUser(999L)).thenReturn(false);
 
         // Act & Assert
-        mockMvc.perform(delete("/api/users/999"))
+        performAsync(delete("/api/users/999"))
                 .andExpect(status().isNotFound());
 
         verify(userService, times(1)).deleteUser(999L);
@@ -218,4 +661,45 @@ class UserControllerMockTest {
 
         verify(userService, never()).createUser(any(UserDTO.class));
     }
+
+    @Test
+    void getUserById_ShouldRunOnRequestExecutor() throws Exception {
+        // Arrange
+        when(userService.getUserById(1L)).thenReturn(testUserDTO);
+
+        // Act
+        MvcResult result = mockMvc.perform(get("/api/users/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username", is("testuser")));
+        verify(requestExecutor).submit(any());
+    }
+
+    @Test
+    void getUserById_ShouldReturnServiceUnavailableWhenExecutorSaturated() throws Exception {
+        // Arrange
+        Executor saturated = command -> {
+            throw new RejectedExecutionException("queue full");
+        };
+        ReflectionTestUtils.setField(userController, "requestExecutor",
+                new UserRequestExecutor(saturated));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/users/1"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+
+        verify(userService, never()).getUserById(anyLong());
+    }
+
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.compare.demo.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserRequestExecutorTest {
+
+    // stands in for the virtual thread per task executor, which needs Java 21
+    private final ExecutorService threadPerTask = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        threadPerTask.shutdownNow();
+    }
+
+    @Test
+    void submit_ShouldRejectBeyondMaxInFlightAndAdmitAgainOnceWorkEnds() throws Exception {
+        // Arrange
+        UserRequestExecutor requestExecutor = new UserRequestExecutor(threadPerTask, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = requestExecutor.submit(() -> await(release));
+        CompletableFuture<String> second = requestExecutor.submit(() -> await(release));
+
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class, () -> requestExecutor.submit(() -> "third"));
+        assertEquals(2, requestExecutor.getInFlight());
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        // the permit is returned just after the future completes
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (requestExecutor.getInFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, requestExecutor.getInFlight());
+        assertEquals("fourth", requestExecutor.submit(() -> "fourth").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submit_ShouldReturnPermitWhenExecutorRejects() {
+        // Arrange
+        UserRequestExecutor requestExecutor = new UserRequestExecutor(threadPerTask, 1);
+        threadPerTask.shutdown();
+
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class, () -> requestExecutor.submit(() -> "rejected"));
+        assertEquals(0, requestExecutor.getInFlight());
+    }
+
+    private static String await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
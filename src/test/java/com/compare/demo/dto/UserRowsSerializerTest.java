@@ -0,0 +1,79 @@
+package com.compare.demo.dto;
+
+import com.compare.demo.entity.User;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserRowsSerializerTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(UserRowsSerializer.module())
+            .build();
+
+    private final JavaType listType = objectMapper.getTypeFactory().constructCollectionType(List.class, UserDTO.class);
+
+    @Test
+    void serialize_ShouldWriteRowsLikeConvertedDTOs() throws Exception {
+        // Arrange
+        List<User> rows = Arrays.asList(user(1L, "alice", "alice@example.com", 3L), user(2L, "bob", null, null));
+        List<UserDTO> converted = new ArrayList<>();
+        for (User row : rows) {
+            converted.add(UserRows.toDTO(row));
+        }
+        // what Jackson writes for UserDTO without the module
+        String expected = Jackson2ObjectMapperBuilder.json().build().writerFor(listType).writeValueAsString(converted);
+
+        // Act
+        String declared = objectMapper.writerFor(listType).writeValueAsString(new UserRows(rows));
+        String runtime = objectMapper.writeValueAsString(new UserRows(rows));
+
+        // Assert
+        assertEquals(expected, declared);
+        assertEquals(expected, runtime);
+        assertEquals("[{\"id\":1,\"username\":\"alice\",\"email\":\"alice@example.com\",\"version\":3},"
+                + "{\"id\":2,\"username\":\"bob\",\"email\":null}]", declared);
+    }
+
+    @Test
+    void serialize_ShouldLeaveOtherUserDTOListsToJackson() throws Exception {
+        // Arrange
+        List<UserDTO> users = Collections.singletonList(new UserDTO(5L, "carol", "carol@example.com", 1L));
+
+        // Act
+        String json = objectMapper.writerFor(listType).writeValueAsString(users);
+
+        // Assert
+        assertEquals("[{\"id\":5,\"username\":\"carol\",\"email\":\"carol@example.com\",\"version\":1}]", json);
+    }
+
+    @Test
+    void get_ShouldConvertRowOnAccess() {
+        // Arrange
+        UserRows users = new UserRows(Collections.singletonList(user(7L, "dave", "dave@example.com", 2L)));
+
+        // Act
+        UserDTO user = users.get(0);
+
+        // Assert
+        assertEquals(1, users.size());
+        assertEquals(7L, user.getId());
+        assertEquals("dave", user.getUsername());
+        assertEquals(2L, user.getVersion());
+    }
+
+    private static User user(Long id, String username, String email, Long version) {
+        User user = new User(username, email);
+        user.setId(id);
+        user.setVersion(version);
+        return user;
+    }
+}
@@ -0,0 +1,108 @@
+package com.compare.demo.integration;
+
+import com.compare.demo.config.ReadYourWritesFilter;
+import com.compare.demo.dto.UserDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.servlet.http.Cookie;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Two H2 databases stand in for a primary and a replica that never catches up, so where a read
+ * was served from shows in its result.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingIntegrationTest.PRIMARY_URL,
+        "user.datasource.replica.url=" + ReadReplicaRoutingIntegrationTest.REPLICA_URL,
+        "user.datasource.replica.username=sa",
+        "user.datasource.replica.read-your-writes-window=1m"
+})
+@AutoConfigureMockMvc
+class ReadReplicaRoutingIntegrationTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:rw-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:rw-replica;DB_CLOSE_DELAY=-1";
+
+    private static final JdbcTemplate replica;
+
+    static {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(), REPLICA_URL, "sa", "");
+        // the replica gets the schema from replication in production
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        replica = new JdbcTemplate(dataSource);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void getUserByUsername_ShouldReadFromReplica() throws Exception {
+        // Arrange
+        replica.update("INSERT INTO users (username, email, created_at, updated_at, version) "
+                + "VALUES ('replicaonly', 'replica@example.com', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0)");
+
+        // Act & Assert
+        performAsync(get("/api/users/username/replicaonly"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email", is("replica@example.com")));
+    }
+
+    @Test
+    void getUserByUsername_ShouldReadOwnWriteFromPrimaryWithinWindow() throws Exception {
+        // Arrange
+        UserDTO user = new UserDTO(null, "writer", "writer@example.com");
+        MvcResult created = performAsync(post("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isOk())
+                .andReturn();
+        Cookie cookie = created.getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+
+        // Act & Assert
+        assertNotNull(cookie);
+        performAsync(get("/api/users/username/writer").cookie(cookie))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username", is("writer")));
+        // another client reads the replica, which has not seen the write
+        performAsync(get("/api/users/username/writer"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getUserByUsername_ShouldIgnoreExpiredWindow() throws Exception {
+        // Arrange
+        replica.update("INSERT INTO users (username, email, created_at, updated_at, version) "
+                + "VALUES ('stale', 'stale@example.com', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0)");
+        Cookie expired = new Cookie(ReadYourWritesFilter.COOKIE_NAME, String.valueOf(System.currentTimeMillis() - 1));
+
+        // Act & Assert
+        performAsync(get("/api/users/username/stale").cookie(expired))
+                .andExpect(status().isOk());
+    }
+
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,150 @@
+package com.compare.demo.integration;
+
+import com.compare.demo.dto.UserDTO;
+import com.compare.demo.mapper.ShardedUserMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * The application on a main H2 database and two H2 shards.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sharded-main;DB_CLOSE_DELAY=-1",
+        "user.sharding.urls=" + ShardedUserStorageIntegrationTest.SHARD_0 + "," + ShardedUserStorageIntegrationTest.SHARD_1,
+        "user.sharding.username=sa"
+})
+@AutoConfigureMockMvc
+class ShardedUserStorageIntegrationTest {
+
+    static final String SHARD_0 = "jdbc:h2:mem:sharded-0;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1 = "jdbc:h2:mem:sharded-1;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void createdUsers_ShouldSpreadOverShardsAndBeFoundByIdAndUsername() throws Exception {
+        // Arrange
+        List<UserDTO> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(new UserDTO(null, "spread" + i, "spread" + i + "@example.com"));
+        }
+
+        // Act
+        performAsync(post("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk());
+        JsonNode created = json(performAsync(post("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new UserDTO(null, "single", "single@example.com"))))
+                .andExpect(status().isOk()));
+
+        // Assert
+        long id = created.get("id").asLong();
+        assertEquals(21, spreadUsers(SHARD_0) + spreadUsers(SHARD_1));
+        assertTrue(spreadUsers(SHARD_0) > 0 && spreadUsers(SHARD_1) > 0);
+        assertEquals(1, (int) shard(ShardedUserMapper.shardOf(id, 2)).queryForObject(
+                "SELECT COUNT(*) FROM users WHERE username = 'single'", Integer.class));
+        performAsync(get("/api/users/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username", is("single")));
+        performAsync(get("/api/users/username/spread7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email", is("spread7@example.com")));
+        performAsync(get("/api/users/search").param("usernamePrefix", "spread1").param("sort", "username"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].username", contains("spread1", "spread10", "spread11", "spread12",
+                        "spread13", "spread14", "spread15", "spread16", "spread17", "spread18", "spread19")));
+    }
+
+    @Test
+    void createUser_ShouldRejectUsernameTakenOnAnyShard() throws Exception {
+        // Arrange
+        UserDTO user = new UserDTO(null, "unique", "unique@example.com");
+        performAsync(post("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isOk());
+
+        // Act & Assert
+        for (int i = 0; i < 4; i++) {
+            performAsync(post("/api/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(user)))
+                    .andExpect(status().isConflict());
+        }
+    }
+
+    @Test
+    void updateUser_ShouldMoveUsernameAndRecordChange() throws Exception {
+        // Arrange
+        JsonNode created = json(performAsync(post("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new UserDTO(null, "before", "before@example.com"))))
+                .andExpect(status().isOk()));
+        long id = created.get("id").asLong();
+
+        // Act
+        performAsync(put("/api/users/" + id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new UserDTO(null, "after", "after@example.com"))))
+                .andExpect(status().isOk());
+
+        // Assert
+        performAsync(get("/api/users/username/after"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(id));
+        performAsync(get("/api/users/username/before"))
+                .andExpect(status().isNotFound());
+        performAsync(get("/api/users/changes").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.userId == " + id + ")].type", contains("CREATED", "UPDATED")));
+    }
+
+    private int spreadUsers(String url) {
+        return shard(url).queryForObject("SELECT COUNT(*) FROM users WHERE username LIKE 'spread%' OR username = 'single'",
+                Integer.class);
+    }
+
+    private JdbcTemplate shard(int shard) {
+        return shard(shard == 0 ? SHARD_0 : SHARD_1);
+    }
+
+    private JdbcTemplate shard(String url) {
+        return new JdbcTemplate(new SimpleDriverDataSource(new org.h2.Driver(), url, "sa", ""));
+    }
+
+    private JsonNode json(ResultActions result) throws Exception {
+        return objectMapper.readTree(result.andReturn().getResponse().getContentAsString());
+    }
+
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
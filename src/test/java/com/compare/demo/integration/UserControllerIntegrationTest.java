@@ -11,10 +11,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import java.util.Arrays;
 import java.util.List;
 
+import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.when;
@@ -42,19 +46,19 @@ class UserControllerIntegrationTest {
 
         // Test GET all users
         when(userService.getAllUsers()).thenReturn(userList);
-        mockMvc.perform(get("/api/users"))
+        performAsync(get("/api/users"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].username", is("integrationuser")));
 
         // Test GET user by ID
         when(userService.getUserById(1L)).thenReturn(testUser);
-        mockMvc.perform(get("/api/users/1"))
+        performAsync(get("/api/users/1"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.username", is("integrationuser")));
 
         // Test GET user by username
         when(userService.getUserByUsername("integrationuser")).thenReturn(testUser);
-        mockMvc.perform(get("/api/users/username/integrationuser"))
+        performAsync(get("/api/users/username/integrationuser"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.email", is("integration@example.com")));
 
@@ -62,8 +66,8 @@ class UserControllerIntegrationTest {
         UserDTO newUser = new UserDTO(null, "newuser", "newuser@example.com");
         UserDTO createdUser = new UserDTO(2L, "newuser", "newuser@example.com");
         when(userService.createUser(any(UserDTO.class))).thenReturn(createdUser);
-        
-        mockMvc.perform(post("/api/users")
+
+        performAsync(post("/api/users")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(newUser)))
                 .andExpect(status().isOk())
@@ -73,8 +77,8 @@ class UserControllerIntegrationTest {
         // Test PUT update user
         UserDTO updateUser = new UserDTO(1L, "updateduser", "updated@example.com");
         when(userService.updateUser(anyLong(), any(UserDTO.class))).thenReturn(updateUser);
-        
-        mockMvc.perform(put("/api/users/1")
+
+        performAsync(put("/api/users/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(updateUser)))
                 .andExpect(status().isOk())
@@ -83,7 +87,7 @@ class UserControllerIntegrationTest {
 
         // Test DELETE user
         when(userService.deleteUser(1L)).thenReturn(true);
-        mockMvc.perform(delete("/api/users/1"))
+        performAsync(delete("/api/users/1"))
                 .andExpect(status().isNoContent());
     }
 
@@ -91,20 +95,28 @@ class UserControllerIntegrationTest {
     void endpointErrorHandlingIntegrationTest() throws Exception {
         // Test 404 for non-existent user
         when(userService.getUserById(999L)).thenReturn(null);
-        mockMvc.perform(get("/api/users/999"))
+        performAsync(get("/api/users/999"))
                 .andExpect(status().isNotFound());
 
         // Test 404 for update non-existent user
         when(userService.updateUser(anyLong(), any(UserDTO.class))).thenReturn(null);
         UserDTO updateDTO = new UserDTO(999L, "test", "test@example.com");
-        mockMvc.perform(put("/api/users/999")
+        performAsync(put("/api/users/999")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(updateDTO)))
                 .andExpect(status().isNotFound());
 
         // Test 404 for delete non-existent user
         when(userService.deleteUser(999L)).thenReturn(false);
-        mockMvc.perform(delete("/api/users/999"))
+        performAsync(delete("/api/users/999"))
                 .andExpect(status().isNotFound());
     }
+
+    // user endpoints complete asynchronously on the request executor
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
 }
\ No newline at end of file
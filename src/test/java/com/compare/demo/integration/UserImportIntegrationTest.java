@@ -0,0 +1,105 @@
+package com.compare.demo.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bulk import through the real mapper and batch executor, in batches of two rows.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:import;DB_CLOSE_DELAY=-1",
+        "user.import.batch-size=2"
+})
+@AutoConfigureMockMvc
+class UserImportIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importUsers_ShouldImportCsvAndSkipCommittedRowsOnRerun() throws Exception {
+        // Arrange
+        String csv = "username,email\n"
+                + "import1,import1@example.com\n"
+                + "import2,broken\n"
+                + "import3,import3@example.com\n"
+                + "import1,again@example.com\n"
+                + "import5,import5@example.com\n";
+
+        // Act
+        List<JsonNode> first = importCsv("partner-2026", csv);
+        List<JsonNode> rerun = importCsv("partner-2026", csv);
+
+        // Assert
+        JsonNode completed = first.get(first.size() - 1);
+        assertEquals("COMPLETED", completed.get("type").asText());
+        assertEquals(5, completed.get("committedRows").asLong());
+        assertEquals(3, completed.get("importedRows").asLong());
+        assertEquals(2, completed.get("rejectedRows").asLong());
+        assertEquals("REJECTED", first.get(0).get("type").asText());
+        assertEquals(2, first.get(0).get("row").asLong());
+        assertTrue(first.stream().anyMatch(event -> event.path("row").asLong() == 4
+                && event.get("message").asText().equals("username already exists")));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE username LIKE 'import%'", Integer.class));
+        assertEquals(1, rerun.size());
+        assertEquals(completed, rerun.get(0));
+    }
+
+    @Test
+    void importUsers_ShouldImportNdjson() throws Exception {
+        // Act
+        String body = mockMvc.perform(post("/api/users/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"username\":\"ndjson1\",\"email\":\"ndjson1@example.com\"}\n"
+                                + "{\"username\":\"ndjson2\",\"email\":\"ndjson2@example.com\"}\n"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Assert
+        assertTrue(body.trim().endsWith("\"type\":\"COMPLETED\",\"committedRows\":2,\"importedRows\":2,\"rejectedRows\":0}"));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE username LIKE 'ndjson%'", Integer.class));
+    }
+
+    @Test
+    void importUsers_ShouldRejectCsvWithoutHeader() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/api/users/import")
+                        .contentType("text/csv")
+                        .content("headless,headless@example.com\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private List<JsonNode> importCsv(String importId, String csv) throws Exception {
+        String body = mockMvc.perform(post("/api/users/import")
+                        .param("importId", importId)
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<JsonNode> events = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            events.add(objectMapper.readTree(line));
+        }
+        return events;
+    }
+}
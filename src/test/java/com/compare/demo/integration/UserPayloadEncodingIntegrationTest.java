@@ -0,0 +1,152 @@
+package com.compare.demo.integration;
+
+import com.compare.demo.dto.UserDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Content negotiation and compression through the real servlet container, which MockMvc skips.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:encoding;DB_CLOSE_DELAY=-1")
+class UserPayloadEncodingIntegrationTest {
+
+    private static final String CBOR = "application/cbor";
+    private static final String SMILE = "application/x-jackson-smile";
+
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void createUser_ShouldAcceptSmileAndAnswerInCbor() throws Exception {
+        // Arrange
+        byte[] body = smileMapper.writeValueAsBytes(new UserDTO(null, "binary", "binary@example.com"));
+
+        // Act
+        HttpURLConnection created = request("POST", "/users", SMILE, CBOR, null, body);
+        JsonNode user = cborMapper.readTree(read(created));
+        HttpURLConnection found = request("GET", "/users/" + user.get("id").asLong(), null, SMILE, null, null);
+
+        // Assert
+        assertEquals(200, created.getResponseCode());
+        assertEquals(CBOR, created.getContentType());
+        assertEquals("binary", user.get("username").asText());
+        assertEquals(SMILE, found.getContentType());
+        assertEquals("binary@example.com", smileMapper.readTree(read(found)).get("email").asText());
+        assertTrue(found.getHeaderFields().get(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT));
+    }
+
+    @Test
+    void getAllUsers_ShouldGzipLargeResponsesOnly() throws Exception {
+        // Arrange
+        List<UserDTO> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new UserDTO(null, "gzip" + i, "gzip" + i + "@example.com"));
+        }
+        request("POST", "/users/batch", "application/json", null, null, objectMapper.writeValueAsBytes(batch)).getResponseCode();
+
+        // Act
+        HttpURLConnection list = request("GET", "/users", null, "application/json", "gzip", null);
+        HttpURLConnection cborList = request("GET", "/users", null, CBOR, "gzip", null);
+        HttpURLConnection single = request("GET", "/users/username/gzip1", null, "application/json", "gzip", null);
+
+        // Assert
+        assertEquals("gzip", list.getContentEncoding());
+        assertTrue(list.getHeaderField(HttpHeaders.ETAG).matches("W/\".+-json-gzip\""));
+        JsonNode users;
+        try (InputStream in = new GZIPInputStream(list.getInputStream())) {
+            users = objectMapper.readTree(in);
+        }
+        assertTrue(users.size() >= 100);
+        assertEquals("gzip", cborList.getContentEncoding());
+        try (InputStream in = new GZIPInputStream(cborList.getInputStream())) {
+            assertEquals(users, cborMapper.readTree(in));
+        }
+        assertNull(single.getContentEncoding());
+        assertTrue(single.getContentLength() > 0);
+        assertEquals("gzip1", objectMapper.readTree(read(single)).get("username").asText());
+    }
+
+    @Test
+    void getUser_ShouldRevalidateEachEncodingByItsOwnTag() throws Exception {
+        // Arrange
+        byte[] body = objectMapper.writeValueAsBytes(new UserDTO(null, "tagged", "tagged@example.com"));
+        long id = objectMapper.readTree(read(request("POST", "/users", "application/json", null, null, body))).get("id").asLong();
+        HttpURLConnection json = request("GET", "/users/" + id, null, "application/json", null, null);
+        String jsonTag = json.getHeaderField(HttpHeaders.ETAG);
+
+        // Act
+        HttpURLConnection sameEncoding = request("GET", "/users/" + id, null, "application/json", null, null);
+        sameEncoding.setRequestProperty(HttpHeaders.IF_NONE_MATCH, jsonTag);
+        HttpURLConnection otherEncoding = request("GET", "/users/" + id, null, CBOR, null, null);
+        otherEncoding.setRequestProperty(HttpHeaders.IF_NONE_MATCH, jsonTag);
+
+        // Assert
+        assertTrue(jsonTag.matches("\"\\d+-json\""), jsonTag);
+        assertEquals(304, sameEncoding.getResponseCode());
+        assertEquals(200, otherEncoding.getResponseCode());
+        assertEquals(jsonTag.replace("-json", "-cbor"), otherEncoding.getHeaderField(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void getUser_ShouldRejectUnsupportedEncoding() throws Exception {
+        // Act
+        HttpURLConnection response = request("GET", "/users", null, "application/x-protobuf", null, null);
+
+        // Assert
+        assertEquals(406, response.getResponseCode());
+    }
+
+    private HttpURLConnection request(String method, String path, String contentType, String accept, String acceptEncoding,
+                                      byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/api/api" + path).openConnection();
+        connection.setRequestMethod(method);
+        if (contentType != null) {
+            connection.setRequestProperty(HttpHeaders.CONTENT_TYPE, contentType);
+        }
+        if (accept != null) {
+            connection.setRequestProperty(HttpHeaders.ACCEPT, accept);
+        }
+        if (acceptEncoding != null) {
+            connection.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        return connection;
+    }
+
+    private static byte[] read(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+}
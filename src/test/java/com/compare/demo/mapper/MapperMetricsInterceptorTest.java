@@ -0,0 +1,96 @@
+package com.compare.demo.mapper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MapperMetricsInterceptorTest {
+
+    @Mock
+    private Executor executor;
+
+    private SimpleMeterRegistry meterRegistry;
+    private Executor instrumented;
+    private Configuration configuration;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        instrumented = (Executor) new MapperMetricsInterceptor(meterRegistry).plugin(executor);
+        configuration = new Configuration();
+    }
+
+    @Test
+    void query_ShouldTimeStatementAndRecordRows() throws Exception {
+        // Arrange
+        MappedStatement findAll = statement("findAll", SqlCommandType.SELECT);
+        when(executor.query(eq(findAll), isNull(), any(RowBounds.class), isNull()))
+                .thenReturn(Arrays.asList("a", "b", "c"));
+
+        // Act
+        instrumented.query(findAll, null, RowBounds.DEFAULT, (ResultHandler<?>) null);
+
+        // Assert
+        Timer timer = meterRegistry.get("user.mapper")
+                .tags("mapper", "UserMapper", "statement", "findAll", "outcome", "success").timer();
+        assertEquals(1, timer.count());
+        DistributionSummary rows = meterRegistry.get("user.mapper.rows").tag("statement", "findAll").summary();
+        assertEquals(1, rows.count());
+        assertEquals(3.0, rows.totalAmount());
+    }
+
+    @Test
+    void update_ShouldRecordAffectedRows() throws Exception {
+        // Arrange
+        MappedStatement deleteById = statement("deleteById", SqlCommandType.DELETE);
+        when(executor.update(deleteById, 1L)).thenReturn(1);
+
+        // Act
+        instrumented.update(deleteById, 1L);
+
+        // Assert
+        assertEquals(1, meterRegistry.get("user.mapper").tag("statement", "deleteById").timer().count());
+        assertEquals(1.0, meterRegistry.get("user.mapper.rows").tag("statement", "deleteById").summary().totalAmount());
+    }
+
+    @Test
+    void update_ShouldTagFailuresWithException() throws Exception {
+        // Arrange
+        MappedStatement insert = statement("insert", SqlCommandType.INSERT);
+        when(executor.update(eq(insert), any())).thenThrow(new SQLException("duplicate"));
+
+        // Act & Assert
+        assertThrows(SQLException.class, () -> instrumented.update(insert, "user"));
+        Timer failures = meterRegistry.get("user.mapper")
+                .tags("statement", "insert", "outcome", "error", "exception", "SQLException").timer();
+        assertEquals(1, failures.count());
+        assertEquals(0, meterRegistry.get("user.mapper.rows").tag("statement", "insert").summary().count());
+    }
+
+    private MappedStatement statement(String name, SqlCommandType type) {
+        return new MappedStatement.Builder(configuration, UserMapper.class.getName() + "." + name,
+                new StaticSqlSource(configuration, "SELECT 1"), type).build();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,475 @@
+package com.compare.demo.mapper;
+
+import com.compare.demo.dto.UserSearchCriteria;
+import com.compare.demo.entity.User;
+import com.compare.demo.service.SnowflakeUserIdGenerator;
+import com.compare.demo.service.UserIdGenerator;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link ShardedUserMapper} on three H2 shards and checks its merged results against the
+ * plain {@link UserMapper} on one database holding the same users.
+ */
+class ShardedUserMapperTest {
+
+    private static final int SHARDS = 3;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final List<DataSource> shardDataSources = new ArrayList<>();
+    private final List<JdbcTemplate> shardTables = new ArrayList<>();
+    private final UserIdGenerator idGenerator = new SnowflakeUserIdGenerator(0, Duration.ofSeconds(5));
+    private DataSource indexDataSource;
+    private ShardedUserMapper shardedMapper;
+    private SqlSession referenceSession;
+    private UserMapper referenceMapper;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < SHARDS; i++) {
+            DataSource shard = database("sharded-users-" + i);
+            shardDataSources.add(shard);
+            shardTables.add(new JdbcTemplate(shard));
+        }
+        indexDataSource = database("sharded-users-index");
+        shardedMapper = new ShardedUserMapper(shardDataSources, indexDataSource,
+                Collections.emptyList(), 4, 10);
+        shardedMapper.checkShardCount();
+        Configuration configuration = new Configuration(
+                new Environment("reference", new JdbcTransactionFactory(), database("sharded-users-reference")));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(UserMapper.class);
+        referenceSession = new SqlSessionFactoryBuilder().build(configuration).openSession(true);
+        referenceMapper = referenceSession.getMapper(UserMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardedMapper.close();
+        referenceSession.close();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shardOf_ShouldSpreadTimeOrderedIds() {
+        // Act
+        int[] perShard = new int[SHARDS];
+        for (int i = 0; i < 3000; i++) {
+            perShard[ShardedUserMapper.shardOf(idGenerator.nextId(), SHARDS)]++;
+        }
+
+        // Assert
+        for (int count : perShard) {
+            assertTrue(count > 900 && count < 1100, Arrays.toString(perShard));
+        }
+    }
+
+    @Test
+    void insertWithId_ShouldStoreEachUserOnTheShardOfItsId() {
+        // Act
+        List<User> users = insertUsers(30);
+
+        // Assert
+        for (User user : users) {
+            int shard = ShardedUserMapper.shardOf(user.getId(), SHARDS);
+            assertEquals(1, (int) shardTables.get(shard).queryForObject(
+                    "SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, user.getId()));
+            assertEquals(user.getUsername(), shardedMapper.findById(user.getId()).getUsername());
+            assertEquals(user.getId(), shardedMapper.findByUsername(user.getUsername()).getId());
+        }
+        for (JdbcTemplate shard : shardTables) {
+            assertTrue(shard.queryForObject("SELECT COUNT(*) FROM users", Integer.class) > 0);
+        }
+        assertNull(shardedMapper.findByUsername("nobody"));
+        assertNull(shardedMapper.findById(idGenerator.nextId()));
+    }
+
+    @Test
+    void checkShardCount_ShouldRefuseShardCountOtherThanRecorded() {
+        // Arrange
+        ShardedUserMapper fewerShards = new ShardedUserMapper(shardDataSources.subList(0, SHARDS - 1), indexDataSource,
+                Collections.emptyList(), 4, 10);
+        ShardedUserMapper sameShards = new ShardedUserMapper(shardDataSources, indexDataSource,
+                Collections.emptyList(), 4, 10);
+
+        // Act & Assert
+        try {
+            assertThrows(IllegalStateException.class, fewerShards::checkShardCount);
+            sameShards.checkShardCount();
+        } finally {
+            fewerShards.close();
+            sameShards.close();
+        }
+        assertEquals(SHARDS, (int) new JdbcTemplate(indexDataSource).queryForObject(
+                "SELECT shard_count FROM user_shard_layout", Integer.class));
+    }
+
+    @Test
+    void insertWithId_ShouldRejectUsernameTakenOnAnotherShard() {
+        // Arrange
+        shardedMapper.insertWithId(user("alice", 0));
+
+        // Act & Assert
+        for (int i = 0; i < SHARDS; i++) {
+            assertThrows(DuplicateKeyException.class, () -> shardedMapper.insertWithId(user("alice", 1)));
+        }
+        assertEquals(1, shardedMapper.findTableStats().getUserCount());
+    }
+
+    @Test
+    void search_ShouldMergeShardsLikeOneDatabase() {
+        // Arrange
+        for (User user : insertUsers(60)) {
+            referenceMapper.insertWithId(user);
+        }
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        List<String> orders = Arrays.asList("id ASC", "username DESC", "email ASC, id ASC",
+                "created_at DESC, id DESC", "updated_at ASC, id ASC");
+
+        // Act & Assert
+        for (String orderBy : orders) {
+            for (int offset : new int[]{0, 7, 55, 60}) {
+                assertEquals(ids(referenceMapper.search(criteria, null, null, orderBy, offset, 10)),
+                        ids(shardedMapper.search(criteria, null, null, orderBy, offset, 10)), orderBy + " from " + offset);
+            }
+        }
+        assertEquals(ids(referenceMapper.search(criteria, "user1%", "example3.com", "id ASC", 0, 100)),
+                ids(shardedMapper.search(criteria, "user1%", "example3.com", "id ASC", 0, 100)));
+    }
+
+    @Test
+    void findPageAndStreamAfter_ShouldReturnAllShardsInIdOrder() throws Exception {
+        // Arrange
+        List<Long> expected = ids(insertUsers(25));
+        Collections.sort(expected);
+
+        // Act
+        List<Long> paged = new ArrayList<>();
+        Long afterId = null;
+        List<User> page;
+        while (!(page = shardedMapper.findPage(afterId, 7)).isEmpty()) {
+            paged.addAll(ids(page));
+            afterId = page.get(page.size() - 1).getId();
+        }
+        List<Long> streamed = new ArrayList<>();
+        try (Cursor<User> cursor = shardedMapper.streamAfter(expected.get(4))) {
+            cursor.forEach(user -> streamed.add(user.getId()));
+        }
+
+        // Assert
+        assertEquals(expected, paged);
+        assertEquals(expected.subList(5, expected.size()), streamed);
+        assertEquals(25, shardedMapper.findAll().size());
+        assertEquals(25, shardedMapper.findTableStats().getUserCount());
+    }
+
+    @Test
+    void streamUpdatedSince_ShouldReturnRecentlyUpdatedUsersOfAllShardsInIdOrder() throws Exception {
+        // Arrange
+        List<Long> expected = insertUsers(25).stream()
+                .filter(user -> !user.getUpdatedAt().isBefore(EPOCH.plusMinutes(2)))
+                .map(User::getId)
+                .sorted()
+                .collect(Collectors.toList());
+
+        // Act
+        List<Long> streamed = new ArrayList<>();
+        try (Cursor<User> cursor = shardedMapper.streamUpdatedSince(EPOCH.plusMinutes(2))) {
+            cursor.forEach(user -> streamed.add(user.getId()));
+        }
+
+        // Assert
+        assertEquals(8, expected.size());
+        assertEquals(expected, streamed);
+    }
+
+    @Test
+    void updateReturningOld_ShouldMoveUsernameInIndex() {
+        // Arrange
+        User alice = user("alice", 0);
+        shardedMapper.insertWithId(alice);
+        User renamed = user("alicia", 0);
+        renamed.setId(alice.getId());
+
+        // Act
+        User previous = shardedMapper.updateReturningOld(renamed);
+
+        // Assert
+        assertEquals("alice", previous.getUsername());
+        assertEquals(alice.getId(), shardedMapper.findByUsername("alicia").getId());
+        assertNull(shardedMapper.findByUsername("alice"));
+        shardedMapper.insertWithId(user("alice", 1));
+    }
+
+    @Test
+    void updateReturningOld_ShouldKeepUsernameWhenVersionConflicts() {
+        // Arrange
+        User alice = user("alice", 0);
+        shardedMapper.insertWithId(alice);
+        User renamed = user("alicia", 0);
+        renamed.setId(alice.getId());
+        renamed.setVersion(5L);
+
+        // Act
+        User previous = shardedMapper.updateReturningOld(renamed);
+
+        // Assert
+        assertNull(previous);
+        assertNotNull(shardedMapper.findByUsername("alice"));
+        shardedMapper.insertWithId(user("alicia", 1));
+    }
+
+    @Test
+    void deleteReturningOld_ShouldReleaseUsername() {
+        // Arrange
+        User alice = user("alice", 0);
+        shardedMapper.insertWithId(alice);
+
+        // Act
+        User previous = shardedMapper.deleteReturningOld(alice.getId());
+
+        // Assert
+        assertEquals("alice", previous.getUsername());
+        assertNull(shardedMapper.findById(alice.getId()));
+        assertNull(shardedMapper.findByUsername("alice"));
+        shardedMapper.insertWithId(user("alice", 1));
+    }
+
+    @Test
+    void batchWrites_ShouldReportCountsInInputOrder() {
+        // Arrange
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            users.add(user("batch" + i, i));
+        }
+
+        // Act
+        int[] inserted = shardedMapper.insertAll(users);
+        User renamed = user("renamed0", 0);
+        renamed.setId(users.get(0).getId());
+        User missing = user("missing", 0);
+        missing.setId(idGenerator.nextId());
+        int[] updated = shardedMapper.updateAll(Arrays.asList(renamed, missing, users.get(1)));
+        int[] deleted = shardedMapper.deleteAll(Arrays.asList(users.get(2), missing));
+
+        // Assert
+        int[] ones = new int[25];
+        Arrays.fill(ones, 1);
+        assertArrayEquals(ones, inserted);
+        assertArrayEquals(new int[]{1, 0, 1}, updated);
+        assertArrayEquals(new int[]{1, 0}, deleted);
+        assertEquals(users.get(0).getId(), shardedMapper.findByUsername("renamed0").getId());
+        assertNull(shardedMapper.findByUsername("batch0"));
+        assertNull(shardedMapper.findByUsername("missing"));
+        assertNull(shardedMapper.findByUsername("batch2"));
+        assertEquals(24, shardedMapper.findByUsernames(Arrays.asList("renamed0", "batch1", "batch2", "batch3",
+                "batch4", "batch5", "batch6", "batch7", "batch8", "batch9", "batch10", "batch11", "batch12",
+                "batch13", "batch14", "batch15", "batch16", "batch17", "batch18", "batch19", "batch20",
+                "batch21", "batch22", "batch23", "batch24")).size());
+    }
+
+    @Test
+    void insertAll_ShouldClaimNothingWhenAUsernameIsTaken() {
+        // Arrange
+        shardedMapper.insertWithId(user("taken", 0));
+
+        // Act & Assert
+        assertThrows(DuplicateKeyException.class,
+                () -> shardedMapper.insertAll(Arrays.asList(user("free", 0), user("taken", 1))));
+        assertEquals(1, shardedMapper.findTableStats().getUserCount());
+        shardedMapper.insertWithId(user("free", 2));
+    }
+
+    @Test
+    void insertWithId_ShouldBeUndoneWhenTransactionRollsBack() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        User alice = user("alice", 0);
+        shardedMapper.insertWithId(alice);
+
+        // Act
+        rollBack(TransactionSynchronizationManager.getSynchronizations());
+
+        // Assert
+        assertNull(shardedMapper.findById(alice.getId()));
+        assertNull(shardedMapper.findByUsername("alice"));
+    }
+
+    @Test
+    void updateReturningOld_ShouldBeUndoneWhenTransactionRollsBack() {
+        // Arrange
+        User alice = user("alice", 0);
+        shardedMapper.insertWithId(alice);
+        TransactionSynchronizationManager.initSynchronization();
+        User renamed = user("alicia", 0);
+        renamed.setId(alice.getId());
+        shardedMapper.updateReturningOld(renamed);
+
+        // Act
+        rollBack(TransactionSynchronizationManager.getSynchronizations());
+
+        // Assert
+        User restored = shardedMapper.findById(alice.getId());
+        assertEquals("alice", restored.getUsername());
+        assertEquals(0L, restored.getVersion());
+        assertEquals(alice.getId(), shardedMapper.findByUsername("alice").getId());
+        assertNull(shardedMapper.findByUsername("alicia"));
+    }
+
+    @Test
+    void updateReturningOld_ShouldKeepLaterUpdateWhenTransactionRollsBack() {
+        // Arrange
+        User alice = user("alice", 0);
+        shardedMapper.insertWithId(alice);
+        TransactionSynchronizationManager.initSynchronization();
+        User renamed = user("alicia", 0);
+        renamed.setId(alice.getId());
+        shardedMapper.updateReturningOld(renamed);
+        List<TransactionSynchronization> firstTransaction = TransactionSynchronizationManager.getSynchronizations();
+        User renamedAgain = user("alison", 0);
+        renamedAgain.setId(alice.getId());
+        shardedMapper.updateReturningOld(renamedAgain);
+
+        // Act
+        rollBack(firstTransaction);
+
+        // Assert
+        assertEquals("alison", shardedMapper.findById(alice.getId()).getUsername());
+        assertEquals(alice.getId(), shardedMapper.findByUsername("alison").getId());
+        assertNull(shardedMapper.findByUsername("alice"));
+    }
+
+    @Test
+    void deleteReturningOld_ShouldBeUndoneWhenTransactionRollsBack() {
+        // Arrange
+        User alice = user("alice", 0);
+        shardedMapper.insertWithId(alice);
+        TransactionSynchronizationManager.initSynchronization();
+        shardedMapper.deleteReturningOld(alice.getId());
+
+        // Act
+        rollBack(TransactionSynchronizationManager.getSynchronizations());
+
+        // Assert
+        assertEquals("alice", shardedMapper.findById(alice.getId()).getUsername());
+        assertEquals(alice.getId(), shardedMapper.findByUsername("alice").getId());
+    }
+
+    @Test
+    void batchWrites_ShouldBeUndoneWhenTransactionRollsBack() {
+        // Arrange
+        List<User> users = insertUsers(4);
+        TransactionSynchronizationManager.initSynchronization();
+        User renamed = user("renamed0", 0);
+        renamed.setId(users.get(0).getId());
+        User updatedTwice = user("renamed1", 1);
+        updatedTwice.setId(users.get(1).getId());
+        User updatedAgain = user("renamed1", 1);
+        updatedAgain.setId(users.get(1).getId());
+        updatedAgain.setVersion(1L);
+        shardedMapper.updateAll(Arrays.asList(renamed, updatedTwice, updatedAgain));
+        shardedMapper.deleteAll(Arrays.asList(users.get(2), users.get(3)));
+
+        // Act
+        rollBack(TransactionSynchronizationManager.getSynchronizations());
+
+        // Assert
+        for (User user : users) {
+            User restored = shardedMapper.findById(user.getId());
+            assertEquals(user.getUsername(), restored.getUsername());
+            assertEquals(0L, restored.getVersion());
+            assertEquals(user.getId(), shardedMapper.findByUsername(user.getUsername()).getId());
+        }
+        assertNull(shardedMapper.findByUsername("renamed0"));
+        assertNull(shardedMapper.findByUsername("renamed1"));
+    }
+
+    @Test
+    void batchWrites_ShouldSkipRowsChangedSinceTheyWereRead() {
+        // Arrange
+        List<User> users = insertUsers(2);
+        for (User user : users) {
+            // another writer moves both rows past the version they were read at
+            User update = user(user.getUsername(), 0);
+            update.setId(user.getId());
+            shardedMapper.update(update);
+        }
+        User stale = user("stale", 0);
+        stale.setId(users.get(0).getId());
+
+        // Act
+        int[] updated = shardedMapper.updateAll(Arrays.asList(stale));
+        int[] deleted = shardedMapper.deleteAll(Arrays.asList(users.get(1)));
+
+        // Assert
+        assertArrayEquals(new int[]{0}, updated);
+        assertArrayEquals(new int[]{0}, deleted);
+        assertEquals("user0", shardedMapper.findById(users.get(0).getId()).getUsername());
+        assertNotNull(shardedMapper.findById(users.get(1).getId()));
+        assertNull(shardedMapper.findByUsername("stale"));
+    }
+
+    private static void rollBack(List<TransactionSynchronization> synchronizations) {
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+
+    private List<User> insertUsers(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = user("user" + i, i);
+            shardedMapper.insertWithId(user);
+            users.add(user);
+        }
+        return users;
+    }
+
+    private User user(String username, int i) {
+        User user = new User(username, username + "@example" + (i % 4) + ".com");
+        user.setId(idGenerator.nextId());
+        // few distinct timestamps, so ties are broken by id across shards
+        user.setCreatedAt(EPOCH.plusMinutes(i % 5));
+        user.setUpdatedAt(EPOCH.plusMinutes(i % 3));
+        return user;
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+
+    private static DataSource database(String name) {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway flyway = Flyway.configure().dataSource(dataSource).cleanDisabled(false).load();
+        flyway.clean();
+        flyway.migrate();
+        return dataSource;
+    }
+}
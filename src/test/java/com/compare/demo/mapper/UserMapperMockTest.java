@@ -108,30 +108,47 @@ class UserMapperMockTest {
     }
 
     @Test
-    void insert_ShouldReturnGeneratedId() {
+    void findByIds_ShouldReturnOnlyExistingUsers() {
         // Arrange
-        when(userMapper.insert(any(User.class))).thenReturn(1);
+        List<Long> ids = Arrays.asList(1L, 99L);
+        when(userMapper.findByIds(ids)).thenReturn(Arrays.asList(testUser));
 
         // Act
-        int result = userMapper.insert(testUser);
+        List<User> result = userMapper.findByIds(ids);
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals(testUser.getId(), result.get(0).getId());
+        verify(userMapper, times(1)).findByIds(ids);
+    }
+
+    @Test
+    void insertWithId_ShouldReturnInsertedCount() {
+        // Arrange
+        when(userMapper.insertWithId(any(User.class))).thenReturn(1);
+
+        // Act
+        int result = userMapper.insertWithId(testUser);
 
         // Assert
         assertEquals(1, result);
-        verify(userMapper, times(1)).insert(any(User.class));
+        verify(userMapper, times(1)).insertWithId(any(User.class));
     }
 
     @Test
-    void insert_ShouldCallMapperWithCorrectData() {
+    void insertWithId_ShouldCallMapperWithCorrectData() {
         // Arrange
         User newUser = new User("newuser", "newuser@example.com");
-        when(userMapper.insert(any(User.class))).thenReturn(1);
+        newUser.setId(2L);
+        when(userMapper.insertWithId(any(User.class))).thenReturn(1);
 
         // Act
-        userMapper.insert(newUser);
+        userMapper.insertWithId(newUser);
 
         // Assert
-        verify(userMapper, times(1)).insert(argThat(user -> 
-            user.getUsername().equals("newuser") && 
+        verify(userMapper, times(1)).insertWithId(argThat(user ->
+            user.getId() == 2L &&
+            user.getUsername().equals("newuser") &&
             user.getEmail().equals("newuser@example.com")
         ));
     }
@@ -160,9 +177,9 @@ class UserMapperMockTest {
         userMapper.update(updatedUser);
 
         // Assert
-        verify(userMapper, times(1)).update(argThat(user -> 
-            user.getId().equals(1L) && 
-            user.getUsername().equals("updateduser") && 
+        verify(userMapper, times(1)).update(argThat(user ->
+            user.getId().equals(1L) &&
+            user.getUsername().equals("updateduser") &&
             user.getEmail().equals("updated@example.com")
         ));
     }
@@ -204,4 +221,32 @@ class UserMapperMockTest {
         assertEquals(0, result);
         verify(userMapper, times(1)).deleteById(999L);
     }
+
+    @Test
+    void updateReturningOld_ShouldReturnPreviousRow() {
+        // Arrange
+        User updatedUser = new User("updateduser", "updated@example.com");
+        updatedUser.setId(1L);
+        when(userMapper.updateReturningOld(any(User.class))).thenReturn(testUser);
+
+        // Act
+        User previous = userMapper.updateReturningOld(updatedUser);
+
+        // Assert
+        assertEquals("testuser", previous.getUsername());
+        verify(userMapper, times(1)).updateReturningOld(updatedUser);
+    }
+
+    @Test
+    void deleteReturningOld_ShouldReturnNullWhenNothingDeleted() {
+        // Arrange
+        when(userMapper.deleteReturningOld(999L)).thenReturn(null);
+
+        // Act
+        User previous = userMapper.deleteReturningOld(999L);
+
+        // Assert
+        assertNull(previous);
+        verify(userMapper, times(1)).deleteReturningOld(999L);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.compare.demo.mapper;
+
+import com.compare.demo.dto.UserSearchCriteria;
+import com.compare.demo.entity.User;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the plans H2 picks for {@link UserMapper#search} on a table of a million users, where a
+ * full scan is clearly more expensive than any index.
+ */
+class UserSearchPlanTest {
+
+    private static final int ROWS = 1_000_000;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static Connection connection;
+    private static SqlSessionFactory sqlSessionFactory;
+
+    @BeforeAll
+    static void loadUsers() throws Exception {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:user-search-plan", "sa", "");
+        connection = dataSource.getConnection();
+
+        // load before the search indexes exist, the same order a production migration would see
+        Flyway.configure().dataSource(dataSource).target("1").load().migrate();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO users (username, email, created_at, updated_at, version) "
+                    + "SELECT 'user' || X, 'user' || X || '@Example' || MOD(X, 1000) || '.com', "
+                    + "DATEADD(SECOND, X, TIMESTAMP '2024-01-01 00:00:00'), "
+                    + "DATEADD(SECOND, 2 * X, TIMESTAMP '2024-01-01 00:00:00'), 0 "
+                    + "FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        }
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        Configuration configuration = new Configuration(
+                new Environment("plan", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(UserMapper.class);
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @AfterAll
+    static void dropDatabase() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    void search_ShouldRangeScanUsernameIndexForPrefix() throws Exception {
+        // Act
+        String plan = explain(new UserSearchCriteria(), "user12345%", null, "username ASC");
+
+        // Assert
+        assertIndexScan(plan, "UK_USERS_USERNAME");
+        assertTrue(plan.contains("index sorted"), plan);
+    }
+
+    @Test
+    void search_ShouldUseEmailDomainIndex() throws Exception {
+        // Act
+        String plan = explain(new UserSearchCriteria(), null, "example7.com", "id ASC");
+        List<User> users = search(new UserSearchCriteria(), null, "example7.com", "id ASC");
+
+        // Assert
+        assertIndexScan(plan, "IDX_USERS_EMAIL_DOMAIN");
+        assertEquals(100, users.size());
+        assertTrue(users.stream().allMatch(user -> user.getEmail().endsWith("@Example7.com")));
+    }
+
+    @Test
+    void search_ShouldReadNewestFirstStraightFromCreatedAtIndex() throws Exception {
+        // Arrange
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setCreatedFrom(EPOCH.plusDays(1));
+        criteria.setCreatedTo(EPOCH.plusDays(2));
+
+        // Act
+        String plan = explain(criteria, null, null, "created_at DESC, id DESC");
+        List<User> users = search(criteria, null, null, "created_at DESC, id DESC");
+
+        // Assert
+        assertIndexScan(plan, "IDX_USERS_CREATED_AT");
+        assertTrue(plan.contains("index sorted"), plan);
+        assertEquals(EPOCH.plusDays(2).minusSeconds(1), users.get(0).getCreatedAt());
+    }
+
+    @Test
+    void search_ShouldSortRecentlyUpdatedWithoutFilterFromIndex() throws Exception {
+        // Act
+        String plan = explain(new UserSearchCriteria(), null, null, "updated_at DESC, id DESC");
+
+        // Assert
+        assertIndexScan(plan, "IDX_USERS_UPDATED_AT");
+        assertTrue(plan.contains("index sorted"), plan);
+    }
+
+    @Test
+    void search_ShouldPickMostSelectiveIndexForCombinedFilters() throws Exception {
+        // Arrange
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setUpdatedFrom(EPOCH.plusDays(3));
+
+        // Act
+        String plan = explain(criteria, "user4242%", "example242.com", "updated_at DESC, id DESC");
+
+        // Assert
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    private static String explain(UserSearchCriteria criteria, String usernamePattern, String emailDomain,
+                                  String orderBy) throws Exception {
+        Map<String, Object> params = params(criteria, usernamePattern, emailDomain, orderBy);
+        MappedStatement statement = sqlSessionFactory.getConfiguration()
+                .getMappedStatement(UserMapper.class.getName() + ".search");
+        BoundSql boundSql = statement.getBoundSql(params);
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + boundSql.getSql())) {
+            new DefaultParameterHandler(statement, params, boundSql).setParameters(explain);
+            try (ResultSet plan = explain.executeQuery()) {
+                assertTrue(plan.next());
+                return plan.getString(1);
+            }
+        }
+    }
+
+    private static List<User> search(UserSearchCriteria criteria, String usernamePattern, String emailDomain,
+                                     String orderBy) {
+        try (SqlSession session = sqlSessionFactory.openSession()) {
+            return session.getMapper(UserMapper.class).search(criteria, usernamePattern, emailDomain, orderBy, 0, 100);
+        }
+    }
+
+    private static Map<String, Object> params(UserSearchCriteria criteria, String usernamePattern, String emailDomain,
+                                              String orderBy) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("criteria", criteria);
+        params.put("usernamePattern", usernamePattern);
+        params.put("emailDomain", emailDomain);
+        params.put("orderBy", orderBy);
+        params.put("offset", 0);
+        params.put("limit", 100);
+        return params;
+    }
+
+    private static void assertIndexScan(String plan, String index) {
+        assertTrue(plan.contains("PUBLIC." + index), plan);
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+}
\ No newline at end of file
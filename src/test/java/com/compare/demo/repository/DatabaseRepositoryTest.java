@@ -1,31 +1,33 @@
 package com.compare.demo.repository;
 
 import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
-import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 
-import javax.persistence.EntityManager;
+import javax.sql.DataSource;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-@DataJpaTest
+@JdbcTest
 class DatabaseRepositoryTest {
 
     @Autowired
-    private TestEntityManager entityManager;
+    private DataSource dataSource;
 
     @Autowired
-    private EntityManager em;
+    private JdbcTemplate jdbcTemplate;
 
     @Test
     void databaseConnectionShouldWork() {
-        assertThat(entityManager).isNotNull();
-        assertThat(em).isNotNull();
+        assertThat(dataSource).isNotNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT 1", Integer.class)).isEqualTo(1);
     }
 
     @Test
-    void entityManagerShouldBeConfigured() {
-        assertThat(entityManager.getEntityManager()).isNotNull();
+    void schemaShouldBeCreatedByMigrations() {
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM \"flyway_schema_history\" WHERE \"success\" = TRUE", Integer.class)).isPositive();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class)).isZero();
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.compare.demo.service;
+
+import com.compare.demo.dto.UserDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeUserIdGeneratorTest {
+
+    private static final long NOW = SnowflakeUserIdGenerator.EPOCH.toEpochMilli() + 1_000_000;
+
+    @Test
+    void nextId_ShouldEncodeTimeNodeAndIncreasingSequence() {
+        // Arrange
+        SnowflakeUserIdGenerator generator = new SnowflakeUserIdGenerator(5, Duration.ofSeconds(1), () -> NOW);
+
+        // Act
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        // Assert
+        assertEquals(first + 1, second);
+        assertEquals(5, SnowflakeUserIdGenerator.nodeOf(first));
+        assertEquals(NOW, SnowflakeUserIdGenerator.timeOf(first).toEpochMilli());
+    }
+
+    @Test
+    void nextId_ShouldMoveToNextMillisecondWhenSequenceIsUsedUp() {
+        // Arrange
+        AtomicLong calls = new AtomicLong();
+        // the clock only ticks after a full millisecond of ids has been handed out
+        SnowflakeUserIdGenerator generator = new SnowflakeUserIdGenerator(0, Duration.ofSeconds(1),
+                () -> calls.incrementAndGet() <= SnowflakeUserIdGenerator.SEQUENCE_MASK + 2 ? NOW : NOW + 1);
+
+        // Act
+        long last = 0;
+        for (int i = 0; i < SnowflakeUserIdGenerator.SEQUENCE_MASK + 2; i++) {
+            long id = generator.nextId();
+            assertTrue(id > last);
+            last = id;
+        }
+
+        // Assert
+        assertEquals(NOW + 1, SnowflakeUserIdGenerator.timeOf(last).toEpochMilli());
+    }
+
+    @Test
+    void nextId_ShouldKeepIncreasingWhenClockStepsBackWithinTolerance() {
+        // Arrange
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeUserIdGenerator generator = new SnowflakeUserIdGenerator(0, Duration.ofSeconds(1), clock::get);
+        long before = generator.nextId();
+
+        // Act
+        clock.set(NOW - 500);
+        long after = generator.nextId();
+
+        // Assert
+        assertTrue(after > before);
+        assertEquals(NOW, SnowflakeUserIdGenerator.timeOf(after).toEpochMilli());
+        assertEquals(1, generator.getIssuedAheadOfClock());
+    }
+
+    @Test
+    void nextId_ShouldFailWhenClockStepsBackTooFar() {
+        // Arrange
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeUserIdGenerator generator = new SnowflakeUserIdGenerator(0, Duration.ofSeconds(1), clock::get);
+        generator.nextId();
+
+        // Act & Assert
+        clock.set(NOW - 5000);
+        assertThrows(IllegalStateException.class, generator::nextId);
+        clock.set(NOW + 1);
+        generator.nextId();
+    }
+
+    @Test
+    void constructor_ShouldRejectNodeIdOutsideSixBits() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeUserIdGenerator(64, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeUserIdGenerator(-1, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void nextId_ShouldStayExactAsJsonNumberReadAsDouble() throws Exception {
+        // Arrange
+        ObjectMapper objectMapper = new ObjectMapper();
+        long fresh = new SnowflakeUserIdGenerator(SnowflakeUserIdGenerator.MAX_NODE_ID, Duration.ofSeconds(1)).nextId();
+        // the last millisecond the layout can encode
+        long latest = new SnowflakeUserIdGenerator(SnowflakeUserIdGenerator.MAX_NODE_ID, Duration.ofSeconds(1),
+                () -> SnowflakeUserIdGenerator.EPOCH.toEpochMilli() + SnowflakeUserIdGenerator.MAX_MILLIS).nextId();
+
+        for (long id : new long[] {fresh, latest}) {
+            // Act
+            String json = objectMapper.writeValueAsString(new UserDTO(id, "alice", "alice@example.com"));
+            // JavaScript parses every JSON number into a double
+            double parsed = objectMapper.readTree(json).get("id").asDouble();
+
+            // Assert
+            assertEquals(id, (long) parsed);
+            assertEquals(id, objectMapper.readValue(json, UserDTO.class).getId());
+        }
+        assertTrue(latest < 1L << 53);
+    }
+
+    @Test
+    void nextId_ShouldBeUniqueAcrossThreads() throws Exception {
+        // Arrange
+        SnowflakeUserIdGenerator generator = new SnowflakeUserIdGenerator(1, Duration.ofSeconds(5));
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                long last = 0;
+                for (int i = 0; i < 50_000; i++) {
+                    long id = generator.nextId();
+                    // each thread sees its own ids in increasing order
+                    assertTrue(id > last);
+                    last = id;
+                    ids.add(id);
+                }
+            }));
+        }
+
+        // Act
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        assertEquals(200_000, ids.size());
+    }
+}
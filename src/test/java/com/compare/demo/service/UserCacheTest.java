@@ -0,0 +1,167 @@
+package com.compare.demo.service;
+
+import com.compare.demo.dto.UserDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheTest {
+
+    private UserCache userCache;
+    private UserDTO testUserDTO;
+
+    @BeforeEach
+    void setUp() {
+        userCache = new UserCache(2, Duration.ofMinutes(5));
+        testUserDTO = new UserDTO(1L, "testuser", "test@example.com");
+    }
+
+    @Test
+    void put_ShouldMakeUserAvailableByIdAndUsername() {
+        // Act
+        userCache.put(userCache.stamp(), testUserDTO);
+
+        // Assert
+        assertEquals("testuser", userCache.getById(1L).getUsername());
+        assertEquals(1L, userCache.getByUsername("testuser").getId());
+        assertEquals(2, userCache.getHits());
+        assertEquals(0, userCache.getMisses());
+    }
+
+    @Test
+    void getById_ShouldReturnCopyOfCachedUser() {
+        // Arrange
+        userCache.put(userCache.stamp(), testUserDTO);
+
+        // Act
+        userCache.getById(1L).setUsername("mutated");
+        testUserDTO.setUsername("mutated");
+
+        // Assert
+        assertEquals("testuser", userCache.getById(1L).getUsername());
+    }
+
+    @Test
+    void put_ShouldBeDroppedWhenInvalidatedAfterStamp() {
+        // Arrange
+        long stamp = userCache.stamp();
+
+        // Act
+        userCache.invalidate(1L, "testuser");
+        userCache.put(stamp, testUserDTO);
+
+        // Assert
+        assertNull(userCache.getById(1L));
+        assertNull(userCache.getByUsername("testuser"));
+    }
+
+    @Test
+    void invalidate_ShouldRemoveEntriesCachedUnderPreviousUsername() {
+        // Arrange
+        userCache.put(userCache.stamp(), testUserDTO);
+
+        // Act
+        userCache.invalidate(1L, "renamed");
+
+        // Assert
+        assertNull(userCache.getByUsername("testuser"));
+        assertNull(userCache.getById(1L));
+    }
+
+    @Test
+    void put_ShouldDropEntryCachedUnderPreviousUsername() {
+        // Arrange
+        userCache.put(userCache.stamp(), testUserDTO);
+
+        // Act
+        userCache.put(userCache.stamp(), new UserDTO(1L, "renamed", "test@example.com"));
+        UserDTO previous = userCache.getByUsername("testuser");
+        userCache.invalidate(1L, null);
+
+        // Assert
+        assertNull(previous);
+        assertNull(userCache.getByUsername("renamed"));
+        assertNull(userCache.getById(1L));
+    }
+
+    @Test
+    void put_ShouldEvictWhenMaxSizeExceeded() {
+        // Act
+        userCache.put(userCache.stamp(), testUserDTO);
+        userCache.put(userCache.stamp(), new UserDTO(2L, "second", "second@example.com"));
+        userCache.put(userCache.stamp(), new UserDTO(3L, "third", "third@example.com"));
+
+        // Assert
+        assertEquals(2, userCache.size());
+        assertTrue(userCache.getEvictions() >= 1);
+    }
+
+    @Test
+    void put_ShouldEvictEldestEntryByIdAndUsername() {
+        // Arrange
+        userCache.put(userCache.stamp(), testUserDTO);
+        userCache.put(userCache.stamp(), new UserDTO(2L, "second", "second@example.com"));
+        userCache.put(userCache.stamp(), testUserDTO);
+
+        // Act
+        userCache.put(userCache.stamp(), new UserDTO(3L, "third", "third@example.com"));
+
+        // Assert
+        assertNull(userCache.getById(2L));
+        assertNull(userCache.getByUsername("second"));
+        assertNotNull(userCache.getById(1L));
+        assertNotNull(userCache.getByUsername("third"));
+        assertEquals(1, userCache.getEvictions());
+    }
+
+    @Test
+    void getById_ShouldMissWhenEntryExpired() {
+        // Arrange
+        UserCache expiring = new UserCache(10, Duration.ZERO);
+        expiring.put(expiring.stamp(), testUserDTO);
+
+        // Act
+        UserDTO result = expiring.getById(1L);
+
+        // Assert
+        assertNull(result);
+        assertEquals(1, expiring.getMisses());
+        assertEquals(0, expiring.size());
+    }
+
+    @Test
+    void put_ShouldSkipUsersWrittenWithinReplicaLag() {
+        // Arrange
+        UserCache replicaCache = new UserCache(10, Duration.ofMinutes(5), Duration.ofMinutes(1));
+        replicaCache.invalidate(1L, "testuser");
+
+        // Act
+        replicaCache.put(replicaCache.stamp(), testUserDTO);
+        replicaCache.put(replicaCache.stamp(), new UserDTO(2L, "other", "other@example.com"));
+
+        // Assert
+        assertNull(replicaCache.getById(1L));
+        assertNotNull(replicaCache.getById(2L));
+    }
+
+    @Test
+    void bindTo_ShouldExposeCacheMetrics() {
+        // Arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        userCache.bindTo(registry);
+        userCache.put(userCache.stamp(), testUserDTO);
+
+        // Act
+        userCache.getById(1L);
+        userCache.getById(2L);
+
+        // Assert
+        assertEquals(1.0, registry.get("cache.size").tag("cache", "users").gauge().value());
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+}
\ No newline at end of file
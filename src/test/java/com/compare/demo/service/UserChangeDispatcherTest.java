@@ -0,0 +1,229 @@
+package com.compare.demo.service;
+
+import com.compare.demo.entity.User;
+import com.compare.demo.entity.UserChange;
+import com.compare.demo.mapper.UserChangeMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserChangeDispatcherTest {
+
+    @Mock
+    private UserChangeMapper userChangeMapper;
+
+    @Mock
+    private UserChangeLog userChangeLog;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserChangeDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.destroy();
+        }
+    }
+
+    @Test
+    void dispatchBatch_ShouldDeliverInOrderAndSavePosition() throws Exception {
+        // Arrange
+        InMemoryUserChangeSink sink = new InMemoryUserChangeSink();
+        dispatcher = dispatcher(sink, 2);
+        when(userChangeMapper.lockDispatchedThrough()).thenReturn(10L, 12L);
+        when(userChangeMapper.findSince(10L, 2)).thenReturn(changes(11, 12));
+        when(userChangeMapper.findSince(12L, 2)).thenReturn(changes(13));
+        when(userChangeMapper.findLastSeq()).thenReturn(13L);
+
+        // Act
+        int first = dispatcher.dispatchBatch();
+        int second = dispatcher.dispatchBatch();
+
+        // Assert
+        assertEquals(2, first);
+        assertEquals(1, second);
+        assertEquals(Arrays.asList(11L, 12L, 13L), seqs(sink.getChanges()));
+        verify(userChangeMapper).advanceDispatchedThrough(12L);
+        verify(userChangeMapper).advanceDispatchedThrough(13L);
+        verify(transactionManager, times(2)).commit(any());
+        assertEquals(3, dispatcher.getDispatched());
+        assertEquals(0, dispatcher.getBacklog());
+        assertEquals(0, dispatcher.getLagSeconds());
+    }
+
+    @Test
+    void dispatchBatch_ShouldKeepPositionWhenSinkFails() throws Exception {
+        // Arrange
+        dispatcher = dispatcher(changes -> {
+            throw new IOException("sink down");
+        }, 10);
+        List<UserChange> pending = changes(5);
+        pending.get(0).setChangedAt(LocalDateTime.now().minusMinutes(1));
+        when(userChangeMapper.lockDispatchedThrough()).thenReturn(4L);
+        when(userChangeMapper.findSince(4L, 10)).thenReturn(pending);
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> dispatcher.dispatchBatch());
+        verify(userChangeMapper, never()).advanceDispatchedThrough(anyLong());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertEquals(0, dispatcher.getDispatched());
+        assertTrue(dispatcher.getLagSeconds() >= 60);
+    }
+
+    @Test
+    void dispatchBatch_ShouldReportAgeOfOldestUndeliveredChange() throws Exception {
+        // Arrange
+        InMemoryUserChangeSink sink = new InMemoryUserChangeSink();
+        dispatcher = dispatcher(sink, 10);
+        List<UserChange> late = changes(8);
+        late.get(0).setChangedAt(LocalDateTime.now().minusSeconds(30));
+        when(userChangeMapper.lockDispatchedThrough()).thenReturn(6L);
+        when(userChangeMapper.findSince(6L, 10)).thenReturn(Collections.<UserChange>emptyList());
+        when(userChangeMapper.findLastSeq()).thenReturn(8L);
+        when(userChangeMapper.findSince(6L, 1)).thenReturn(late);
+
+        // Act
+        dispatcher.dispatchBatch();
+
+        // Assert
+        assertEquals(2, dispatcher.getBacklog());
+        assertTrue(dispatcher.getLagSeconds() >= 30);
+    }
+
+    @Test
+    void nextBackoffMillis_ShouldDoubleUpToMaxBackoff() {
+        // Arrange
+        dispatcher = dispatcher(new InMemoryUserChangeSink(), 10);
+
+        // Act
+        List<Long> backoffs = new ArrayList<>();
+        for (int failures = 1; failures <= 5; failures++) {
+            ReflectionTestUtils.setField(dispatcher, "consecutiveFailures", failures);
+            backoffs.add(dispatcher.nextBackoffMillis());
+        }
+
+        // Assert
+        assertEquals(Arrays.asList(100L, 200L, 400L, 500L, 500L), backoffs);
+    }
+
+    @Test
+    void dispatchBatch_ShouldStartFromRetentionFloorWhenPositionWasCleared() throws Exception {
+        // Arrange
+        InMemoryUserChangeSink sink = new InMemoryUserChangeSink();
+        dispatcher = dispatcher(sink, 10);
+        when(userChangeMapper.lockDispatchedThrough()).thenReturn(null);
+        when(userChangeMapper.findPrunedThrough()).thenReturn(20L);
+        when(userChangeMapper.findSince(20L, 10)).thenReturn(changes(21));
+        when(userChangeMapper.findLastSeq()).thenReturn(21L);
+
+        // Act
+        int sent = dispatcher.dispatchBatch();
+
+        // Assert
+        assertEquals(1, sent);
+        verify(userChangeMapper).advanceDispatchedThrough(21L);
+    }
+
+    @Test
+    void dispatchBatch_ShouldSavePositionWhenClearedAndNothingIsPending() throws Exception {
+        // Arrange
+        dispatcher = dispatcher(new InMemoryUserChangeSink(), 10);
+        when(userChangeMapper.lockDispatchedThrough()).thenReturn(null);
+        when(userChangeMapper.findPrunedThrough()).thenReturn(20L);
+        when(userChangeMapper.findSince(20L, 10)).thenReturn(Collections.<UserChange>emptyList());
+        when(userChangeMapper.findLastSeq()).thenReturn(20L);
+
+        // Act
+        dispatcher.dispatchBatch();
+
+        // Assert
+        verify(userChangeMapper).advanceDispatchedThrough(20L);
+    }
+
+    @Test
+    void start_ShouldLeaveSharedPositionAloneWithoutSink() {
+        // Arrange
+        dispatcher = new UserChangeDispatcher(userChangeMapper, userChangeLog, transactionManager,
+                new StaticListableBeanFactory().getBeanProvider(UserChangeSink.class), 10,
+                Duration.ofMillis(100), Duration.ofMillis(500));
+
+        // Act
+        dispatcher.start();
+
+        // Assert
+        verifyNoInteractions(userChangeMapper);
+        verifyNoInteractions(userChangeLog);
+    }
+
+    @Test
+    void fileSink_ShouldAppendOneJsonLinePerChange(@TempDir Path dir) throws Exception {
+        // Arrange
+        Path file = dir.resolve("changes.ndjson");
+        FileUserChangeSink sink = new FileUserChangeSink(new ObjectMapper().registerModule(new JavaTimeModule()), file);
+
+        // Act
+        sink.send(changes(1, 2));
+        sink.send(changes(3));
+
+        // Assert
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(2).contains("\"seq\":3"), lines.get(2));
+    }
+
+    private UserChangeDispatcher dispatcher(UserChangeSink sink, int batchSize) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("sink", sink);
+        return new UserChangeDispatcher(userChangeMapper, userChangeLog, transactionManager,
+                beans.getBeanProvider(UserChangeSink.class),
+                batchSize, Duration.ofMillis(100), Duration.ofMillis(500));
+    }
+
+    private static List<UserChange> changes(long... seqs) {
+        List<UserChange> changes = new ArrayList<>();
+        for (long seq : seqs) {
+            User user = new User("user" + seq, "user" + seq + "@example.com");
+            user.setId(seq);
+            UserChange change = new UserChange(UserChange.Type.UPDATED, user);
+            change.setSeq(seq);
+            changes.add(change);
+        }
+        return changes;
+    }
+
+    private static List<Long> seqs(List<UserChange> changes) {
+        List<Long> seqs = new ArrayList<>();
+        for (UserChange change : changes) {
+            seqs.add(change.getSeq());
+        }
+        return seqs;
+    }
+}
@@ -0,0 +1,221 @@
+package com.compare.demo.service;
+
+import com.compare.demo.entity.User;
+import com.compare.demo.entity.UserChange;
+import com.compare.demo.mapper.UserChangeMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserChangeLogTest {
+
+    @Mock
+    private UserChangeMapper userChangeMapper;
+
+    @Mock
+    private UserBatchWriter userBatchWriter;
+
+    private UserChangeLog changeLog;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        changeLog = new UserChangeLog(userChangeMapper, userBatchWriter, Duration.ofDays(7), Duration.ofHours(1),
+                Duration.ofSeconds(1));
+        user = new User("testuser", "test@example.com");
+        user.setId(1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        changeLog.destroy();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void record_ShouldInsertWithReservedSequence() {
+        // Arrange
+        when(userChangeMapper.reserveSequence(1)).thenReturn(42L);
+
+        // Act
+        changeLog.record(new UserChange(UserChange.Type.CREATED, user));
+
+        // Assert
+        verify(userChangeMapper).insert(argThat(change -> change.getSeq() == 42L && change.getUserId() == 1L));
+    }
+
+    @Test
+    void record_ShouldReserveSequenceOnlyBeforeCommit() {
+        // Arrange
+        when(userChangeMapper.reserveSequence(2)).thenReturn(42L);
+        TransactionSynchronizationManager.initSynchronization();
+        UserChange created = new UserChange(UserChange.Type.CREATED, user);
+        UserChange updated = new UserChange(UserChange.Type.UPDATED, user);
+
+        // Act
+        changeLog.record(created);
+        changeLog.record(updated);
+        verifyNoInteractions(userChangeMapper);
+        beforeCommit();
+
+        // Assert
+        verify(userChangeMapper).reserveSequence(2);
+        assertEquals(41L, created.getSeq());
+        assertEquals(42L, updated.getSeq());
+        verify(userChangeMapper, times(2)).insert(any(UserChange.class));
+    }
+
+    @Test
+    void recordAll_ShouldAppendThroughBatchWriterBeforeCommit() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        List<UserChange> changes = Arrays.asList(new UserChange(UserChange.Type.CREATED, user));
+
+        // Act
+        changeLog.recordAll(changes);
+        verifyNoInteractions(userBatchWriter);
+        beforeCommit();
+
+        // Assert
+        verify(userBatchWriter).appendChanges(changes);
+        verifyNoInteractions(userChangeMapper);
+    }
+
+    @Test
+    void recordAll_ShouldSkipEmptyBatch() {
+        // Act
+        changeLog.recordAll(Collections.<UserChange>emptyList());
+
+        // Assert
+        verifyNoInteractions(userBatchWriter);
+    }
+
+    @Test
+    void changesSince_ShouldThrowWhenChangesWerePurged() {
+        // Arrange
+        when(userChangeMapper.findPrunedThrough()).thenReturn(100L);
+
+        // Act & Assert
+        UserChangesExpiredException e = assertThrows(UserChangesExpiredException.class,
+                () -> changeLog.changesSince(99L, 10));
+        assertEquals(100L, e.getPrunedThrough());
+    }
+
+    @Test
+    void changesSince_ShouldThrowWhenPurgeRanDuringRead() {
+        // Arrange: the page was read before a purge moved the boundary past it
+        when(userChangeMapper.findSince(99L, 10))
+                .thenReturn(Arrays.asList(new UserChange(UserChange.Type.UPDATED, user)));
+        when(userChangeMapper.findPrunedThrough()).thenReturn(100L);
+
+        // Act & Assert
+        assertThrows(UserChangesExpiredException.class, () -> changeLog.changesSince(99L, 10));
+        InOrder inOrder = inOrder(userChangeMapper);
+        inOrder.verify(userChangeMapper).findSince(99L, 10);
+        inOrder.verify(userChangeMapper).findPrunedThrough();
+    }
+
+    @Test
+    void changesSince_ShouldReadFromPrunedBoundary() {
+        // Arrange
+        List<UserChange> changes = Arrays.asList(new UserChange(UserChange.Type.UPDATED, user));
+        when(userChangeMapper.findPrunedThrough()).thenReturn(100L);
+        when(userChangeMapper.findSince(100L, 10)).thenReturn(changes);
+
+        // Act & Assert
+        assertSame(changes, changeLog.changesSince(100L, 10));
+    }
+
+    @Test
+    void nextChange_ShouldCompleteOnlyAfterCommit() {
+        // Arrange
+        when(userChangeMapper.reserveSequence(1)).thenReturn(1L);
+        CompletableFuture<Void> nextChange = changeLog.nextChange(Duration.ofMinutes(1));
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        changeLog.record(new UserChange(UserChange.Type.CREATED, user));
+        beforeCommit();
+        boolean doneBeforeCommit = nextChange.isDone();
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+
+        // Assert
+        assertFalse(doneBeforeCommit);
+        assertTrue(nextChange.isDone());
+        assertEquals(0, changeLog.getWaiters());
+    }
+
+    @Test
+    void nextChange_ShouldCompleteWhenWaitRunsOut() throws Exception {
+        // Act
+        CompletableFuture<Void> nextChange = changeLog.nextChange(Duration.ofMillis(50));
+
+        // Assert
+        nextChange.get(5, TimeUnit.SECONDS);
+        assertEquals(0, changeLog.getWaiters());
+    }
+
+    @Test
+    void nextChange_ShouldCapWaitAtMaxWait() throws Exception {
+        // Act
+        CompletableFuture<Void> nextChange = changeLog.nextChange(Duration.ofHours(1));
+
+        // Assert
+        nextChange.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void nextChange_ShouldForgetCancelledWaiter() {
+        // Act
+        changeLog.nextChange(Duration.ofMinutes(1)).cancel(false);
+
+        // Assert
+        assertEquals(0, changeLog.getWaiters());
+    }
+
+    @Test
+    void purge_ShouldAdvanceBoundaryBeforeDeleting() {
+        // Arrange
+        when(userChangeMapper.deletePruned()).thenReturn(3);
+
+        // Act
+        int purged = changeLog.purge();
+
+        // Assert
+        assertEquals(3, purged);
+        verify(userChangeMapper).advancePrunedThrough(argThat(before ->
+                before.isBefore(LocalDateTime.now().minusDays(6)) && before.isAfter(LocalDateTime.now().minusDays(8))));
+        verify(userChangeMapper).deletePruned();
+        verify(userChangeMapper, never()).insert(any(UserChange.class));
+    }
+
+    private static void beforeCommit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.beforeCommit(false);
+        }
+    }
+}
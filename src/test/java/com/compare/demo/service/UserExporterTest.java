@@ -0,0 +1,182 @@
+package com.compare.demo.service;
+
+import com.compare.demo.entity.User;
+import com.compare.demo.mapper.UserMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserExporterTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserExporter exporter;
+
+    @AfterEach
+    void tearDown() {
+        if (exporter != null) {
+            exporter.destroy();
+        }
+    }
+
+    @Test
+    void export_ShouldWriteGzippedNdjsonInReadOnlyTransaction() throws Exception {
+        // Arrange
+        exporter = exporter(0, "");
+        Cursor<User> cursor = cursor(user(1L, "first", "first@example.com"), user(2L, "second", "second@example.com"));
+        when(userMapper.streamUpdatedSince(null)).thenReturn(cursor);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long rows = exporter.export(UserExporter.Format.NDJSON, null, Channels.newChannel(out));
+
+        // Assert
+        assertEquals(2, rows);
+        assertEquals(Arrays.asList(
+                "{\"id\":1,\"username\":\"first\",\"email\":\"first@example.com\",\"createdAt\":\"2026-01-02T03:04:05\",\"updatedAt\":\"2026-01-02T03:04:05\",\"version\":0}",
+                "{\"id\":2,\"username\":\"second\",\"email\":\"second@example.com\",\"createdAt\":\"2026-01-02T03:04:05\",\"updatedAt\":\"2026-01-02T03:04:05\",\"version\":0}"),
+                gunzip(out.toByteArray()));
+        verify(cursor).close();
+        verify(transactionManager).getTransaction(argThat(definition -> definition.isReadOnly()));
+        assertEquals(2, exporter.getExported());
+    }
+
+    @Test
+    void export_ShouldQuoteCsvFieldsOnlyWhenNeeded() throws Exception {
+        // Arrange
+        exporter = exporter(0, "");
+        LocalDateTime since = LocalDateTime.of(2026, 10, 1, 0, 0);
+        Cursor<User> cursor = cursor(user(7L, "smith, \"j\"", "j@example.com"));
+        when(userMapper.streamUpdatedSince(since)).thenReturn(cursor);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        exporter.export(UserExporter.Format.CSV, since, Channels.newChannel(out));
+
+        // Assert
+        assertEquals(Arrays.asList(
+                "id,username,email,created_at,updated_at,version",
+                "7,\"smith, \"\"j\"\"\",j@example.com,2026-01-02T03:04:05,2026-01-02T03:04:05,0"),
+                gunzip(out.toByteArray()));
+    }
+
+    @Test
+    void export_ShouldPaceRowsToConfiguredRate() throws Exception {
+        // Arrange
+        exporter = exporter(1000, "");
+        User[] users = new User[512];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = user(i + 1L, "user" + i, "user" + i + "@example.com");
+        }
+        Cursor<User> cursor = cursor(users);
+        when(userMapper.streamUpdatedSince(null)).thenReturn(cursor);
+
+        // Act
+        long start = System.nanoTime();
+        long rows = exporter.export(UserExporter.Format.CSV, null, Channels.newChannel(new ByteArrayOutputStream()));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert
+        assertEquals(512, rows);
+        assertTrue(elapsedMillis >= 500, "512 rows at 1000 rows/s took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void exportToDirectory_ShouldContinueFromPreviousWatermark(@TempDir Path directory) throws Exception {
+        // Arrange
+        exporter = exporter(0, directory.toString());
+        Cursor<User> full = cursor(user(1L, "first", "first@example.com"));
+        Cursor<User> incremental = cursor();
+        when(userMapper.streamUpdatedSince(isNull())).thenReturn(full);
+        when(userMapper.streamUpdatedSince(any(LocalDateTime.class))).thenReturn(incremental);
+
+        // Act
+        LocalDateTime before = LocalDateTime.now();
+        Path first = exporter.exportToDirectory();
+        LocalDateTime watermark = LocalDateTime.parse(new String(
+                Files.readAllBytes(directory.resolve(UserExporter.WATERMARK_FILE)), StandardCharsets.UTF_8));
+        Path second = exporter.exportToDirectory();
+
+        // Assert
+        assertEquals(1, gunzip(Files.readAllBytes(first)).size());
+        assertTrue(second.getFileName().toString().contains("-incremental"));
+        assertFalse(watermark.isBefore(before));
+        verify(userMapper).streamUpdatedSince(watermark);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".part")));
+        }
+    }
+
+    @Test
+    void format_ShouldRejectUnknownName() {
+        // Act & Assert
+        assertEquals(UserExporter.Format.CSV, UserExporter.Format.of("csv"));
+        assertThrows(IllegalArgumentException.class, () -> UserExporter.Format.of("xml"));
+    }
+
+    private UserExporter exporter(int maxRowsPerSecond, String directory) {
+        return new UserExporter(userMapper, transactionManager, maxRowsPerSecond, 1, directory, "ndjson", true, "");
+    }
+
+    private static User user(Long id, String username, String email) {
+        User user = new User(username, email);
+        user.setId(id);
+        user.setCreatedAt(CREATED);
+        user.setUpdatedAt(CREATED);
+        user.setVersion(0L);
+        return user;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cursor<User> cursor(User... users) {
+        Cursor<User> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenReturn(new ArrayList<>(Arrays.asList(users)).iterator());
+        return cursor;
+    }
+
+    private static List<String> gunzip(byte[] bytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return Arrays.stream(new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n"))
+                    .collect(Collectors.toList());
+        }
+    }
+}
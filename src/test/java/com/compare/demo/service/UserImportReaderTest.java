@@ -0,0 +1,87 @@
+package com.compare.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserImportReaderTest {
+
+    @Test
+    void csv_ShouldMapHeaderColumnsAndNumberRowsByLine() throws Exception {
+        // Arrange
+        UserImportReader reader = UserImportReader.csv(new StringReader(
+                "\uFEFFEmail, id ,username\n"
+                        + "first@example.com,1,first\n"
+                        + "\n"
+                        + "\"quoted, \"\"name\"\"@example.com\",2, second \n"));
+
+        // Act
+        UserImportReader.Row first = reader.next();
+        UserImportReader.Row second = reader.next();
+
+        // Assert
+        assertEquals(1, first.getNumber());
+        assertEquals("first", first.getUser().getUsername());
+        assertEquals("first@example.com", first.getUser().getEmail());
+        assertEquals(3, second.getNumber());
+        assertEquals("second", second.getUser().getUsername());
+        assertEquals("quoted, \"name\"@example.com", second.getUser().getEmail());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void csv_ShouldReportMalformedRowsWithoutStopping() throws Exception {
+        // Arrange
+        UserImportReader reader = UserImportReader.csv(new StringReader(
+                "username,email\n"
+                        + "\"open,open@example.com\n"
+                        + "extra,extra@example.com,x\n"
+                        + "ok,ok@example.com\n"));
+
+        // Act
+        UserImportReader.Row unterminated = reader.next();
+        UserImportReader.Row extra = reader.next();
+        UserImportReader.Row ok = reader.next();
+
+        // Assert
+        assertEquals("unterminated quoted field", unterminated.getError());
+        assertNull(unterminated.getUser());
+        assertEquals("expected 2 columns but found 3", extra.getError());
+        assertEquals(3, ok.getNumber());
+        assertEquals("ok", ok.getUser().getUsername());
+    }
+
+    @Test
+    void csv_ShouldRejectInputWithoutHeader() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> UserImportReader.csv(new StringReader("first,first@example.com\n")));
+        assertThrows(IllegalArgumentException.class, () -> UserImportReader.csv(new StringReader("")));
+    }
+
+    @Test
+    void ndjson_ShouldReadOneUserPerLineAndReportMalformedLines() throws Exception {
+        // Arrange
+        UserImportReader reader = UserImportReader.ndjson(new StringReader(
+                "{\"username\":\"first\",\"email\":\"first@example.com\"}\n"
+                        + "{\"username\":\n"
+                        + "\n"
+                        + "{\"username\":\"second\",\"email\":\"second@example.com\"}\n"), new ObjectMapper());
+
+        // Act
+        UserImportReader.Row first = reader.next();
+        UserImportReader.Row malformed = reader.next();
+        UserImportReader.Row second = reader.next();
+
+        // Assert
+        assertEquals("first", first.getUser().getUsername());
+        assertEquals(2, malformed.getNumber());
+        assertTrue(malformed.getError().startsWith("malformed JSON"));
+        assertEquals(4, second.getNumber());
+        assertEquals("second@example.com", second.getUser().getEmail());
+        assertNull(reader.next());
+    }
+}
@@ -0,0 +1,205 @@
+package com.compare.demo.service;
+
+import com.compare.demo.dto.UserBatchItemResult;
+import com.compare.demo.dto.UserDTO;
+import com.compare.demo.dto.UserImportEvent;
+import com.compare.demo.entity.UserImport;
+import com.compare.demo.mapper.UserImportMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserImporterTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private UserImportMapper userImportMapper;
+
+    private UserImporter importer;
+
+    @AfterEach
+    void tearDown() {
+        if (importer != null) {
+            importer.destroy();
+        }
+    }
+
+    @Test
+    void importUsers_ShouldWriteBatchesInOrderAndReportRejectedRows() throws Exception {
+        // Arrange
+        importer = new UserImporter(userService, userImportMapper, 2, 1, 2, 1);
+        List<List<String>> written = new ArrayList<>();
+        Set<String> existing = new HashSet<>(Collections.singleton("taken"));
+        when(userService.importUsers(anyList(), any(UserImport.class))).thenAnswer(invocation -> {
+            List<UserDTO> users = invocation.getArgument(0);
+            UserImport checkpoint = invocation.getArgument(1);
+            written.add(users.stream().map(UserDTO::getUsername).collect(Collectors.toList()));
+            List<UserBatchItemResult> results = new ArrayList<>();
+            for (int i = 0; i < users.size(); i++) {
+                boolean taken = !existing.add(users.get(i).getUsername());
+                results.add(new UserBatchItemResult(i, taken ? null : 100L + i,
+                        taken ? UserBatchItemResult.Status.INVALID : UserBatchItemResult.Status.CREATED,
+                        taken ? "username already exists" : null));
+            }
+            long created = results.stream().filter(result -> result.getStatus() == UserBatchItemResult.Status.CREATED).count();
+            checkpoint.setImportedRows(checkpoint.getImportedRows() + created);
+            checkpoint.setRejectedRows(checkpoint.getRejectedRows() + users.size() - created);
+            return results;
+        });
+        List<UserImportEvent> events = new ArrayList<>();
+
+        // Act
+        UserImportEvent outcome = importer.importUsers(null, csv(
+                "a,a@example.com",
+                "b,not-an-email",
+                "taken,t@example.com",
+                "c,c@example.com",
+                "c,again@example.com"), events::add);
+
+        // Assert
+        assertEquals(UserImportEvent.Type.COMPLETED, outcome.getType());
+        assertEquals(5, outcome.getCommittedRows());
+        assertEquals(2, outcome.getImportedRows());
+        assertEquals(3, outcome.getRejectedRows());
+        assertEquals(3, written.size());
+        assertEquals(Collections.singletonList("a"), written.get(0));
+        assertEquals(Arrays.asList("taken", "c"), written.get(1));
+        assertEquals(Collections.singletonList("c"), written.get(2));
+        List<String> report = events.stream()
+                .map(event -> event.getType() + (event.getRow() != null ? " " + event.getRow() : ""))
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("REJECTED 2", "PROGRESS", "REJECTED 3", "PROGRESS", "REJECTED 5", "PROGRESS", "COMPLETED"), report);
+        assertEquals("email is not a valid address", events.get(0).getMessage());
+        assertEquals("username already exists", events.get(2).getMessage());
+        assertEquals(2, importer.getImported());
+        assertEquals(3, importer.getRejected());
+        verifyNoInteractions(userImportMapper);
+    }
+
+    @Test
+    void importUsers_ShouldResumeAfterCommittedRows() throws Exception {
+        // Arrange
+        importer = new UserImporter(userService, userImportMapper, 10, 1, 1, 1);
+        UserImport saved = new UserImport("partner");
+        saved.setCommittedRows(2);
+        saved.setImportedRows(2);
+        when(userImportMapper.findById("partner")).thenReturn(saved);
+        when(userService.importUsers(anyList(), any(UserImport.class))).thenReturn(new ArrayList<>());
+
+        // Act
+        UserImportEvent outcome = importer.importUsers("partner", csv(
+                "a,a@example.com",
+                "b,b@example.com",
+                "c,c@example.com"), event -> { });
+
+        // Assert
+        assertEquals(3, outcome.getCommittedRows());
+        verify(userService).importUsers(argThat(users -> users.size() == 1 && users.get(0).getUsername().equals("c")),
+                argThat(checkpoint -> checkpoint.getImportId().equals("partner") && checkpoint.getCommittedRows() == 3));
+        verify(userImportMapper, never()).insert(any(UserImport.class));
+    }
+
+    @Test
+    void importUsers_ShouldReportLastCommittedRowWhenWriteFails() throws Exception {
+        // Arrange
+        importer = new UserImporter(userService, userImportMapper, 1, 2, 1, 1);
+        when(userService.importUsers(anyList(), any(UserImport.class)))
+                .thenReturn(new ArrayList<>())
+                .thenThrow(new QueryTimeoutException("database gone"));
+        List<UserImportEvent> events = new ArrayList<>();
+
+        // Act
+        UserImportEvent outcome = importer.importUsers("partner", csv(
+                "a,a@example.com",
+                "b,b@example.com",
+                "c,c@example.com"), events::add);
+
+        // Assert
+        assertEquals(UserImportEvent.Type.FAILED, outcome.getType());
+        assertEquals(1, outcome.getCommittedRows());
+        assertEquals("database gone", outcome.getMessage());
+        assertSame(outcome, events.get(events.size() - 1));
+        verify(userImportMapper).insert(argThat(created -> created.getImportId().equals("partner")));
+    }
+
+    @Test
+    void importUsers_ShouldRejectImportsBeyondConcurrencyLimit() throws Exception {
+        // Arrange
+        importer = new UserImporter(userService, userImportMapper, 1, 1, 1, 1);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userService.importUsers(anyList(), any(UserImport.class))).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new ArrayList<>();
+        });
+        Thread running = new Thread(() -> {
+            try {
+                importer.importUsers(null, csv("a,a@example.com"), event -> { });
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        running.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // Act & Assert
+        try {
+            assertEquals(1, importer.getActive());
+            assertThrows(RejectedExecutionException.class,
+                    () -> importer.importUsers(null, csv("b,b@example.com"), event -> { }));
+        } finally {
+            release.countDown();
+            running.join();
+        }
+    }
+
+    @Test
+    void check_ShouldRejectMissingFieldsAndDuplicatesWithinBatch() {
+        // Arrange
+        List<UserImportReader.Row> rows = Arrays.asList(
+                UserImportReader.Row.of(1, new UserDTO(null, "a", "a@example.com")),
+                UserImportReader.Row.of(2, new UserDTO(null, " ", "blank@example.com")),
+                UserImportReader.Row.invalid(3, "malformed JSON"),
+                UserImportReader.Row.of(4, new UserDTO(null, "a", "again@example.com")),
+                UserImportReader.Row.of(5, null));
+
+        // Act
+        UserImporter.Batch batch = UserImporter.check(rows);
+
+        // Assert
+        assertEquals(5, batch.lastRow);
+        assertEquals(1, batch.users.size());
+        assertEquals(1, batch.userRows[0]);
+        assertEquals(Arrays.asList("username is required", "malformed JSON", "duplicate username in input", "user is required"),
+                batch.rejected.stream().map(UserImportEvent::getMessage).collect(Collectors.toList()));
+    }
+
+    private static UserImportReader csv(String... lines) throws IOException {
+        return UserImportReader.csv(new StringReader("username,email\n" + String.join("\n", lines)));
+    }
+}
@@ -0,0 +1,225 @@
+package com.compare.demo.service;
+
+import com.compare.demo.config.ReadYourWrites;
+import com.compare.demo.entity.User;
+import com.compare.demo.mapper.UserMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserLoadCoalescerTest {
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ExecutorService callers;
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        callers = Executors.newFixedThreadPool(8);
+        testUser = new User("testuser", "test@example.com");
+        testUser.setId(1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void findById_ShouldShareOneQueryBetweenConcurrentCallers() throws Exception {
+        // Arrange
+        UserLoadCoalescer coalescer = new UserLoadCoalescer(userMapper, transactionManager, true, Duration.ZERO, 500);
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userMapper.findById(1L)).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return testUser;
+        });
+
+        // Act
+        List<Future<User>> results = new ArrayList<>();
+        results.add(callers.submit(() -> coalescer.findById(1L, 0)));
+        assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            results.add(callers.submit(() -> coalescer.findById(1L, 0)));
+        }
+        awaitFollowers(coalescer, 4);
+        release.countDown();
+
+        // Assert
+        for (Future<User> result : results) {
+            assertSame(testUser, result.get(5, TimeUnit.SECONDS));
+        }
+        verify(userMapper, times(1)).findById(1L);
+        assertEquals(1, coalescer.getLeaders());
+        assertEquals(4, coalescer.getFollowers());
+        assertEquals(1, coalescer.getQueries());
+    }
+
+    @Test
+    void findById_ShouldNotShareFlightsAcrossCacheStamps() throws Exception {
+        // Arrange
+        UserLoadCoalescer coalescer = new UserLoadCoalescer(userMapper, transactionManager, true, Duration.ZERO, 500);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userMapper.findById(1L)).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return testUser;
+        });
+
+        // Act
+        Future<User> beforeWrite = callers.submit(() -> coalescer.findById(1L, 0));
+        Future<User> afterWrite = callers.submit(() -> coalescer.findById(1L, 1));
+        boolean separateQueries = bothStarted.await(5, TimeUnit.SECONDS);
+        release.countDown();
+        beforeWrite.get(5, TimeUnit.SECONDS);
+        afterWrite.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(separateQueries);
+        verify(userMapper, times(2)).findById(1L);
+        assertEquals(0, coalescer.getFollowers());
+    }
+
+    @Test
+    void findById_ShouldPropagateFailureToFollowers() throws Exception {
+        // Arrange
+        UserLoadCoalescer coalescer = new UserLoadCoalescer(userMapper, transactionManager, true, Duration.ZERO, 500);
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userMapper.findById(1L)).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("database down");
+        });
+
+        // Act
+        Future<User> leader = callers.submit(() -> coalescer.findById(1L, 0));
+        assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+        Future<User> follower = callers.submit(() -> coalescer.findById(1L, 0));
+        awaitFollowers(coalescer, 1);
+        release.countDown();
+
+        // Assert
+        Exception leaderFailure = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        Exception followerFailure = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertTrue(leaderFailure.getCause() instanceof IllegalStateException);
+        assertTrue(followerFailure.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void findById_ShouldMergeDistinctIdsWithinBatchWindow() throws Exception {
+        // Arrange
+        UserLoadCoalescer coalescer = new UserLoadCoalescer(userMapper, transactionManager, true, Duration.ofMillis(200), 500);
+        User second = new User("second", "second@example.com");
+        second.setId(2L);
+        when(userMapper.findByIds(anyList())).thenReturn(Arrays.asList(testUser, second));
+
+        // Act
+        Future<User> first = callers.submit(() -> coalescer.findById(1L, 0));
+        Future<User> other = callers.submit(() -> coalescer.findById(2L, 0));
+        Future<User> missing = callers.submit(() -> coalescer.findById(3L, 0));
+
+        // Assert
+        assertSame(testUser, first.get(5, TimeUnit.SECONDS));
+        assertSame(second, other.get(5, TimeUnit.SECONDS));
+        assertNull(missing.get(5, TimeUnit.SECONDS));
+        verify(userMapper, times(1)).findByIds(anyList());
+        verify(userMapper, never()).findById(anyLong());
+        assertEquals(1, coalescer.getQueries());
+        coalescer.destroy();
+    }
+
+    @Test
+    void findById_ShouldBatchReadYourWritesCallersSeparatelyInReadOnlyTransactions() throws Exception {
+        // Arrange
+        UserLoadCoalescer coalescer = new UserLoadCoalescer(userMapper, transactionManager, true, Duration.ofMillis(200), 500);
+        List<Boolean> readOnly = new ArrayList<>();
+        List<Boolean> primary = new ArrayList<>();
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            synchronized (readOnly) {
+                readOnly.add(invocation.<TransactionDefinition>getArgument(0).isReadOnly());
+                primary.add(ReadYourWrites.isPrimaryRequired());
+            }
+            return null;
+        });
+        when(userMapper.findByIds(anyList())).thenReturn(Arrays.asList(testUser));
+
+        // Act
+        Future<User> replicaRead = callers.submit(() -> coalescer.findById(1L, 0));
+        Future<User> primaryRead = callers.submit(() -> ReadYourWrites.call(true, () -> coalescer.findById(1L, 0)));
+
+        // Assert
+        assertSame(testUser, replicaRead.get(5, TimeUnit.SECONDS));
+        assertSame(testUser, primaryRead.get(5, TimeUnit.SECONDS));
+        verify(userMapper, times(2)).findByIds(anyList());
+        assertEquals(Arrays.asList(true, true), readOnly);
+        assertTrue(primary.contains(true) && primary.contains(false));
+        coalescer.destroy();
+    }
+
+    @Test
+    void findById_ShouldFlushBatchOnceFull() {
+        // Arrange
+        UserLoadCoalescer coalescer = new UserLoadCoalescer(userMapper, transactionManager, true, Duration.ofMinutes(1), 1);
+        when(userMapper.findByIds(Arrays.asList(1L))).thenReturn(Arrays.asList(testUser));
+
+        // Act
+        User result = coalescer.findById(1L, 0);
+
+        // Assert
+        assertSame(testUser, result);
+        coalescer.destroy();
+    }
+
+    @Test
+    void findByUsername_ShouldQueryDirectlyWhenDisabled() {
+        // Arrange
+        UserLoadCoalescer coalescer = new UserLoadCoalescer(userMapper, transactionManager, false, Duration.ofMillis(5), 500);
+        when(userMapper.findByUsername("testuser")).thenReturn(testUser);
+
+        // Act
+        User result = coalescer.findByUsername("testuser", 0);
+
+        // Assert
+        assertSame(testUser, result);
+        assertEquals(0, coalescer.getLeaders());
+        assertEquals(1, coalescer.getQueries());
+    }
+
+    private static void awaitFollowers(UserLoadCoalescer coalescer, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescer.getFollowers() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
\ No newline at end of file
@@ -1,21 +1,38 @@
 package com.compare.demo.service;
 
+import com.compare.demo.dto.UserBatchItemResult;
 import com.compare.demo.dto.UserDTO;
+import com.compare.demo.dto.UserLookupResult;
+import com.compare.demo.dto.UserSearchCriteria;
 import com.compare.demo.entity.User;
+import com.compare.demo.entity.UserChange;
+import com.compare.demo.entity.UserImport;
 import com.compare.demo.mapper.UserMapper;
+import org.apache.ibatis.cursor.Cursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,6 +41,21 @@ class UserServiceMockTest {
     @Mock
     private UserMapper userMapper;
 
+    @Spy
+    private UserCache userCache = new UserCache(100, Duration.ofMinutes(5));
+
+    @Mock
+    private UserBatchWriter userBatchWriter;
+
+    @Mock
+    private UsernameIndex usernameIndex;
+
+    @Mock
+    private UserChangeLog userChangeLog;
+
+    @Mock
+    private UserIdGenerator userIdGenerator;
+
     @InjectMocks
     private UserService userService;
 
@@ -32,6 +64,9 @@ class UserServiceMockTest {
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(userService, "userLoadCoalescer",
+                new UserLoadCoalescer(userMapper, mock(PlatformTransactionManager.class), true, Duration.ZERO, 500));
+
         testUser = new User("testuser", "test@example.com");
         testUser.setId(1L);
         testUser.setCreatedAt(LocalDateTime.now());
@@ -57,6 +92,53 @@ class UserServiceMockTest {
         verify(userMapper, times(1)).findAll();
     }
 
+    @Test
+    void getUsersPage_ShouldUseDefaultPageSizeWhenLimitMissing() {
+        // Arrange
+        when(userMapper.findPage(isNull(), eq(UserService.DEFAULT_PAGE_SIZE))).thenReturn(Arrays.asList(testUser));
+
+        // Act
+        List<UserDTO> result = userService.getUsersPage(null, null);
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals(testUser.getId(), result.get(0).getId());
+        verify(userMapper, never()).findAll();
+    }
+
+    @Test
+    void getUsersPage_ShouldClampLimitToMaximum() {
+        // Arrange
+        when(userMapper.findPage(10L, UserService.MAX_PAGE_SIZE)).thenReturn(Arrays.asList(testUser));
+
+        // Act
+        userService.getUsersPage(10L, 1_000_000);
+
+        // Assert
+        verify(userMapper, times(1)).findPage(10L, UserService.MAX_PAGE_SIZE);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamUsers_ShouldPassEveryRowToConsumerAndCloseCursor() throws Exception {
+        // Arrange
+        User second = new User("second", "second@example.com");
+        second.setId(2L);
+        Cursor<User> cursor = mock(Cursor.class);
+        when(cursor.iterator()).thenReturn(Arrays.asList(testUser, second).iterator());
+        when(userMapper.streamAfter(null)).thenReturn(cursor);
+
+        // Act
+        List<UserDTO> streamed = new ArrayList<>();
+        userService.streamUsers(null, streamed::add);
+
+        // Assert
+        assertEquals(2, streamed.size());
+        assertEquals("second", streamed.get(1).getUsername());
+        verify(cursor, times(1)).close();
+        verify(userMapper, never()).findAll();
+    }
+
     @Test
     void getUserById_ShouldReturnUserWhenExists() {
         // Arrange
@@ -86,6 +168,172 @@ class UserServiceMockTest {
         verify(userMapper, times(1)).findById(1L);
     }
 
+    @Test
+    void lookupUsers_ShouldPreserveRequestOrderAndReportMisses() {
+        // Arrange
+        User second = new User("second", "second@example.com");
+        second.setId(2L);
+        when(userBatchWriter.getMaxItems()).thenReturn(100);
+        when(userMapper.findByIds(anyList())).thenReturn(Arrays.asList(testUser, second));
+        when(userMapper.findByUsernames(anyList())).thenReturn(Arrays.asList(second));
+
+        // Act
+        UserLookupResult result = userService.lookupUsers(Arrays.asList(2L, 99L, 1L, 2L, null),
+                Arrays.asList("nobody", "second"));
+
+        // Assert
+        assertEquals(Arrays.asList(2L, 1L), result.getById().stream().map(UserDTO::getId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(99L), result.getMissingIds());
+        assertEquals(1, result.getByUsername().size());
+        assertEquals("second", result.getByUsername().get(0).getUsername());
+        assertEquals(Arrays.asList("nobody"), result.getMissingUsernames());
+        verify(userMapper, times(1)).findByIds(Arrays.asList(2L, 99L, 1L));
+    }
+
+    @Test
+    void lookupUsers_ShouldOnlyQueryUsersMissingFromCache() {
+        // Arrange
+        userCache.put(userCache.stamp(), testUserDTO);
+        User second = new User("second", "second@example.com");
+        second.setId(2L);
+        when(userBatchWriter.getMaxItems()).thenReturn(100);
+        when(userMapper.findByIds(Arrays.asList(2L))).thenReturn(Arrays.asList(second));
+
+        // Act
+        UserLookupResult result = userService.lookupUsers(Arrays.asList(1L, 2L), Arrays.asList("testuser"));
+
+        // Assert
+        assertEquals(2, result.getById().size());
+        assertEquals(1, result.getByUsername().size());
+        verify(userMapper, never()).findByUsernames(anyList());
+        assertNotNull(userCache.getById(2L));
+    }
+
+    @Test
+    void lookupUsers_ShouldChunkLargeIdLists() {
+        // Arrange
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= UserService.LOOKUP_CHUNK_SIZE * 2 + 1; id++) {
+            ids.add(id);
+        }
+        when(userBatchWriter.getMaxItems()).thenReturn(10000);
+        when(userMapper.findByIds(anyList())).thenReturn(new ArrayList<>());
+
+        // Act
+        UserLookupResult result = userService.lookupUsers(ids, null);
+
+        // Assert
+        verify(userMapper, times(3)).findByIds(anyList());
+        assertEquals(ids, result.getMissingIds());
+    }
+
+    @Test
+    void lookupUsers_ShouldRejectTooManyKeys() {
+        // Arrange
+        when(userBatchWriter.getMaxItems()).thenReturn(1);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.lookupUsers(Arrays.asList(1L), Arrays.asList("testuser")));
+        verifyNoInteractions(userMapper);
+    }
+
+    @Test
+    void searchUsers_ShouldNormalizeFiltersAndSort() {
+        // Arrange
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setUsernamePrefix("test_");
+        criteria.setEmailDomain(" @Example.COM ");
+        criteria.setSort("createdAt");
+        criteria.setDirection("DESC");
+        criteria.setOffset(20);
+        criteria.setLimit(UserService.MAX_PAGE_SIZE + 1);
+        when(userMapper.search(criteria, "test\\_%", "example.com", "created_at DESC, id DESC", 20, UserService.MAX_PAGE_SIZE))
+                .thenReturn(Arrays.asList(testUser));
+
+        // Act
+        List<UserDTO> result = userService.searchUsers(criteria);
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals("testuser", result.get(0).getUsername());
+    }
+
+    @Test
+    void searchUsers_ShouldDefaultToIdOrderWithoutFilters() {
+        // Arrange
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        when(userMapper.search(criteria, null, null, "id ASC", 0, UserService.DEFAULT_PAGE_SIZE))
+                .thenReturn(new ArrayList<>());
+
+        // Act
+        List<UserDTO> result = userService.searchUsers(criteria);
+
+        // Assert
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void searchUsers_ShouldRejectUnknownSortColumn() {
+        // Arrange
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setSort("email; DROP TABLE users");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> userService.searchUsers(criteria));
+        verify(userMapper, never()).search(any(), any(), any(), anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void searchUsers_ShouldRejectEmptyTimeRange() {
+        // Arrange
+        UserSearchCriteria criteria = new UserSearchCriteria();
+        criteria.setCreatedFrom(LocalDateTime.of(2024, 1, 2, 0, 0));
+        criteria.setCreatedTo(LocalDateTime.of(2024, 1, 1, 0, 0));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> userService.searchUsers(criteria));
+        verifyNoInteractions(userMapper);
+    }
+
+    @Test
+    void suggestUsernames_ShouldUseIndexWhenReady() {
+        // Arrange
+        when(usernameIndex.isReady()).thenReturn(true);
+        when(usernameIndex.suggest("te", UserService.MAX_SUGGEST_LIMIT)).thenReturn(Arrays.asList("testuser"));
+
+        // Act
+        List<String> result = userService.suggestUsernames("te", 1000);
+
+        // Assert
+        assertEquals(Arrays.asList("testuser"), result);
+        verifyNoInteractions(userMapper);
+    }
+
+    @Test
+    void suggestUsernames_ShouldQueryDatabaseWhileIndexLoads() {
+        // Arrange
+        when(usernameIndex.isReady()).thenReturn(false);
+        when(userMapper.search(any(UserSearchCriteria.class), eq("te%"), isNull(), eq("username ASC"), eq(0),
+                eq(UserService.DEFAULT_SUGGEST_LIMIT))).thenReturn(Arrays.asList(testUser));
+
+        // Act
+        List<String> result = userService.suggestUsernames("te", null);
+
+        // Assert
+        assertEquals(Arrays.asList("testuser"), result);
+    }
+
+    @Test
+    void suggestUsernames_ShouldReturnNothingForEmptyPrefix() {
+        // Act
+        List<String> result = userService.suggestUsernames("", 5);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(usernameIndex, userMapper);
+    }
+
     @Test
     void getUserByUsername_ShouldReturnUserWhenExists() {
         // Arrange
@@ -104,76 +352,418 @@ class UserServiceMockTest {
     @Test
     void createUser_ShouldReturnCreatedUser() {
         // Arrange
-        when(userMapper.insert(any(User.class))).thenReturn(1);
+        when(userIdGenerator.nextId()).thenReturn(42L);
+        when(userMapper.insertWithId(any(User.class))).thenReturn(1);
 
         // Act
         UserDTO result = userService.createUser(testUserDTO);
 
         // Assert
         assertNotNull(result);
+        assertEquals(42L, result.getId());
         assertEquals(testUserDTO.getUsername(), result.getUsername());
         assertEquals(testUserDTO.getEmail(), result.getEmail());
-        verify(userMapper, times(1)).insert(any(User.class));
+        verify(userMapper, times(1)).insertWithId(argThat(user -> user.getId() == 42L));
+        verify(usernameIndex).changed(Collections.<String>emptyList(), Arrays.asList("testuser"));
     }
 
     @Test
     void updateUser_ShouldReturnUpdatedUserWhenExists() {
         // Arrange
         UserDTO updatedDTO = new UserDTO(1L, "updateduser", "updated@example.com");
-        when(userMapper.findById(1L)).thenReturn(testUser);
-        when(userMapper.update(any(User.class))).thenReturn(1);
+        when(userMapper.updateReturningOld(any(User.class))).thenReturn(testUser);
 
         // Act
         UserDTO result = userService.updateUser(1L, updatedDTO);
 
         // Assert
         assertNotNull(result);
+        assertEquals(1L, result.getId());
         assertEquals(updatedDTO.getUsername(), result.getUsername());
         assertEquals(updatedDTO.getEmail(), result.getEmail());
-        verify(userMapper, times(1)).findById(1L);
-        verify(userMapper, times(1)).update(any(User.class));
+        verify(userMapper, times(1)).updateReturningOld(argThat(user ->
+            user.getId().equals(1L) &&
+            user.getUsername().equals("updateduser") &&
+            user.getEmail().equals("updated@example.com")
+        ));
+        verify(userMapper, never()).findById(any());
     }
 
     @Test
     void updateUser_ShouldReturnNullWhenNotExists() {
         // Arrange
-        when(userMapper.findById(1L)).thenReturn(null);
+        when(userMapper.updateReturningOld(any(User.class))).thenReturn(null);
 
         // Act
         UserDTO result = userService.updateUser(1L, testUserDTO);
 
         // Assert
         assertNull(result);
-        verify(userMapper, times(1)).findById(1L);
-        verify(userMapper, never()).update(any(User.class));
+        verify(userMapper, times(1)).updateReturningOld(any(User.class));
+        verify(userMapper, never()).findById(any());
+    }
+
+    @Test
+    void updateUser_ShouldReturnIncrementedVersionWhenExpectedVersionMatches() {
+        // Arrange
+        testUser.setVersion(3L);
+        when(userMapper.updateReturningOld(argThat(user -> Long.valueOf(3L).equals(user.getVersion()))))
+                .thenReturn(testUser);
+
+        // Act
+        UserDTO result = userService.updateUser(1L, new UserDTO(1L, "updateduser", "updated@example.com"), 3L);
+
+        // Assert
+        assertEquals(4L, result.getVersion());
+        verify(userMapper, never()).findVersionById(any());
+    }
+
+    @Test
+    void updateUser_ShouldThrowConflictWhenVersionIsStale() {
+        // Arrange
+        when(userMapper.updateReturningOld(any(User.class))).thenReturn(null);
+        when(userMapper.findVersionById(1L)).thenReturn(5L);
+
+        // Act & Assert
+        UserVersionConflictException conflict = assertThrows(UserVersionConflictException.class,
+                () -> userService.updateUser(1L, testUserDTO, 3L));
+        assertEquals(3L, conflict.getExpectedVersion());
+    }
+
+    @Test
+    void updateUser_ShouldReturnNullWhenConditionalTargetMissing() {
+        // Arrange
+        when(userMapper.updateReturningOld(any(User.class))).thenReturn(null);
+        when(userMapper.findVersionById(1L)).thenReturn(null);
+
+        // Act
+        UserDTO result = userService.updateUser(1L, testUserDTO, 3L);
+
+        // Assert
+        assertNull(result);
+    }
+
+    @Test
+    void updateUser_ShouldNotFilterOnVersionWithoutExpectation() {
+        // Arrange
+        when(userMapper.updateReturningOld(argThat(user -> user.getVersion() == null))).thenReturn(testUser);
+
+        // Act
+        UserDTO result = userService.updateUser(1L, testUserDTO);
+
+        // Assert
+        assertNotNull(result);
+        assertEquals(1L, result.getVersion());
     }
 
     @Test
     void deleteUser_ShouldReturnTrueWhenExists() {
         // Arrange
-        when(userMapper.findById(1L)).thenReturn(testUser);
-        when(userMapper.deleteById(1L)).thenReturn(1);
+        when(userMapper.deleteReturningOld(1L)).thenReturn(testUser);
 
         // Act
         boolean result = userService.deleteUser(1L);
 
         // Assert
         assertTrue(result);
-        verify(userMapper, times(1)).findById(1L);
-        verify(userMapper, times(1)).deleteById(1L);
+        verify(userMapper, times(1)).deleteReturningOld(1L);
+        verify(userMapper, never()).findById(any());
     }
 
     @Test
     void deleteUser_ShouldReturnFalseWhenNotExists() {
         // Arrange
-        when(userMapper.findById(1L)).thenReturn(null);
+        when(userMapper.deleteReturningOld(1L)).thenReturn(null);
 
         // Act
         boolean result = userService.deleteUser(1L);
 
         // Assert
         assertFalse(result);
+        verify(userMapper, times(1)).deleteReturningOld(1L);
+        verify(userMapper, never()).findById(any());
+    }
+
+    @Test
+    void getUserById_ShouldServeRepeatedLookupsFromCache() {
+        // Arrange
+        when(userMapper.findById(1L)).thenReturn(testUser);
+
+        // Act
+        UserDTO first = userService.getUserById(1L);
+        UserDTO second = userService.getUserById(1L);
+
+        // Assert
+        assertEquals(first.getUsername(), second.getUsername());
         verify(userMapper, times(1)).findById(1L);
-        verify(userMapper, never()).deleteById(1L);
+        assertEquals(1, userCache.getHits());
+        assertEquals(1, userCache.getMisses());
+    }
+
+    @Test
+    void getUserByUsername_ShouldServeRepeatedLookupsFromCache() {
+        // Arrange
+        when(userMapper.findByUsername("testuser")).thenReturn(testUser);
+
+        // Act
+        userService.getUserByUsername("testuser");
+        UserDTO result = userService.getUserByUsername("testuser");
+
+        // Assert
+        assertEquals(testUser.getId(), result.getId());
+        verify(userMapper, times(1)).findByUsername("testuser");
+    }
+
+    @Test
+    void updateUser_ShouldEvictOldUsernameFromCache() {
+        // Arrange
+        when(userMapper.findByUsername("testuser")).thenReturn(testUser);
+        when(userMapper.updateReturningOld(any(User.class))).thenReturn(testUser);
+        userService.getUserByUsername("testuser");
+
+        // Act
+        userService.updateUser(1L, new UserDTO(1L, "renamed", "renamed@example.com"));
+
+        // Assert
+        assertNull(userCache.getByUsername("testuser"));
+        assertNull(userCache.getById(1L));
+    }
+
+    @Test
+    void deleteUser_ShouldEvictCachedUser() {
+        // Arrange
+        when(userMapper.findById(1L)).thenReturn(testUser);
+        when(userMapper.deleteReturningOld(1L)).thenReturn(testUser);
+        userService.getUserById(1L);
+
+        // Act
+        userService.deleteUser(1L);
+        when(userMapper.findById(1L)).thenReturn(null);
+
+        // Assert
+        assertNull(userService.getUserById(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createUsers_ShouldInsertValidRowsInOneBatchAndReportInvalidOnes() {
+        // Arrange
+        when(userBatchWriter.getMaxItems()).thenReturn(100);
+        when(userIdGenerator.nextId()).thenReturn(10L, 11L);
+        when(userBatchWriter.insertAll(anyList())).thenReturn(new int[] {1, 1});
+        List<UserDTO> request = Arrays.asList(
+                new UserDTO(null, "first", "first@example.com"),
+                new UserDTO(null, "", "blank@example.com"),
+                new UserDTO(null, "second", "second@example.com"),
+                new UserDTO(null, "first", "again@example.com"));
+
+        // Act
+        List<UserBatchItemResult> results = userService.createUsers(request);
+
+        // Assert
+        assertEquals(4, results.size());
+        assertEquals(UserBatchItemResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(10L, results.get(0).getId());
+        assertEquals(UserBatchItemResult.Status.INVALID, results.get(1).getStatus());
+        assertEquals(UserBatchItemResult.Status.CREATED, results.get(2).getStatus());
+        assertEquals(11L, results.get(2).getId());
+        assertEquals(UserBatchItemResult.Status.INVALID, results.get(3).getStatus());
+        verify(userBatchWriter, times(1)).insertAll(argThat(users -> users.size() == 2
+                && users.get(0).getId() == 10L && users.get(1).getId() == 11L));
+    }
+
+    @Test
+    void createUsers_ShouldRejectOversizedBatch() {
+        // Arrange
+        when(userBatchWriter.getMaxItems()).thenReturn(1);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.createUsers(Arrays.asList(testUserDTO, testUserDTO)));
+        verify(userBatchWriter, never()).insertAll(anyList());
+    }
+
+    @Test
+    void updateUsers_ShouldReportMissingRowsAsNotFound() {
+        // Arrange
+        when(userBatchWriter.getMaxItems()).thenReturn(100);
+        when(userBatchWriter.updateAll(anyList())).thenReturn(new int[] {1, 0});
+        List<UserDTO> request = Arrays.asList(
+                new UserDTO(1L, "updateduser", "updated@example.com"),
+                new UserDTO(null, "noid", "noid@example.com"),
+                new UserDTO(999L, "ghost", "ghost@example.com"));
+
+        // Act
+        List<UserBatchItemResult> results = userService.updateUsers(request);
+
+        // Assert
+        assertEquals(UserBatchItemResult.Status.UPDATED, results.get(0).getStatus());
+        assertEquals(UserBatchItemResult.Status.INVALID, results.get(1).getStatus());
+        assertEquals(UserBatchItemResult.Status.NOT_FOUND, results.get(2).getStatus());
+        assertEquals(999L, results.get(2).getId());
+    }
+
+    @Test
+    void deleteUsers_ShouldEvictDeletedUsersFromCache() {
+        // Arrange
+        when(userMapper.findById(1L)).thenReturn(testUser);
+        userService.getUserById(1L);
+        when(userBatchWriter.getMaxItems()).thenReturn(100);
+        when(userBatchWriter.deleteAll(eq(Arrays.asList(1L, 2L)), anyMap())).thenReturn(new int[] {1, 0});
+
+        // Act
+        List<UserBatchItemResult> results = userService.deleteUsers(Arrays.asList(1L, 2L));
+
+        // Assert
+        assertEquals(UserBatchItemResult.Status.DELETED, results.get(0).getStatus());
+        assertEquals(UserBatchItemResult.Status.NOT_FOUND, results.get(1).getStatus());
+        assertNull(userCache.getById(1L));
+    }
+
+    @Test
+    void updateUser_ShouldMoveRenamedUserInIndex() {
+        // Arrange
+        when(userMapper.updateReturningOld(any(User.class))).thenReturn(testUser);
+
+        // Act
+        userService.updateUser(1L, new UserDTO(1L, "renamed", "test@example.com"));
+
+        // Assert
+        verify(usernameIndex).changed(Arrays.asList("testuser"), Arrays.asList("renamed"));
+    }
+
+    @Test
+    void deleteUsers_ShouldRemoveDeletedUsernamesFromIndex() {
+        // Arrange
+        when(userBatchWriter.getMaxItems()).thenReturn(100);
+        when(userBatchWriter.findByIdsForUpdate(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(testUser));
+        when(userBatchWriter.deleteAll(eq(Arrays.asList(1L, 2L)), anyMap())).thenReturn(new int[] {1, 0});
+
+        // Act
+        userService.deleteUsers(Arrays.asList(1L, 2L));
+
+        // Assert
+        verify(usernameIndex).changed(Arrays.asList("testuser"), Collections.<String>emptyList());
+        verify(userCache).invalidateAll(Arrays.asList(1L, 2L), Arrays.asList("testuser"));
+    }
+
+    @Test
+    void createUser_ShouldRecordCreatedChange() {
+        // Arrange
+        when(userIdGenerator.nextId()).thenReturn(7L);
+
+        // Act
+        userService.createUser(testUserDTO);
+
+        // Assert
+        verify(userChangeLog).record(argThat(change -> change.getType() == UserChange.Type.CREATED
+                && change.getUserId() == 7L && change.getVersion() == 0L && change.getUsername().equals("testuser")));
+    }
+
+    @Test
+    void deleteUser_ShouldNotRecordChangeWhenNothingDeleted() {
+        // Arrange
+        when(userMapper.deleteReturningOld(1L)).thenReturn(null);
+
+        // Act
+        userService.deleteUser(1L);
+
+        // Assert
+        verify(userChangeLog, never()).record(any(UserChange.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void updateUsers_ShouldRecordNextVersionOfUpdatedRowsOnly() {
+        // Arrange
+        testUser.setVersion(3L);
+        when(userBatchWriter.getMaxItems()).thenReturn(100);
+        when(userBatchWriter.findByIdsForUpdate(Arrays.asList(1L, 1L, 999L))).thenReturn(Arrays.asList(testUser));
+        when(userBatchWriter.updateAll(anyList())).thenReturn(new int[] {1, 1, 0});
+        List<UserDTO> request = Arrays.asList(
+                new UserDTO(1L, "first", "first@example.com"),
+                new UserDTO(1L, "second", "second@example.com"),
+                new UserDTO(999L, "ghost", "ghost@example.com"));
+
+        // Act
+        userService.updateUsers(request);
+
+        // Assert
+        verify(userChangeLog).recordAll(argThat(changes -> changes.size() == 2
+                && changes.get(0).getVersion() == 4L && changes.get(0).getUsername().equals("first")
+                && changes.get(1).getVersion() == 5L && changes.get(1).getUsername().equals("second")));
+    }
+
+    @Test
+    void deleteUsers_ShouldRecordPreviousStateOfDeletedRows() {
+        // Arrange
+        when(userBatchWriter.getMaxItems()).thenReturn(100);
+        when(userBatchWriter.findByIdsForUpdate(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(testUser));
+        when(userBatchWriter.deleteAll(eq(Arrays.asList(1L, 2L)), anyMap())).thenReturn(new int[] {1, 0});
+
+        // Act
+        userService.deleteUsers(Arrays.asList(1L, 2L));
+
+        // Assert
+        verify(userChangeLog).recordAll(argThat(changes -> changes.size() == 1 && changes.get(0).getType() == UserChange.Type.DELETED
+                        && changes.get(0).getUserId() == 1L && changes.get(0).getUsername().equals("testuser")));
+    }
+
+    @Test
+    void getUserChanges_ShouldClampLimit() {
+        // Act
+        userService.getUserChanges(null, 5000);
+        userService.getUserChanges(42L, null);
+
+        // Assert
+        verify(userChangeLog).changesSince(0L, UserService.MAX_PAGE_SIZE);
+        verify(userChangeLog).changesSince(42L, UserService.DEFAULT_PAGE_SIZE);
+    }
+
+    @Test
+    void getUserChanges_ShouldRejectNegativeSince() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> userService.getUserChanges(-1L, null));
+        verifyNoInteractions(userChangeLog);
+    }
+
+    @Test
+    void importUsers_ShouldRejectTakenUsernamesAndSaveCheckpoint() {
+        // Arrange
+        when(userBatchWriter.getMaxItems()).thenReturn(100);
+        when(userBatchWriter.findByUsernames(Arrays.asList("testuser", "fresh"))).thenReturn(Arrays.asList(testUser));
+        when(userBatchWriter.advanceImport(any(UserImport.class))).thenReturn(true);
+        when(userIdGenerator.nextId()).thenReturn(10L);
+        UserImport checkpoint = new UserImport("partner");
+        checkpoint.setCommittedRows(3);
+        checkpoint.setRejectedRows(1);
+
+        // Act
+        List<UserBatchItemResult> results = userService.importUsers(Arrays.asList(
+                new UserDTO(null, "testuser", "taken@example.com"),
+                new UserDTO(null, "fresh", "fresh@example.com")), checkpoint);
+
+        // Assert
+        assertEquals(UserBatchItemResult.Status.INVALID, results.get(0).getStatus());
+        assertEquals(UserBatchItemResult.Status.CREATED, results.get(1).getStatus());
+        assertEquals(10L, results.get(1).getId());
+        assertEquals(1, checkpoint.getImportedRows());
+        assertEquals(2, checkpoint.getRejectedRows());
+        verify(userBatchWriter).advanceImport(checkpoint);
+        verify(userBatchWriter).insertAll(argThat(users -> users.size() == 1 && users.get(0).getUsername().equals("fresh")));
+        verify(userChangeLog).recordAll(argThat(changes -> changes.size() == 1 && changes.get(0).getUserId() == 10L));
+    }
+
+    @Test
+    void importUsers_ShouldFailWhenAnotherRunCommittedTheBatch() {
+        // Arrange
+        when(userBatchWriter.getMaxItems()).thenReturn(100);
+        when(userBatchWriter.advanceImport(any(UserImport.class))).thenReturn(false);
+        when(userIdGenerator.nextId()).thenReturn(10L);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class,
+                () -> userService.importUsers(Arrays.asList(testUserDTO), new UserImport("partner")));
+        verify(userBatchWriter, never()).insertAll(anyList());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+package com.compare.demo.service;
+
+import com.compare.demo.mapper.UserMapper;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UsernameIndexTest {
+
+    @Mock
+    private UserMapper userMapper;
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void suggest_ShouldReturnLoadedUsernamesInOrder() {
+        // Arrange
+        UsernameIndex index = loadedIndex(4096, "carol", "alice", "alfred", "bob", "al");
+
+        // Act
+        List<String> suggestions = index.suggest("al", 10);
+
+        // Assert
+        assertTrue(index.isReady());
+        assertEquals(Arrays.asList("al", "alfred", "alice"), suggestions);
+        assertEquals(Arrays.asList("al", "alfred"), index.suggest("al", 2));
+        assertTrue(index.suggest("dave", 10).isEmpty());
+        assertEquals(5, index.getEntries());
+    }
+
+    @Test
+    void suggest_ShouldOverlayPendingChanges() {
+        // Arrange
+        UsernameIndex index = loadedIndex(4096, "alice", "alfred", "bob");
+
+        // Act
+        index.changed(Arrays.asList("alice"), Arrays.asList("alicia", "alan"));
+
+        // Assert
+        assertEquals(Arrays.asList("alan", "alfred", "alicia"), index.suggest("al", 10));
+        assertEquals(3, index.getPending());
+        assertEquals(0, index.getCompactions());
+    }
+
+    @Test
+    void suggest_ShouldGiveSameResultsAfterCompaction() {
+        // Arrange
+        UsernameIndex index = loadedIndex(2, "alice", "alfred", "bob");
+
+        // Act
+        index.changed(Arrays.asList("alfred"), Collections.<String>emptyList());
+        index.changed(Collections.<String>emptyList(), Arrays.asList("alex", "bob"));
+
+        // Assert
+        assertEquals(1, index.getCompactions());
+        assertEquals(0, index.getPending());
+        assertEquals(Arrays.asList("alex", "alice", "bob"), index.suggest("", 10));
+        assertEquals(3, index.getEntries());
+    }
+
+    @Test
+    void suggest_ShouldMatchMultiByteUsernames() {
+        // Arrange
+        UsernameIndex index = loadedIndex(4096, "张三", "张三丰", "张伟", "zhang");
+
+        // Act
+        index.changed(Collections.<String>emptyList(), Arrays.asList("张三李"));
+
+        // Assert
+        assertEquals(Arrays.asList("张三", "张三丰", "张三李"), index.suggest("张三", 10));
+    }
+
+    @Test
+    void changed_ShouldWaitForTransactionCommit() {
+        // Arrange
+        UsernameIndex index = loadedIndex(4096, "alice");
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        index.changed(Collections.<String>emptyList(), Arrays.asList("alan"));
+        List<String> beforeCommit = index.suggest("al", 10);
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+
+        // Assert
+        assertEquals(Arrays.asList("alice"), beforeCommit);
+        assertEquals(Arrays.asList("alan", "alice"), index.suggest("al", 10));
+    }
+
+    @Test
+    void load_ShouldKeepChangesCommittedWhileLoading() {
+        // Arrange
+        UsernameIndex index = new UsernameIndex(userMapper, true, 1);
+        doAnswer(invocation -> {
+            // the scan saw "alice", but she was renamed before the index was published
+            index.changed(Arrays.asList("alice"), Arrays.asList("alicia"));
+            feed(invocation.getArgument(0), "alice", "bob");
+            return null;
+        }).when(userMapper).scanUsernames(any());
+
+        // Act
+        index.load();
+
+        // Assert
+        assertEquals(Arrays.asList("alicia", "bob"), index.suggest("", 10));
+    }
+
+    @Test
+    void load_ShouldStayNotReadyWhenDatabaseFails() {
+        // Arrange
+        UsernameIndex index = new UsernameIndex(userMapper, true, 4096);
+        doThrow(new IllegalStateException("database down")).when(userMapper).scanUsernames(any());
+
+        // Act
+        index.load();
+
+        // Assert
+        assertFalse(index.isReady());
+    }
+
+    @Test
+    void load_ShouldSkipDatabaseWhenDisabled() {
+        // Arrange
+        UsernameIndex index = new UsernameIndex(userMapper, false, 4096);
+
+        // Act
+        index.load();
+        index.changed(Collections.<String>emptyList(), Arrays.asList("alice"));
+
+        // Assert
+        assertFalse(index.isReady());
+        assertEquals(0, index.getPending());
+        verifyNoInteractions(userMapper);
+    }
+
+    @Test
+    void getMemoryBytes_ShouldCountUtf8BytesAndOffsets() {
+        // Act
+        UsernameIndex index = loadedIndex(4096, "ab", "cde", "张");
+
+        // Assert
+        assertEquals(2 + 3 + 3 + 4 * 4, index.getMemoryBytes());
+    }
+
+    private UsernameIndex loadedIndex(int compactThreshold, String... usernames) {
+        UsernameIndex index = new UsernameIndex(userMapper, true, compactThreshold);
+        doAnswer(invocation -> {
+            feed(invocation.getArgument(0), usernames);
+            return null;
+        }).when(userMapper).scanUsernames(any());
+        index.load();
+        return index;
+    }
+
+    private static void feed(ResultHandler<String> handler, String... usernames) {
+        DefaultResultContext<String> context = new DefaultResultContext<>();
+        for (String username : usernames) {
+            context.nextResultObject(username);
+            handler.handleResult(context);
+        }
+    }
+}